@@ -0,0 +1,257 @@
+package com.hirohiro716.scent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 複数のスレッドから安全に使用できる動的な配列のクラス。<br>
+ * 読み取りは並行して行われ、書き込みは読み書きロックによって排他的に行われる。<br>
+ * ※getKeysメソッドとgetValuesメソッドは連想配列のマッピングに連動しない複製を返す。
+ * getLinkedHashMapメソッドで取得したjava.util.LinkedHashMapへの直接の操作は排他制御されない。
+ * 
+ * @param <K> 配列のキー型。
+ */
+public class ConcurrentDynamicArray<K> extends DynamicArray<K> {
+    
+    private static final long serialVersionUID = -2950618314711250465L;
+    
+    /**
+     * コンストラクタ。
+     */
+    public ConcurrentDynamicArray() {
+        super();
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 指定されたMapをコピーして初期値とした連想配列を作成する。
+     * 
+     * @param map
+     */
+    public ConcurrentDynamicArray(Map<K, ?> map) {
+        super(map);
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 指定された配列を初期値として連想配列を作成する。キーは自動的に決定する。
+     * 
+     * @param values
+     */
+    public ConcurrentDynamicArray(Object[] values) {
+        this();
+        this.add(values);
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 指定された配列を初期値として連想配列を作成する。キーは自動的に決定する。
+     * 
+     * @param values
+     */
+    public ConcurrentDynamicArray(Collection<?> values) {
+        this();
+        this.add(values);
+    }
+    
+    private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    @Override
+    public void put(K key, Object value) {
+        this.lock.writeLock().lock();
+        try {
+            super.put(key, value);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void add(Object[] values) {
+        this.lock.writeLock().lock();
+        try {
+            super.add(values);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public <V> V get(K key) {
+        this.lock.readLock().lock();
+        try {
+            return super.get(key);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public <V> V get(K key, Class<V> valueType) {
+        this.lock.readLock().lock();
+        try {
+            return super.get(key, valueType);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return super.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean containsKey(K key) {
+        this.lock.readLock().lock();
+        try {
+            return super.containsKey(key);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean containsValue(Object value) {
+        this.lock.readLock().lock();
+        try {
+            return super.containsValue(value);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public void removeKey(K key) {
+        this.lock.writeLock().lock();
+        try {
+            super.removeKey(key);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void removeValue(Object value) {
+        this.lock.writeLock().lock();
+        try {
+            super.removeValue(value);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void clear() {
+        this.lock.writeLock().lock();
+        try {
+            super.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * この連想配列に含まれるすべてのキーの複製を取得する。複製は連想配列のマッピングに連動しない。
+     * 
+     * @return
+     */
+    @Override
+    public Collection<K> getKeys() {
+        this.lock.readLock().lock();
+        try {
+            return new ArrayList<>(super.getKeys());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * この連想配列に含まれるすべての値の複製を取得する。複製は連想配列のマッピングに連動しない。
+     * 
+     * @param <V> 値の型。
+     * @return
+     */
+    @Override
+    public <V> Collection<V> getValues() {
+        this.lock.readLock().lock();
+        try {
+            return new ArrayList<>(super.getValues());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * この連想配列にほかの連想配列を結合する。キーに重複のマッピングがあった場合、あとの値で上書きされる。<br>
+     * 結合する連想配列の複製はこの連想配列のロックを取得する前に作成するため、互いに結合し合っても待ち合わせることはない。
+     * 
+     * @param arrays
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public void merge(DynamicArray<?>... arrays) {
+        List<Map<K, Object>> copies = new ArrayList<>();
+        for (DynamicArray<?> array: arrays) {
+            copies.add((Map<K, Object>) ConcurrentDynamicArray.copyMap(array));
+        }
+        this.lock.writeLock().lock();
+        try {
+            for (Map<K, Object> copy: copies) {
+                this.getLinkedHashMap().putAll(copy);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * 指定された連想配列が内部で使用しているjava.util.LinkedHashMapの複製を作成する。
+     * 
+     * @param array
+     * @return
+     */
+    private static Map<?, Object> copyMap(DynamicArray<?> array) {
+        if (array instanceof ConcurrentDynamicArray) {
+            ConcurrentDynamicArray<?> concurrentArray = (ConcurrentDynamicArray<?>) array;
+            concurrentArray.lock.readLock().lock();
+            try {
+                return new LinkedHashMap<>(concurrentArray.getLinkedHashMap());
+            } finally {
+                concurrentArray.lock.readLock().unlock();
+            }
+        }
+        return new LinkedHashMap<>(array.getLinkedHashMap());
+    }
+    
+    @Override
+    public ConcurrentDynamicArray<K> clone() {
+        this.lock.readLock().lock();
+        try {
+            ConcurrentDynamicArray<K> array = (ConcurrentDynamicArray<K>) super.clone();
+            array.lock = new ReentrantReadWriteLock();
+            return array;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public String toString() {
+        this.lock.readLock().lock();
+        try {
+            return super.toString();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+}
@@ -1,17 +1,22 @@
 package com.hirohiro716.scent;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.hirohiro716.scent.io.ByteArray;
+import com.hirohiro716.scent.io.DynamicArrayReader;
+import com.hirohiro716.scent.io.DynamicArrayWriter;
+import com.hirohiro716.scent.property.PropertyInterface;
 import com.hirohiro716.scent.reflection.Method;
 
 /**
@@ -98,24 +103,26 @@ public class DynamicArray<K> implements Cloneable, Serializable {
         this.put((K) key, value);
     }
 
+    private int nextAutomaticKey = 0;
+    
     /**
-     * 指定された値を追加する。キーは配列のサイズに応じて自動的に決定する。
+     * 指定された値を追加する。キーは配列のサイズに応じて自動的に決定する。<br>
+     * 前回自動的に決定したキーを記憶しているため、連続した追加で使用済みのキーを先頭から探し直すことはない。<br>
+     * ※このクラスはスレッドセーフではない。複数のスレッドから使用する場合はConcurrentDynamicArrayを使用する。
      * 
      * @param values
      */
+    @SuppressWarnings("unchecked")
     public void add(Object[] values) {
-        try {
-            for (Object value: values) {
-                synchronized (this.hashMap) {
-                    int key = this.size();
-                    while (this.hashMap.containsKey(key)) {
-                        key++;
-                    }
-                    this.forciblyPut(key, value);
-                }
+        int key = Math.max(this.size(), this.nextAutomaticKey);
+        for (Object value: values) {
+            while (this.hashMap.containsKey(key)) {
+                key++;
             }
-        } catch (ClassCastException exception) {
+            this.hashMap.put((K) (Object) key, value);
+            key++;
         }
+        this.nextAutomaticKey = key;
     }
 
     /**
@@ -299,6 +306,7 @@ public class DynamicArray<K> implements Cloneable, Serializable {
      */
     public void removeKey(K key) {
         this.hashMap.remove(key);
+        this.nextAutomaticKey = 0;
     }
     
     /**
@@ -307,11 +315,13 @@ public class DynamicArray<K> implements Cloneable, Serializable {
      * @param value
      */
     public void removeValue(Object value) {
-        for (Object key: this.hashMap.keySet()) {
-            if (this.hashMap.get(key).equals(value)) {
-                this.hashMap.remove(key);
+        Iterator<Object> iterator = this.hashMap.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().equals(value)) {
+                iterator.remove();
             }
         }
+        this.nextAutomaticKey = 0;
     }
     
     /**
@@ -319,6 +329,7 @@ public class DynamicArray<K> implements Cloneable, Serializable {
      */
     public void clear() {
         this.hashMap.clear();
+        this.nextAutomaticKey = 0;
     }
     
     /**
@@ -375,12 +386,12 @@ public class DynamicArray<K> implements Cloneable, Serializable {
             return null;
         }
         array.hashMap = new LinkedHashMap<>(this.hashMap);
-        for (K key: array.getKeys()) {
-            Object value = array.get(key);
+        for (K key: array.hashMap.keySet()) {
+            Object value = array.hashMap.get(key);
             if (value instanceof Cloneable) {
                 try {
                     Method method = new Method(value);
-                    array.put(key, method.invoke("clone"));
+                    array.hashMap.put(key, method.invoke("clone"));
                 } catch (Exception exception) {
                 }
             }
@@ -422,6 +433,58 @@ public class DynamicArray<K> implements Cloneable, Serializable {
         return byteArray.deserialize();
     }
     
+    /**
+     * この連想配列をDynamicArrayWriterのバイナリ形式で書き込んだByteArrayを作成する。<br>
+     * serializeメソッドよりもサイズが小さく高速だが、書き込める値の型はDynamicArrayWriterがサポートする型に限られる。
+     * 
+     * @param propertyClass キーに使用されているプロパティ列挙型のクラス。キーがプロパティ列挙型ではない場合はnull。
+     * @return
+     * @throws IOException
+     */
+    public ByteArray encode(Class<? extends PropertyInterface> propertyClass) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (DynamicArrayWriter writer = new DynamicArrayWriter(outputStream, propertyClass)) {
+            writer.write(this);
+        }
+        return new ByteArray(outputStream.toByteArray());
+    }
+    
+    /**
+     * この連想配列をDynamicArrayWriterのバイナリ形式で書き込んだByteArrayを作成する。
+     * 
+     * @return
+     * @throws IOException
+     */
+    public final ByteArray encode() throws IOException {
+        return this.encode(null);
+    }
+    
+    /**
+     * DynamicArrayWriterのバイナリ形式で書き込まれた連想配列のインスタンスを復元する。
+     * 
+     * @param <K> 
+     * @param byteArray
+     * @param propertyClass 書き込み時に指定したプロパティ列挙型のクラス。
+     * @return
+     * @throws IOException
+     */
+    public static <K> DynamicArray<K> decode(ByteArray byteArray, Class<? extends PropertyInterface> propertyClass) throws IOException {
+        DynamicArrayReader reader = new DynamicArrayReader(ByteBuffer.wrap(byteArray.bytes()), propertyClass);
+        return reader.read();
+    }
+    
+    /**
+     * DynamicArrayWriterのバイナリ形式で書き込まれた連想配列のインスタンスを復元する。
+     * 
+     * @param <K> 
+     * @param byteArray
+     * @return
+     * @throws IOException
+     */
+    public static <K> DynamicArray<K> decode(ByteArray byteArray) throws IOException {
+        return DynamicArray.decode(byteArray, null);
+    }
+    
     /**
      * 指定されたMapをコピーして初期値としたインスタンスを作成する。
      * 
@@ -463,19 +526,11 @@ public class DynamicArray<K> implements Cloneable, Serializable {
      * @return
      */
     public static <K> List<DynamicArray<K>> sort(Collection<DynamicArray<K>> arrays, K sortKey, SortOrder sortOrder) {
-        List<DynamicArray<K>> result = new ArrayList<>();
-        result.addAll(arrays);
+        LinkedHashMap<K, SortOrder> sortKeys = new LinkedHashMap<>();
         if (sortOrder != null) {
-            switch (sortOrder) {
-            case ASCENDING:
-                Collections.sort(result, new Comparator<K>(sortKey));
-                break;
-            case DESCENDING:
-                Collections.sort(result, new Comparator<K>(sortKey).reversed());
-                break;
-            }
+            sortKeys.put(sortKey, sortOrder);
         }
-        return result;
+        return DynamicArray.sort(arrays, sortKeys);
     }
 
     /**
@@ -491,66 +546,45 @@ public class DynamicArray<K> implements Cloneable, Serializable {
         List<DynamicArray<K>> list = Arrays.asList(arrays);
         return DynamicArray.sort(list, sortKey, sortOrder);
     }
+    
+    /**
+     * 複数のキーに関連づいた値をもとに連想配列を並び替える。先に格納されているキーほど優先される。
+     * 
+     * @param <K> 
+     * @param arrays
+     * @param sortKeys 並び替えに使用する値を取得するためのキーと、その並び順の連想配列。
+     * @return
+     */
+    public static <K> List<DynamicArray<K>> sort(Collection<DynamicArray<K>> arrays, LinkedHashMap<K, SortOrder> sortKeys) {
+        Sorter<DynamicArray<K>> sorter = new Sorter<>();
+        for (K sortKey: sortKeys.keySet()) {
+            sorter.addSortKey(new ValueExtractor<>(sortKey), sortKeys.get(sortKey));
+        }
+        return sorter.sort(arrays);
+    }
 
     /**
-     * 指定されたキーに関連づいた値同士を使用して2つの連想配列の順序付けをする比較クラス。
+     * 指定されたキーに関連づいた値を連想配列から取得するコールバック。<br>
+     * com.hirohiro716.scent.Sorterの並び替えキーとして使用できる。
      * 
      * @param <K> 
-     */    
-    private static class Comparator<K> implements java.util.Comparator<DynamicArray<K>> {
+     */
+    public static class ValueExtractor<K> implements Callback<DynamicArray<K>, Object> {
         
-        private K sortKey;
+        private K key;
         
         /**
          * コンストラクタ。
          * 
-         * @param sortKey 比較に使用する値を取得するためのキー。
+         * @param key 値を取得するためのキー。
          */
-        public Comparator(K sortKey) {
-            this.sortKey = sortKey;
+        public ValueExtractor(K key) {
+            this.key = key;
         }
         
         @Override
-        public int compare(DynamicArray<K> array1, DynamicArray<K> array2) {
-            Object value1 = array1.get(this.sortKey);
-            Object value2 = array2.get(this.sortKey);
-            if (value1 instanceof Number || value2 instanceof Number) {
-                Number number1 = StringObject.newInstance(value1).toDouble();
-                if (number1 == null) {
-                    number1 = Double.MIN_VALUE;
-                }
-                Number number2 = StringObject.newInstance(value2).toDouble();
-                if (number2 == null) {
-                    number2 = Double.MIN_VALUE;
-                }
-                if (number1.doubleValue() > number2.doubleValue()) {
-                    return 1;
-                } else if (number1.doubleValue() == number2.doubleValue()) {
-                    return 0;
-                } else {
-                    return -1;
-                }
-            }
-            if (value1 instanceof Date || value2 instanceof Date) {
-                Date date1 = (Date) value1;
-                if (date1 == null) {
-                    date1 = new Date(Long.MIN_VALUE);
-                }
-                Date date2 = (Date) value2;
-                if (date2 == null) {
-                    date2 = new Date(Long.MIN_VALUE);
-                }
-                if (date1.getTime() > date2.getTime()) {
-                    return 1;
-                } else if (date1.getTime() == date2.getTime()) {
-                    return 0;
-                } else {
-                    return -1;
-                }
-            }
-            String string1 = new StringObject(value1).toString();
-            String string2 = new StringObject(value2).toString();
-            return string1.compareTo(string2);
+        public Object call(DynamicArray<K> array) {
+            return array.get(this.key);
         }
     }
     
@@ -36,13 +36,13 @@ public class Hasher {
     }
     
     /**
-     * このインスタンスのハッシュと、指定されたハッシュが同じ場合はtrueを返す。
+     * このインスタンスのハッシュと、指定されたハッシュが同じ場合はtrueを返す。比較は一致しない位置に依存しない時間で行う。
      * 
      * @param hash
      * @return
      */
     public boolean verify(ByteArray hash) {
-        return this.hash.equals(hash);
+        return this.hash.equalsInConstantTime(hash);
     }
     
     /**
@@ -0,0 +1,389 @@
+package com.hirohiro716.scent;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import com.hirohiro716.scent.DynamicArray.SortOrder;
+
+/**
+ * 並び替えに使用する値を要素ごとに一度だけ抽出して並び替えを行うクラス。<br>
+ * 抽出した値は数値、日時、文字列のいずれかに正規化してから並び替えるため、比較のたびに値の変換は行われない。<br>
+ * ※数値や日時の判定は並び替えキーごとに行い、ひとつでもNumberが含まれる場合は数値、Dateが含まれる場合は日時として比較する。
+ * 
+ * @param <T> 並び替える要素の型。
+ */
+public class Sorter<T> {
+    
+    /**
+     * コンストラクタ。
+     */
+    public Sorter() {
+    }
+    
+    private List<SortKey<T>> sortKeys = new ArrayList<>();
+    
+    /**
+     * 並び替えに使用する値を取得するコールバックと並び順を指定して、並び替えキーを追加する。<br>
+     * nullの値は最小の値として扱われる。
+     * 
+     * @param valueExtractor 要素から並び替えに使用する値を取得するコールバック。
+     * @param sortOrder
+     */
+    public void addSortKey(Callback<T, Object> valueExtractor, SortOrder sortOrder) {
+        this.addSortKey(valueExtractor, sortOrder, null);
+    }
+    
+    /**
+     * 並び替えに使用する値を取得するコールバックと並び順、nullの配置を指定して、並び替えキーを追加する。<br>
+     * 先に追加した並び替えキーほど優先される。
+     * 
+     * @param valueExtractor 要素から並び替えに使用する値を取得するコールバック。
+     * @param sortOrder
+     * @param nullPlacement nullの配置。nullを指定した場合はnullの値を最小の値として扱う。
+     */
+    public void addSortKey(Callback<T, Object> valueExtractor, SortOrder sortOrder, NullPlacement nullPlacement) {
+        this.sortKeys.add(new SortKey<>(valueExtractor, sortOrder, nullPlacement));
+    }
+    
+    /**
+     * 追加されているすべての並び替えキーを削除する。
+     */
+    public void clearSortKeys() {
+        this.sortKeys.clear();
+    }
+    
+    private Collator collator = null;
+    
+    /**
+     * 文字列の比較に使用するCollatorを取得する。
+     * 
+     * @return 結果。セットされていない場合はnull。
+     */
+    public Collator getCollator() {
+        return this.collator;
+    }
+    
+    /**
+     * 文字列の比較に使用するCollatorをセットする。nullの場合は文字コード順で比較する。<br>
+     * 例えば、java.text.Collator.getInstance(java.util.Locale.JAPANESE)を指定すると日本語の辞書順で比較できる。
+     * 
+     * @param collator
+     */
+    public void setCollator(Collator collator) {
+        this.collator = collator;
+    }
+    
+    private boolean isCharacterTypeIgnored = false;
+    
+    /**
+     * 文字列の比較で、全角と半角、ひらがなとカタカナ、英字の大文字と小文字の違いを無視する場合はtrueを返す。
+     * 
+     * @return
+     */
+    public boolean isCharacterTypeIgnored() {
+        return this.isCharacterTypeIgnored;
+    }
+    
+    /**
+     * 文字列の比較で、全角と半角、ひらがなとカタカナ、英字の大文字と小文字の違いを無視するかどうかをセットする。
+     * 
+     * @param isCharacterTypeIgnored
+     */
+    public void setCharacterTypeIgnored(boolean isCharacterTypeIgnored) {
+        this.isCharacterTypeIgnored = isCharacterTypeIgnored;
+    }
+    
+    private int parallelThreshold = 10000;
+    
+    /**
+     * 並列で並び替えを行う要素数のしきい値を取得する。
+     * 
+     * @return
+     */
+    public int getParallelThreshold() {
+        return this.parallelThreshold;
+    }
+    
+    /**
+     * 並列で並び替えを行う要素数のしきい値をセットする。要素数がこの値以上の場合に並列で並び替えを行う。初期値は10000。
+     * 
+     * @param parallelThreshold
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+    
+    /**
+     * 指定された要素を並び替えた新しいリストを作成する。並び替えは安定しており、等しい要素の順序は維持される。<br>
+     * 並び替えキーのコールバックは要素ごとに一度だけ、このメソッドを呼び出したスレッドで実行される。
+     * 
+     * @param items
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> sort(Collection<T> items) {
+        Object[] itemArray = items.toArray();
+        List<T> result = new ArrayList<>(itemArray.length);
+        if (this.sortKeys.size() == 0 || itemArray.length < 2) {
+            for (Object item: itemArray) {
+                result.add((T) item);
+            }
+            return result;
+        }
+        ExtractedKey[] extractedKeys = new ExtractedKey[this.sortKeys.size()];
+        for (int index = 0; index < extractedKeys.length; index++) {
+            extractedKeys[index] = this.extract(this.sortKeys.get(index), itemArray);
+        }
+        Integer[] indexes = new Integer[itemArray.length];
+        for (int index = 0; index < indexes.length; index++) {
+            indexes[index] = index;
+        }
+        IndexComparator comparator = new IndexComparator(extractedKeys);
+        if (indexes.length >= this.parallelThreshold) {
+            Arrays.parallelSort(indexes, comparator);
+        } else {
+            Arrays.sort(indexes, comparator);
+        }
+        for (Integer index: indexes) {
+            result.add((T) itemArray[index]);
+        }
+        return result;
+    }
+    
+    /**
+     * 指定された要素を並び替えた新しいリストを作成する。
+     * 
+     * @param items
+     * @return
+     */
+    public List<T> sort(T[] items) {
+        return this.sort(Arrays.asList(items));
+    }
+    
+    /**
+     * 指定された並び替えキーの値をすべての要素から抽出して正規化する。
+     * 
+     * @param sortKey
+     * @param items
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private ExtractedKey extract(SortKey<T> sortKey, Object[] items) {
+        Object[] values = new Object[items.length];
+        boolean isNumber = false;
+        boolean isDate = false;
+        for (int index = 0; index < items.length; index++) {
+            Object value = sortKey.valueExtractor.call((T) items[index]);
+            values[index] = value;
+            if (value instanceof Number) {
+                isNumber = true;
+            } else if (value instanceof Date) {
+                isDate = true;
+            }
+        }
+        ExtractedKey extractedKey = new ExtractedKey(sortKey, items.length);
+        if (isNumber) {
+            extractedKey.numbers = new double[items.length];
+            for (int index = 0; index < values.length; index++) {
+                Object value = values[index];
+                Double number = null;
+                if (value instanceof Number) {
+                    number = ((Number) value).doubleValue();
+                } else if (value != null) {
+                    number = StringObject.newInstance(value).toDouble();
+                }
+                if (number == null || number.isNaN()) {
+                    extractedKey.nulls[index] = true;
+                } else {
+                    extractedKey.numbers[index] = number;
+                }
+            }
+            return extractedKey;
+        }
+        if (isDate) {
+            extractedKey.times = new long[items.length];
+            for (int index = 0; index < values.length; index++) {
+                Object value = values[index];
+                if (value instanceof Date) {
+                    extractedKey.times[index] = ((Date) value).getTime();
+                } else {
+                    extractedKey.nulls[index] = true;
+                }
+            }
+            return extractedKey;
+        }
+        if (this.collator != null) {
+            extractedKey.collationKeys = new CollationKey[items.length];
+        } else {
+            extractedKey.strings = new String[items.length];
+        }
+        for (int index = 0; index < values.length; index++) {
+            Object value = values[index];
+            if (value == null) {
+                extractedKey.nulls[index] = true;
+                continue;
+            }
+            String string = value.toString();
+            if (this.isCharacterTypeIgnored) {
+                string = StringObject.newInstance(string).wide().hiragana().toString().toLowerCase();
+            }
+            if (this.collator != null) {
+                extractedKey.collationKeys[index] = this.collator.getCollationKey(string);
+            } else {
+                extractedKey.strings[index] = string;
+            }
+        }
+        return extractedKey;
+    }
+    
+    /**
+     * nullの値を配置する位置の列挙型。
+     */
+    public enum NullPlacement {
+        /**
+         * 並び順にかかわらず先頭。
+         */
+        FIRST,
+        /**
+         * 並び順にかかわらず末尾。
+         */
+        LAST,
+    }
+    
+    /**
+     * 並び替えキーのクラス。
+     * 
+     * @param <T> 並び替える要素の型。
+     */
+    private static class SortKey<T> {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param valueExtractor
+         * @param sortOrder
+         * @param nullPlacement
+         */
+        private SortKey(Callback<T, Object> valueExtractor, SortOrder sortOrder, NullPlacement nullPlacement) {
+            this.valueExtractor = valueExtractor;
+            this.sortOrder = sortOrder;
+            this.nullPlacement = nullPlacement;
+        }
+        
+        private Callback<T, Object> valueExtractor;
+        
+        private SortOrder sortOrder;
+        
+        private NullPlacement nullPlacement;
+    }
+    
+    /**
+     * 要素ごとに抽出して正規化した並び替えキーの値のクラス。
+     */
+    private static class ExtractedKey {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param sortKey
+         * @param numberOfItems
+         */
+        private ExtractedKey(SortKey<?> sortKey, int numberOfItems) {
+            this.isDescending = sortKey.sortOrder == SortOrder.DESCENDING;
+            if (sortKey.nullPlacement == null) {
+                this.nullComparison = -1;
+            } else {
+                switch (sortKey.nullPlacement) {
+                case FIRST:
+                    this.nullComparison = this.isDescending ? 1 : -1;
+                    break;
+                case LAST:
+                    this.nullComparison = this.isDescending ? -1 : 1;
+                    break;
+                }
+            }
+            this.nulls = new boolean[numberOfItems];
+        }
+        
+        private boolean isDescending;
+        
+        private int nullComparison;
+        
+        private boolean[] nulls;
+        
+        private double[] numbers = null;
+        
+        private long[] times = null;
+        
+        private String[] strings = null;
+        
+        private CollationKey[] collationKeys = null;
+        
+        /**
+         * 指定された位置の2つの値を比較する。
+         * 
+         * @param index1
+         * @param index2
+         * @return
+         */
+        private int compare(int index1, int index2) {
+            int result;
+            boolean isNull1 = this.nulls[index1];
+            boolean isNull2 = this.nulls[index2];
+            if (isNull1 || isNull2) {
+                if (isNull1 && isNull2) {
+                    result = 0;
+                } else if (isNull1) {
+                    result = this.nullComparison;
+                } else {
+                    result = -this.nullComparison;
+                }
+            } else if (this.numbers != null) {
+                result = Double.compare(this.numbers[index1], this.numbers[index2]);
+            } else if (this.times != null) {
+                result = Long.compare(this.times[index1], this.times[index2]);
+            } else if (this.collationKeys != null) {
+                result = this.collationKeys[index1].compareTo(this.collationKeys[index2]);
+            } else {
+                result = this.strings[index1].compareTo(this.strings[index2]);
+            }
+            if (this.isDescending) {
+                return -result;
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * 抽出済みの並び替えキーの値を使用して、要素の位置同士の順序付けをする比較クラス。
+     */
+    private static class IndexComparator implements java.util.Comparator<Integer> {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param extractedKeys
+         */
+        private IndexComparator(ExtractedKey[] extractedKeys) {
+            this.extractedKeys = extractedKeys;
+        }
+        
+        private ExtractedKey[] extractedKeys;
+        
+        @Override
+        public int compare(Integer index1, Integer index2) {
+            for (ExtractedKey extractedKey: this.extractedKeys) {
+                int result = extractedKey.compare(index1, index2);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -2,19 +2,24 @@ package com.hirohiro716.scent;
 
 import java.nio.charset.Charset;
 import java.text.ParseException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 import com.hirohiro716.scent.datetime.Datetime;
 
 /**
- * 文字列のクラス。
+ * 文字列のクラス。<br>
+ * 文字列を編集するメソッドは、可能な限り内部のjava.lang.StringBuilderを直接編集する。
  */
-public class StringObject implements Cloneable, Iterable<String> {
+public class StringObject implements Cloneable, Iterable<String>, CharSequence {
     
     /**
      * コンストラクタ。
@@ -30,7 +35,11 @@ public class StringObject implements Cloneable, Iterable<String> {
      * @param value
      */
     public StringObject(Object value) {
-        if (value != null) {
+        if (value instanceof StringObject) {
+            this.value.append(((StringObject) value).value);
+        } else if (value instanceof CharSequence) {
+            this.value.append((CharSequence) value);
+        } else if (value != null) {
             this.value.append(value.toString());
         }
     }
@@ -41,6 +50,48 @@ public class StringObject implements Cloneable, Iterable<String> {
     public StringObject clone() {
         return new StringObject(this.value);
     }
+    
+    @Override
+    public char charAt(int index) {
+        return this.value.charAt(index);
+    }
+    
+    @Override
+    public CharSequence subSequence(int startIndex, int endIndex) {
+        return this.value.subSequence(startIndex, endIndex);
+    }
+    
+    @Override
+    public IntStream codePoints() {
+        return this.value.codePoints();
+    }
+    
+    /**
+     * 指定されたインデックスから始まる文字のコードポイントを取得する。
+     * 
+     * @param index
+     * @return
+     */
+    public int codePointAt(int index) {
+        return this.value.codePointAt(index);
+    }
+    
+    /**
+     * このインスタンスの文字列を、文字列を複製せずにコードポイントごとに処理する。
+     * 
+     * @param callback コードポイントを受け取るコールバック。falseを返すと処理を中断する。
+     */
+    public void forEachCodePoint(Callback<Integer, Boolean> callback) {
+        int index = 0;
+        while (index < this.value.length()) {
+            int codePoint = this.value.codePointAt(index);
+            Boolean result = callback.call(codePoint);
+            if (result != null && result == false) {
+                return;
+            }
+            index += Character.charCount(codePoint);
+        }
+    }
 
     @Override
     public Iterator<String> iterator() {
@@ -60,7 +111,7 @@ public class StringObject implements Cloneable, Iterable<String> {
             
             @Override
             public String next() {
-                String part = this.instance.clone().extract(this.index, this.index + 1).toString();
+                String part = String.valueOf(this.instance.value.charAt(this.index));
                 this.index++;
                 return part;
             }
@@ -188,10 +239,10 @@ public class StringObject implements Cloneable, Iterable<String> {
                 trueStartIndex = 0;
             }
         }
-        try {
-            this.value = new StringBuilder(this.toString().substring(trueStartIndex));
-        } catch (Exception exception) {
-            this.value = new StringBuilder();
+        if (trueStartIndex > allLength) {
+            this.value.setLength(0);
+        } else {
+            this.value.delete(0, trueStartIndex);
         }
         return this;
     }
@@ -224,10 +275,11 @@ public class StringObject implements Cloneable, Iterable<String> {
         if (trueEndIndex > allLength) {
             trueEndIndex = allLength;
         }
-        try {
-            this.value = new StringBuilder(this.toString().substring(trueStartIndex, trueEndIndex));
-        } catch (Exception exception) {
-            this.value = new StringBuilder();
+        if (trueEndIndex < 0 || trueStartIndex > trueEndIndex) {
+            this.value.setLength(0);
+        } else {
+            this.value.setLength(trueEndIndex);
+            this.value.delete(0, trueStartIndex);
         }
         return this;
     }
@@ -242,12 +294,12 @@ public class StringObject implements Cloneable, Iterable<String> {
      * @return このインスタンス。
      */
     public StringObject extract(String regex) {
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(this.value);
-        this.value = new StringBuilder();
+        Matcher matcher = StringObject.compilePattern(regex).matcher(this.value);
+        StringBuilder result = new StringBuilder();
         while (matcher.find()) {
-            this.value.append(matcher.group());
+            result.append(this.value, matcher.start(), matcher.end());
         }
+        this.value = result;
         return this;
     }
     
@@ -260,11 +312,15 @@ public class StringObject implements Cloneable, Iterable<String> {
      * @return このインスタンス。
      */
     public StringObject repeat(int numberOfRepeats) {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int number = 0; number < numberOfRepeats; number++) {
-            stringBuilder.append(this);
+        if (numberOfRepeats <= 0) {
+            this.value.setLength(0);
+            return this;
+        }
+        int length = this.value.length();
+        this.value.ensureCapacity(length * numberOfRepeats);
+        for (int number = 1; number < numberOfRepeats; number++) {
+            this.value.append(this.value, 0, length);
         }
-        this.value = stringBuilder;
         return this;
     }
     
@@ -275,8 +331,27 @@ public class StringObject implements Cloneable, Iterable<String> {
      * @return このインスタンス。
      */
     public StringObject trim() {
-        this.replace("^[ 　]{1,}", "");
-        return this.replace("[ 　]{1,}$", "");
+        int endIndex = this.value.length();
+        while (endIndex > 0 && StringObject.isSpace(this.value.charAt(endIndex - 1))) {
+            endIndex--;
+        }
+        this.value.setLength(endIndex);
+        int startIndex = 0;
+        while (startIndex < endIndex && StringObject.isSpace(this.value.charAt(startIndex))) {
+            startIndex++;
+        }
+        this.value.delete(0, startIndex);
+        return this;
+    }
+    
+    /**
+     * 指定された文字が 'U+0020' または 'U+3000' の場合はtrueを返す。
+     * 
+     * @param character
+     * @return
+     */
+    private static boolean isSpace(char character) {
+        return character == ' ' || character == '　';
     }
     
     /**
@@ -287,8 +362,11 @@ public class StringObject implements Cloneable, Iterable<String> {
      * @return このインスタンス。
      */
     public StringObject paddingLeft(char character, int length) {
-        while (this.length() < length) {
-            this.insert(character, 0);
+        int numberOfCharacters = length - this.length();
+        if (numberOfCharacters > 0) {
+            char[] characters = new char[numberOfCharacters];
+            Arrays.fill(characters, character);
+            this.value.insert(0, characters);
         }
         return this;
     }
@@ -302,7 +380,7 @@ public class StringObject implements Cloneable, Iterable<String> {
      */
     public StringObject paddingRight(char character, int length) {
         while (this.length() < length) {
-            this.append(character);
+            this.value.append(character);
         }
         return this;
     }
@@ -318,10 +396,39 @@ public class StringObject implements Cloneable, Iterable<String> {
      * @return このインスタンス。
      */
     public StringObject replace(String regex, String replacement) {
-        this.value = new StringBuilder(this.toString().replaceAll(regex, replacement));
+        Matcher matcher = StringObject.compilePattern(regex).matcher(this.value);
+        if (matcher.find() == false) {
+            return this;
+        }
+        StringBuilder result = new StringBuilder(this.value.length());
+        do {
+            matcher.appendReplacement(result, replacement);
+        } while (matcher.find());
+        matcher.appendTail(result);
+        this.value = result;
         return this;
     }
     
+    private static Map<String, Pattern> PATTERNS = new ConcurrentHashMap<>();
+    
+    /**
+     * 指定された正規表現をコンパイルする。コンパイルしたパターンはキャッシュされる。
+     * 
+     * @param regex
+     * @return
+     */
+    private static Pattern compilePattern(String regex) {
+        Pattern pattern = StringObject.PATTERNS.get(regex);
+        if (pattern == null) {
+            pattern = Pattern.compile(regex);
+            if (StringObject.PATTERNS.size() >= 512) {
+                StringObject.PATTERNS.clear();
+            }
+            StringObject.PATTERNS.put(regex, pattern);
+        }
+        return pattern;
+    }
+    
     /**
      * CRを置き換える。CRLFのCRは置き換えられない。
      * 
@@ -380,16 +487,7 @@ public class StringObject implements Cloneable, Iterable<String> {
      * @return このインスタンス。
      */
     public StringObject narrow() {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (String one: this) {
-            if (getWideToNarrowMap().containsKey(one)) {
-                stringBuilder.append(getWideToNarrowMap().get(one));
-            } else {
-                stringBuilder.append(one);
-            }
-        }
-        this.value = stringBuilder;
-        return this;
+        return this.replaceCharacters(getWideToNarrowTable(), false, false);
     }
     
     /**
@@ -398,59 +496,101 @@ public class StringObject implements Cloneable, Iterable<String> {
      * @return このインスタンス。
      */
     public StringObject wide() {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int index = 0; index < this.length(); index++) {
-            String two = this.clone().extract(index, index + 2).toString();
-            if (getNarrowToWideMap().containsKey(two)) {
-                stringBuilder.append(getNarrowToWideMap().get(two));
-                index++;
-            } else {
-                String one = this.clone().extract(index, index + 1).toString();
-                if (getNarrowToWideMap().containsKey(one)) {
-                    stringBuilder.append(getNarrowToWideMap().get(one));
-                } else {
-                    stringBuilder.append(one);
+        CharacterTable table = getNarrowToWideTable();
+        int length = this.value.length();
+        StringBuilder stringBuilder = new StringBuilder(length);
+        for (int index = 0; index < length; index++) {
+            char character = this.value.charAt(index);
+            if (index + 1 < length) {
+                String replacement = table.get(character, this.value.charAt(index + 1));
+                if (replacement != null) {
+                    stringBuilder.append(replacement);
+                    index++;
+                    continue;
                 }
             }
+            String replacement = table.get(character);
+            if (replacement != null) {
+                stringBuilder.append(replacement);
+            } else {
+                stringBuilder.append(character);
+            }
         }
         this.value = stringBuilder;
         return this;
     }
     
     /**
-     * 大文字を小文字に置き換える。
+     * 指定された表を使用して1文字ずつ置き換える。置き換える文字がない場合、文字列は複製されない。
      * 
+     * @param table 置き換え前の1文字から置き換え後の文字列を検索する表。
+     * @param isLowerCase 表に含まれない文字を小文字に変換する場合はtrue。
+     * @param isUpperCase 表に含まれない文字を大文字に変換する場合はtrue。
      * @return このインスタンス。
      */
-    public StringObject lower() {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (String one: this) {
-            if (getJapaneseUpperToLowerMap().containsKey(one)) {
-                stringBuilder.append(getJapaneseUpperToLowerMap().get(one));
+    private StringObject replaceCharacters(CharacterTable table, boolean isLowerCase, boolean isUpperCase) {
+        String language = Locale.getDefault().getLanguage();
+        boolean isTurkic = language.equals("tr") || language.equals("az");
+        StringBuilder stringBuilder = null;
+        int length = this.value.length();
+        for (int index = 0; index < length; index++) {
+            char character = this.value.charAt(index);
+            String replacement = table.get(character);
+            char converted = character;
+            if (replacement == null) {
+                // ASCII以外の文字とトルコ語などのロケールの場合は、String.toLowerCaseなどで1文字が複数の文字になる変換に従う
+                if (isLowerCase) {
+                    if (character < 0x80 && isTurkic == false) {
+                        converted = Character.toLowerCase(character);
+                    } else if (Character.isUpperCase(character) || Character.isTitleCase(character) || Character.toLowerCase(character) != character) {
+                        replacement = String.valueOf(character).toLowerCase();
+                    }
+                } else if (isUpperCase) {
+                    if (character < 0x80 && isTurkic == false) {
+                        converted = Character.toUpperCase(character);
+                    } else if (Character.isLowerCase(character) || Character.isTitleCase(character) || Character.toUpperCase(character) != character) {
+                        replacement = String.valueOf(character).toUpperCase();
+                    }
+                }
+            }
+            if (stringBuilder == null) {
+                if (replacement == null && converted == character) {
+                    continue;
+                }
+                if (replacement != null && replacement.length() == 1 && replacement.charAt(0) == character) {
+                    continue;
+                }
+                stringBuilder = new StringBuilder(length + 16);
+                stringBuilder.append(this.value, 0, index);
+            }
+            if (replacement != null) {
+                stringBuilder.append(replacement);
             } else {
-                stringBuilder.append(one.toLowerCase());
+                stringBuilder.append(converted);
             }
         }
-        this.value = stringBuilder;
+        if (stringBuilder != null) {
+            this.value = stringBuilder;
+        }
         return this;
     }
     
+    /**
+     * 大文字を小文字に置き換える。
+     * 
+     * @return このインスタンス。
+     */
+    public StringObject lower() {
+        return this.replaceCharacters(getJapaneseUpperToLowerTable(), true, false);
+    }
+    
     /**
      * 小文字を大文字に置き換える。
      * 
      * @return このインスタンス。
      */
     public StringObject upper() {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (String one: this) {
-            if (getJapaneseLowerToUpperMap().containsKey(one)) {
-                stringBuilder.append(getJapaneseLowerToUpperMap().get(one));
-            } else {
-                stringBuilder.append(one.toUpperCase());
-            }
-        }
-        this.value = stringBuilder;
-        return this;
+        return this.replaceCharacters(getJapaneseLowerToUpperTable(), false, true);
     }
     
     /**
@@ -459,16 +599,7 @@ public class StringObject implements Cloneable, Iterable<String> {
      * @return このインスタンス。
      */
     public StringObject hiragana() {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (String one: this) {
-            if (getKatakanaToHiraganaMap().containsKey(one)) {
-                stringBuilder.append(getKatakanaToHiraganaMap().get(one));
-            } else {
-                stringBuilder.append(one);
-            }
-        }
-        this.value = stringBuilder;
-        return this;
+        return this.replaceCharacters(getKatakanaToHiraganaTable(), false, false);
     }
     
     /**
@@ -477,16 +608,7 @@ public class StringObject implements Cloneable, Iterable<String> {
      * @return このインスタンス。
      */
     public StringObject katakana() {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (String one: this) {
-            if (getHiraganaToKatakanaMap().containsKey(one)) {
-                stringBuilder.append(getHiraganaToKatakanaMap().get(one));
-            } else {
-                stringBuilder.append(one);
-            }
-        }
-        this.value = stringBuilder;
-        return this;
+        return this.replaceCharacters(getHiraganaToKatakanaTable(), false, false);
     }
     
     /**
@@ -647,9 +769,11 @@ public class StringObject implements Cloneable, Iterable<String> {
      */
     public long sum() {
         long result = 0;
-        StringObject numbers = this.clone().extract("[0-9]");
-        for (int index = 0; index < numbers.length(); index++) {
-            result += numbers.clone().extract(index, index + 1).toLong();
+        for (int index = 0; index < this.value.length(); index++) {
+            char character = this.value.charAt(index);
+            if (character >= '0' && character <= '9') {
+                result += character - '0';
+            }
         }
         return result;
     }
@@ -704,9 +828,9 @@ public class StringObject implements Cloneable, Iterable<String> {
         return stringObject.repeat(numberOfRepeat);
     }
     
-    private static Map<String, String> NARROW_TO_WIDE = null;
+    private static CharacterTable NARROW_TO_WIDE = null;
     
-    private static Map<String, String> getNarrowToWideMap() {
+    private static CharacterTable getNarrowToWideTable() {
         if (StringObject.NARROW_TO_WIDE == null) {
             Map<String, String> map = new HashMap<>();
             map.put("a", "ａ");
@@ -885,14 +1009,14 @@ public class StringObject implements Cloneable, Iterable<String> {
             map.put("_", "＿");
             map.put("/", "／");
             map.put(" ", "　");
-            StringObject.NARROW_TO_WIDE = map;
+            StringObject.NARROW_TO_WIDE = new CharacterTable(map);
         }
         return StringObject.NARROW_TO_WIDE;
     }
     
-    private static Map<String, String> WIDE_TO_NARROW = null;
+    private static CharacterTable WIDE_TO_NARROW = null;
     
-    private static Map<String, String> getWideToNarrowMap() {
+    private static CharacterTable getWideToNarrowTable() {
         if (StringObject.WIDE_TO_NARROW == null) {
             Map<String, String> map = new HashMap<>();
             map.put("ａ", "a");
@@ -1069,14 +1193,14 @@ public class StringObject implements Cloneable, Iterable<String> {
             map.put("＿", "_");
             map.put("／", "/");
             map.put("　", " ");
-            StringObject.WIDE_TO_NARROW = map;
+            StringObject.WIDE_TO_NARROW = new CharacterTable(map);
         }
         return StringObject.WIDE_TO_NARROW;
     }
     
-    private static Map<String, String> HIRAGANA_TO_KATAKANA = null;
+    private static CharacterTable HIRAGANA_TO_KATAKANA = null;
     
-    private static Map<String, String> getHiraganaToKatakanaMap() {
+    private static CharacterTable getHiraganaToKatakanaTable() {
         if (StringObject.HIRAGANA_TO_KATAKANA == null) {
             Map<String, String> map = new HashMap<>();
             map.put("ぁ", "ァ");
@@ -1162,14 +1286,14 @@ public class StringObject implements Cloneable, Iterable<String> {
             map.put("ゑ", "ヱ");
             map.put("を", "ヲ");
             map.put("ん", "ン");
-            StringObject.HIRAGANA_TO_KATAKANA = map;
+            StringObject.HIRAGANA_TO_KATAKANA = new CharacterTable(map);
         }
         return StringObject.HIRAGANA_TO_KATAKANA;
     }
     
-    private static Map<String, String> KATAKANA_TO_HIRAGANA = null;
+    private static CharacterTable KATAKANA_TO_HIRAGANA = null;
     
-    private static Map<String, String> getKatakanaToHiraganaMap() {
+    private static CharacterTable getKatakanaToHiraganaTable() {
         if (StringObject.KATAKANA_TO_HIRAGANA == null) {
             Map<String, String> map = new HashMap<>();
             map.put("ァ", "ぁ");
@@ -1255,14 +1379,14 @@ public class StringObject implements Cloneable, Iterable<String> {
             map.put("ヱ", "ゑ");
             map.put("ヲ", "を");
             map.put("ン", "ん");
-            StringObject.KATAKANA_TO_HIRAGANA = map;
+            StringObject.KATAKANA_TO_HIRAGANA = new CharacterTable(map);
         }
         return StringObject.KATAKANA_TO_HIRAGANA;
     }
     
-    private static Map<String, String> JAPANESE_LOWER_TO_UPPER = null;
+    private static CharacterTable JAPANESE_LOWER_TO_UPPER = null;
     
-    private static Map<String, String> getJapaneseLowerToUpperMap() {
+    private static CharacterTable getJapaneseLowerToUpperTable() {
         if (StringObject.JAPANESE_LOWER_TO_UPPER == null) {
             Map<String, String> map = new HashMap<>();
             map.put("ぁ", "あ");
@@ -1283,14 +1407,14 @@ public class StringObject implements Cloneable, Iterable<String> {
             map.put("ュ", "ユ");
             map.put("ョ", "ヨ");
             map.put("ッ", "ツ");
-            StringObject.JAPANESE_LOWER_TO_UPPER = map;
+            StringObject.JAPANESE_LOWER_TO_UPPER = new CharacterTable(map);
         }
         return StringObject.JAPANESE_LOWER_TO_UPPER;
     }
     
-    private static Map<String, String> JAPANESE_UPPER_TO_LOWER = null;
+    private static CharacterTable JAPANESE_UPPER_TO_LOWER = null;
     
-    private static Map<String, String> getJapaneseUpperToLowerMap() {
+    private static CharacterTable getJapaneseUpperToLowerTable() {
         if (StringObject.JAPANESE_UPPER_TO_LOWER == null) {
             Map<String, String> map = new HashMap<>();
             map.put("あ", "ぁ");
@@ -1311,8 +1435,97 @@ public class StringObject implements Cloneable, Iterable<String> {
             map.put("ユ", "ュ");
             map.put("ヨ", "ョ");
             map.put("ツ", "ッ");
-            StringObject.JAPANESE_UPPER_TO_LOWER = map;
+            StringObject.JAPANESE_UPPER_TO_LOWER = new CharacterTable(map);
         }
         return StringObject.JAPANESE_UPPER_TO_LOWER;
     }
+    
+    /**
+     * 置き換え前の1文字または2文字から置き換え後の文字列を、文字列を作成せずに検索する表のクラス。<br>
+     * 文字コードの上位8ビットごとに256文字分のページを作成して保持する。
+     */
+    private static class CharacterTable {
+        
+        /**
+         * コンストラクタ。<br>
+         * 置き換え前の1文字または2文字をキー、置き換え後の文字列を値とした連想配列を指定する。
+         * 
+         * @param map
+         */
+        private CharacterTable(Map<String, String> map) {
+            for (Map.Entry<String, String> entry: map.entrySet()) {
+                String key = entry.getKey();
+                if (key.length() == 1) {
+                    CharacterTable.store(this.replacements, key.charAt(0), entry.getValue());
+                } else if (key.length() == 2) {
+                    Object[][] pages = (Object[][]) CharacterTable.find(this.followingReplacements, key.charAt(0));
+                    if (pages == null) {
+                        pages = new Object[256][];
+                        CharacterTable.store(this.followingReplacements, key.charAt(0), pages);
+                    }
+                    CharacterTable.store(pages, key.charAt(1), entry.getValue());
+                }
+            }
+        }
+        
+        private final Object[][] replacements = new Object[256][];
+        
+        private final Object[][] followingReplacements = new Object[256][];
+        
+        /**
+         * 指定された1文字に対する置き換え後の文字列を取得する。
+         * 
+         * @param character
+         * @return 結果。表に含まれない場合はnull。
+         */
+        private String get(char character) {
+            return (String) CharacterTable.find(this.replacements, character);
+        }
+        
+        /**
+         * 指定された連続する2文字に対する置き換え後の文字列を取得する。
+         * 
+         * @param first
+         * @param second
+         * @return 結果。表に含まれない場合はnull。
+         */
+        private String get(char first, char second) {
+            Object[][] pages = (Object[][]) CharacterTable.find(this.followingReplacements, first);
+            if (pages == null) {
+                return null;
+            }
+            return (String) CharacterTable.find(pages, second);
+        }
+        
+        /**
+         * ページに分けて保持している値から、指定された文字に対する値を取得する。
+         * 
+         * @param pages
+         * @param character
+         * @return 結果。値がない場合はnull。
+         */
+        private static Object find(Object[][] pages, char character) {
+            Object[] page = pages[character >>> 8];
+            if (page == null) {
+                return null;
+            }
+            return page[character & 0xFF];
+        }
+        
+        /**
+         * 指定された文字に対する値を、必要に応じてページを作成して保持する。
+         * 
+         * @param pages
+         * @param character
+         * @param value
+         */
+        private static void store(Object[][] pages, char character, Object value) {
+            Object[] page = pages[character >>> 8];
+            if (page == null) {
+                page = new Object[256];
+                pages[character >>> 8] = page;
+            }
+            page[character & 0xFF] = value;
+        }
+    }
 }
@@ -5,6 +5,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.hirohiro716.scent.StringObject;
 
 /**
  * 締め日期間のクラス。
@@ -54,6 +58,46 @@ public class ClosingPeriod {
         this.baseDatetime.modifyMillisecond(0);
     }
     
+    private int spanIndexHorizon = 120;
+    
+    /**
+     * findSpanメソッドで使用する締め日期間の索引が、現在の月から前後何か月分の期間を対象にするかを取得する。
+     * 
+     * @return
+     */
+    public int getSpanIndexHorizon() {
+        return this.spanIndexHorizon;
+    }
+    
+    /**
+     * findSpanメソッドで使用する締め日期間の索引が、現在の月から前後何か月分の期間を対象にするかをセットする。初期値は120か月。
+     * 
+     * @param numberOfMonths
+     */
+    public void setSpanIndexHorizon(int numberOfMonths) {
+        this.spanIndexHorizon = numberOfMonths;
+        this.spanIndex = null;
+    }
+    
+    /**
+     * 指定された日時から指定された月数を加算した月の、指定された締め日の日時を作成する。
+     * 
+     * @param baseDate
+     * @param numberOfMonths
+     * @param closingDay
+     * @return
+     */
+    private static Datetime createClosingDatetime(Date baseDate, int numberOfMonths, int closingDay) {
+        Datetime datetime = new Datetime(baseDate);
+        datetime.addMonth(numberOfMonths);
+        if (closingDay >= 28) {
+            datetime.changeToLastDayOfMonth();
+        } else {
+            datetime.modifyDay(closingDay);
+        }
+        return datetime;
+    }
+    
     /**
      * 指定された月数分、基準日の前後の期間を作成する。
      * 
@@ -62,44 +106,29 @@ public class ClosingPeriod {
      */
     public Span[] createSpans(int numberOfMonths) {
         // Calculate the required closing date
-        List<Long> timestampList = new ArrayList<>();
+        Date baseDate = this.baseDatetime.getDate();
+        long[] timestamps = new long[(numberOfMonths * 2 + 1) * this.closingDays.length];
+        int numberOfTimestamps = 0;
         for (int monthNumber = 0; monthNumber < numberOfMonths + 1; monthNumber++) {
             for (int closingDayIndex = 0; closingDayIndex < this.closingDays.length; closingDayIndex++) {
                 int closingDay = this.closingDays[closingDayIndex];
-                Datetime datetime = new Datetime(this.baseDatetime.getDate());
                 if (monthNumber < numberOfMonths) {
-                    Datetime forward = datetime.clone();
-                    forward.addMonth(monthNumber);
-                    if (closingDay >= 28) {
-                        forward.changeToLastDayOfMonth();
-                    } else {
-                        forward.modifyDay(closingDay);
-                    }
-                    timestampList.add(forward.getDate().getTime());
+                    timestamps[numberOfTimestamps] = ClosingPeriod.createClosingDatetime(baseDate, monthNumber, closingDay).getAllMilliSecond();
+                    numberOfTimestamps++;
                 }
                 if (monthNumber > 0) {
                     if (monthNumber < numberOfMonths || closingDayIndex == this.closingDays.length - 1) {
-                        Datetime backward = datetime.clone();
-                        backward.addMonth(monthNumber * -1);
-                        if (closingDay >= 28) {
-                            backward.changeToLastDayOfMonth();
-                        } else {
-                            backward.modifyDay(closingDay);
-                        }
-                        timestampList.add(backward.getDate().getTime());
+                        timestamps[numberOfTimestamps] = ClosingPeriod.createClosingDatetime(baseDate, monthNumber * -1, closingDay).getAllMilliSecond();
+                        numberOfTimestamps++;
                     }
                 }
             }
         }
         // Sort
-        Long[] timestamps = timestampList.toArray(new Long[] {});
-        Arrays.sort(timestamps);
+        Arrays.sort(timestamps, 0, numberOfTimestamps);
         // Create spans
         List<Span> spans = new ArrayList<>();
-        for (int index = 0; index < timestamps.length; index++) {
-            if (index == timestamps.length - 1) {
-                break;
-            }
+        for (int index = 0; index < numberOfTimestamps - 1; index++) {
             Datetime from = new Datetime(new Date(timestamps[index]));
             from.addDay(1);
             Datetime to = new Datetime(new Date(timestamps[index + 1]));
@@ -110,12 +139,18 @@ public class ClosingPeriod {
     }
     
     /**
-     * 指定された日付が含まれる締め日期間を特定する。特定できなかった場合はnullを返す。
+     * 指定された日付が含まれる締め日期間を特定する。特定できなかった場合はnullを返す。<br>
+     * 締め日の組み合わせごとにキャッシュされた締め日期間の索引を二分探索して特定する。索引の対象外の日付の場合は前後の期間を作成して特定する。
      * 
      * @param oneDate
      * @return
      */
     public Span findSpan(Date oneDate) {
+        SpanIndex spanIndex = this.getSpanIndex();
+        int index = spanIndex.findIndex(oneDate.getTime());
+        if (index >= 0) {
+            return spanIndex.getSpan(index);
+        }
         ClosingPeriod instance = new ClosingPeriod(this.closingDays);
         instance.setBaseDate(oneDate);
         for (Span span: instance.createSpans(2)) {
@@ -125,4 +160,140 @@ public class ClosingPeriod {
         }
         return null;
     }
+    
+    private static Map<String, SpanIndex> SPAN_INDEXES = new ConcurrentHashMap<>();
+    
+    private SpanIndex spanIndex = null;
+    
+    /**
+     * このインスタンスの締め日と索引の対象期間に対応する、締め日期間の索引を取得する。索引は締め日の組み合わせごとにキャッシュされる。
+     * 
+     * @return
+     */
+    public SpanIndex getSpanIndex() {
+        if (this.spanIndex != null) {
+            return this.spanIndex;
+        }
+        String key = StringObject.join(Arrays.toString(this.closingDays), "/", this.spanIndexHorizon).toString();
+        SpanIndex spanIndex = ClosingPeriod.SPAN_INDEXES.get(key);
+        if (spanIndex == null) {
+            spanIndex = new SpanIndex(this.closingDays, this.spanIndexHorizon);
+            ClosingPeriod.SPAN_INDEXES.putIfAbsent(key, spanIndex);
+        }
+        this.spanIndex = spanIndex;
+        return spanIndex;
+    }
+    
+    /**
+     * 締め日期間の開始日時と終了日時を、ミリ秒の配列で保持する索引のクラス。
+     */
+    public static class SpanIndex {
+        
+        /**
+         * コンストラクタ。<br>
+         * 締める日と、現在の月から前後何か月分の期間を対象にするかを指定する。
+         * 
+         * @param closingDays
+         * @param numberOfMonths
+         */
+        private SpanIndex(Integer[] closingDays, int numberOfMonths) {
+            Datetime baseDatetime = new Datetime();
+            baseDatetime.modifyDay(1);
+            baseDatetime.modifyTime(0, 0, 0, 0);
+            Date baseDate = baseDatetime.getDate();
+            long[] timestamps = new long[(numberOfMonths * 2 + 1) * closingDays.length];
+            int numberOfTimestamps = 0;
+            for (int monthNumber = numberOfMonths * -1; monthNumber <= numberOfMonths; monthNumber++) {
+                for (int closingDay: closingDays) {
+                    timestamps[numberOfTimestamps] = ClosingPeriod.createClosingDatetime(baseDate, monthNumber, closingDay).getAllMilliSecond();
+                    numberOfTimestamps++;
+                }
+            }
+            Arrays.sort(timestamps);
+            int numberOfUniqueTimestamps = 0;
+            for (int index = 0; index < timestamps.length; index++) {
+                if (index == 0 || timestamps[index] != timestamps[numberOfUniqueTimestamps - 1]) {
+                    timestamps[numberOfUniqueTimestamps] = timestamps[index];
+                    numberOfUniqueTimestamps++;
+                }
+            }
+            int numberOfSpans = Math.max(numberOfUniqueTimestamps - 1, 0);
+            this.startTimes = new long[numberOfSpans];
+            this.endTimes = new long[numberOfSpans];
+            for (int index = 0; index < numberOfSpans; index++) {
+                Datetime from = new Datetime(new Date(timestamps[index]));
+                from.addDay(1);
+                this.startTimes[index] = from.getAllMilliSecond();
+                Datetime to = new Datetime(new Date(timestamps[index + 1]));
+                to.modifyTime(23, 59, 59, 999);
+                this.endTimes[index] = to.getAllMilliSecond();
+            }
+        }
+        
+        private long[] startTimes;
+        
+        private long[] endTimes;
+        
+        /**
+         * 索引に含まれる締め日期間の数を取得する。
+         * 
+         * @return
+         */
+        public int size() {
+            return this.startTimes.length;
+        }
+        
+        /**
+         * 指定されたミリ秒の日時が含まれる締め日期間の位置を特定する。
+         * 
+         * @param time 0ミリ秒が表す日時(UTC 1970-01-01 00:00:00.000)からの経過ミリ秒。
+         * @return 結果。索引の対象外の場合は-1。
+         */
+        public int findIndex(long time) {
+            int low = 0;
+            int high = this.endTimes.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (this.endTimes[middle] < time) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            if (low < this.endTimes.length && this.startTimes[low] <= time) {
+                return low;
+            }
+            return -1;
+        }
+        
+        /**
+         * 指定された位置の締め日期間の開始日時をミリ秒で取得する。
+         * 
+         * @param index
+         * @return
+         */
+        public long getStartTime(int index) {
+            return this.startTimes[index];
+        }
+        
+        /**
+         * 指定された位置の締め日期間の終了日時をミリ秒で取得する。
+         * 
+         * @param index
+         * @return
+         */
+        public long getEndTime(int index) {
+            return this.endTimes[index];
+        }
+        
+        /**
+         * 指定された位置の締め日期間を取得する。
+         * 
+         * @param index
+         * @return
+         */
+        public Span getSpan(int index) {
+            return new Span(new Date(this.startTimes[index]), new Date(this.endTimes[index]));
+        }
+    }
 }
@@ -3,8 +3,11 @@ package com.hirohiro716.scent.datetime;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 
@@ -12,31 +15,33 @@ import com.hirohiro716.scent.IdentifiableEnum;
 import com.hirohiro716.scent.StringObject;
 
 /**
- * 年月日と時刻のクラス。
+ * 年月日と時刻のクラス。<br>
+ * ※内部でjava.time.ZonedDateTimeを使用している。年月日や時刻の変更はjava.util.Calendarと同様に寛容に解釈され、
+ * 範囲外の値は前後の年月日や時刻に繰り越される。変更した値は次に日時を参照する際にまとめて解釈される。
  */
 public class Datetime implements Cloneable {
 
     /**
-     * 年月日だけを文字列で表す際のデフォルトフォーマットパターン。
+     * 年月日だけを文字列で表す際のデフォルトフォーマットパターン。複数のスレッドから使用できる。
      */
-    public final static SimpleDateFormat DEFAULT_DATE_FORMAT_ONLY_DATE = new SimpleDateFormat("yyyy-MM-dd");
+    public final static SimpleDateFormat DEFAULT_DATE_FORMAT_ONLY_DATE = ImmutableDateFormat.getInstance("yyyy-MM-dd");
     
     /**
-     * 時刻だけを文字列で表す際のデフォルトフォーマットパターン。
+     * 時刻だけを文字列で表す際のデフォルトフォーマットパターン。複数のスレッドから使用できる。
      */
-    public final static SimpleDateFormat DEFAULT_DATE_FORMAT_ONLY_TIME = new SimpleDateFormat("HH:mm:ss");
+    public final static SimpleDateFormat DEFAULT_DATE_FORMAT_ONLY_TIME = ImmutableDateFormat.getInstance("HH:mm:ss");
     
     /**
-     * 年月日と時刻を文字列で表す際のデフォルトフォーマットパターン。
+     * 年月日と時刻を文字列で表す際のデフォルトフォーマットパターン。複数のスレッドから使用できる。
      */
-    public final static SimpleDateFormat DEFAULT_DATE_FORMAT = new SimpleDateFormat(StringObject.join(Datetime.DEFAULT_DATE_FORMAT_ONLY_DATE.toPattern(), " ", Datetime.DEFAULT_DATE_FORMAT_ONLY_TIME.toPattern()).toString());
+    public final static SimpleDateFormat DEFAULT_DATE_FORMAT = ImmutableDateFormat.getInstance(StringObject.join(Datetime.DEFAULT_DATE_FORMAT_ONLY_DATE.toPattern(), " ", Datetime.DEFAULT_DATE_FORMAT_ONLY_TIME.toPattern()).toString());
     
     /**
      * コンストラクタ。<br>
      * 現在の時刻を初期値とする。
      */
     public Datetime() {
-        this.calendar = (Calendar) Calendar.getInstance().clone();
+        this.zonedDateTime = ZonedDateTime.now(this.zoneId).truncatedTo(ChronoUnit.MILLIS);
     }
     
     /**
@@ -79,7 +84,59 @@ public class Datetime implements Cloneable {
         this.set(datetimeString, dateFormat);
     }
     
-    private Calendar calendar;
+    private ZoneId zoneId = ZoneId.systemDefault();
+    
+    private ZonedDateTime zonedDateTime;
+    
+    private boolean isModified = false;
+    
+    private int year;
+    
+    private int month;
+    
+    private int day;
+    
+    private int hour;
+    
+    private int minute;
+    
+    private int second;
+    
+    private int millisecond;
+    
+    /**
+     * 変更されていない年月日と時刻を、変更中の値として読み込む。
+     */
+    private void prepareModification() {
+        if (this.isModified) {
+            return;
+        }
+        this.year = this.zonedDateTime.getYear();
+        this.month = this.zonedDateTime.getMonthValue();
+        this.day = this.zonedDateTime.getDayOfMonth();
+        this.hour = this.zonedDateTime.getHour();
+        this.minute = this.zonedDateTime.getMinute();
+        this.second = this.zonedDateTime.getSecond();
+        this.millisecond = this.zonedDateTime.getNano() / 1000000;
+        this.isModified = true;
+    }
+    
+    /**
+     * 変更中の年月日と時刻を寛容に解釈して、確定した日時を取得する。
+     * 
+     * @return
+     */
+    private ZonedDateTime resolve() {
+        if (this.isModified) {
+            LocalDateTime localDateTime = LocalDateTime.of(this.year, 1, 1, 0, 0);
+            localDateTime = localDateTime.plusMonths(this.month - 1).plusDays(this.day - 1);
+            localDateTime = localDateTime.plusHours(this.hour).plusMinutes(this.minute).plusSeconds(this.second);
+            localDateTime = localDateTime.plus(this.millisecond, ChronoUnit.MILLIS);
+            this.zonedDateTime = localDateTime.atZone(this.zoneId);
+            this.isModified = false;
+        }
+        return this.zonedDateTime;
+    }
 
     private DateFormat dateFormat = Datetime.DEFAULT_DATE_FORMAT;
     
@@ -89,7 +146,8 @@ public class Datetime implements Cloneable {
      * @param date
      */
     public void set(Date date) {
-        this.calendar.setTime(date);
+        this.zonedDateTime = ZonedDateTime.ofInstant(date.toInstant(), this.zoneId);
+        this.isModified = false;
     }
     
     /**
@@ -100,8 +158,15 @@ public class Datetime implements Cloneable {
      * @throws ParseException 
      */
     public void set(String datetimeString) throws ParseException {
+        if (this.dateFormat == Datetime.DEFAULT_DATE_FORMAT) {
+            Date date = Datetime.stringToDate(datetimeString);
+            if (date != null) {
+                this.set(date);
+                return;
+            }
+        }
         try {
-            this.calendar.setTime(this.dateFormat.parse(datetimeString));
+            this.set(this.dateFormat.parse(datetimeString));
         } catch (ParseException exception) {
             Date date = stringToDate(datetimeString);
             if (date != null) {
@@ -130,7 +195,8 @@ public class Datetime implements Cloneable {
      * @param year 西暦の年。
      */
     public void modifyYear(int year) {
-        this.calendar.set(Calendar.YEAR, year);
+        this.prepareModification();
+        this.year = year;
     }
     
     /**
@@ -139,7 +205,8 @@ public class Datetime implements Cloneable {
      * @param month 1から12の月。
      */
     public void modifyMonth(int month) {
-        this.calendar.set(Calendar.MONTH, month - 1);
+        this.prepareModification();
+        this.month = month;
     }
     
     /**
@@ -148,7 +215,8 @@ public class Datetime implements Cloneable {
      * @param day 1から31の日。
      */
     public void modifyDay(int day) {
-        this.calendar.set(Calendar.DAY_OF_MONTH, day);
+        this.prepareModification();
+        this.day = day;
     }
     
     /**
@@ -157,7 +225,8 @@ public class Datetime implements Cloneable {
      * @param hour 0から23の時。
      */
     public void modifyHour(int hour) {
-        this.calendar.set(Calendar.HOUR_OF_DAY, hour);
+        this.prepareModification();
+        this.hour = hour;
     }
     
     /**
@@ -166,7 +235,8 @@ public class Datetime implements Cloneable {
      * @param minute 0から59の分。
      */
     public void modifyMinute(int minute) {
-        this.calendar.set(Calendar.MINUTE, minute);
+        this.prepareModification();
+        this.minute = minute;
     }
     
     /**
@@ -175,7 +245,8 @@ public class Datetime implements Cloneable {
      * @param second 0から59の秒。
      */
     public void modifySecond(int second) {
-        this.calendar.set(Calendar.SECOND, second);
+        this.prepareModification();
+        this.second = second;
     }
     
     /**
@@ -184,7 +255,8 @@ public class Datetime implements Cloneable {
      * @param millisecond 0から999のミリ秒。
      */
     public void modifyMillisecond(int millisecond) {
-        this.calendar.set(Calendar.MILLISECOND, millisecond);
+        this.prepareModification();
+        this.millisecond = millisecond;
     }
     
     /**
@@ -251,7 +323,10 @@ public class Datetime implements Cloneable {
      * @param year 加算する年数。
      */
     public void addYear(int year) {
-        this.calendar.add(Calendar.YEAR, year);
+        if (year == 0) {
+            return;
+        }
+        this.zonedDateTime = this.resolve().plusYears(year);
     }
     
     /**
@@ -260,7 +335,10 @@ public class Datetime implements Cloneable {
      * @param month 加算する月数。
      */
     public void addMonth(int month) {
-        this.calendar.add(Calendar.MONTH, month);
+        if (month == 0) {
+            return;
+        }
+        this.zonedDateTime = this.resolve().plusMonths(month);
     }
     
     /**
@@ -269,7 +347,10 @@ public class Datetime implements Cloneable {
      * @param day 加算する日数。
      */
     public void addDay(int day) {
-        this.calendar.add(Calendar.DAY_OF_MONTH, day);
+        if (day == 0) {
+            return;
+        }
+        this.zonedDateTime = this.resolve().plusDays(day);
     }
     
     /**
@@ -278,7 +359,10 @@ public class Datetime implements Cloneable {
      * @param hour 加算する時数。
      */
     public void addHour(int hour) {
-        this.calendar.add(Calendar.HOUR, hour);
+        if (hour == 0) {
+            return;
+        }
+        this.zonedDateTime = this.resolve().plusHours(hour);
     }
     
     /**
@@ -287,7 +371,10 @@ public class Datetime implements Cloneable {
      * @param minute 加算する分数。
      */
     public void addMinute(int minute) {
-        this.calendar.add(Calendar.MINUTE, minute);
+        if (minute == 0) {
+            return;
+        }
+        this.zonedDateTime = this.resolve().plusMinutes(minute);
     }
     
     /**
@@ -296,7 +383,10 @@ public class Datetime implements Cloneable {
      * @param second 加算する秒数。
      */
     public void addSecond(int second) {
-        this.calendar.add(Calendar.SECOND, second);
+        if (second == 0) {
+            return;
+        }
+        this.zonedDateTime = this.resolve().plusSeconds(second);
     }
     
     /**
@@ -305,7 +395,10 @@ public class Datetime implements Cloneable {
      * @param millisecond 加算するミリ秒数。
      */
     public void addMillisecond(int millisecond) {
-        this.calendar.add(Calendar.MILLISECOND, millisecond);
+        if (millisecond == 0) {
+            return;
+        }
+        this.zonedDateTime = this.resolve().plus(millisecond, ChronoUnit.MILLIS);
     }
     
     /**
@@ -314,7 +407,7 @@ public class Datetime implements Cloneable {
      * @return
      */
     public int getYear() {
-        return this.calendar.get(Calendar.YEAR);
+        return this.resolve().getYear();
     }
     
     /**
@@ -323,7 +416,7 @@ public class Datetime implements Cloneable {
      * @return
      */
     public int getMonth() {
-        return this.calendar.get(Calendar.MONTH) + 1;
+        return this.resolve().getMonthValue();
     }
     
     /**
@@ -332,7 +425,7 @@ public class Datetime implements Cloneable {
      * @return
      */
     public int getDay() {
-        return this.calendar.get(Calendar.DAY_OF_MONTH);
+        return this.resolve().getDayOfMonth();
     }
     
     /**
@@ -341,7 +434,7 @@ public class Datetime implements Cloneable {
      * @return
      */
     public int getHour() {
-        return this.calendar.get(Calendar.HOUR_OF_DAY);
+        return this.resolve().getHour();
     }
     
     /**
@@ -350,7 +443,7 @@ public class Datetime implements Cloneable {
      * @return
      */
     public int getMinute() {
-        return this.calendar.get(Calendar.MINUTE);
+        return this.resolve().getMinute();
     }
     
     /**
@@ -359,7 +452,7 @@ public class Datetime implements Cloneable {
      * @return
      */
     public int getSecond() {
-        return this.calendar.get(Calendar.SECOND);
+        return this.resolve().getSecond();
     }
 
     /**
@@ -368,7 +461,7 @@ public class Datetime implements Cloneable {
      * @return
      */
     public int getMilliSecond() {
-        return this.calendar.get(Calendar.MILLISECOND);
+        return this.resolve().getNano() / 1000000;
     }
     
     /**
@@ -377,20 +470,20 @@ public class Datetime implements Cloneable {
      * @return
      */
     public DayOfWeek getDayOfWeek() {
-        switch (this.calendar.get(Calendar.DAY_OF_WEEK)) {
-        case Calendar.SUNDAY:
+        switch (this.resolve().getDayOfWeek()) {
+        case SUNDAY:
             return DayOfWeek.SUNDAY;
-        case Calendar.MONDAY:
+        case MONDAY:
             return DayOfWeek.MONDAY;
-        case Calendar.TUESDAY:
+        case TUESDAY:
             return DayOfWeek.TUESDAY;
-        case Calendar.WEDNESDAY:
+        case WEDNESDAY:
             return DayOfWeek.WEDNESDAY;
-        case Calendar.THURSDAY:
+        case THURSDAY:
             return DayOfWeek.THURSDAY;
-        case Calendar.FRIDAY:
+        case FRIDAY:
             return DayOfWeek.FRIDAY;
-        case Calendar.SATURDAY:
+        case SATURDAY:
             return DayOfWeek.SATURDAY;
         }
         return null;
@@ -402,7 +495,7 @@ public class Datetime implements Cloneable {
      * @return
      */
     public Date getDate() {
-        return this.calendar.getTime();
+        return Date.from(this.resolve().toInstant());
     }
     
     /**
@@ -411,7 +504,7 @@ public class Datetime implements Cloneable {
      * @return
      */
     public long getAllMilliSecond() {
-        return this.calendar.getTime().getTime();
+        return this.resolve().toInstant().toEpochMilli();
     }
     
     /**
@@ -443,7 +536,7 @@ public class Datetime implements Cloneable {
      * @return
      */
     public String toString(DateFormat dateFormat) {
-        return dateFormat.format(this.calendar.getTime());
+        return dateFormat.format(this.getDate());
     }
 
     /**
@@ -483,7 +576,7 @@ public class Datetime implements Cloneable {
         if (date == null) {
             return false;
         }
-        return this.calendar.getTime().equals(date);
+        return this.getAllMilliSecond() == date.getTime();
     }
 
     /**
@@ -496,7 +589,7 @@ public class Datetime implements Cloneable {
         if (datetime == null) {
             return false;
         }
-        return this.calendar.getTime().equals(datetime.getDate());
+        return this.getAllMilliSecond() == datetime.getAllMilliSecond();
     }
     
     /**
@@ -603,44 +696,90 @@ public class Datetime implements Cloneable {
     /**
      * 下記の形式のいずれかのフォーマットパターンに準じた形式の文字列をjava.util.Dateに変換する。<br>
      * "yyyy/MM/dd"、"yyyy-MM-dd"、"yyyy/MM/dd HH:mm"、"yyyy-MM-dd HH:mm"、<br>
-     * "yyyy/MM/dd HH:mm:ss"、"yyyy-MM-dd HH:mm:ss"、"HH:mm:ss"、"HH:mm"
+     * "yyyy/MM/dd HH:mm:ss"、"yyyy-MM-dd HH:mm:ss"、"HH:mm:ss"、"HH:mm"<br>
+     * 文字列は先頭から一度だけ走査され、範囲外の値はjava.text.SimpleDateFormatと同様に前後の日時に繰り越される。
      * 
      * @param datetimeString
      * @return java.util.Dateインスタンス。変換に失敗した場合はnull。
      */
-    private Date stringToDate(String datetimeString) {
-        try {
-            SimpleDateFormat dateFormat = null;
-            if (datetimeString.matches("^[0-9]{4}/[0-1]{1}[0-9]{1}/[0-3]{1}[0-9]{1}$")) {
-                dateFormat = new SimpleDateFormat("yyyy/MM/dd");
-            }
-            if (datetimeString.matches("^[0-9]{4}\\-[0-1]{1}[0-9]{1}\\-[0-3]{1}[0-9]{1}$")) {
-                dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-            }
-            if (datetimeString.toString().matches("^[0-9]{4}/[0-1]{1}[0-9]{1}/[0-3]{1}[0-9]{1} [0-2]{1}[0-9]{1}:[0-5]{1}[0-9]{1}$")) {
-                dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm");
+    private static Date stringToDate(String datetimeString) {
+        if (datetimeString == null) {
+            return null;
+        }
+        int length = datetimeString.length();
+        int year = 1970;
+        int month = 1;
+        int day = 1;
+        int timeIndex = 0;
+        if (length == 10 || length == 16 || length == 19) {
+            char separator = datetimeString.charAt(4);
+            if (separator != '/' && separator != '-' || datetimeString.charAt(7) != separator) {
+                return null;
             }
-            if (datetimeString.toString().matches("^[0-9]{4}\\-[0-1]{1}[0-9]{1}\\-[0-3]{1}[0-9]{1} [0-2]{1}[0-9]{1}:[0-5]{1}[0-9]{1}$")) {
-                dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+            year = Datetime.parseDigits(datetimeString, 0, 4, '9');
+            month = Datetime.parseDigits(datetimeString, 5, 2, '1');
+            day = Datetime.parseDigits(datetimeString, 8, 2, '3');
+            if (year < 0 || month < 0 || day < 0) {
+                return null;
             }
-            if (datetimeString.toString().matches("^[0-9]{4}/[0-1]{1}[0-9]{1}/[0-3]{1}[0-9]{1} [0-2]{1}[0-9]{1}:[0-5]{1}[0-9]{1}:[0-5]{1}[0-9]{1}$")) {
-                dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+            if (length == 10) {
+                timeIndex = -1;
+            } else {
+                if (datetimeString.charAt(10) != ' ') {
+                    return null;
+                }
+                timeIndex = 11;
             }
-            if (datetimeString.toString().matches("^[0-9]{4}\\-[0-1]{1}[0-9]{1}\\-[0-3]{1}[0-9]{1} [0-2]{1}[0-9]{1}:[0-5]{1}[0-9]{1}:[0-5]{1}[0-9]{1}$")) {
-                dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        } else if (length != 5 && length != 8) {
+            return null;
+        }
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        if (timeIndex >= 0) {
+            hour = Datetime.parseDigits(datetimeString, timeIndex, 2, '2');
+            if (hour < 0 || datetimeString.charAt(timeIndex + 2) != ':') {
+                return null;
             }
-            if (datetimeString.toString().matches("^[0-2]{1}[0-9]{1}:[0-5]{1}[0-9]{1}:[0-5]{1}[0-9]{1}$")) {
-                dateFormat = new SimpleDateFormat("HH:mm:ss");
+            minute = Datetime.parseDigits(datetimeString, timeIndex + 3, 2, '5');
+            if (minute < 0) {
+                return null;
             }
-            if (datetimeString.toString().matches("^[0-2]{1}[0-9]{1}:[0-5]{1}[0-9]{1}$")) {
-                dateFormat = new SimpleDateFormat("HH:mm");
+            if (length - timeIndex == 8) {
+                if (datetimeString.charAt(timeIndex + 5) != ':') {
+                    return null;
+                }
+                second = Datetime.parseDigits(datetimeString, timeIndex + 6, 2, '5');
+                if (second < 0) {
+                    return null;
+                }
             }
-            if (dateFormat != null) {
-                return dateFormat.parse(datetimeString);
+        }
+        LocalDateTime localDateTime = LocalDateTime.of(year, 1, 1, 0, 0);
+        localDateTime = localDateTime.plusMonths(month - 1).plusDays(day - 1);
+        localDateTime = localDateTime.plusHours(hour).plusMinutes(minute).plusSeconds(second);
+        return Date.from(localDateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+    
+    /**
+     * 文字列の指定された位置から、指定された桁数の数字を整数に変換する。
+     * 
+     * @param string
+     * @param startIndex
+     * @param numberOfDigits
+     * @param maximumFirstDigit 先頭の桁に許容する最大の数字。
+     * @return 結果。数字以外が含まれていた場合は-1。
+     */
+    private static int parseDigits(String string, int startIndex, int numberOfDigits, char maximumFirstDigit) {
+        int result = 0;
+        for (int index = startIndex; index < startIndex + numberOfDigits; index++) {
+            char character = string.charAt(index);
+            if (character < '0' || character > '9' || index == startIndex && character > maximumFirstDigit) {
+                return -1;
             }
-        } catch (ParseException exception) {
+            result = result * 10 + (character - '0');
         }
-        return null;
+        return result;
     }
 
     /**
@@ -0,0 +1,138 @@
+package com.hirohiro716.scent.datetime;
+
+import java.text.AttributedCharacterIterator;
+import java.text.DateFormatSymbols;
+import java.text.FieldPosition;
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 複数のスレッドから安全に使用できる、変更不可能な日時フォーマットのクラス。<br>
+ * 書式化と解析はスレッドごとに作成したjava.text.SimpleDateFormatに委譲するため、結果はjava.text.SimpleDateFormatと同じになる。<br>
+ * ※パターンやタイムゾーンなどを変更するメソッドはUnsupportedOperationExceptionをスローする。
+ * cloneメソッドは変更可能なjava.text.SimpleDateFormatを返す。
+ */
+public class ImmutableDateFormat extends SimpleDateFormat {
+    
+    private static final long serialVersionUID = 6502842390361208446L;
+    
+    /**
+     * コンストラクタ。<br>
+     * java.text.SimpleDateFormatと同じ形式のフォーマットパターンを指定する。
+     * 
+     * @param pattern
+     * @throws IllegalArgumentException パターンが無効な場合。
+     */
+    public ImmutableDateFormat(String pattern) throws IllegalArgumentException {
+        super(pattern);
+    }
+    
+    private transient volatile ThreadLocal<SimpleDateFormat> delegates;
+    
+    /**
+     * 現在のスレッドで書式化と解析に使用するjava.text.SimpleDateFormatを取得する。
+     * 
+     * @return
+     */
+    private SimpleDateFormat getDelegate() {
+        if (this.delegates == null) {
+            String pattern = this.toPattern();
+            synchronized (this) {
+                if (this.delegates == null) {
+                    this.delegates = new ThreadLocal<SimpleDateFormat>() {
+                        
+                        @Override
+                        protected SimpleDateFormat initialValue() {
+                            return new SimpleDateFormat(pattern);
+                        }
+                    };
+                }
+            }
+        }
+        return this.delegates.get();
+    }
+    
+    @Override
+    public StringBuffer format(Date date, StringBuffer toAppendTo, FieldPosition position) {
+        return this.getDelegate().format(date, toAppendTo, position);
+    }
+    
+    @Override
+    public AttributedCharacterIterator formatToCharacterIterator(Object object) {
+        return this.getDelegate().formatToCharacterIterator(object);
+    }
+    
+    @Override
+    public Date parse(String source, ParsePosition position) {
+        return this.getDelegate().parse(source, position);
+    }
+    
+    @Override
+    public Object clone() {
+        return new SimpleDateFormat(this.toPattern());
+    }
+    
+    @Override
+    public void applyPattern(String pattern) {
+        throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public void applyLocalizedPattern(String pattern) {
+        throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public void set2DigitYearStart(Date startDate) {
+        throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public void setDateFormatSymbols(DateFormatSymbols newFormatSymbols) {
+        throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public void setCalendar(Calendar newCalendar) {
+        throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public void setNumberFormat(NumberFormat newNumberFormat) {
+        throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public void setTimeZone(TimeZone zone) {
+        throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public void setLenient(boolean lenient) {
+        throw new UnsupportedOperationException();
+    }
+    
+    private static Map<String, ImmutableDateFormat> INSTANCES = new ConcurrentHashMap<>();
+    
+    /**
+     * 指定されたフォーマットパターンのインスタンスを取得する。インスタンスはパターンごとにキャッシュされる。
+     * 
+     * @param pattern
+     * @return
+     * @throws IllegalArgumentException パターンが無効な場合。
+     */
+    public static ImmutableDateFormat getInstance(String pattern) throws IllegalArgumentException {
+        ImmutableDateFormat dateFormat = ImmutableDateFormat.INSTANCES.get(pattern);
+        if (dateFormat == null) {
+            dateFormat = new ImmutableDateFormat(pattern);
+            ImmutableDateFormat.INSTANCES.putIfAbsent(pattern, dateFormat);
+        }
+        return dateFormat;
+    }
+}
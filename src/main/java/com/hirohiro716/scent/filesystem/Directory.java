@@ -5,10 +5,34 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.hirohiro716.scent.StringObject;
 
@@ -62,6 +86,16 @@ public class Directory extends FilesystemItem {
         this(new java.io.File(uri));
     }
     
+    /**
+     * コンストラクタ。<br>
+     * 属性を取得済みのディレクトリのパスで新しいインスタンスを作成する。ディレクトリであることの検証は行わない。
+     * 
+     * @param path
+     */
+    Directory(Path path) {
+        super(path.toFile());
+    }
+    
     @Override
     public boolean exists() {
         return this.toJavaIoFile().exists() && this.toJavaIoFile().canRead() && this.isDirectory();
@@ -94,29 +128,31 @@ public class Directory extends FilesystemItem {
     }
 
     /**
-     * 指定されたディレクトリ内にある、すべてのファイルシステムアイテムをサブディレクトリを含めて検索する。
+     * 指定された正規表現でアイテム名をフィルタするjava.nio.file.PathMatcherを作成する。
      * 
-     * @param directory
-     * @param regexToFilterDirectoryName ディレクトリ名をフィルタするための正規表現。
-     * @param regexToFilterFileName ファイル名をフィルタするための正規表現。
-     * @return
+     * @param pattern
+     * @return 結果。patternがnullの場合はnull。
      */
-    private List<FilesystemItem> searchItems(java.io.File directory, String regexToFilterDirectoryName, String regexToFilterFileName) {
-        List<FilesystemItem> items = new ArrayList<>();
-        if (directory.exists() && directory.canRead()) {
-            for (java.io.File file: directory.listFiles()) {
-                if (file.isDirectory() && file.getName().matches(regexToFilterDirectoryName)) {
-                    items.add(new Directory(file));
-                    items.addAll(this.searchItems(file, regexToFilterDirectoryName, regexToFilterFileName));
-                }
-                if (file.isDirectory() == false && file.getName().matches(regexToFilterFileName)) {
-                    items.add(new File(file));
-                }
-            }
+    public static PathMatcher createNameMatcher(Pattern pattern) {
+        if (pattern == null) {
+            return null;
         }
-        return items;
+        return new NameMatcher(pattern);
     }
-
+    
+    /**
+     * 指定された正規表現の文字列でアイテム名をフィルタするjava.nio.file.PathMatcherを作成する。
+     * 
+     * @param regex
+     * @return 結果。regexがnullまたは空文字の場合はnull。
+     */
+    private static PathMatcher createNameMatcher(String regex) {
+        if (regex == null || regex.length() == 0) {
+            return null;
+        }
+        return new NameMatcher(Pattern.compile(regex));
+    }
+    
     /**
      * このディレクトリ直下にあるファイルシステムアイテムを検索する。
      * 
@@ -138,24 +174,149 @@ public class Directory extends FilesystemItem {
     }
     
     /**
-     * このディレクトリ内にある、すべてのファイルシステムアイテムをサブディレクトリを含めて検索する。
+     * このディレクトリ内にある、すべてのファイルシステムアイテムをサブディレクトリを含めて検索する。<br>
+     * 名前がフィルタに一致しないディレクトリは、その中のアイテムも検索しない。
      * 
      * @param regexToFilterDirectoryName ディレクトリ名をフィルタするための正規表現。
      * @param regexToFilterFileName ファイル名をフィルタするための正規表現。
      * @return
      */
     public FilesystemItem[] searchItems(String regexToFilterDirectoryName, String regexToFilterFileName) {
-        StringObject directoryRegex = new StringObject(regexToFilterDirectoryName);
-        if (directoryRegex.length() == 0) {
-            directoryRegex.append(".*");
+        return this.walkItems(Directory.createNameMatcher(regexToFilterDirectoryName), Directory.createNameMatcher(regexToFilterFileName));
+    }
+    
+    /**
+     * このディレクトリ内にある、すべてのファイルシステムアイテムをサブディレクトリを含めて検索する。<br>
+     * java.nio.file.Files.walkFileTreeで走査し、走査時に取得した属性を再利用するため、アイテムごとのファイルシステムへの問い合わせは一度だけ行われる。
+     * 名前がフィルタに一致しないディレクトリは、その中のアイテムも検索しない。シンボリックリンクはリンク先として扱い、リンク先が存在しない場合はファイルとして扱う。
+     * 読み込めないディレクトリは、その中のアイテムを検索せずにディレクトリとして結果に含める。
+     * シンボリックリンクなどで同じディレクトリに複数の経路から到達した場合、経路ごとにディレクトリとして結果に含めるが、その中のアイテムは一度だけ検索する。
+     * 
+     * @param directoryMatcher ディレクトリをフィルタするためのPathMatcher。nullの場合はすべてのディレクトリ。
+     * @param fileMatcher ファイルをフィルタするためのPathMatcher。nullの場合はすべてのファイル。
+     * @return
+     */
+    public FilesystemItem[] walkItems(PathMatcher directoryMatcher, PathMatcher fileMatcher) {
+        List<FilesystemItem> items = new ArrayList<>();
+        Path start = this.toJavaIoFile().toPath();
+        Set<Object> visitedKeys = new HashSet<>();
+        try {
+            Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                
+                @Override
+                public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                    if (directory.equals(start)) {
+                        if (attributes.fileKey() != null) {
+                            visitedKeys.add(attributes.fileKey());
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                    if (directoryMatcher != null && directoryMatcher.matches(directory) == false) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    items.add(new Directory(directory));
+                    if (attributes.fileKey() != null && visitedKeys.add(attributes.fileKey()) == false) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    if (attributes.isDirectory()) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    if (fileMatcher == null || fileMatcher.matches(file)) {
+                        items.add(new File(file));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exception) throws IOException {
+                    if (file.equals(start)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    BasicFileAttributes attributes = Directory.readAttributes(file);
+                    if (attributes != null && attributes.isDirectory()) {
+                        if (directoryMatcher == null || directoryMatcher.matches(file)) {
+                            items.add(new Directory(file));
+                        }
+                    } else {
+                        if (fileMatcher == null || fileMatcher.matches(file)) {
+                            items.add(new File(file));
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                @Override
+                public FileVisitResult postVisitDirectory(Path directory, IOException exception) throws IOException {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException exception) {
         }
-        StringObject fileRegex = new StringObject(regexToFilterFileName);
-        if (fileRegex.length() == 0) {
-            fileRegex.append(".*");
+        return items.toArray(new FilesystemItem[items.size()]);
+    }
+    
+    /**
+     * このディレクトリ内にある、すべてのファイルシステムアイテムをサブディレクトリを含めて検索するjava.util.stream.Streamを作成する。<br>
+     * ディレクトリは要素を取得する度に順に読み込まれるため、すべてのアイテムを保持せずに処理でき、途中で打ち切ることもできる。
+     * 名前がフィルタに一致しないディレクトリは、その中のアイテムも検索しない。アイテムの扱いはwalkItemsメソッドと同じ。<br>
+     * ※読み込み中のディレクトリを開いたままにするため、使用後はcloseメソッドを呼び出す必要がある。
+     * 
+     * @param directoryMatcher ディレクトリをフィルタするためのPathMatcher。nullの場合はすべてのディレクトリ。
+     * @param fileMatcher ファイルをフィルタするためのPathMatcher。nullの場合はすべてのファイル。
+     * @return
+     */
+    public Stream<FilesystemItem> streamItems(PathMatcher directoryMatcher, PathMatcher fileMatcher) {
+        ItemIterator iterator = new ItemIterator(this.toJavaIoFile().toPath(), directoryMatcher, fileMatcher);
+        Stream<FilesystemItem> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+        return stream.onClose(iterator);
+    }
+    
+    /**
+     * このディレクトリ内にある、すべてのファイルシステムアイテムをサブディレクトリを含めて、ディレクトリごとに並列で検索する。<br>
+     * 結果の順序はwalkItemsメソッドと同じ。ネットワーク上の共有フォルダなど、問い合わせの待ち時間が長いディレクトリの検索に使用する。
+     * 
+     * @param directoryMatcher ディレクトリをフィルタするためのPathMatcher。nullの場合はすべてのディレクトリ。
+     * @param fileMatcher ファイルをフィルタするためのPathMatcher。nullの場合はすべてのファイル。
+     * @param forkJoinPool 並列処理に使用するスレッドプール。
+     * @return
+     */
+    public FilesystemItem[] walkItemsInParallel(PathMatcher directoryMatcher, PathMatcher fileMatcher, ForkJoinPool forkJoinPool) {
+        Path start = this.toJavaIoFile().toPath();
+        Set<Object> visitedKeys = ConcurrentHashMap.newKeySet();
+        BasicFileAttributes attributes = Directory.readAttributes(start);
+        if (attributes != null && attributes.fileKey() != null) {
+            visitedKeys.add(attributes.fileKey());
         }
-        return this.searchItems(this.toJavaIoFile(), directoryRegex.toString(), fileRegex.toString()).toArray(new FilesystemItem[] {});
+        List<FilesystemItem> items = forkJoinPool.invoke(new SearchTask(start, directoryMatcher, fileMatcher, visitedKeys));
+        return items.toArray(new FilesystemItem[items.size()]);
     }
-
+    
+    /**
+     * このディレクトリ内にある、すべてのファイルシステムアイテムをサブディレクトリを含めて、共通のスレッドプールを使用して並列で検索する。
+     * 
+     * @param directoryMatcher ディレクトリをフィルタするためのPathMatcher。nullの場合はすべてのディレクトリ。
+     * @param fileMatcher ファイルをフィルタするためのPathMatcher。nullの場合はすべてのファイル。
+     * @return
+     */
+    public final FilesystemItem[] walkItemsInParallel(PathMatcher directoryMatcher, PathMatcher fileMatcher) {
+        return this.walkItemsInParallel(directoryMatcher, fileMatcher, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * このディレクトリ内の変更を監視するDirectoryWatcherを作成する。
+     * 
+     * @param isRecursive サブディレクトリを含めて監視する場合はtrue。
+     * @return
+     */
+    public DirectoryWatcher createWatcher(boolean isRecursive) {
+        return new DirectoryWatcher(this, isRecursive);
+    }
+    
     /**
      * 指定されたクラスファイルの親ディレクトリを取得する。<br>
      * もしクラスファイルがjarファイルに含まれる場合はjarファイルの親ディレクトリを取得する。
@@ -181,4 +342,228 @@ public class Directory extends FilesystemItem {
         }
         return new Directory(path.toString());
     }
+    
+    /**
+     * 正規表現でアイテム名をフィルタするクラス。
+     */
+    private static class NameMatcher implements PathMatcher {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param pattern
+         */
+        private NameMatcher(Pattern pattern) {
+            this.pattern = pattern;
+        }
+        
+        private Pattern pattern;
+        
+        @Override
+        public boolean matches(Path path) {
+            Path name = path.getFileName();
+            if (name == null) {
+                return false;
+            }
+            return this.pattern.matcher(name.toString()).matches();
+        }
+    }
+    
+    /**
+     * ディレクトリ内のアイテムの属性を取得する。シンボリックリンクの場合はリンク先の属性を取得し、
+     * リンク先が存在しない場合はシンボリックリンク自体の属性を取得する。
+     * 
+     * @param path
+     * @return 結果。取得できなかった場合はnull。
+     */
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException exception) {
+        }
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException exception) {
+            return null;
+        }
+    }
+    
+    /**
+     * ディレクトリを読み込む度に順に検索するイテレーターのクラス。
+     */
+    private static class ItemIterator implements Iterator<FilesystemItem>, Runnable {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param start
+         * @param directoryMatcher
+         * @param fileMatcher
+         */
+        private ItemIterator(Path start, PathMatcher directoryMatcher, PathMatcher fileMatcher) {
+            this.directoryMatcher = directoryMatcher;
+            this.fileMatcher = fileMatcher;
+            this.open(start, Directory.readAttributes(start));
+        }
+        
+        private PathMatcher directoryMatcher;
+        
+        private PathMatcher fileMatcher;
+        
+        private Deque<DirectoryStream<Path>> directoryStreams = new ArrayDeque<>();
+        
+        private Deque<Iterator<Path>> iterators = new ArrayDeque<>();
+        
+        private Set<Object> visitedKeys = new HashSet<>();
+        
+        private FilesystemItem nextItem = null;
+        
+        /**
+         * 指定されたディレクトリを開いて、次に読み込むディレクトリとする。読み込み済みのディレクトリは開かない。
+         * 
+         * @param directory
+         * @param attributes
+         */
+        private void open(Path directory, BasicFileAttributes attributes) {
+            if (attributes == null || attributes.isDirectory() == false) {
+                return;
+            }
+            if (attributes.fileKey() != null && this.visitedKeys.add(attributes.fileKey()) == false) {
+                return;
+            }
+            try {
+                DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory);
+                this.directoryStreams.push(directoryStream);
+                this.iterators.push(directoryStream.iterator());
+            } catch (IOException exception) {
+            }
+        }
+        
+        /**
+         * 現在読み込んでいるディレクトリを閉じる。
+         */
+        private void closeCurrent() {
+            this.iterators.pop();
+            try {
+                this.directoryStreams.pop().close();
+            } catch (IOException exception) {
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            while (this.nextItem == null && this.iterators.size() > 0) {
+                Iterator<Path> iterator = this.iterators.peek();
+                Path path;
+                try {
+                    if (iterator.hasNext() == false) {
+                        this.closeCurrent();
+                        continue;
+                    }
+                    path = iterator.next();
+                } catch (DirectoryIteratorException exception) {
+                    this.closeCurrent();
+                    continue;
+                }
+                BasicFileAttributes attributes = Directory.readAttributes(path);
+                if (attributes != null && attributes.isDirectory()) {
+                    if (this.directoryMatcher == null || this.directoryMatcher.matches(path)) {
+                        this.nextItem = new Directory(path);
+                        this.open(path, attributes);
+                    }
+                } else {
+                    if (this.fileMatcher == null || this.fileMatcher.matches(path)) {
+                        this.nextItem = new File(path);
+                    }
+                }
+            }
+            return this.nextItem != null;
+        }
+        
+        @Override
+        public FilesystemItem next() {
+            if (this.hasNext() == false) {
+                throw new NoSuchElementException();
+            }
+            FilesystemItem item = this.nextItem;
+            this.nextItem = null;
+            return item;
+        }
+        
+        /**
+         * 開いているすべてのディレクトリを閉じる。
+         */
+        @Override
+        public void run() {
+            while (this.iterators.size() > 0) {
+                this.closeCurrent();
+            }
+        }
+    }
+    
+    /**
+     * 一つのディレクトリ内を検索して、サブディレクトリの検索を並列で実行するタスクのクラス。
+     */
+    private static class SearchTask extends RecursiveTask<List<FilesystemItem>> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param directory
+         * @param directoryMatcher
+         * @param fileMatcher
+         * @param visitedKeys
+         */
+        private SearchTask(Path directory, PathMatcher directoryMatcher, PathMatcher fileMatcher, Set<Object> visitedKeys) {
+            this.directory = directory;
+            this.directoryMatcher = directoryMatcher;
+            this.fileMatcher = fileMatcher;
+            this.visitedKeys = visitedKeys;
+        }
+        
+        private Path directory;
+        
+        private PathMatcher directoryMatcher;
+        
+        private PathMatcher fileMatcher;
+        
+        private Set<Object> visitedKeys;
+        
+        @Override
+        protected List<FilesystemItem> compute() {
+            List<Object> results = new ArrayList<>();
+            try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(this.directory)) {
+                for (Path path: directoryStream) {
+                    BasicFileAttributes attributes = Directory.readAttributes(path);
+                    if (attributes != null && attributes.isDirectory()) {
+                        if (this.directoryMatcher == null || this.directoryMatcher.matches(path)) {
+                            results.add(new Directory(path));
+                            if (attributes.fileKey() == null || this.visitedKeys.add(attributes.fileKey())) {
+                                SearchTask task = new SearchTask(path, this.directoryMatcher, this.fileMatcher, this.visitedKeys);
+                                task.fork();
+                                results.add(task);
+                            }
+                        }
+                    } else {
+                        if (this.fileMatcher == null || this.fileMatcher.matches(path)) {
+                            results.add(new File(path));
+                        }
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException exception) {
+            }
+            List<FilesystemItem> items = new ArrayList<>();
+            for (Object result: results) {
+                if (result instanceof SearchTask) {
+                    SearchTask task = (SearchTask) result;
+                    items.addAll(task.join());
+                } else {
+                    items.add((FilesystemItem) result);
+                }
+            }
+            return items;
+        }
+    }
 }
@@ -0,0 +1,602 @@
+package com.hirohiro716.scent.filesystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ディレクトリ内の変更を監視するクラス。<br>
+ * java.nio.file.WatchServiceを使用して変更を検出し、同じパスへの連続した変更は一定時間(デバウンス時間)変更がなくなるまでまとめてから、
+ * 専用のスレッドでコールバックを呼び出す。サブディレクトリを含めて監視する場合は、作成されたディレクトリも自動的に監視対象に追加される。<br>
+ * WatchServiceが使用できない場合や、ポーリングを強制した場合は、ファイルの最終更新日時とサイズを一定間隔で比較して変更を検出する。
+ * WatchServiceを使用する場合も最後に確認したアイテムの状態を保持し、削除されたアイテムの種類の判定と、
+ * イベントの取りこぼし(OVERFLOW)が発生した際の再走査による差分の検出に使用する。<br>
+ * ※startメソッドで監視を開始し、監視が不要になったらcloseメソッドを呼び出す必要がある。
+ */
+public class DirectoryWatcher implements Closeable {
+    
+    private static final long DEFAULT_DEBOUNCE_MILLISECONDS = 500;
+    
+    private static final long DEFAULT_POLLING_INTERVAL_MILLISECONDS = 2000;
+    
+    private static final long MAXIMUM_WAITING_MILLISECONDS = 1000;
+    
+    /**
+     * コンストラクタ。<br>
+     * 監視するディレクトリと、サブディレクトリを含めて監視するかどうかを指定する。
+     * 
+     * @param directory
+     * @param isRecursive
+     */
+    public DirectoryWatcher(Directory directory, boolean isRecursive) {
+        this.root = directory.toJavaIoFile().toPath().toAbsolutePath();
+        this.isRecursive = isRecursive;
+    }
+    
+    private Path root;
+    
+    private boolean isRecursive;
+    
+    private ChangeCallback changeCallback = null;
+    
+    /**
+     * 変更を検出した際に呼び出されるコールバックをセットする。
+     * 
+     * @param changeCallback
+     */
+    public void setChangeCallback(ChangeCallback changeCallback) {
+        this.changeCallback = changeCallback;
+    }
+    
+    private long debounceMilliseconds = DirectoryWatcher.DEFAULT_DEBOUNCE_MILLISECONDS;
+    
+    /**
+     * 同じパスへの変更をまとめるデバウンス時間(ミリ秒)をセットする。初期値は500ミリ秒。
+     * 
+     * @param debounceMilliseconds
+     */
+    public void setDebounceMilliseconds(long debounceMilliseconds) {
+        this.debounceMilliseconds = debounceMilliseconds;
+    }
+    
+    private long pollingIntervalMilliseconds = DirectoryWatcher.DEFAULT_POLLING_INTERVAL_MILLISECONDS;
+    
+    /**
+     * ポーリングで変更を検出する場合の間隔(ミリ秒)をセットする。初期値は2000ミリ秒。
+     * 
+     * @param pollingIntervalMilliseconds
+     */
+    public void setPollingIntervalMilliseconds(long pollingIntervalMilliseconds) {
+        this.pollingIntervalMilliseconds = pollingIntervalMilliseconds;
+    }
+    
+    private boolean isPollingForced = false;
+    
+    /**
+     * WatchServiceを使用せずにポーリングで変更を検出する場合はtrueをセットする。<br>
+     * ネットワーク上の共有フォルダなど、WatchServiceで変更が通知されないディレクトリを監視する場合に使用する。
+     * 
+     * @param isPollingForced
+     */
+    public void setPollingForced(boolean isPollingForced) {
+        this.isPollingForced = isPollingForced;
+    }
+    
+    private ExecutorService executorService = null;
+    
+    private boolean isExecutorServiceOwned = false;
+    
+    /**
+     * コールバックを呼び出すjava.util.concurrent.ExecutorServiceをセットする。<br>
+     * セットしなかった場合は、このインスタンス専用のスレッドを作成してコールバックを順に呼び出す。
+     * 
+     * @param executorService
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+    
+    private WatchService watchService = null;
+    
+    private Map<WatchKey, Path> watchKeys = new HashMap<>();
+    
+    private Map<Path, Snapshot> snapshots = null;
+    
+    private Map<Path, PendingChange> pendingChanges = new LinkedHashMap<>();
+    
+    private Thread thread = null;
+    
+    private volatile boolean isClosed = false;
+    
+    /**
+     * ポーリングで変更を検出している場合はtrueを返す。
+     * 
+     * @return
+     */
+    public boolean isPolling() {
+        return this.thread != null && this.watchService == null;
+    }
+    
+    /**
+     * 監視を開始する。
+     * 
+     * @throws IOException
+     * @throws IllegalStateException 既に開始している場合。
+     */
+    public synchronized void start() throws IOException {
+        if (this.thread != null) {
+            throw new IllegalStateException("Already started.");
+        }
+        if (this.executorService == null) {
+            this.executorService = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, DirectoryWatcher.class.getSimpleName() + "-callback");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.isExecutorServiceOwned = true;
+        }
+        if (this.isPollingForced == false) {
+            try {
+                this.watchService = this.root.getFileSystem().newWatchService();
+                this.registerAll(this.root, false);
+            } catch (UnsupportedOperationException | IOException exception) {
+                if (this.watchService != null) {
+                    this.watchService.close();
+                }
+                this.watchService = null;
+                this.watchKeys.clear();
+            }
+        }
+        this.snapshots = this.scan();
+        Runnable runnable;
+        if (this.watchService != null) {
+            runnable = new Runnable() {
+                
+                @Override
+                public void run() {
+                    DirectoryWatcher.this.watch();
+                }
+            };
+        } else {
+            runnable = new Runnable() {
+                
+                @Override
+                public void run() {
+                    DirectoryWatcher.this.poll();
+                }
+            };
+        }
+        this.thread = new Thread(runnable, DirectoryWatcher.class.getSimpleName());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+    
+    /**
+     * 指定されたディレクトリをWatchServiceに登録する。サブディレクトリを含めて監視する場合は、ディレクトリ内のすべてのディレクトリを登録する。
+     * 
+     * @param start
+     * @param isCreationNotified 登録したディレクトリ内のアイテムを作成された変更として扱い、その状態を保持する場合はtrue。
+     * @throws IOException
+     */
+    private void registerAll(Path start, boolean isCreationNotified) throws IOException {
+        if (this.isRecursive == false) {
+            this.register(start);
+            return;
+        }
+        Files.walkFileTree(start, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                DirectoryWatcher.this.register(directory);
+                if (isCreationNotified && directory.equals(start) == false) {
+                    DirectoryWatcher.this.snapshots.put(directory, new Snapshot(attributes));
+                    DirectoryWatcher.this.addChange(directory, true, ChangeType.CREATE);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                if (isCreationNotified) {
+                    DirectoryWatcher.this.snapshots.put(file, new Snapshot(attributes));
+                    DirectoryWatcher.this.addChange(file, attributes.isDirectory(), ChangeType.CREATE);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exception) throws IOException {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+    
+    /**
+     * 一つのディレクトリをWatchServiceに登録する。
+     * 
+     * @param directory
+     * @throws IOException
+     */
+    private void register(Path directory) throws IOException {
+        WatchKey watchKey = directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        this.watchKeys.put(watchKey, directory);
+    }
+    
+    /**
+     * WatchServiceから変更を受け取る処理。監視が終了するまで繰り返す。
+     */
+    private void watch() {
+        try {
+            while (this.isClosed == false) {
+                WatchKey watchKey = this.watchService.poll(this.computeWaitingMilliseconds(), TimeUnit.MILLISECONDS);
+                while (watchKey != null) {
+                    this.processEvents(watchKey);
+                    watchKey = this.watchService.poll();
+                }
+                this.deliverChanges();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException exception) {
+        }
+    }
+    
+    /**
+     * WatchKeyに蓄積された変更のイベントを、未処理の変更に追加する。
+     * 
+     * @param watchKey
+     */
+    private void processEvents(WatchKey watchKey) {
+        Path directory = this.watchKeys.get(watchKey);
+        for (WatchEvent<?> event: watchKey.pollEvents()) {
+            if (directory == null) {
+                break;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                if (this.isRecursive) {
+                    try {
+                        this.registerAll(this.root, false);
+                    } catch (IOException exception) {
+                    }
+                }
+                this.rescan();
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                Snapshot previous = this.removeSnapshot(path);
+                this.addChange(path, previous != null && previous.isDirectory, ChangeType.DELETE);
+                continue;
+            }
+            BasicFileAttributes attributes = null;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                this.snapshots.put(path, new Snapshot(attributes));
+            } catch (IOException exception) {
+            }
+            boolean isDirectory = attributes != null && attributes.isDirectory();
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                this.addChange(path, isDirectory, ChangeType.CREATE);
+                if (isDirectory && this.isRecursive) {
+                    try {
+                        this.registerAll(path, true);
+                    } catch (IOException exception) {
+                    }
+                }
+            } else {
+                this.addChange(path, isDirectory, ChangeType.MODIFY);
+            }
+        }
+        if (watchKey.reset() == false) {
+            this.watchKeys.remove(watchKey);
+        }
+    }
+    
+    /**
+     * 保持しているアイテムの状態を削除する。ディレクトリの場合は、その中のアイテムの状態も削除する。
+     * 
+     * @param path
+     * @return 削除したアイテムの状態。保持していなかった場合はnull。
+     */
+    private Snapshot removeSnapshot(Path path) {
+        Snapshot snapshot = this.snapshots.remove(path);
+        if (snapshot != null && snapshot.isDirectory) {
+            Iterator<Path> iterator = this.snapshots.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().startsWith(path)) {
+                    iterator.remove();
+                }
+            }
+        }
+        return snapshot;
+    }
+    
+    /**
+     * 一定間隔でファイルの最終更新日時とサイズを比較して変更を検出する処理。監視が終了するまで繰り返す。
+     */
+    private void poll() {
+        long nextPollingTime = System.currentTimeMillis() + this.pollingIntervalMilliseconds;
+        try {
+            while (this.isClosed == false) {
+                long waitingMilliseconds = Math.min(this.computeWaitingMilliseconds(), nextPollingTime - System.currentTimeMillis());
+                if (waitingMilliseconds > 0) {
+                    Thread.sleep(waitingMilliseconds);
+                }
+                if (System.currentTimeMillis() >= nextPollingTime) {
+                    this.rescan();
+                    nextPollingTime = System.currentTimeMillis() + this.pollingIntervalMilliseconds;
+                }
+                this.deliverChanges();
+            }
+        } catch (InterruptedException exception) {
+        }
+    }
+    
+    /**
+     * 監視対象のすべてのアイテムを走査して、保持しているアイテムの状態との差分を未処理の変更に追加する。
+     */
+    private void rescan() {
+        Map<Path, Snapshot> snapshots = this.scan();
+        for (Map.Entry<Path, Snapshot> entry: snapshots.entrySet()) {
+            Snapshot previous = this.snapshots.get(entry.getKey());
+            Snapshot current = entry.getValue();
+            if (previous == null) {
+                this.addChange(entry.getKey(), current.isDirectory, ChangeType.CREATE);
+            } else if (current.isDirectory == false && (previous.lastModifiedTime != current.lastModifiedTime || previous.size != current.size)) {
+                this.addChange(entry.getKey(), false, ChangeType.MODIFY);
+            }
+        }
+        for (Map.Entry<Path, Snapshot> entry: this.snapshots.entrySet()) {
+            if (snapshots.containsKey(entry.getKey()) == false) {
+                this.addChange(entry.getKey(), entry.getValue().isDirectory, ChangeType.DELETE);
+            }
+        }
+        this.snapshots = snapshots;
+    }
+    
+    /**
+     * 監視対象のすべてのアイテムの最終更新日時とサイズを取得する。
+     * 
+     * @return
+     */
+    private Map<Path, Snapshot> scan() {
+        Map<Path, Snapshot> snapshots = new HashMap<>();
+        int maximumDepth = 1;
+        if (this.isRecursive) {
+            maximumDepth = Integer.MAX_VALUE;
+        }
+        try {
+            Files.walkFileTree(this.root, EnumSet.noneOf(FileVisitOption.class), maximumDepth, new SimpleFileVisitor<Path>() {
+                
+                @Override
+                public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                    if (directory.equals(DirectoryWatcher.this.root) == false) {
+                        snapshots.put(directory, new Snapshot(attributes));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    snapshots.put(file, new Snapshot(attributes));
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exception) throws IOException {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException exception) {
+        }
+        return snapshots;
+    }
+    
+    /**
+     * 未処理の変更を追加する。同じパスの未処理の変更がある場合は一つの変更にまとめる。
+     * 
+     * @param path
+     * @param isDirectory
+     * @param changeType
+     */
+    private void addChange(Path path, boolean isDirectory, ChangeType changeType) {
+        synchronized (this.pendingChanges) {
+            PendingChange pendingChange = this.pendingChanges.get(path);
+            if (pendingChange == null) {
+                this.pendingChanges.put(path, new PendingChange(isDirectory, changeType));
+                return;
+            }
+            pendingChange.time = System.currentTimeMillis();
+            if (isDirectory) {
+                pendingChange.isDirectory = true;
+            }
+            switch (pendingChange.changeType) {
+            case CREATE:
+                if (changeType == ChangeType.DELETE) {
+                    this.pendingChanges.remove(path);
+                }
+                break;
+            case MODIFY:
+                pendingChange.changeType = changeType;
+                break;
+            case DELETE:
+                if (changeType == ChangeType.CREATE) {
+                    pendingChange.changeType = ChangeType.MODIFY;
+                } else {
+                    pendingChange.changeType = changeType;
+                }
+                break;
+            }
+        }
+    }
+    
+    /**
+     * 次の未処理の変更を通知するまでの待機時間を算出する。
+     * 
+     * @return
+     */
+    private long computeWaitingMilliseconds() {
+        long waitingMilliseconds = DirectoryWatcher.MAXIMUM_WAITING_MILLISECONDS;
+        long now = System.currentTimeMillis();
+        synchronized (this.pendingChanges) {
+            for (PendingChange pendingChange: this.pendingChanges.values()) {
+                waitingMilliseconds = Math.min(waitingMilliseconds, pendingChange.time + this.debounceMilliseconds - now);
+            }
+        }
+        return Math.max(1, waitingMilliseconds);
+    }
+    
+    /**
+     * デバウンス時間が経過した未処理の変更を、コールバックで通知する。
+     */
+    private void deliverChanges() {
+        List<Map.Entry<Path, PendingChange>> changes = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this.pendingChanges) {
+            Iterator<Map.Entry<Path, PendingChange>> iterator = this.pendingChanges.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, PendingChange> entry = iterator.next();
+                if (entry.getValue().time + this.debounceMilliseconds <= now) {
+                    changes.add(entry);
+                    iterator.remove();
+                }
+            }
+        }
+        ChangeCallback changeCallback = this.changeCallback;
+        if (changeCallback == null) {
+            return;
+        }
+        for (Map.Entry<Path, PendingChange> change: changes) {
+            FilesystemItem item;
+            if (change.getValue().isDirectory) {
+                item = new Directory(change.getKey());
+            } else {
+                item = new File(change.getKey());
+            }
+            ChangeType changeType = change.getValue().changeType;
+            this.executorService.execute(new Runnable() {
+                
+                @Override
+                public void run() {
+                    changeCallback.call(item, changeType);
+                }
+            });
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        this.isClosed = true;
+        if (this.thread != null) {
+            this.thread.interrupt();
+        }
+        if (this.watchService != null) {
+            this.watchService.close();
+        }
+        if (this.isExecutorServiceOwned) {
+            this.executorService.shutdown();
+        }
+    }
+    
+    /**
+     * 変更を検出した際のコールバックのインターフェース。
+     */
+    public interface ChangeCallback {
+        
+        /**
+         * 変更を検出した際に呼び出される。
+         * 
+         * @param filesystemItem 変更されたファイルシステムアイテム。
+         * @param changeType 変更の種類。
+         */
+        public abstract void call(FilesystemItem filesystemItem, ChangeType changeType);
+    }
+    
+    /**
+     * 変更の種類の列挙型。
+     */
+    public enum ChangeType {
+        /**
+         * 作成。
+         */
+        CREATE,
+        /**
+         * 更新。
+         */
+        MODIFY,
+        /**
+         * 削除。
+         */
+        DELETE,
+    }
+    
+    /**
+     * 通知していない変更のクラス。
+     */
+    private static class PendingChange {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param isDirectory
+         * @param changeType
+         */
+        private PendingChange(boolean isDirectory, ChangeType changeType) {
+            this.isDirectory = isDirectory;
+            this.changeType = changeType;
+        }
+        
+        private boolean isDirectory;
+        
+        private ChangeType changeType;
+        
+        private long time = System.currentTimeMillis();
+    }
+    
+    /**
+     * ポーリングで比較するアイテムの状態のクラス。
+     */
+    private static class Snapshot {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param attributes
+         */
+        private Snapshot(BasicFileAttributes attributes) {
+            this.isDirectory = attributes.isDirectory();
+            this.lastModifiedTime = attributes.lastModifiedTime().toMillis();
+            this.size = attributes.size();
+        }
+        
+        private boolean isDirectory;
+        
+        private long lastModifiedTime;
+        
+        private long size;
+    }
+}
@@ -7,16 +7,57 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
 
 /**
  * ファイルシステム上のファイルクラス。
  */
 public class File extends FilesystemItem {
+    
+    private static final int DEFAULT_TRANSFER_SIZE = 8388608;
+    
+    private static final int DEFAULT_READING_BUFFER_SIZE = 65536;
+    
+    private static final int LINE_COUNTING_MAPPING_SIZE = 67108864;
+    
+    private static final int DEFAULT_CHARSET_DETECTION_SAMPLE_SIZE = 65536;
+    
+    /**
+     * 指定されたcharset名のjava.nio.charset.Charsetを取得する。<br>
+     * charset名がnullや空文字、またはサポートされていない場合はデフォルトのcharsetを返す。
+     * 
+     * @param charsetName
+     * @return
+     */
+    private static Charset forName(String charsetName) {
+        Charset charset = Charset.defaultCharset();
+        try {
+            if (charsetName != null && charsetName.length() > 0) {
+                charset = Charset.forName(charsetName);
+            }
+        } catch (Exception exception) {
+            exception.printStackTrace();
+        }
+        return charset;
+    }
 
     /**
      * コンストラクタ。<br>
@@ -63,6 +104,16 @@ public class File extends FilesystemItem {
         this(new java.io.File(uri));
     }
     
+    /**
+     * コンストラクタ。<br>
+     * 属性を取得済みのファイルのパスで新しいインスタンスを作成する。ファイルであることの検証は行わない。
+     * 
+     * @param path
+     */
+    File(Path path) {
+        super(path.toFile());
+    }
+    
     @Override
     public boolean exists() {
         return this.toJavaIoFile().exists() && this.toJavaIoFile().canRead() && this.isDirectory() == false;
@@ -83,9 +134,75 @@ public class File extends FilesystemItem {
         Files.move(this.toJavaIoFile().toPath(), Paths.get(moveTo));
     }
 
+    /**
+     * このファイルをコピーする。内容はjava.nio.channels.FileChannelのtransferToメソッドでヒープを経由せずに転送される。
+     * コピーに失敗した場合、作成したコピー先は削除される。
+     * 
+     * @param copyTo コピー先。
+     * @throws IOException コピー中にファイルが切り詰められた場合も含む。
+     * @throws java.nio.file.FileAlreadyExistsException コピー先が既に存在する場合。
+     */
     @Override
     public void copy(String copyTo) throws IOException {
-        Files.copy(this.toJavaIoFile().toPath(), Paths.get(copyTo));
+        Path destinationPath = Paths.get(copyTo);
+        try (FileChannel source = FileChannel.open(this.toJavaIoFile().toPath(), StandardOpenOption.READ)) {
+            boolean isCreated = false;
+            try (FileChannel destination = FileChannel.open(destinationPath, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+                isCreated = true;
+                long size = source.size();
+                long position = 0;
+                while (position < size) {
+                    long length = source.transferTo(position, size - position, destination);
+                    if (length == 0) {
+                        throw new IOException("The file was truncated during copying: " + this.getAbsolutePath());
+                    }
+                    position += length;
+                }
+            } catch (IOException exception) {
+                if (isCreated) {
+                    try {
+                        Files.deleteIfExists(destinationPath);
+                    } catch (IOException deleteException) {
+                        exception.addSuppressed(deleteException);
+                    }
+                }
+                throw exception;
+            }
+        }
+    }
+    
+    /**
+     * このファイルの内容を、指定されたモードでメモリにマップする。<br>
+     * 内容はヒープにコピーされず、オペレーティングシステムのページキャッシュを介して直接参照される。
+     * マップしたバッファはファイルを閉じた後も有効で、ガベージコレクションで解放されるまで保持される。
+     * 
+     * @param mapMode FileChannel.MapMode.READ_ONLY、READ_WRITE、PRIVATEのいずれか。
+     * @return
+     * @throws IOException
+     */
+    public MappedByteBuffer map(FileChannel.MapMode mapMode) throws IOException {
+        Path path = this.toJavaIoFile().toPath();
+        FileChannel channel;
+        if (mapMode == FileChannel.MapMode.READ_WRITE) {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } else {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        try {
+            return channel.map(mapMode, 0, channel.size());
+        } finally {
+            channel.close();
+        }
+    }
+    
+    /**
+     * このファイルの内容を読み取り専用でメモリにマップする。
+     * 
+     * @return
+     * @throws IOException
+     */
+    public final MappedByteBuffer map() throws IOException {
+        return this.map(FileChannel.MapMode.READ_ONLY);
     }
     
     /**
@@ -106,14 +223,7 @@ public class File extends FilesystemItem {
      * @throws IOException
      */
     public void read(String charsetName, ProcessAfterReadingCharacter processAfterReadingCharacter) throws IOException {
-        Charset charset = Charset.defaultCharset();
-        try {
-            if (charsetName != null && charsetName.length() > 0) {
-                charset = Charset.forName(charsetName);
-            }
-        } catch (Exception exception) {
-            exception.printStackTrace();
-        }
+        Charset charset = File.forName(charsetName);
         try (FileInputStream stream = new FileInputStream(this.toJavaIoFile())) {
             try (InputStreamReader streamReader = new InputStreamReader(stream, charset)) {
                 try (BufferedReader bufferedReader = new BufferedReader(streamReader)) {
@@ -160,14 +270,7 @@ public class File extends FilesystemItem {
      * @throws IOException
      */
     public void read(String charsetName, ProcessAfterReadingLine processAfterReadingLine) throws IOException {
-        Charset charset = Charset.defaultCharset();
-        try {
-            if (charsetName != null && charsetName.length() > 0) {
-                charset = Charset.forName(charsetName);
-            }
-        } catch (Exception exception) {
-            exception.printStackTrace();
-        }
+        Charset charset = File.forName(charsetName);
         try (FileInputStream stream = new FileInputStream(this.toJavaIoFile())) {
             try (InputStreamReader streamReader = new InputStreamReader(stream, charset)) {
                 try (BufferedReader bufferedReader = new BufferedReader(streamReader)) {
@@ -207,7 +310,192 @@ public class File extends FilesystemItem {
     }
 
     /**
-     * ファイルの行数をカウントするクラス。
+     * このファイルの内容を指定されたcharsetを使用して一行ずつ遅延して読み込むストリームを作成する。<br>
+     * 行はストリームの要素が要求された時点で読み込まれるため、ファイル全体をメモリに保持しない。
+     * 先頭にBOMがある場合は取り除かれる。<br>
+     * ※使用後はストリームのcloseメソッドを呼び出してファイルを閉じる必要がある。
+     * 
+     * @param charsetName
+     * @param bufferCharSize 読み込みに使用するバッファの文字数。
+     * @return
+     * @throws IOException
+     */
+    public Stream<String> lines(String charsetName, int bufferCharSize) throws IOException {
+        FileInputStream stream = new FileInputStream(this.toJavaIoFile());
+        BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(stream, File.forName(charsetName)), bufferCharSize);
+        try {
+            bufferedReader.mark(1);
+            if (bufferedReader.read() != '\uFEFF') {
+                bufferedReader.reset();
+            }
+        } catch (IOException exception) {
+            bufferedReader.close();
+            throw exception;
+        }
+        return bufferedReader.lines().onClose(new Runnable() {
+            
+            @Override
+            public void run() {
+                try {
+                    bufferedReader.close();
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            }
+        });
+    }
+    
+    /**
+     * このファイルの内容を指定されたcharsetを使用して一行ずつ遅延して読み込むストリームを作成する。
+     * 
+     * @param charsetName
+     * @return
+     * @throws IOException
+     */
+    public final Stream<String> lines(String charsetName) throws IOException {
+        return this.lines(charsetName, File.DEFAULT_READING_BUFFER_SIZE);
+    }
+    
+    /**
+     * このファイルの内容をデフォルトのcharsetを使用して一行ずつ遅延して読み込むストリームを作成する。
+     * 
+     * @return
+     * @throws IOException
+     */
+    public final Stream<String> lines() throws IOException {
+        return this.lines(null, File.DEFAULT_READING_BUFFER_SIZE);
+    }
+    
+    /**
+     * このファイルの行数を、文字にデコードせずにバイト単位でカウントする。<br>
+     * ファイルは一定のサイズごとにメモリにマップして走査されるため、巨大なファイルでもヒープを消費しない。
+     * 行の区切りはBufferedReaderのreadLineメソッドと同じくLF、CR、CRLFで判定し、末尾の改行の後に続く空行は数えない。<br>
+     * ※CRとLFがASCIIと同じ1バイトで表される文字セット(UTF-8、Shift_JISなど)のファイルのみ正しくカウントできる。
+     * 
+     * @return
+     * @throws IOException
+     */
+    public long countLines() throws IOException {
+        try (FileChannel channel = FileChannel.open(this.toJavaIoFile().toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long numberOfLines = 0;
+            byte previous = '\n';
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(File.LINE_COUNTING_MAPPING_SIZE, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                for (int index = 0; index < length; index++) {
+                    byte one = buffer.get(index);
+                    if (one == '\n') {
+                        if (previous != '\r') {
+                            numberOfLines++;
+                        }
+                    } else if (one == '\r') {
+                        numberOfLines++;
+                    }
+                    previous = one;
+                }
+                position += length;
+            }
+            if (previous != '\n' && previous != '\r') {
+                numberOfLines++;
+            }
+            return numberOfLines;
+        }
+    }
+    
+    /**
+     * このファイルの先頭から指定されたバイト数のみを読み込んで、内容のcharsetを推定する。<br>
+     * BOMがある場合はBOMが示すUTF-8、UTF-16BE、UTF-16LEのいずれかを返す。
+     * BOMがない場合は、UTF-8として正しくデコードできればUTF-8、Shift_JISとして正しくデコードできればWindows-31Jを返す。
+     * 読み込んだ内容がASCII文字のみの場合やいずれにも該当しない場合はデフォルトのcharsetを返す。<br>
+     * ※先頭以降の内容は判定に使用しないため、推定が正しくない場合がある。
+     * 
+     * @param sampleByteSize 判定に使用する先頭のバイト数。
+     * @return
+     * @throws IOException
+     */
+    public Charset detectCharset(int sampleByteSize) throws IOException {
+        ByteBuffer sample;
+        boolean isWhole;
+        try (FileChannel channel = FileChannel.open(this.toJavaIoFile().toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            sample = ByteBuffer.allocate((int) Math.min(sampleByteSize, size));
+            int length = 0;
+            while (length > -1 && sample.hasRemaining()) {
+                length = channel.read(sample);
+            }
+            sample.flip();
+            isWhole = sample.limit() == size;
+        }
+        if (sample.remaining() >= 3 && sample.get(0) == (byte) 0xEF && sample.get(1) == (byte) 0xBB && sample.get(2) == (byte) 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (sample.remaining() >= 2) {
+            if (sample.get(0) == (byte) 0xFE && sample.get(1) == (byte) 0xFF) {
+                return StandardCharsets.UTF_16BE;
+            }
+            if (sample.get(0) == (byte) 0xFF && sample.get(1) == (byte) 0xFE) {
+                return StandardCharsets.UTF_16LE;
+            }
+        }
+        boolean isASCII = true;
+        for (int index = 0; index < sample.limit(); index++) {
+            if (sample.get(index) < 0) {
+                isASCII = false;
+                break;
+            }
+        }
+        if (isASCII) {
+            return Charset.defaultCharset();
+        }
+        if (File.canDecode(sample, StandardCharsets.UTF_8, isWhole)) {
+            return StandardCharsets.UTF_8;
+        }
+        Charset windows31J = Charset.forName("Windows-31J");
+        if (File.canDecode(sample, windows31J, isWhole)) {
+            return windows31J;
+        }
+        return Charset.defaultCharset();
+    }
+    
+    /**
+     * このファイルの先頭から64KBのみを読み込んで、内容のcharsetを推定する。
+     * 
+     * @return
+     * @throws IOException
+     */
+    public final Charset detectCharset() throws IOException {
+        return this.detectCharset(File.DEFAULT_CHARSET_DETECTION_SAMPLE_SIZE);
+    }
+    
+    /**
+     * 指定されたbyteバッファの内容が、指定されたcharsetで不正なバイトを含まずにデコードできる場合はtrueを返す。
+     * 
+     * @param byteBuffer
+     * @param charset
+     * @param isEndOfInput バッファの内容がファイルの終端までの場合はtrue。falseの場合は末尾で途切れた文字を不正としない。
+     * @return
+     */
+    private static boolean canDecode(ByteBuffer byteBuffer, Charset charset, boolean isEndOfInput) {
+        CharsetDecoder decoder = charset.newDecoder();
+        decoder.onMalformedInput(CodingErrorAction.REPORT);
+        decoder.onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer input = byteBuffer.duplicate();
+        CharBuffer output = CharBuffer.allocate(input.remaining() + 1);
+        CoderResult result = decoder.decode(input, output, isEndOfInput);
+        if (result.isError()) {
+            return false;
+        }
+        if (isEndOfInput) {
+            return decoder.flush(output).isError() == false;
+        }
+        return true;
+    }
+    
+    /**
+     * ファイルの行数をカウントするクラス。<br>
+     * ※行数のみが必要な場合は、文字にデコードしないcountLinesメソッドのほうが高速。
      */
     public static class LineCounter implements ProcessAfterReadingLine {
         
@@ -229,24 +517,42 @@ public class File extends FilesystemItem {
     }
     
     /**
-     * このファイルに指定された入力ストリームを書き込む。既存の内容は上書きされる。
+     * このファイルに指定された入力ストリームを書き込む。既存の内容は上書きされる。<br>
+     * 内容はjava.nio.channels.FileChannelのtransferFromメソッドで転送される。
+     * 入力ストリームがjava.io.FileInputStreamの場合は、ヒープを経由せずにファイル間で直接転送される。
      * 
      * @param inputStream
-     * @param bufferByteSize
+     * @param bufferByteSize 一度に転送するバイト数。
      * @throws IOException
      */
     public void write(InputStream inputStream, int bufferByteSize) throws IOException {
         try (FileOutputStream outputStream = new FileOutputStream(this.getAbsolutePath())) {
-            try (FileLock fileLock = outputStream.getChannel().lock()) {
-                byte buffer[] = new byte[bufferByteSize];
-                int length;
-                while ((length = inputStream.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, length);
+            FileChannel destination = outputStream.getChannel();
+            try (FileLock fileLock = destination.lock()) {
+                ReadableByteChannel source;
+                if (inputStream instanceof FileInputStream) {
+                    source = ((FileInputStream) inputStream).getChannel();
+                } else {
+                    source = Channels.newChannel(inputStream);
+                }
+                long position = 0;
+                long length;
+                while ((length = destination.transferFrom(source, position, bufferByteSize)) > 0) {
+                    position += length;
                 }
-                outputStream.flush();
             }
         }
     }
+    
+    /**
+     * このファイルに指定された入力ストリームを書き込む。既存の内容は上書きされる。
+     * 
+     * @param inputStream
+     * @throws IOException
+     */
+    public final void write(InputStream inputStream) throws IOException {
+        this.write(inputStream, File.DEFAULT_TRANSFER_SIZE);
+    }
 
     /**
      * このファイルに指定されたcharsetを使用して文字列を書き込む。既存の内容は上書きされる。
@@ -256,14 +562,7 @@ public class File extends FilesystemItem {
      * @throws IOException
      */
     public void write(String charsetName, WritingProcess writingProcess) throws IOException {
-        Charset charset = Charset.defaultCharset();
-        try {
-            if (charsetName != null && charsetName.length() > 0) {
-                charset = Charset.forName(charsetName);
-            }
-        } catch (Exception exception) {
-            exception.printStackTrace();
-        }
+        Charset charset = File.forName(charsetName);
         try (FileOutputStream stream = new FileOutputStream(this.toJavaIoFile())) {
             FileLock fileLock = stream.getChannel().lock();
             try {
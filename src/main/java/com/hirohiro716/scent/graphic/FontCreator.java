@@ -2,7 +2,9 @@ package com.hirohiro716.scent.graphic;
 
 import java.awt.Font;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import com.hirohiro716.scent.OS;
 import com.hirohiro716.scent.filesystem.Directory;
@@ -60,16 +62,23 @@ public class FontCreator {
             return FontCreator.fontNameAndFontFile.get(fontName);
         }
         for (Directory directory: OS.thisOS().getFontDirectories()) {
-            for (FilesystemItem filesystemItem: directory.searchItems("", ".*")) {
-                try {
-                    File file = (File) filesystemItem;
-                    for (Font font: Font.createFonts(file.toJavaIoFile())) {
-                        if (font.getFontName().equals(fontName)) {
-                            FontCreator.fontNameAndFontFile.put(fontName, file);
-                            return file;
+            try (Stream<FilesystemItem> stream = directory.streamItems(null, null)) {
+                Iterator<FilesystemItem> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    FilesystemItem filesystemItem = iterator.next();
+                    if (filesystemItem instanceof File == false) {
+                        continue;
+                    }
+                    try {
+                        File file = (File) filesystemItem;
+                        for (Font font: Font.createFonts(file.toJavaIoFile())) {
+                            if (font.getFontName().equals(fontName)) {
+                                FontCreator.fontNameAndFontFile.put(fontName, file);
+                                return file;
+                            }
                         }
+                    } catch (Exception exception) {
                     }
-                } catch (Exception exception) {
                 }
             }
         }
@@ -15,7 +15,6 @@ import java.text.NumberFormat;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -34,7 +33,10 @@ import javax.swing.table.TableCellEditor;
 import javax.swing.table.TableCellRenderer;
 
 import com.hirohiro716.scent.Array;
+import com.hirohiro716.scent.Callback;
 import com.hirohiro716.scent.DynamicArray;
+import com.hirohiro716.scent.DynamicArray.SortOrder;
+import com.hirohiro716.scent.Sorter;
 import com.hirohiro716.scent.StringObject;
 import com.hirohiro716.scent.datetime.Datetime;
 import com.hirohiro716.scent.gui.GUI;
@@ -1450,12 +1452,13 @@ public abstract class TableView<C, R> extends Control {
                 
                 @Override
                 public void run() {
-                    List<R> sorted = new ArrayList<>(tableView.rowInstances.toUnmodifiableList());
-                    java.util.Comparator<R> comparator = new Comparator(handler.columnInstance);
+                    Sorter<R> sorter = new Sorter<>();
                     if (isDescent) {
-                        comparator = comparator.reversed();
+                        sorter.addSortKey(new ValueExtractor(handler.columnInstance), SortOrder.DESCENDING);
+                    } else {
+                        sorter.addSortKey(new ValueExtractor(handler.columnInstance), SortOrder.ASCENDING);
                     }
-                    Collections.sort(sorted, comparator);
+                    List<R> sorted = sorter.sort(tableView.rowInstances.toUnmodifiableList());
                     GUI.executeLater(new Runnable() {
                         
                         @Override
@@ -1498,63 +1501,25 @@ public abstract class TableView<C, R> extends Control {
     }
 
     /**
-     * 指定されたカラムの値同士を使用して2つの行情報のインスタンスの順序付けをする比較クラス。
+     * 指定されたカラムの値を行情報のインスタンスから取得する、並び替えキーのコールバック。
      */
-    private class Comparator implements java.util.Comparator<R> {
+    private class ValueExtractor implements Callback<R, Object> {
         
         private C columnInstance;
         
         /**
          * コンストラクタ。
          * 
-         * @param sortKey 比較に使用する値を取得するためのキー。
+         * @param columnInstance 値を取得するカラムのインスタンス。
          */
-        public Comparator(C sortKey) {
-            this.columnInstance = sortKey;
+        public ValueExtractor(C columnInstance) {
+            this.columnInstance = columnInstance;
         }
         
         @Override
-        public int compare(R row1, R row2) {
+        public Object call(R rowInstance) {
             TableView<C, R> tableView = TableView.this;
-            Object value1 = tableView.getValueFromRow(row1, this.columnInstance);
-            Object value2 = tableView.getValueFromRow(row2, this.columnInstance);
-            if (value1 instanceof Number || value2 instanceof Number) {
-                Number number1 = StringObject.newInstance(value1).toDouble();
-                if (number1 == null) {
-                    number1 = Double.MIN_VALUE;
-                }
-                Number number2 = StringObject.newInstance(value2).toDouble();
-                if (number2 == null) {
-                    number2 = Double.MIN_VALUE;
-                }
-                if (number1.doubleValue() > number2.doubleValue()) {
-                    return 1;
-                } else if (number1.doubleValue() == number2.doubleValue()) {
-                    return 0;
-                } else {
-                    return -1;
-                }
-            }
-            if (value1 instanceof Date || value2 instanceof Date) {
-                Date date1 = (Date) value1;
-                if (date1 == null) {
-                    date1 = new Date(Long.MIN_VALUE);
-                }
-                Date date2 = (Date) value2;
-                if (date2 == null) {
-                    date2 = new Date(Long.MIN_VALUE);
-                }
-                if (date1.getTime() > date2.getTime()) {
-                    return 1;
-                } else if (date1.getTime() == date2.getTime()) {
-                    return 0;
-                } else {
-                    return -1;
-                }
-            }
-            String string1 = new StringObject(value1).toString();
-            String string2 = new StringObject(value2).toString();
-            return string1.compareTo(string2);
+            return tableView.getValueFromRow(rowInstance, this.columnInstance);
         }
     }
 }
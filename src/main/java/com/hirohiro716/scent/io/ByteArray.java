@@ -11,7 +11,10 @@ import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.security.MessageDigest;
 import java.util.Arrays;
 
 import com.hirohiro716.scent.StringObject;
@@ -21,6 +24,25 @@ import com.hirohiro716.scent.StringObject;
  */
 public class ByteArray {
     
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    
+    private static final byte[] HEX_VALUES = ByteArray.createHexValues();
+    
+    /**
+     * 16進数の文字を添字として、その文字が表す値を持つ配列を作成する。16進数ではない文字の値は-1。
+     * 
+     * @return
+     */
+    private static byte[] createHexValues() {
+        byte[] values = new byte[128];
+        Arrays.fill(values, (byte) -1);
+        for (int index = 0; index < 16; index++) {
+            values[ByteArray.HEX_DIGITS[index]] = (byte) index;
+            values[Character.toUpperCase(ByteArray.HEX_DIGITS[index])] = (byte) index;
+        }
+        return values;
+    }
+    
     /**
      * コンストラクタ。
      * 
@@ -39,9 +61,7 @@ public class ByteArray {
     public ByteArray(String stringExpressionOfByteArray) {
         byte[] bytes = new byte[stringExpressionOfByteArray.length() / 2];
         try {
-            for (int index = 0; index < bytes.length; index++) {
-                bytes[index] = (byte) Integer.parseInt(stringExpressionOfByteArray.substring(index * 2, (index + 1) * 2), 16);
-            }
+            ByteArray.decodeHex(stringExpressionOfByteArray, bytes);
             this.bytes = bytes;
         } catch (Exception exception) {
         }
@@ -89,8 +109,13 @@ public class ByteArray {
     
     private byte[] bytes = new byte[] {};
     
+    private int hashCode = 0;
+    
+    private boolean isHashCodeCalculated = false;
+    
     /**
-     * byte配列を取得する。
+     * byte配列を取得する。<br>
+     * ※取得した配列の内容を直接変更した場合は、setメソッドで再度セットしないとハッシュコードが更新されない。
      * 
      * @return
      */
@@ -105,6 +130,7 @@ public class ByteArray {
      */
     protected void set(byte[] bytes) {
         this.bytes = bytes;
+        this.isHashCodeCalculated = false;
     }
     
     /**
@@ -117,15 +143,28 @@ public class ByteArray {
     }
     
     /**
-     * ファイルに保存する。
+     * byte配列をコピーせずに参照する、読み取り専用のjava.nio.ByteBufferを取得する。
+     * 
+     * @return
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(this.bytes).asReadOnlyBuffer();
+    }
+    
+    /**
+     * ファイルに保存する。内容はjava.nio.channels.FileChannelで直接書き込まれる。
      * 
      * @param file
      * @throws IOException
      */
     public void saveToFile(File file) throws IOException {
         try (FileOutputStream stream = new FileOutputStream(file)) {
-            try (FileLock fileLock = stream.getChannel().lock()) {
-                stream.write(this.bytes);
+            FileChannel channel = stream.getChannel();
+            try (FileLock fileLock = channel.lock()) {
+                ByteBuffer byteBuffer = this.toByteBuffer();
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer);
+                }
             }
         }
     }
@@ -147,37 +186,77 @@ public class ByteArray {
      */
     @Override
     public String toString() {
-        StringObject string = new StringObject();
-        for (byte one: this.bytes) {
-            int intOne = Byte.toUnsignedInt(one);
-            StringObject hex = new StringObject(Integer.toHexString(intOne));
-            string.append(hex.paddingLeft('0', 2));
-        }
-        return string.toString();
+        return new String(ByteArray.encodeHex(this.bytes()));
     }
-
+    
+    /**
+     * byte配列の内容から算出したハッシュコードを返す。算出したハッシュコードはsetメソッドが呼び出されるまで再利用される。
+     * 
+     * @return
+     */
     @Override
     public int hashCode() {
-        return this.toString().hashCode();
+        if (this.isHashCodeCalculated == false) {
+            this.hashCode = this.calculateHashCode();
+            this.isHashCodeCalculated = true;
+        }
+        return this.hashCode;
+    }
+    
+    /**
+     * byte配列の内容からハッシュコードを算出する。算出したハッシュコードはhashCodeメソッドでキャッシュされる。
+     * 
+     * @return
+     */
+    protected int calculateHashCode() {
+        return Arrays.hashCode(this.bytes);
     }
     
     @Override
     public boolean equals(Object object) {
         try {
-            byte[] compare = null;
+            ByteBuffer compare = null;
             if (object instanceof ByteArray) {
                 ByteArray byteArray = (ByteArray) object;
-                compare = byteArray.bytes();
+                if (this.isHashCodeCalculated && byteArray.isHashCodeCalculated && this.hashCode != byteArray.hashCode) {
+                    return false;
+                }
+                compare = byteArray.toByteBuffer();
             }
             if (object instanceof byte[]) {
-                compare = (byte[]) object;
+                compare = ByteBuffer.wrap((byte[]) object);
+            }
+            if (compare == null) {
+                return false;
             }
-           return Arrays.equals(this.bytes, compare);
+            return this.toByteBuffer().equals(compare);
         } catch (Exception exception) {
             return false;
         }
     }
     
+    /**
+     * このインスタンスのbyte配列と、指定されたbyte配列が同じ場合はtrueを返す。<br>
+     * 比較にかかる時間が一致しない位置に依存しないため、ハッシュや署名の検証に使用する。
+     * 
+     * @param object ByteArrayまたはbyte配列。
+     * @return
+     */
+    public boolean equalsInConstantTime(Object object) {
+        byte[] compare = null;
+        if (object instanceof ByteArray) {
+            ByteArray byteArray = (ByteArray) object;
+            compare = byteArray.bytes();
+        }
+        if (object instanceof byte[]) {
+            compare = (byte[]) object;
+        }
+        if (compare == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(this.bytes(), compare);
+    }
+    
     /**
      * このインスタンスのbyte配列を、指定されたcharsetを使用してテキストとして読み込む。
      * 
@@ -187,7 +266,7 @@ public class ByteArray {
      */
     public String readAllText(String charsetName) throws IOException {
         StringObject text = new StringObject();
-        try (ByteArrayInputStream stream = new ByteArrayInputStream(this.bytes)) {
+        try (ByteArrayInputStream stream = new ByteArrayInputStream(this.bytes())) {
             try (InputStreamReader streamReader = new InputStreamReader(stream, charsetName)) {
                 try (BufferedReader bufferedReader = new BufferedReader(streamReader)) {
                     String line = bufferedReader.readLine();
@@ -211,10 +290,87 @@ public class ByteArray {
      */
     @SuppressWarnings("unchecked")
     public <T extends Serializable> T deserialize() throws ClassNotFoundException, IOException {
-        ByteArrayInputStream bytesInputStream = new ByteArrayInputStream(this.bytes);
+        ByteArrayInputStream bytesInputStream = new ByteArrayInputStream(this.bytes());
         try (ObjectInputStream objInputStream = new ObjectInputStream(bytesInputStream)) {
             T object = (T) objInputStream.readObject();
             return object;
         }
     }
+    
+    /**
+     * byte配列を16進数ふた桁に変換して、指定されたchar配列に書き込む。
+     * 
+     * @param bytes
+     * @param hex byte配列の長さの2倍以上の長さを持つchar配列。
+     */
+    public static void encodeHex(byte[] bytes, char[] hex) {
+        int position = 0;
+        for (byte one: bytes) {
+            hex[position] = ByteArray.HEX_DIGITS[(one >> 4) & 0x0F];
+            hex[position + 1] = ByteArray.HEX_DIGITS[one & 0x0F];
+            position += 2;
+        }
+    }
+    
+    /**
+     * byte配列を16進数ふた桁に変換したchar配列を作成する。
+     * 
+     * @param bytes
+     * @return
+     */
+    public static char[] encodeHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        ByteArray.encodeHex(bytes, hex);
+        return hex;
+    }
+    
+    /**
+     * byteを16進数ふた桁に変換して連結した文字列を、指定されたbyte配列の長さの分だけ変換して書き込む。英字の大文字と小文字は区別しない。
+     * 
+     * @param hex
+     * @param bytes
+     * @throws IllegalArgumentException 16進数ではない文字が含まれている場合。
+     */
+    public static void decodeHex(CharSequence hex, byte[] bytes) throws IllegalArgumentException {
+        int position = 0;
+        for (int index = 0; index < bytes.length; index++) {
+            int high = ByteArray.toHexValue(hex.charAt(position));
+            int low = ByteArray.toHexValue(hex.charAt(position + 1));
+            bytes[index] = (byte) ((high << 4) | low);
+            position += 2;
+        }
+    }
+    
+    /**
+     * byteを16進数ふた桁に変換して連結した文字列をbyte配列に変換する。英字の大文字と小文字は区別しない。
+     * 
+     * @param hex
+     * @return
+     * @throws IllegalArgumentException 16進数ではない文字が含まれている場合や、文字数が奇数の場合。
+     */
+    public static byte[] decodeHex(CharSequence hex) throws IllegalArgumentException {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd number of characters.");
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        ByteArray.decodeHex(hex, bytes);
+        return bytes;
+    }
+    
+    /**
+     * 16進数の文字が表す値を取得する。
+     * 
+     * @param character
+     * @return
+     * @throws IllegalArgumentException 16進数ではない文字の場合。
+     */
+    private static int toHexValue(char character) throws IllegalArgumentException {
+        if (character < 128) {
+            int value = ByteArray.HEX_VALUES[character];
+            if (value >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Invalid hexadecimal character: " + character);
+    }
 }
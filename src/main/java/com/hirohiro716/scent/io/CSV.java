@@ -1,6 +1,5 @@
 package com.hirohiro716.scent.io;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
@@ -8,9 +7,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
-import com.hirohiro716.scent.StringObject;
 import com.hirohiro716.scent.filesystem.File;
-import com.hirohiro716.scent.filesystem.File.ProcessAfterReadingCharacter;
 import com.hirohiro716.scent.filesystem.File.WritingProcess;
 
 /**
@@ -134,40 +131,49 @@ public class CSV {
      * 
      * @param file
      * @param charsetName
+     * @param writeLineCallback 一行を書き込む度に呼び出されるコールバック。nullの場合は呼び出さない。
      * @throws IOException
      */
-    public void exportToFile(File file, String charsetName) throws IOException {
-        List<List<String>> writing = new ArrayList<>();
+    public void exportToFile(File file, String charsetName, WriteLineCallback writeLineCallback) throws IOException {
+        int numberOfRows = this.rows.size();
         if (this.headers != null) {
-            writing.add(this.headers);
+            numberOfRows++;
         }
-        writing.addAll(this.rows);
-        if (writing.size() == 0) {
+        if (numberOfRows == 0) {
             return;
         }
+        final int numberOfWritingRows = numberOfRows;
         file.write(charsetName, new WritingProcess() {
             @Override
             public void call(OutputStreamWriter writer) throws IOException {
                 CSV csv = CSV.this;
-                int lastIndex = writing.size() - 1;
-                for (int index = 0; index <= lastIndex; index++) {
-                    List<String> values = writing.get(index);
-                    StringObject line = new StringObject();
-                    for (String value: values) {
-                        if (line.length() > 0) {
-                            line.append(csv.delimiter);
-                        }
-                        StringObject valueObject = new StringObject(value);
-                        line.append("\"");
-                        line.append(valueObject.replace("\"", "\"\""));
-                        line.append("\"");
-                    }
-                    line.append(csv.lineSeparator);
-                    writer.write(line.toString());
+                CSVWriter csvWriter = new CSVWriter(writer);
+                csvWriter.setDelimiter(csv.delimiter);
+                csvWriter.setLineSeparator(csv.lineSeparator);
+                if (writeLineCallback != null) {
+                    csvWriter.setWriteLineCallback(writeLineCallback, numberOfWritingRows);
+                }
+                if (csv.headers != null) {
+                    csvWriter.writeRow(csv.headers);
+                }
+                for (List<String> values: csv.rows) {
+                    csvWriter.writeRow(values);
                 }
+                csvWriter.flush();
             }
         });
     }
+    
+    /**
+     * このインスタンスの値を指定されたcharsetを使用してファイルにエクスポートする。
+     * 
+     * @param file
+     * @param charsetName
+     * @throws IOException
+     */
+    public void exportToFile(File file, String charsetName) throws IOException {
+        this.exportToFile(file, charsetName, null);
+    }
 
     /**
      * このインスタンスの値をデフォルトのcharsetを使用してファイルにエクスポートする。
@@ -203,18 +209,12 @@ public class CSV {
      */
     public void importFromFile(File file, String charsetName, boolean firstRowIsHeader) throws IOException {
         this.rows.clear();
-        CSVParser parser = new CSVParser(this.delimiter, new ProcessAfterParsing() {
-            
-            @Override
-            public Exception call(List<String> parsed) {
-                CSV csv = CSV.this;
-                csv.rows.add(parsed);
-                return null;
+        try (CSVReader reader = new CSVReader(file, charsetName, this.delimiter.charAt(0))) {
+            List<String> row = reader.readRow();
+            while (row != null) {
+                this.rows.add(row);
+                row = reader.readRow();
             }
-        });
-        file.read(charsetName, parser);
-        if (parser.getIncompleteValues().size() > 0) {
-            this.rows.add(parser.getIncompleteValues());
         }
         if (firstRowIsHeader && this.rows.size() > 0) {
             this.headers = this.rows.get(0);
@@ -244,22 +244,27 @@ public class CSV {
      * @throws IOException
      */
     public static Exception parse(File file, String charsetName, String delimiter, ProcessAfterParsing processAfterParsing) throws IOException {
-        CSVParser parser = new CSVParser(delimiter, processAfterParsing);
-        try {
-            file.read(charsetName, parser);
-        } catch (IOException exception) {
-            if (parser.getException() == null) {
-                throw exception;
-            }
-            return parser.getException();
+        try (CSVReader reader = new CSVReader(file, charsetName, delimiter.charAt(0))) {
+            return reader.read(processAfterParsing);
         }
-        if (parser.getIncompleteValues().size() > 0) {
-            Exception exception = processAfterParsing.call(parser.getIncompleteValues());
-            if (exception != null) {
-                return exception;
-            }
-        }
-        return null;
+    }
+    
+    /**
+     * CSVファイル、charset、値区切り文字、行情報を解析した後の処理を指定して、CSVファイルを複数のスレッドで並行して解析する。
+     * 
+     * @param file
+     * @param charsetName
+     * @param delimiter
+     * @param isOrdered 解析した行をファイル内の順番で処理する場合はtrueを指定。falseの場合、解析した後の処理は複数のスレッドから同時に呼び出される。
+     * @param processAfterParsing
+     * @return 処理中に発生した例外を返す。発生しなかった場合はnullを返す。
+     * @throws IOException
+     * @see ParallelCSVReader
+     */
+    public static Exception parseInParallel(File file, String charsetName, String delimiter, boolean isOrdered, ProcessAfterParsing processAfterParsing) throws IOException {
+        ParallelCSVReader reader = new ParallelCSVReader(file, charsetName, delimiter.charAt(0));
+        reader.setOrdered(isOrdered);
+        return reader.read(processAfterParsing);
     }
     
     /**
@@ -300,138 +305,4 @@ public class CSV {
          */
         public abstract Exception call(List<String> parsed);
     }
-    
-    /**
-     * CSVファイルの解析を行うクラス。
-     */
-    private static class CSVParser implements ProcessAfterReadingCharacter {
-        
-        /**
-         * コンストラクタ。<br>
-         * 値の区切り文字、CSVファイルの行情報を解析した後の処理を指定する。
-         * 
-         * @param delimiter 
-         * @param processAfterParsing
-         */
-        private CSVParser(String delimiter, ProcessAfterParsing processAfterParsing) {
-            this.delimiter = delimiter;
-            this.processAfterParsing = processAfterParsing;
-        }
-        
-        private String delimiter;
-        
-        private ProcessAfterParsing processAfterParsing;
-        
-        private List<String> values = new ArrayList<>();
-        
-        /**
-         * 取り込みが未完了の値を取得する。
-         * 
-         * @return
-         */
-        public List<String> getIncompleteValues() {
-            return this.values;
-        }
-        
-        @Override
-        public void call(char character, BufferedReader bufferedReader) throws IOException {
-            String first = String.valueOf(character);
-            switch (first) {
-            case "\"":
-                this.parseValueOfString(bufferedReader);
-                break;
-            case "\r":
-            case "\n":
-                this.changeToNewRow();
-                break;
-            default:
-                this.parseValue(character, bufferedReader);
-                break;
-            }
-            if (this.exception != null) {
-                throw new IOException(this.exception);
-            }
-        }
-        
-        private Exception exception;
-        
-        /**
-         * 処理中に発生した例外を取得する。発生していない場合はnullを返す。
-         * 
-         * @return
-         */
-        public Exception getException() {
-            return this.exception;
-        }
-        
-        /**
-         * 行末に達した場合に行情報の配列を新しくする。
-         */
-        private void changeToNewRow() {
-            if (this.values.size() > 0) {
-                this.exception = this.processAfterParsing.call(this.values);
-                this.values = new ArrayList<>();
-            }
-        }
-        
-        /**
-         * ダブルクォートで囲われていない値を解析する。
-         * 
-         * @param firstCharacter ダブルクォートで囲われていないと判断した最初のcharacter。
-         * @param bufferedReader
-         * @throws IOException
-         */
-        private void parseValue(int firstCharacter, BufferedReader bufferedReader) throws IOException {
-            StringObject result = new StringObject();
-            int character = firstCharacter;
-            while (character > -1) {
-                String one = String.valueOf((char) character);
-                if (one.equals("\n") || one.equals("\r")) {
-                    this.values.add(result.toString());
-                    this.changeToNewRow();
-                    return;
-                }
-                if (one.equals(this.delimiter)) {
-                    break;
-                }
-                result.append(one);
-                character = bufferedReader.read();
-            }
-            this.values.add(result.toString());
-        }
-        
-        /**
-         * ダブルクォートで囲われている値を解析する。
-         * 
-         * @param bufferedReader
-         * @throws IOException
-         */
-        private void parseValueOfString(BufferedReader bufferedReader) throws IOException {
-            boolean isChangeToNewRow = false;
-            StringObject result = new StringObject();
-            char character = (char) bufferedReader.read();
-            while (character > -1) {
-                String first = String.valueOf(character);
-                if (first.equals("\"")) {
-                    character = (char) bufferedReader.read();
-                    String second = String.valueOf(character);
-                    if (second.equals("\"")) {
-                        result.append("\"");
-                    } else {
-                        if (second.equals("\n") || second.equals("\r")) {
-                            isChangeToNewRow = true;
-                        }
-                        break;
-                    }
-                } else {
-                    result.append(first);
-                }
-                character = (char) bufferedReader.read();
-            }
-            this.values.add(result.toString());
-            if (isChangeToNewRow) {
-                this.changeToNewRow();
-            }
-        }
-    }
 }
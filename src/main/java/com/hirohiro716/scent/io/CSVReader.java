@@ -0,0 +1,404 @@
+package com.hirohiro716.scent.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.hirohiro716.scent.filesystem.File;
+
+/**
+ * CSVファイル(RFC4180準拠)を一行ずつ読み込むクラス。<br>
+ * バイト列は大きな単位でjava.nio.charset.CharsetDecoderを使用して再利用するchar配列に変換し、位置の計算だけで値を走査する。
+ * ダブルクォートで囲われた値の中の改行(CR、LF)は値の一部として扱う。空行は読み飛ばされる。<br>
+ * ※readRowメソッドを使用するか、イテレーターとして使用する。読み込みが終わったらcloseメソッドを呼び出す必要がある。
+ */
+public class CSVReader implements Iterator<List<String>>, Closeable {
+    
+    private static final int DEFAULT_BUFFER_SIZE = 65536;
+    
+    /**
+     * コンストラクタ。<br>
+     * 読み込むバイト列のチャネル、文字セット、値の区切り文字を指定する。
+     * 
+     * @param channel
+     * @param charset
+     * @param delimiter
+     */
+    public CSVReader(ReadableByteChannel channel, Charset charset, char delimiter) {
+        this.channel = channel;
+        this.decoder = charset.newDecoder();
+        this.decoder.onMalformedInput(CodingErrorAction.REPLACE);
+        this.decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.byteBuffer = ByteBuffer.allocate(CSVReader.DEFAULT_BUFFER_SIZE);
+        this.byteBuffer.flip();
+        this.buffer = new char[CSVReader.DEFAULT_BUFFER_SIZE];
+        this.charBuffer = CharBuffer.wrap(this.buffer);
+        this.delimiter = delimiter;
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 読み込むjava.io.InputStream、文字セット、値の区切り文字を指定する。
+     * 
+     * @param inputStream
+     * @param charset
+     * @param delimiter
+     */
+    public CSVReader(InputStream inputStream, Charset charset, char delimiter) {
+        this(Channels.newChannel(inputStream), charset, delimiter);
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 読み込むjava.io.Readerと値の区切り文字を指定する。
+     * 
+     * @param reader
+     * @param delimiter
+     */
+    public CSVReader(Reader reader, char delimiter) {
+        this.reader = reader;
+        this.buffer = new char[CSVReader.DEFAULT_BUFFER_SIZE];
+        this.delimiter = delimiter;
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 読み込むCSVファイル、charset、値の区切り文字を指定する。
+     * 
+     * @param file
+     * @param charsetName nullの場合はデフォルトのcharsetを使用する。
+     * @param delimiter
+     * @throws IOException
+     */
+    public CSVReader(File file, String charsetName, char delimiter) throws IOException {
+        this(FileChannel.open(file.toJavaIoFile().toPath(), StandardOpenOption.READ), CSVReader.forName(charsetName), delimiter);
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 読み込むCSVファイル、charsetを指定する。値の区切り文字にはカンマを使用する。
+     * 
+     * @param file
+     * @param charsetName nullの場合はデフォルトのcharsetを使用する。
+     * @throws IOException
+     */
+    public CSVReader(File file, String charsetName) throws IOException {
+        this(file, charsetName, ',');
+    }
+    
+    private ReadableByteChannel channel = null;
+    
+    private CharsetDecoder decoder = null;
+    
+    private ByteBuffer byteBuffer = null;
+    
+    private CharBuffer charBuffer = null;
+    
+    private Reader reader = null;
+    
+    private char[] buffer;
+    
+    private int position = 0;
+    
+    private int limit = 0;
+    
+    private boolean isEndOfInput = false;
+    
+    private boolean isFlushed = false;
+    
+    private char delimiter;
+    
+    private StringBuilder field = new StringBuilder();
+    
+    /**
+     * 読み込み済みの文字をすべて走査した場合に、次の文字をバッファに読み込む。
+     * 
+     * @return 読み込む文字が残っていない場合はfalse。
+     * @throws IOException
+     */
+    private boolean fill() throws IOException {
+        if (this.position < this.limit) {
+            return true;
+        }
+        this.position = 0;
+        this.limit = 0;
+        if (this.reader != null) {
+            int length = 0;
+            while (length == 0) {
+                length = this.reader.read(this.buffer, 0, this.buffer.length);
+            }
+            if (length < 0) {
+                return false;
+            }
+            this.limit = length;
+            return true;
+        }
+        if (this.isFlushed) {
+            return false;
+        }
+        this.charBuffer.clear();
+        while (this.charBuffer.position() == 0) {
+            if (this.isEndOfInput) {
+                if (this.decoder.decode(this.byteBuffer, this.charBuffer, true).isOverflow()) {
+                    break;
+                }
+                if (this.decoder.flush(this.charBuffer).isOverflow()) {
+                    break;
+                }
+                this.isFlushed = true;
+                break;
+            }
+            CoderResult result = this.decoder.decode(this.byteBuffer, this.charBuffer, false);
+            if (result.isUnderflow()) {
+                this.byteBuffer.compact();
+                int length = this.channel.read(this.byteBuffer);
+                this.byteBuffer.flip();
+                if (length < 0) {
+                    this.isEndOfInput = true;
+                }
+            }
+        }
+        this.limit = this.charBuffer.position();
+        return this.limit > 0;
+    }
+    
+    /**
+     * 次の行を読み込んで値のリストを取得する。
+     * 
+     * @return 結果。ファイルの終端に達している場合はnull。
+     * @throws IOException
+     */
+    public List<String> readRow() throws IOException {
+        if (this.nextRow != null) {
+            List<String> row = this.nextRow;
+            this.nextRow = null;
+            return row;
+        }
+        List<String> row = new ArrayList<>();
+        while (true) {
+            if (this.fill() == false) {
+                if (row.size() > 0) {
+                    return row;
+                }
+                return null;
+            }
+            char character = this.buffer[this.position];
+            if (row.size() == 0 && (character == '\r' || character == '\n')) {
+                this.readLineSeparator();
+                continue;
+            }
+            Terminator terminator;
+            if (character == '"') {
+                this.position++;
+                terminator = this.readQuotedValue(row);
+            } else {
+                terminator = this.readValue(row);
+            }
+            if (terminator != Terminator.DELIMITER) {
+                return row;
+            }
+            if (this.fill() == false) {
+                row.add("");
+                return row;
+            }
+        }
+    }
+    
+    /**
+     * 行の区切り文字(CRLF、CR、LF)を読み込む。
+     * 
+     * @throws IOException
+     */
+    private void readLineSeparator() throws IOException {
+        char character = this.buffer[this.position];
+        this.position++;
+        if (character == '\r' && this.fill() && this.buffer[this.position] == '\n') {
+            this.position++;
+        }
+    }
+    
+    /**
+     * 現在の位置から値の区切り文字、行の区切り文字、終端までを値として読み込んでリストに追加する。<br>
+     * 値のバッファに読み込み済みの文字がある場合は、その続きとして読み込む。
+     * 
+     * @param row
+     * @return 値を区切った要因。
+     * @throws IOException
+     */
+    private Terminator readValue(List<String> row) throws IOException {
+        int start = this.position;
+        while (true) {
+            if (this.position >= this.limit) {
+                this.field.append(this.buffer, start, this.position - start);
+                if (this.fill() == false) {
+                    row.add(this.field.toString());
+                    this.field.setLength(0);
+                    return Terminator.END_OF_INPUT;
+                }
+                start = this.position;
+            }
+            char character = this.buffer[this.position];
+            if (character == this.delimiter || character == '\r' || character == '\n') {
+                if (this.field.length() == 0) {
+                    row.add(new String(this.buffer, start, this.position - start));
+                } else {
+                    this.field.append(this.buffer, start, this.position - start);
+                    row.add(this.field.toString());
+                    this.field.setLength(0);
+                }
+                if (character == this.delimiter) {
+                    this.position++;
+                    return Terminator.DELIMITER;
+                }
+                this.readLineSeparator();
+                return Terminator.LINE_SEPARATOR;
+            }
+            this.position++;
+        }
+    }
+    
+    /**
+     * 開始のダブルクォートの次の位置から、ダブルクォートで囲われている値を読み込んでリストに追加する。<br>
+     * 連続した2つのダブルクォートは1つのダブルクォートとして扱う。終了のダブルクォートの後に続く文字は値の続きとして扱う。
+     * 
+     * @param row
+     * @return 値を区切った要因。
+     * @throws IOException
+     */
+    private Terminator readQuotedValue(List<String> row) throws IOException {
+        int start = this.position;
+        while (true) {
+            if (this.position >= this.limit) {
+                this.field.append(this.buffer, start, this.position - start);
+                if (this.fill() == false) {
+                    row.add(this.field.toString());
+                    this.field.setLength(0);
+                    return Terminator.END_OF_INPUT;
+                }
+                start = this.position;
+            }
+            if (this.buffer[this.position] == '"') {
+                this.field.append(this.buffer, start, this.position - start);
+                this.position++;
+                if (this.fill() && this.buffer[this.position] == '"') {
+                    this.field.append('"');
+                    this.position++;
+                    start = this.position;
+                    continue;
+                }
+                if (this.position >= this.limit) {
+                    row.add(this.field.toString());
+                    this.field.setLength(0);
+                    return Terminator.END_OF_INPUT;
+                }
+                return this.readValue(row);
+            }
+            this.position++;
+        }
+    }
+    
+    private List<String> nextRow = null;
+    
+    @Override
+    public boolean hasNext() {
+        if (this.nextRow == null) {
+            try {
+                this.nextRow = this.readRow();
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+        return this.nextRow != null;
+    }
+    
+    @Override
+    public List<String> next() {
+        if (this.hasNext() == false) {
+            throw new NoSuchElementException();
+        }
+        List<String> row = this.nextRow;
+        this.nextRow = null;
+        return row;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (this.channel != null) {
+            this.channel.close();
+        }
+        if (this.reader != null) {
+            this.reader.close();
+        }
+    }
+    
+    /**
+     * 行情報を読み込む度に、解析した後の処理を実行する。
+     * 
+     * @param processAfterParsing
+     * @return 処理中に発生した例外を返す。発生しなかった場合はnullを返す。
+     * @throws IOException
+     */
+    public Exception read(CSV.ProcessAfterParsing processAfterParsing) throws IOException {
+        List<String> row = this.readRow();
+        while (row != null) {
+            Exception exception = processAfterParsing.call(row);
+            if (exception != null) {
+                return exception;
+            }
+            row = this.readRow();
+        }
+        return null;
+    }
+    
+    /**
+     * charset名から文字セットを取得する。取得できない場合はデフォルトのcharsetを返す。
+     * 
+     * @param charsetName
+     * @return
+     */
+    static Charset forName(String charsetName) {
+        Charset charset = Charset.defaultCharset();
+        try {
+            if (charsetName != null && charsetName.length() > 0) {
+                charset = Charset.forName(charsetName);
+            }
+        } catch (Exception exception) {
+            exception.printStackTrace();
+        }
+        return charset;
+    }
+    
+    /**
+     * 値を区切った要因の列挙型。
+     */
+    private enum Terminator {
+        /**
+         * 値の区切り文字。
+         */
+        DELIMITER,
+        /**
+         * 行の区切り文字。
+         */
+        LINE_SEPARATOR,
+        /**
+         * 終端。
+         */
+        END_OF_INPUT,
+    }
+}
@@ -0,0 +1,255 @@
+package com.hirohiro716.scent.io;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Collection;
+
+import com.hirohiro716.scent.filesystem.File;
+import com.hirohiro716.scent.io.CSV.WriteLineCallback;
+
+/**
+ * CSVファイル(RFC4180準拠)を一行ずつ書き込むクラス。<br>
+ * 行はすべてをメモリに保持せずに書き込まれるため、データベースから順に取得した行などをそのまま書き込むことができる。<br>
+ * ※書き込みが終わったらcloseメソッドを呼び出す必要がある。
+ */
+public class CSVWriter implements Flushable, Closeable {
+    
+    private static final int DEFAULT_BUFFER_SIZE = 65536;
+    
+    /**
+     * コンストラクタ。<br>
+     * 書き込み先のjava.io.Writerを指定する。書き込みはバッファリングされる。
+     * 
+     * @param writer
+     */
+    public CSVWriter(Writer writer) {
+        if (writer instanceof BufferedWriter) {
+            this.writer = writer;
+        } else {
+            this.writer = new BufferedWriter(writer, CSVWriter.DEFAULT_BUFFER_SIZE);
+        }
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 書き込み先のjava.io.OutputStreamと文字セットを指定する。書き込みはバッファリングされる。
+     * 
+     * @param outputStream
+     * @param charset
+     */
+    public CSVWriter(OutputStream outputStream, Charset charset) {
+        this(new OutputStreamWriter(outputStream, charset.newEncoder()));
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 書き込み先のファイルとcharsetを指定する。既存の内容は上書きされる。
+     * 
+     * @param file
+     * @param charsetName nullの場合はデフォルトのcharsetを使用する。
+     * @throws IOException
+     */
+    public CSVWriter(File file, String charsetName) throws IOException {
+        this(new FileOutputStream(file.toJavaIoFile()), CSVReader.forName(charsetName));
+    }
+    
+    private Writer writer;
+    
+    private String delimiter = ",";
+    
+    /**
+     * 値の区切り文字を指定する。初期値はカンマ。
+     * 
+     * @param delimiter
+     */
+    public void setDelimiter(String delimiter) {
+        this.delimiter = delimiter;
+    }
+    
+    private String lineSeparator = "\r\n";
+    
+    /**
+     * 行の区切り文字を指定する。初期値はCRLF。
+     * 
+     * @param lineSeparator
+     */
+    public void setLineSeparator(String lineSeparator) {
+        this.lineSeparator = lineSeparator;
+    }
+    
+    private QuoteMode quoteMode = QuoteMode.ALWAYS;
+    
+    /**
+     * 値をダブルクォートで囲う条件を取得する。
+     * 
+     * @return
+     */
+    public QuoteMode getQuoteMode() {
+        return this.quoteMode;
+    }
+    
+    /**
+     * 値をダブルクォートで囲う条件をセットする。初期値はQuoteMode.ALWAYS。
+     * 
+     * @param quoteMode
+     */
+    public void setQuoteMode(QuoteMode quoteMode) {
+        this.quoteMode = quoteMode;
+    }
+    
+    private WriteLineCallback writeLineCallback = null;
+    
+    private int lastIndex = -1;
+    
+    /**
+     * 一行を書き込む度に呼び出されるコールバックをセットする。
+     * 
+     * @param writeLineCallback
+     * @param numberOfRows コールバックに最後の行のインデックスとして渡す、書き込む予定の行数。不明な場合は-1を指定する。
+     */
+    public void setWriteLineCallback(WriteLineCallback writeLineCallback, int numberOfRows) {
+        this.writeLineCallback = writeLineCallback;
+        if (numberOfRows < 0) {
+            this.lastIndex = -1;
+        } else {
+            this.lastIndex = numberOfRows - 1;
+        }
+    }
+    
+    private int numberOfWrittenRows = 0;
+    
+    /**
+     * これまでに書き込んだ行数を取得する。
+     * 
+     * @return
+     */
+    public int getNumberOfWrittenRows() {
+        return this.numberOfWrittenRows;
+    }
+    
+    /**
+     * 一行を書き込む。nullの値は空文字として書き込まれる。
+     * 
+     * @param values
+     * @throws IOException
+     */
+    public void writeRow(Object... values) throws IOException {
+        for (int index = 0; index < values.length; index++) {
+            if (index > 0) {
+                this.writer.write(this.delimiter);
+            }
+            this.writeValue(values[index]);
+        }
+        this.afterWritingRow();
+    }
+    
+    /**
+     * 一行を書き込む。nullの値は空文字として書き込まれる。
+     * 
+     * @param values
+     * @throws IOException
+     */
+    public void writeRow(Collection<?> values) throws IOException {
+        boolean isFirst = true;
+        for (Object value: values) {
+            if (isFirst == false) {
+                this.writer.write(this.delimiter);
+            }
+            this.writeValue(value);
+            isFirst = false;
+        }
+        this.afterWritingRow();
+    }
+    
+    /**
+     * 行の区切り文字を書き込んで、コールバックを呼び出す。
+     * 
+     * @throws IOException
+     */
+    private void afterWritingRow() throws IOException {
+        this.writer.write(this.lineSeparator);
+        if (this.writeLineCallback != null) {
+            this.writeLineCallback.call(this.numberOfWrittenRows, this.lastIndex);
+        }
+        this.numberOfWrittenRows++;
+    }
+    
+    /**
+     * 値を一つ書き込む。ダブルクォートは一文字ずつ走査して二重にする。
+     * 
+     * @param value
+     * @throws IOException
+     */
+    private void writeValue(Object value) throws IOException {
+        String string = "";
+        if (value != null) {
+            string = value.toString();
+        }
+        if (this.quoteMode == QuoteMode.WHEN_NEEDED && this.isQuoteNeeded(string) == false) {
+            this.writer.write(string);
+            return;
+        }
+        this.writer.write('"');
+        int start = 0;
+        int length = string.length();
+        for (int index = 0; index < length; index++) {
+            if (string.charAt(index) == '"') {
+                this.writer.write(string, start, index - start + 1);
+                this.writer.write('"');
+                start = index + 1;
+            }
+        }
+        if (start < length) {
+            this.writer.write(string, start, length - start);
+        }
+        this.writer.write('"');
+    }
+    
+    /**
+     * 値をダブルクォートで囲う必要がある場合にtrueを返す。
+     * 
+     * @param value
+     * @return
+     */
+    private boolean isQuoteNeeded(String value) {
+        int length = value.length();
+        for (int index = 0; index < length; index++) {
+            char character = value.charAt(index);
+            if (character == '"' || character == '\r' || character == '\n') {
+                return true;
+            }
+        }
+        return this.delimiter.length() > 0 && value.contains(this.delimiter);
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        this.writer.flush();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+    }
+    
+    /**
+     * 値をダブルクォートで囲う条件の列挙型。
+     */
+    public enum QuoteMode {
+        /**
+         * すべての値をダブルクォートで囲う。
+         */
+        ALWAYS,
+        /**
+         * ダブルクォート、改行、値の区切り文字を含む値のみダブルクォートで囲う。
+         */
+        WHEN_NEEDED,
+    }
+}
@@ -0,0 +1,349 @@
+package com.hirohiro716.scent.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import com.hirohiro716.scent.DynamicArray;
+import com.hirohiro716.scent.property.PropertyInterface;
+
+/**
+ * DynamicArrayWriterで書き込まれたバイナリ形式のDynamicArrayを一件ずつ読み込むクラス。<br>
+ * ※書き込み時にプロパティ列挙型のクラスを指定した場合は、読み込み時にも同じクラスを指定する必要がある。
+ * 読み込みが終わったらcloseメソッドを呼び出す必要がある。
+ */
+public class DynamicArrayReader implements Closeable {
+    
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    
+    /**
+     * コンストラクタ。<br>
+     * 読み込むjava.io.InputStreamと、キーに使用されているプロパティ列挙型のクラスを指定する。
+     * 
+     * @param inputStream
+     * @param propertyClass キーがプロパティ列挙型ではない場合はnull。
+     */
+    public DynamicArrayReader(InputStream inputStream, Class<? extends PropertyInterface> propertyClass) {
+        this.inputStream = inputStream;
+        this.buffer = new byte[DynamicArrayReader.DEFAULT_BUFFER_SIZE];
+        if (propertyClass != null) {
+            this.properties = propertyClass.getEnumConstants();
+        }
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 読み込むjava.io.InputStreamを指定する。
+     * 
+     * @param inputStream
+     */
+    public DynamicArrayReader(InputStream inputStream) {
+        this(inputStream, null);
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 読み込むjava.nio.ByteBufferと、キーに使用されているプロパティ列挙型のクラスを指定する。
+     * 
+     * @param byteBuffer
+     * @param propertyClass キーがプロパティ列挙型ではない場合はnull。
+     */
+    public DynamicArrayReader(ByteBuffer byteBuffer, Class<? extends PropertyInterface> propertyClass) {
+        this.byteBuffer = byteBuffer;
+        if (propertyClass != null) {
+            this.properties = propertyClass.getEnumConstants();
+        }
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 読み込むjava.nio.ByteBufferを指定する。
+     * 
+     * @param byteBuffer
+     */
+    public DynamicArrayReader(ByteBuffer byteBuffer) {
+        this(byteBuffer, null);
+    }
+    
+    private InputStream inputStream = null;
+    
+    private ByteBuffer byteBuffer = null;
+    
+    private byte[] buffer = null;
+    
+    private int position = 0;
+    
+    private int limit = 0;
+    
+    private PropertyInterface[] properties = null;
+    
+    private List<String> dictionary = new ArrayList<>();
+    
+    private boolean isHeaderRead = false;
+    
+    /**
+     * 連想配列を一件読み込む。
+     * 
+     * @param <K> 連想配列のキー型。
+     * @return 結果。終端に達している場合はnull。
+     * @throws IOException
+     * @throws StreamCorruptedException 形式が正しくない場合。
+     */
+    @SuppressWarnings("unchecked")
+    public <K> DynamicArray<K> read() throws IOException {
+        if (this.isHeaderRead == false) {
+            if (this.isEndOfInput()) {
+                return null;
+            }
+            for (byte one: DynamicArrayWriter.HEADER) {
+                if (this.readByte() != one) {
+                    throw new StreamCorruptedException("Invalid header.");
+                }
+            }
+            this.isHeaderRead = true;
+        }
+        if (this.isEndOfInput()) {
+            return null;
+        }
+        int size = this.readLength();
+        DynamicArray<K> array = new DynamicArray<>();
+        for (int index = 0; index < size; index++) {
+            K key = (K) this.readValue();
+            array.put(key, this.readValue());
+        }
+        return array;
+    }
+    
+    /**
+     * タグに続けて書き込まれている値を読み込む。
+     * 
+     * @return
+     * @throws IOException
+     */
+    private Object readValue() throws IOException {
+        int tag = this.readByte();
+        switch (tag) {
+        case DynamicArrayWriter.TAG_NULL:
+            return null;
+        case DynamicArrayWriter.TAG_FALSE:
+            return false;
+        case DynamicArrayWriter.TAG_TRUE:
+            return true;
+        case DynamicArrayWriter.TAG_BYTE:
+            return (byte) this.readByte();
+        case DynamicArrayWriter.TAG_SHORT:
+            return (short) this.readSignedVarint();
+        case DynamicArrayWriter.TAG_INTEGER:
+            return (int) this.readSignedVarint();
+        case DynamicArrayWriter.TAG_LONG:
+            return this.readSignedVarint();
+        case DynamicArrayWriter.TAG_FLOAT:
+            return Float.intBitsToFloat((int) this.readFixed(4));
+        case DynamicArrayWriter.TAG_DOUBLE:
+            return Double.longBitsToDouble(this.readFixed(8));
+        case DynamicArrayWriter.TAG_BIG_INTEGER:
+            return new BigInteger(this.readBytes());
+        case DynamicArrayWriter.TAG_BIG_DECIMAL:
+            int scale = (int) this.readSignedVarint();
+            return new BigDecimal(new BigInteger(this.readBytes()), scale);
+        case DynamicArrayWriter.TAG_STRING:
+            byte[] bytes = this.readBytes();
+            String string = new String(bytes, StandardCharsets.UTF_8);
+            if (bytes.length <= DynamicArrayWriter.MAXIMUM_DICTIONARY_STRING_LENGTH && this.dictionary.size() < DynamicArrayWriter.MAXIMUM_DICTIONARY_SIZE) {
+                this.dictionary.add(string);
+            }
+            return string;
+        case DynamicArrayWriter.TAG_STRING_REFERENCE:
+            int number = this.readLength();
+            if (number >= this.dictionary.size()) {
+                throw new StreamCorruptedException("Invalid string reference: " + number);
+            }
+            return this.dictionary.get(number);
+        case DynamicArrayWriter.TAG_DATE:
+            return new Date(this.readSignedVarint());
+        case DynamicArrayWriter.TAG_BYTES:
+            return this.readBytes();
+        case DynamicArrayWriter.TAG_PROPERTY:
+            int ordinal = this.readLength();
+            if (this.properties == null || ordinal >= this.properties.length) {
+                throw new StreamCorruptedException("Unknown property: " + ordinal);
+            }
+            return this.properties[ordinal];
+        default:
+            throw new StreamCorruptedException("Invalid tag: " + tag);
+        }
+    }
+    
+    /**
+     * 終端に達している場合はtrueを返す。
+     * 
+     * @return
+     * @throws IOException
+     */
+    private boolean isEndOfInput() throws IOException {
+        if (this.byteBuffer != null) {
+            return this.byteBuffer.hasRemaining() == false;
+        }
+        return this.fill() == false;
+    }
+    
+    /**
+     * 読み込み済みのバイトをすべて走査した場合に、次のバイトをバッファに読み込む。
+     * 
+     * @return 読み込むバイトが残っていない場合はfalse。
+     * @throws IOException
+     */
+    private boolean fill() throws IOException {
+        if (this.position < this.limit) {
+            return true;
+        }
+        this.position = 0;
+        this.limit = 0;
+        int length = 0;
+        while (length == 0) {
+            length = this.inputStream.read(this.buffer, 0, this.buffer.length);
+        }
+        if (length < 0) {
+            return false;
+        }
+        this.limit = length;
+        return true;
+    }
+    
+    /**
+     * 1バイトを符号なしの整数として読み込む。
+     * 
+     * @return
+     * @throws IOException
+     * @throws EOFException 終端に達している場合。
+     */
+    private int readByte() throws IOException {
+        if (this.byteBuffer != null) {
+            try {
+                return Byte.toUnsignedInt(this.byteBuffer.get());
+            } catch (BufferUnderflowException exception) {
+                throw new EOFException();
+            }
+        }
+        if (this.fill() == false) {
+            throw new EOFException();
+        }
+        int value = Byte.toUnsignedInt(this.buffer[this.position]);
+        this.position++;
+        return value;
+    }
+    
+    /**
+     * 長さに続けて書き込まれているbyte配列を読み込む。<br>
+     * java.io.InputStreamから読み込む場合は、書き込まれている長さを信用せずに、実際に読み込んだバイト数に応じて配列を拡張する。
+     * 
+     * @return
+     * @throws IOException
+     */
+    private byte[] readBytes() throws IOException {
+        int length = this.readLength();
+        if (this.byteBuffer != null) {
+            if (this.byteBuffer.remaining() < length) {
+                throw new EOFException();
+            }
+            byte[] bytes = new byte[length];
+            this.byteBuffer.get(bytes);
+            return bytes;
+        }
+        if (this.fill() && length <= this.limit - this.position) {
+            byte[] bytes = Arrays.copyOfRange(this.buffer, this.position, this.position + length);
+            this.position += length;
+            return bytes;
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(DynamicArrayReader.DEFAULT_BUFFER_SIZE);
+        int remaining = length;
+        while (remaining > 0) {
+            if (this.fill() == false) {
+                throw new EOFException();
+            }
+            int count = Math.min(remaining, this.limit - this.position);
+            outputStream.write(this.buffer, this.position, count);
+            this.position += count;
+            remaining -= count;
+        }
+        return outputStream.toByteArray();
+    }
+    
+    /**
+     * 可変長で書き込まれている長さや番号を読み込む。
+     * 
+     * @return
+     * @throws IOException
+     * @throws StreamCorruptedException intで表せない値の場合。
+     */
+    private int readLength() throws IOException {
+        long value = this.readVarint();
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException("Invalid length: " + value);
+        }
+        return (int) value;
+    }
+    
+    /**
+     * 可変長で書き込まれている0以上の整数を読み込む。
+     * 
+     * @return
+     * @throws IOException
+     */
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int one = this.readByte();
+            value |= (long) (one & 0x7F) << shift;
+            if ((one & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Invalid varint.");
+    }
+    
+    /**
+     * 可変長で書き込まれている符号付きの整数を読み込む。
+     * 
+     * @return
+     * @throws IOException
+     */
+    private long readSignedVarint() throws IOException {
+        long value = this.readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    /**
+     * 指定されたバイト数の固定長(ビッグエンディアン)で書き込まれている整数を読み込む。
+     * 
+     * @param numberOfBytes
+     * @return
+     * @throws IOException
+     */
+    private long readFixed(int numberOfBytes) throws IOException {
+        long value = 0;
+        for (int index = 0; index < numberOfBytes; index++) {
+            value = (value << 8) | this.readByte();
+        }
+        return value;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (this.inputStream != null) {
+            this.inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.hirohiro716.scent.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.hirohiro716.scent.DynamicArray;
+import com.hirohiro716.scent.property.PropertyInterface;
+
+/**
+ * DynamicArrayを独自のコンパクトなバイナリ形式で一件ずつ書き込むクラス。<br>
+ * 値は型を表す1バイトのタグに続けて、整数と長さは可変長(varint)、文字列はUTF-8で書き込む。
+ * 一度書き込んだ文字列は辞書に登録され、以降は辞書の番号のみが書き込まれる。
+ * プロパティ列挙型のクラスを指定した場合、その列挙子のキーは列挙子の番号のみが書き込まれる。<br>
+ * 書き込める値の型はnull、Boolean、Byte、Short、Integer、Long、Float、Double、BigInteger、BigDecimal、String、Date、byte[]。
+ * java.util.Dateを継承したクラスの値はjava.util.Dateとして書き込まれる。<br>
+ * ※書き込んだ内容はDynamicArrayReaderで読み込む。書き込みが終わったらcloseメソッドを呼び出す必要がある。
+ */
+public class DynamicArrayWriter implements Flushable, Closeable {
+    
+    static final byte[] HEADER = new byte[] {'S', 'D', 'A', 1};
+    
+    static final int TAG_NULL = 0;
+    
+    static final int TAG_FALSE = 1;
+    
+    static final int TAG_TRUE = 2;
+    
+    static final int TAG_BYTE = 3;
+    
+    static final int TAG_SHORT = 4;
+    
+    static final int TAG_INTEGER = 5;
+    
+    static final int TAG_LONG = 6;
+    
+    static final int TAG_FLOAT = 7;
+    
+    static final int TAG_DOUBLE = 8;
+    
+    static final int TAG_BIG_INTEGER = 9;
+    
+    static final int TAG_BIG_DECIMAL = 10;
+    
+    static final int TAG_STRING = 11;
+    
+    static final int TAG_STRING_REFERENCE = 12;
+    
+    static final int TAG_DATE = 13;
+    
+    static final int TAG_BYTES = 14;
+    
+    static final int TAG_PROPERTY = 15;
+    
+    static final int MAXIMUM_DICTIONARY_SIZE = 65536;
+    
+    static final int MAXIMUM_DICTIONARY_STRING_LENGTH = 255;
+    
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    
+    /**
+     * コンストラクタ。<br>
+     * 書き込み先のjava.io.OutputStreamと、キーに使用されているプロパティ列挙型のクラスを指定する。
+     * 
+     * @param outputStream
+     * @param propertyClass キーがプロパティ列挙型ではない場合はnull。
+     */
+    public DynamicArrayWriter(OutputStream outputStream, Class<? extends PropertyInterface> propertyClass) {
+        this.outputStream = outputStream;
+        this.propertyClass = propertyClass;
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 書き込み先のjava.io.OutputStreamを指定する。
+     * 
+     * @param outputStream
+     */
+    public DynamicArrayWriter(OutputStream outputStream) {
+        this(outputStream, null);
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 書き込み先のjava.nio.ByteBufferと、キーに使用されているプロパティ列挙型のクラスを指定する。
+     * 
+     * @param byteBuffer
+     * @param propertyClass キーがプロパティ列挙型ではない場合はnull。
+     */
+    public DynamicArrayWriter(ByteBuffer byteBuffer, Class<? extends PropertyInterface> propertyClass) {
+        this.byteBuffer = byteBuffer;
+        this.propertyClass = propertyClass;
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 書き込み先のjava.nio.ByteBufferを指定する。
+     * 
+     * @param byteBuffer
+     */
+    public DynamicArrayWriter(ByteBuffer byteBuffer) {
+        this(byteBuffer, null);
+    }
+    
+    private OutputStream outputStream = null;
+    
+    private ByteBuffer byteBuffer = null;
+    
+    private Class<? extends PropertyInterface> propertyClass;
+    
+    private byte[] buffer = new byte[DynamicArrayWriter.DEFAULT_BUFFER_SIZE];
+    
+    private int position = 0;
+    
+    private Map<String, Integer> dictionary = new HashMap<>();
+    
+    private boolean isHeaderWritten = false;
+    
+    private int numberOfWrittenArrays = 0;
+    
+    /**
+     * これまでに書き込んだ連想配列の数を取得する。
+     * 
+     * @return
+     */
+    public int getNumberOfWrittenArrays() {
+        return this.numberOfWrittenArrays;
+    }
+    
+    /**
+     * 連想配列を一件書き込む。
+     * 
+     * @param array
+     * @throws IOException
+     * @throws NotSerializableException 書き込めない型のキーまたは値が含まれている場合。
+     */
+    public void write(DynamicArray<?> array) throws IOException {
+        if (this.isHeaderWritten == false) {
+            for (byte one: DynamicArrayWriter.HEADER) {
+                this.writeByte(one);
+            }
+            this.isHeaderWritten = true;
+        }
+        Map<?, Object> map = array.getLinkedHashMap();
+        this.writeVarint(map.size());
+        for (Map.Entry<?, Object> entry: map.entrySet()) {
+            this.writeKey(entry.getKey());
+            this.writeValue(entry.getValue());
+        }
+        this.numberOfWrittenArrays++;
+    }
+    
+    /**
+     * キーを書き込む。
+     * 
+     * @param key
+     * @throws IOException
+     */
+    private void writeKey(Object key) throws IOException {
+        if (this.propertyClass != null && key instanceof Enum && this.propertyClass.isInstance(key)) {
+            this.writeByte(DynamicArrayWriter.TAG_PROPERTY);
+            this.writeVarint(((Enum<?>) key).ordinal());
+            return;
+        }
+        this.writeValue(key);
+    }
+    
+    /**
+     * 型を表すタグに続けて値を書き込む。
+     * 
+     * @param value
+     * @throws IOException
+     */
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            this.writeByte(DynamicArrayWriter.TAG_NULL);
+        } else if (value instanceof String) {
+            this.writeString((String) value);
+        } else if (value instanceof Integer) {
+            this.writeByte(DynamicArrayWriter.TAG_INTEGER);
+            this.writeSignedVarint((Integer) value);
+        } else if (value instanceof Long) {
+            this.writeByte(DynamicArrayWriter.TAG_LONG);
+            this.writeSignedVarint((Long) value);
+        } else if (value instanceof Boolean) {
+            if ((Boolean) value) {
+                this.writeByte(DynamicArrayWriter.TAG_TRUE);
+            } else {
+                this.writeByte(DynamicArrayWriter.TAG_FALSE);
+            }
+        } else if (value instanceof Date) {
+            this.writeByte(DynamicArrayWriter.TAG_DATE);
+            this.writeSignedVarint(((Date) value).getTime());
+        } else if (value instanceof Double) {
+            this.writeByte(DynamicArrayWriter.TAG_DOUBLE);
+            this.writeFixed(Double.doubleToRawLongBits((Double) value), 8);
+        } else if (value instanceof Float) {
+            this.writeByte(DynamicArrayWriter.TAG_FLOAT);
+            this.writeFixed(Float.floatToRawIntBits((Float) value), 4);
+        } else if (value instanceof BigDecimal) {
+            BigDecimal bigDecimal = (BigDecimal) value;
+            this.writeByte(DynamicArrayWriter.TAG_BIG_DECIMAL);
+            this.writeSignedVarint(bigDecimal.scale());
+            this.writeBytes(bigDecimal.unscaledValue().toByteArray());
+        } else if (value instanceof BigInteger) {
+            this.writeByte(DynamicArrayWriter.TAG_BIG_INTEGER);
+            this.writeBytes(((BigInteger) value).toByteArray());
+        } else if (value instanceof Short) {
+            this.writeByte(DynamicArrayWriter.TAG_SHORT);
+            this.writeSignedVarint((Short) value);
+        } else if (value instanceof Byte) {
+            this.writeByte(DynamicArrayWriter.TAG_BYTE);
+            this.writeByte((Byte) value);
+        } else if (value instanceof byte[]) {
+            this.writeByte(DynamicArrayWriter.TAG_BYTES);
+            this.writeBytes((byte[]) value);
+        } else {
+            throw new NotSerializableException(value.getClass().getName());
+        }
+    }
+    
+    /**
+     * 文字列を書き込む。辞書に登録済みの文字列は辞書の番号のみを書き込む。
+     * 
+     * @param value
+     * @throws IOException
+     */
+    private void writeString(String value) throws IOException {
+        Integer number = this.dictionary.get(value);
+        if (number != null) {
+            this.writeByte(DynamicArrayWriter.TAG_STRING_REFERENCE);
+            this.writeVarint(number);
+            return;
+        }
+        this.writeByte(DynamicArrayWriter.TAG_STRING);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.writeBytes(bytes);
+        if (bytes.length <= DynamicArrayWriter.MAXIMUM_DICTIONARY_STRING_LENGTH && this.dictionary.size() < DynamicArrayWriter.MAXIMUM_DICTIONARY_SIZE) {
+            this.dictionary.put(value, this.dictionary.size());
+        }
+    }
+    
+    /**
+     * 1バイトを書き込む。
+     * 
+     * @param value
+     * @throws IOException
+     */
+    private void writeByte(int value) throws IOException {
+        if (this.position == this.buffer.length) {
+            this.drain();
+        }
+        this.buffer[this.position] = (byte) value;
+        this.position++;
+    }
+    
+    /**
+     * 長さに続けてbyte配列を書き込む。
+     * 
+     * @param bytes
+     * @throws IOException
+     */
+    private void writeBytes(byte[] bytes) throws IOException {
+        this.writeVarint(bytes.length);
+        if (bytes.length > this.buffer.length - this.position) {
+            this.drain();
+            if (bytes.length > this.buffer.length) {
+                if (this.outputStream != null) {
+                    this.outputStream.write(bytes);
+                } else {
+                    this.byteBuffer.put(bytes);
+                }
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+        this.position += bytes.length;
+    }
+    
+    /**
+     * 0以上の整数を、7ビットごとに上位ビットを継続フラグとした可変長で書き込む。
+     * 
+     * @param value
+     * @throws IOException
+     */
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            this.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        this.writeByte((int) value);
+    }
+    
+    /**
+     * 符号付きの整数を、絶対値の小さい値ほど短くなるように変換(ZigZag)して可変長で書き込む。
+     * 
+     * @param value
+     * @throws IOException
+     */
+    private void writeSignedVarint(long value) throws IOException {
+        this.writeVarint((value << 1) ^ (value >> 63));
+    }
+    
+    /**
+     * 整数を指定されたバイト数の固定長(ビッグエンディアン)で書き込む。
+     * 
+     * @param value
+     * @param numberOfBytes
+     * @throws IOException
+     */
+    private void writeFixed(long value, int numberOfBytes) throws IOException {
+        for (int index = numberOfBytes - 1; index >= 0; index--) {
+            this.writeByte((int) (value >>> (index * 8)));
+        }
+    }
+    
+    /**
+     * バッファ内のバイトを書き込み先に出力する。
+     * 
+     * @throws IOException
+     */
+    private void drain() throws IOException {
+        if (this.position == 0) {
+            return;
+        }
+        if (this.outputStream != null) {
+            this.outputStream.write(this.buffer, 0, this.position);
+        } else {
+            this.byteBuffer.put(this.buffer, 0, this.position);
+        }
+        this.position = 0;
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        this.drain();
+        if (this.outputStream != null) {
+            this.outputStream.flush();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        this.flush();
+        if (this.outputStream != null) {
+            this.outputStream.close();
+        }
+    }
+}
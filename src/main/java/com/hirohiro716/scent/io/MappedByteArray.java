@@ -0,0 +1,96 @@
+package com.hirohiro716.scent.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import com.hirohiro716.scent.filesystem.File;
+
+/**
+ * メモリにマップしたファイルの内容を、ヒープにコピーせずに参照するbyte配列のクラス。<br>
+ * toByteBufferメソッドとsaveToFileメソッドはマップされた内容を直接使用する。
+ * bytesメソッドを呼び出した場合のみ、内容がbyte配列にコピーされる。
+ */
+public class MappedByteArray extends ByteArray {
+    
+    /**
+     * コンストラクタ。<br>
+     * 指定されたjava.nio.MappedByteBufferの内容を参照する。
+     * 
+     * @param mappedByteBuffer
+     */
+    public MappedByteArray(MappedByteBuffer mappedByteBuffer) {
+        super();
+        this.byteBuffer = mappedByteBuffer.asReadOnlyBuffer();
+        this.byteBuffer.clear();
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 指定されたファイルを読み取り専用でメモリにマップして参照する。
+     * 
+     * @param file
+     * @throws IOException
+     */
+    public MappedByteArray(File file) throws IOException {
+        this(file.map());
+    }
+    
+    private ByteBuffer byteBuffer;
+    
+    private boolean isCopied = false;
+    
+    /**
+     * byte配列を取得する。<br>
+     * ※初回の呼び出し時にマップされた内容がすべてヒープにコピーされる。
+     * 
+     * @return
+     */
+    @Override
+    public byte[] bytes() {
+        if (this.isCopied == false) {
+            byte[] bytes = new byte[this.byteBuffer.capacity()];
+            this.byteBuffer.duplicate().get(bytes);
+            super.set(bytes);
+            this.isCopied = true;
+        }
+        return super.bytes();
+    }
+    
+    /**
+     * このインスタンスにbyte配列をセットする。以降はマップされた内容を参照しない。
+     * 
+     * @param bytes
+     */
+    @Override
+    protected void set(byte[] bytes) {
+        super.set(bytes);
+        this.byteBuffer = ByteBuffer.wrap(bytes);
+        this.isCopied = true;
+    }
+    
+    @Override
+    public int length() {
+        return this.byteBuffer.capacity();
+    }
+    
+    @Override
+    public ByteBuffer toByteBuffer() {
+        return this.byteBuffer.asReadOnlyBuffer();
+    }
+    
+    /**
+     * マップされた内容から、java.util.Arrays.hashCode(byte[])と同じ方法で算出したハッシュコードを返す。
+     * 
+     * @return
+     */
+    @Override
+    protected int calculateHashCode() {
+        int hashCode = 1;
+        int length = this.byteBuffer.capacity();
+        for (int index = 0; index < length; index++) {
+            hashCode = 31 * hashCode + this.byteBuffer.get(index);
+        }
+        return hashCode;
+    }
+}
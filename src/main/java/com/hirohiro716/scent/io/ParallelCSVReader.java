@@ -0,0 +1,623 @@
+package com.hirohiro716.scent.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+
+import com.hirohiro716.scent.filesystem.File;
+import com.hirohiro716.scent.io.CSV.ProcessAfterParsing;
+
+/**
+ * 巨大なCSVファイル(RFC4180準拠)を複数のスレッドで並行して解析するクラス。<br>
+ * ファイルをメモリーマップして一定の大きさのチャンクに分け、ダブルクォートの内外を考慮して行の境界を決定した後、
+ * それぞれの区間をjava.util.concurrent.ForkJoinPoolで並行して解析する。
+ * 解析した行は、ファイル内の順番を維持して一つのスレッドから、または順番を維持せずに複数のスレッドから、解析した後の処理に渡される。<br>
+ * ※行の境界はバイト単位で判定するため、ダブルクォート、CR、LF、値の区切り文字がASCIIと同じ1バイトで表される文字セット(UTF-8、Shift_JISなど)のみ並行して解析する。
+ * それ以外の文字セットの場合はCSVReaderで順番に解析する。
+ */
+public class ParallelCSVReader {
+    
+    /**
+     * コンストラクタ。<br>
+     * 読み込むCSVファイル、charset、値の区切り文字を指定する。
+     * 
+     * @param file
+     * @param charsetName nullの場合はデフォルトのcharsetを使用する。
+     * @param delimiter
+     */
+    public ParallelCSVReader(File file, String charsetName, char delimiter) {
+        this.file = file;
+        this.charset = CSVReader.forName(charsetName);
+        this.delimiter = delimiter;
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 読み込むCSVファイル、charsetを指定する。値の区切り文字にはカンマを使用する。
+     * 
+     * @param file
+     * @param charsetName nullの場合はデフォルトのcharsetを使用する。
+     */
+    public ParallelCSVReader(File file, String charsetName) {
+        this(file, charsetName, ',');
+    }
+    
+    private File file;
+    
+    private Charset charset;
+    
+    private char delimiter;
+    
+    private int chunkSize = 8 * 1024 * 1024;
+    
+    /**
+     * ファイルを分割するチャンクのバイト数を取得する。
+     * 
+     * @return
+     */
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+    
+    /**
+     * ファイルを分割するチャンクのバイト数をセットする。初期値は8MB。
+     * 
+     * @param chunkSize
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+    
+    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+    
+    /**
+     * 解析に使用するjava.util.concurrent.ForkJoinPoolを取得する。
+     * 
+     * @return
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return this.forkJoinPool;
+    }
+    
+    /**
+     * 解析に使用するjava.util.concurrent.ForkJoinPoolをセットする。初期値はForkJoinPool.commonPool()。
+     * 
+     * @param forkJoinPool
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+    
+    private boolean isOrdered = true;
+    
+    /**
+     * 解析した行をファイル内の順番で処理する場合はtrueを返す。
+     * 
+     * @return
+     */
+    public boolean isOrdered() {
+        return this.isOrdered;
+    }
+    
+    /**
+     * 解析した行をファイル内の順番で処理するかどうかをセットする。初期値はtrue。<br>
+     * trueの場合、解析した後の処理は順番を並べ替えたうえで同時には一つのスレッドからのみ呼び出される。
+     * falseの場合、解析した後の処理は複数のスレッドから同時に呼び出されるため、スレッドセーフである必要がある。
+     * 
+     * @param isOrdered
+     */
+    public void setOrdered(boolean isOrdered) {
+        this.isOrdered = isOrdered;
+    }
+    
+    private int maximumNumberOfPendingChunks = Runtime.getRuntime().availableProcessors() * 4;
+    
+    /**
+     * 解析中または処理待ちとして同時に保持するチャンクの最大数を取得する。
+     * 
+     * @return
+     */
+    public int getMaximumNumberOfPendingChunks() {
+        return this.maximumNumberOfPendingChunks;
+    }
+    
+    /**
+     * 解析中または処理待ちとして同時に保持するチャンクの最大数をセットする。初期値はプロセッサー数の4倍。<br>
+     * 順番を維持する場合に、並べ替えのために保持する行の量はこの値で制限される。
+     * 
+     * @param maximumNumberOfPendingChunks
+     */
+    public void setMaximumNumberOfPendingChunks(int maximumNumberOfPendingChunks) {
+        this.maximumNumberOfPendingChunks = maximumNumberOfPendingChunks;
+    }
+    
+    /**
+     * CSVファイルを並行して解析し、行情報を解析する度に解析した後の処理を実行する。
+     * 
+     * @param processAfterParsing
+     * @return 処理中に発生した例外を返す。発生しなかった場合はnullを返す。
+     * @throws IOException
+     * @throws RuntimeException 解析中、または解析した後の処理で実行時例外が発生した場合。
+     */
+    public Exception read(ProcessAfterParsing processAfterParsing) throws IOException, RuntimeException {
+        if (ParallelCSVReader.isASCIICompatible(this.charset, this.delimiter) == false) {
+            try (CSVReader reader = new CSVReader(this.file, this.charset.name(), this.delimiter)) {
+                return reader.read(processAfterParsing);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(this.file.toJavaIoFile().toPath(), StandardOpenOption.READ)) {
+            long[] boundaries = this.findBoundaries(channel);
+            Delivery delivery = new Delivery(processAfterParsing, this.isOrdered, this.maximumNumberOfPendingChunks);
+            for (int index = 0; index < boundaries.length - 1; index++) {
+                delivery.semaphore.acquireUninterruptibly();
+                if (delivery.isStopped()) {
+                    delivery.semaphore.release();
+                    break;
+                }
+                this.forkJoinPool.execute(new SegmentParser(this, channel, index, boundaries[index], boundaries[index + 1], delivery));
+            }
+            delivery.semaphore.acquireUninterruptibly(this.maximumNumberOfPendingChunks);
+            if (delivery.ioException != null) {
+                throw delivery.ioException;
+            }
+            if (delivery.runtimeException != null) {
+                throw delivery.runtimeException;
+            }
+            return delivery.exception;
+        }
+    }
+    
+    /**
+     * ファイルをチャンクごとに並行して走査し、ダブルクォートの内外を考慮した行の境界のバイト位置を決定する。
+     * 
+     * @param channel
+     * @return 先頭の0と末尾のファイルサイズを含む、昇順の境界の位置。
+     * @throws IOException
+     */
+    private long[] findBoundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int numberOfChunks = (int) ((size + this.chunkSize - 1) / this.chunkSize);
+        List<ForkJoinTask<ChunkScan>> tasks = new ArrayList<>();
+        for (int index = 0; index < numberOfChunks; index++) {
+            long start = (long) index * this.chunkSize;
+            long end = Math.min(start + this.chunkSize, size);
+            tasks.add(this.forkJoinPool.submit(new ChunkScanner(channel, start, end, (byte) this.delimiter)));
+        }
+        long[] boundaries = new long[numberOfChunks + 1];
+        int numberOfBoundaries = 1;
+        int state = ParallelCSVReader.STATE_FIELD_START;
+        try {
+            for (int index = 0; index < tasks.size(); index++) {
+                ChunkScan scan = tasks.get(index).get();
+                long lineBreak = scan.lineBreaks[state];
+                if (index > 0 && lineBreak > -1) {
+                    boundaries[numberOfBoundaries] = lineBreak + 1;
+                    numberOfBoundaries++;
+                }
+                state = scan.endStates[state];
+            }
+        } catch (InterruptedException exception) {
+            throw new IOException(exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof IOException) {
+                throw (IOException) exception.getCause();
+            }
+            throw new IOException(exception.getCause());
+        }
+        if (boundaries[numberOfBoundaries - 1] < size) {
+            boundaries[numberOfBoundaries] = size;
+            numberOfBoundaries++;
+        }
+        return Arrays.copyOf(boundaries, numberOfBoundaries);
+    }
+    
+    /**
+     * マルチバイト文字の2バイト目以降に0x40以上の値だけを使用する、状態を持たない文字セットの名前。
+     */
+    private static final List<String> MULTIBYTE_CHARSET_NAMES = Arrays.asList("Shift_JIS", "windows-31j", "x-SJIS_0213", "x-MS932_0213",
+            "EUC-JP", "x-euc-jp-linux", "x-eucJP-Open", "EUC-KR", "x-windows-949", "GB2312", "GBK", "Big5", "Big5-HKSCS", "x-windows-950", "x-EUC-TW");
+    
+    /**
+     * 指定された文字セットで、ダブルクォート、CR、LFと値の区切り文字がASCIIと同じ1バイトで表され、
+     * それらのバイトがほかの文字の一部として現れない場合にtrueを返す。<br>
+     * ISO-2022-JPのようにエスケープシーケンスで状態を切り替える文字セットは、0x21から0x7Eのバイトをほかの文字にも使用するためfalseを返す。
+     * 
+     * @param charset
+     * @param delimiter
+     * @return
+     */
+    private static boolean isASCIICompatible(Charset charset, char delimiter) {
+        if (charset.canEncode() == false || delimiter >= 0x80) {
+            return false;
+        }
+        String sample = "\"\r\n" + delimiter;
+        if (Arrays.equals(sample.getBytes(charset), sample.getBytes(StandardCharsets.US_ASCII)) == false) {
+            return false;
+        }
+        if (charset.newEncoder().maxBytesPerChar() == 1 || charset.equals(StandardCharsets.UTF_8)) {
+            return true;
+        }
+        if (ParallelCSVReader.MULTIBYTE_CHARSET_NAMES.contains(charset.name()) == false) {
+            return false;
+        }
+        // Shift_JISなどは2バイト目に0x40以上の値を使用するため、その範囲の区切り文字は1バイト文字セットとUTF-8に限る
+        return delimiter < 0x40;
+    }
+    
+    /**
+     * 値の先頭を走査している状態。
+     */
+    private static final int STATE_FIELD_START = 0;
+    
+    /**
+     * ダブルクォートで囲われていない値を走査している状態。
+     */
+    private static final int STATE_UNQUOTED = 1;
+    
+    /**
+     * ダブルクォートで囲われた値の内側を走査している状態。
+     */
+    private static final int STATE_QUOTED = 2;
+    
+    /**
+     * ダブルクォートで囲われた値の中でダブルクォートを読み込んだ直後の状態。
+     */
+    private static final int STATE_QUOTE_CLOSED = 3;
+    
+    private static final int NUMBER_OF_STATES = 4;
+    
+    /**
+     * CSVReaderと同じ規則で、指定された状態で1バイトを読み込んだ後の状態を求める。<br>
+     * ダブルクォートは値の先頭にある場合のみ値を囲う文字として扱う。
+     * 
+     * @param state
+     * @param one
+     * @param delimiter
+     * @return
+     */
+    private static int transit(int state, byte one, byte delimiter) {
+        switch (state) {
+        case ParallelCSVReader.STATE_QUOTED:
+            if (one == '"') {
+                return ParallelCSVReader.STATE_QUOTE_CLOSED;
+            }
+            return ParallelCSVReader.STATE_QUOTED;
+        case ParallelCSVReader.STATE_FIELD_START:
+        case ParallelCSVReader.STATE_QUOTE_CLOSED:
+            if (one == '"') {
+                return ParallelCSVReader.STATE_QUOTED;
+            }
+            break;
+        default:
+            break;
+        }
+        if (one == delimiter || one == '\r' || one == '\n') {
+            return ParallelCSVReader.STATE_FIELD_START;
+        }
+        return ParallelCSVReader.STATE_UNQUOTED;
+    }
+    
+    /**
+     * チャンクを走査した結果のクラス。配列は走査を始めた際の状態ごとの結果を表す。
+     */
+    private static class ChunkScan {
+        
+        private int[] endStates = new int[ParallelCSVReader.NUMBER_OF_STATES];
+        
+        private long[] lineBreaks = new long[ParallelCSVReader.NUMBER_OF_STATES];
+    }
+    
+    /**
+     * チャンクの先頭がそれぞれの状態だった場合について、行を終える最初の改行の位置と、チャンクの終端での状態を求めるクラス。
+     */
+    private static class ChunkScanner implements Callable<ChunkScan> {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param channel
+         * @param start
+         * @param end
+         * @param delimiter
+         */
+        private ChunkScanner(FileChannel channel, long start, long end, byte delimiter) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.delimiter = delimiter;
+        }
+        
+        private FileChannel channel;
+        
+        private long start;
+        
+        private long end;
+        
+        private byte delimiter;
+        
+        @Override
+        public ChunkScan call() throws IOException {
+            MappedByteBuffer buffer = this.channel.map(MapMode.READ_ONLY, this.start, this.end - this.start);
+            ChunkScan scan = new ChunkScan();
+            int[] states = new int[ParallelCSVReader.NUMBER_OF_STATES];
+            for (int state = 0; state < states.length; state++) {
+                states[state] = state;
+                scan.lineBreaks[state] = -1;
+            }
+            int limit = buffer.limit();
+            boolean isConverged = false;
+            for (int index = 0; index < limit; index++) {
+                byte one = buffer.get(index);
+                boolean isLineBreak = one == '\n' || one == '\r';
+                if (isConverged) {
+                    if (isLineBreak && states[0] != ParallelCSVReader.STATE_QUOTED) {
+                        for (int state = 0; state < states.length; state++) {
+                            if (scan.lineBreaks[state] == -1) {
+                                scan.lineBreaks[state] = this.start + index;
+                            }
+                        }
+                    }
+                    states[0] = ParallelCSVReader.transit(states[0], one, this.delimiter);
+                    continue;
+                }
+                isConverged = true;
+                for (int state = 0; state < states.length; state++) {
+                    if (isLineBreak && scan.lineBreaks[state] == -1 && states[state] != ParallelCSVReader.STATE_QUOTED) {
+                        scan.lineBreaks[state] = this.start + index;
+                    }
+                    states[state] = ParallelCSVReader.transit(states[state], one, this.delimiter);
+                    if (states[state] != states[0]) {
+                        isConverged = false;
+                    }
+                }
+            }
+            for (int state = 0; state < states.length; state++) {
+                if (isConverged) {
+                    scan.endStates[state] = states[0];
+                } else {
+                    scan.endStates[state] = states[state];
+                }
+            }
+            return scan;
+        }
+    }
+    
+    /**
+     * 解析した行を、解析した後の処理に渡すクラス。順番を維持する場合は並べ替えのバッファとして機能する。
+     */
+    private static class Delivery {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param processAfterParsing
+         * @param isOrdered
+         * @param maximumNumberOfPendingChunks
+         */
+        private Delivery(ProcessAfterParsing processAfterParsing, boolean isOrdered, int maximumNumberOfPendingChunks) {
+            this.processAfterParsing = processAfterParsing;
+            this.isOrdered = isOrdered;
+            this.semaphore = new Semaphore(maximumNumberOfPendingChunks);
+        }
+        
+        private ProcessAfterParsing processAfterParsing;
+        
+        private boolean isOrdered;
+        
+        private Semaphore semaphore;
+        
+        private Map<Integer, List<List<String>>> pendingRows = new HashMap<>();
+        
+        private int nextIndex = 0;
+        
+        private volatile Exception exception = null;
+        
+        private volatile IOException ioException = null;
+        
+        private volatile RuntimeException runtimeException = null;
+        
+        /**
+         * 処理を中止する場合はtrueを返す。
+         * 
+         * @return
+         */
+        private boolean isStopped() {
+            return this.exception != null || this.ioException != null || this.runtimeException != null;
+        }
+        
+        /**
+         * 発生した実行時例外を記録して処理を中止する。最初に発生した実行時例外のみ記録される。
+         * 
+         * @param runtimeException
+         */
+        private synchronized void stop(RuntimeException runtimeException) {
+            if (this.runtimeException == null) {
+                this.runtimeException = runtimeException;
+            }
+        }
+        
+        /**
+         * 指定された位置の区間で解析した行を処理する。
+         * 
+         * @param index
+         * @param rows 解析に失敗した場合はnull。
+         */
+        private void deliver(int index, List<List<String>> rows) {
+            if (this.isOrdered == false) {
+                try {
+                    this.process(rows);
+                } finally {
+                    this.semaphore.release();
+                }
+                return;
+            }
+            synchronized (this) {
+                this.pendingRows.put(index, rows);
+                while (this.pendingRows.containsKey(this.nextIndex)) {
+                    List<List<String>> nextRows = this.pendingRows.remove(this.nextIndex);
+                    this.nextIndex++;
+                    try {
+                        this.process(nextRows);
+                    } finally {
+                        this.semaphore.release();
+                    }
+                }
+            }
+        }
+        
+        /**
+         * 行を解析した後の処理に渡す。中止されている場合は何もしない。
+         * 
+         * @param rows
+         */
+        private void process(List<List<String>> rows) {
+            if (rows == null) {
+                return;
+            }
+            for (List<String> row: rows) {
+                if (this.isStopped()) {
+                    return;
+                }
+                Exception exception;
+                try {
+                    exception = this.processAfterParsing.call(row);
+                } catch (RuntimeException runtimeException) {
+                    this.stop(runtimeException);
+                    return;
+                }
+                if (exception != null) {
+                    synchronized (this) {
+                        if (this.exception == null) {
+                            this.exception = exception;
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * 行の境界で区切られた区間を解析するクラス。
+     */
+    private static class SegmentParser implements Runnable {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param reader
+         * @param channel
+         * @param index
+         * @param start
+         * @param end
+         * @param delivery
+         */
+        private SegmentParser(ParallelCSVReader reader, FileChannel channel, int index, long start, long end, Delivery delivery) {
+            this.reader = reader;
+            this.channel = channel;
+            this.index = index;
+            this.start = start;
+            this.end = end;
+            this.delivery = delivery;
+        }
+        
+        private ParallelCSVReader reader;
+        
+        private FileChannel channel;
+        
+        private int index;
+        
+        private long start;
+        
+        private long end;
+        
+        private Delivery delivery;
+        
+        @Override
+        public void run() {
+            List<List<String>> rows = null;
+            try {
+                if (this.delivery.isStopped() == false) {
+                    MappedByteBuffer buffer = this.channel.map(MapMode.READ_ONLY, this.start, this.end - this.start);
+                    rows = new ArrayList<>();
+                    try (CSVReader csvReader = new CSVReader(new ByteBufferChannel(buffer), this.reader.charset, this.reader.delimiter)) {
+                        List<String> row = csvReader.readRow();
+                        while (row != null) {
+                            rows.add(row);
+                            row = csvReader.readRow();
+                        }
+                    }
+                }
+            } catch (IOException exception) {
+                rows = null;
+                synchronized (this.delivery) {
+                    if (this.delivery.ioException == null) {
+                        this.delivery.ioException = exception;
+                    }
+                }
+            } catch (RuntimeException exception) {
+                rows = null;
+                this.delivery.stop(exception);
+            } finally {
+                this.delivery.deliver(this.index, rows);
+            }
+        }
+    }
+    
+    /**
+     * java.nio.ByteBufferの内容を読み込むチャネルのクラス。
+     */
+    private static class ByteBufferChannel implements ReadableByteChannel {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param buffer
+         */
+        private ByteBufferChannel(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        private ByteBuffer buffer;
+        
+        private boolean isOpen = true;
+        
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            if (this.buffer.hasRemaining() == false) {
+                return -1;
+            }
+            int length = Math.min(destination.remaining(), this.buffer.remaining());
+            ByteBuffer slice = this.buffer.slice();
+            slice.limit(length);
+            destination.put(slice);
+            this.buffer.position(this.buffer.position() + length);
+            return length;
+        }
+        
+        @Override
+        public boolean isOpen() {
+            return this.isOpen;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            this.isOpen = false;
+        }
+    }
+}
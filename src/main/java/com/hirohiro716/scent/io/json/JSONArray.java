@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 
-import com.hirohiro716.scent.Regex;
 import com.hirohiro716.scent.StringObject;
 
 /**
@@ -34,84 +33,15 @@ public class JSONArray extends JSONValue<List<JSONValue<?>>> {
 
     @Override
     protected ParseResult<List<JSONValue<?>>> parse(String json) throws ParseException {
-        StringObject target = new StringObject(json);
-        try {
-            List<JSONValue<?>> values = new ArrayList<>();
-            boolean isOpen = false;
-            int index;
-            for (index = 0; index < target.length(); index++) {
-                StringObject one = target.clone().extract(index, index + 1);
-                if (isOpen == false) {
-                    if (one.equals("[") && values.size() == 0 || one.equals(",") && values.size() > 0) {
-                        isOpen = true;
-                        continue;
-                    }
-                }
-                if (one.equals("]")) {
-                    break;
-                }
-                if (isOpen == false) {
-                    continue;
-                }
-                if (one.equals("\"")) {
-                    JSONString jsonString = new JSONString(target.clone().extract(index).toString());
-                    values.add(jsonString);
-                    index += jsonString.getParseResult().getSource().length() - 1;
-                    isOpen = false;
-                }
-                if (one.toString().matches(Regex.DECIMAL_NEGATIVE.getRegex())) {
-                    JSONNumber jsonNumber = new JSONNumber(target.clone().extract(index).toString());
-                    values.add(jsonNumber);
-                    index += jsonNumber.getParseResult().getSource().length() - 1;
-                    isOpen = false;
-                }
-                if (one.equals("t") || one.equals("f")) {
-                    JSONBoolean jsonBoolean = new JSONBoolean(target.clone().extract(index).toString());
-                    values.add(jsonBoolean);
-                    index += jsonBoolean.getParseResult().getSource().length() - 1;
-                    isOpen = false;
-                }
-                if (one.equals("[")) {
-                    JSONArray jsonArray = new JSONArray(target.clone().extract(index).toString());
-                    values.add(jsonArray);
-                    index += jsonArray.getParseResult().getSource().length() - 1;
-                    isOpen = false;
-                }
-                if (one.equals("{")) {
-                    JSONObject jsonObject = new JSONObject(target.clone().extract(index).toString());
-                    values.add(jsonObject);
-                    index += jsonObject.getParseResult().getSource().length() - 1;
-                    isOpen = false;
-                }
-                if (one.equals("n")) {
-                    values.add(null);
-                    index += 3;
-                    isOpen = false;
-                }
-            }
-            target.extract(0, index + 1);
-            StringObject remainder = new StringObject(json);
-            remainder.extract(index + 1);
-            return new ParseResult<List<JSONValue<?>>>(values, target.toString(), remainder.toString());
-        } catch (Exception exception) {
-            throw new ParseException(target.toString(), exception);
+        if (json == null || json.trim().length() == 0) {
+            return new ParseResult<List<JSONValue<?>>>(new ArrayList<>(), "", "");
         }
+        return JSONValue.parse(json, JSONArray.class);
     }
     
     @Override
     protected String makeJSON(List<JSONValue<?>> values) {
-        StringObject result = new StringObject("[");
-        for (JSONValue<?> jsonValue: values) {
-            if (result.length() > 1) {
-                result.append(", ");
-            }
-            if (jsonValue != null) {
-                result.append(jsonValue.toString());
-            } else {
-                result.append("null");
-            }
-        }
-        return result.append("]").toString();
+        return JSONWriter.createJSON(values, JSONWriter.Format.STANDARD);
     }
     
     /**
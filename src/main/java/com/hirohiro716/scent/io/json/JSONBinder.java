@@ -0,0 +1,594 @@
+package com.hirohiro716.scent.io.json;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.text.ParsePosition;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.hirohiro716.scent.Callback;
+import com.hirohiro716.scent.DynamicArray;
+import com.hirohiro716.scent.StringObject;
+import com.hirohiro716.scent.datetime.Datetime;
+import com.hirohiro716.scent.io.json.JSONReader.Event;
+import com.hirohiro716.scent.property.PropertyInterface;
+
+/**
+ * プロパティとJSONの連想配列を、値のインスタンスの木構造を経由せずに相互に変換するクラス。<br>
+ * プロパティの物理名と値の型の対応表はインスタンスの作成時に一度だけ作成され、JSONReaderとJSONWriterで直接読み書きする。
+ * 値の型はプロパティの初期値の型から決定し、数値や日時はその型に変換される。<br>
+ * ※インスタンスは変更不可能で、複数のスレッドから安全に使用できる。
+ * 
+ * @param <P> プロパティの型。
+ */
+public class JSONBinder<P extends PropertyInterface> {
+    
+    /**
+     * コンストラクタ。<br>
+     * 変換するすべてのプロパティを指定する。
+     * 
+     * @param properties
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public JSONBinder(P[] properties) {
+        this.properties = properties.clone();
+        this.bindings = new Binding[properties.length];
+        this.mapBindings = new HashMap<>(properties.length * 2);
+        for (int index = 0; index < properties.length; index++) {
+            Binding<P> binding = new Binding<>(properties[index]);
+            this.bindings[index] = binding;
+            this.mapBindings.put(binding.physicalName, binding);
+        }
+    }
+    
+    private P[] properties;
+    
+    /**
+     * 変換するすべてのプロパティを取得する。
+     * 
+     * @return
+     */
+    public P[] getProperties() {
+        return this.properties.clone();
+    }
+    
+    private Binding<P>[] bindings;
+    
+    private Map<String, Binding<P>> mapBindings;
+    
+    /**
+     * 指定された物理名のプロパティを取得する。
+     * 
+     * @param physicalName
+     * @return 結果。該当するプロパティがない場合はnull。
+     */
+    public P findProperty(String physicalName) {
+        Binding<P> binding = this.mapBindings.get(physicalName);
+        if (binding == null) {
+            return null;
+        }
+        return binding.property;
+    }
+    
+    /**
+     * JSONReaderから次の連想配列を読み込んで、値を指定されたオブジェクトにセットする。<br>
+     * プロパティに該当しないキーの値は読み飛ばされる。
+     * 
+     * @param <T> 値をセットするオブジェクトの型。
+     * @param reader
+     * @param target
+     * @param accessor オブジェクトの値にアクセスするインスタンス。
+     * @return 値をセットしたオブジェクト。JSONのnullの場合はnull。
+     * @throws ParseException 次の値が連想配列ではない場合。
+     */
+    public <T> T decode(JSONReader reader, T target, Accessor<T, P> accessor) throws ParseException {
+        Event event = reader.next();
+        if (event == Event.KEY) {
+            event = reader.next();
+        }
+        if (event == Event.NULL) {
+            return null;
+        }
+        if (event != Event.START_OBJECT) {
+            throw new ParseException("Object is required but " + event.name() + " was found.");
+        }
+        this.decodeEntries(reader, target, accessor);
+        return target;
+    }
+    
+    /**
+     * 連想配列の開始を読み込んだJSONReaderから連想配列の終了までを読み込んで、値を指定されたオブジェクトにセットする。
+     * 
+     * @param <T> 値をセットするオブジェクトの型。
+     * @param reader
+     * @param target
+     * @param accessor
+     * @throws ParseException
+     */
+    private <T> void decodeEntries(JSONReader reader, T target, Accessor<T, P> accessor) throws ParseException {
+        while (reader.next() == Event.KEY) {
+            Binding<P> binding = this.mapBindings.get(reader.getString());
+            if (binding == null) {
+                reader.skipValue();
+                continue;
+            }
+            accessor.set(target, binding.property, binding.readValue(reader));
+        }
+    }
+    
+    /**
+     * JSONReaderから次の連想配列を読み込んで、プロパティをキーとした連想配列を作成する。
+     * 
+     * @param reader
+     * @return 結果。JSONのnullの場合はnull。
+     * @throws ParseException 次の値が連想配列ではない場合。
+     */
+    public DynamicArray<P> decode(JSONReader reader) throws ParseException {
+        return this.decode(reader, new DynamicArray<P>(), new DynamicArrayAccessor<P>());
+    }
+    
+    /**
+     * JSONデータ定義文の連想配列から、プロパティをキーとした連想配列を作成する。
+     * 
+     * @param json
+     * @return 結果。JSONのnullの場合はnull。
+     * @throws ParseException
+     */
+    public DynamicArray<P> decode(String json) throws ParseException {
+        return this.decode(new JSONReader(json));
+    }
+    
+    /**
+     * JSONReaderから次の配列を読み込んで、要素の連想配列ごとにプロパティをキーとした連想配列を作成し、コールバックを実行する。<br>
+     * 配列全体を保持しないため、巨大な配列でも一定のメモリで処理できる。
+     * 
+     * @param reader
+     * @param callback 要素ごとに実行するコールバック。falseを返した場合は以降の要素を処理しない。
+     * @throws ParseException 次の値が配列ではない場合。
+     */
+    public void decodeArray(JSONReader reader, Callback<DynamicArray<P>, Boolean> callback) throws ParseException {
+        Event event = reader.next();
+        if (event == Event.KEY) {
+            event = reader.next();
+        }
+        if (event != Event.START_ARRAY) {
+            throw new ParseException("Array is required but " + event.name() + " was found.");
+        }
+        DynamicArrayAccessor<P> accessor = new DynamicArrayAccessor<>();
+        while (reader.next() != Event.END_ARRAY) {
+            DynamicArray<P> values = null;
+            switch (reader.getEvent()) {
+            case START_OBJECT:
+                values = new DynamicArray<>();
+                this.decodeEntries(reader, values, accessor);
+                break;
+            case NULL:
+                break;
+            default:
+                throw new ParseException("Object is required but " + reader.getEvent().name() + " was found.");
+            }
+            Boolean isContinued = callback.call(values);
+            if (isContinued != null && isContinued == false) {
+                reader.skipChildren();
+                return;
+            }
+        }
+    }
+    
+    /**
+     * JSONReaderから次の配列を読み込んで、要素の連想配列ごとにプロパティをキーとした連想配列を作成する。
+     * 
+     * @param reader
+     * @return
+     * @throws ParseException 次の値が配列ではない場合。
+     */
+    public List<DynamicArray<P>> decodeArray(JSONReader reader) throws ParseException {
+        List<DynamicArray<P>> result = new ArrayList<>();
+        this.decodeArray(reader, new Callback<DynamicArray<P>, Boolean>() {
+            
+            @Override
+            public Boolean call(DynamicArray<P> values) {
+                result.add(values);
+                return true;
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * 指定されたオブジェクトの値を、プロパティの順番で連想配列としてJSONWriterに書き込む。<br>
+     * オブジェクトが値を持たないプロパティは書き込まれない。日時はDatetime.DEFAULT_DATE_FORMATの文字列として書き込まれる。
+     * 
+     * @param <T> 値を取得するオブジェクトの型。
+     * @param source
+     * @param accessor オブジェクトの値にアクセスするインスタンス。
+     * @param writer
+     * @throws IOException
+     */
+    public <T> void encode(T source, Accessor<T, P> accessor, JSONWriter writer) throws IOException {
+        if (source == null) {
+            writer.writeNull();
+            return;
+        }
+        writer.writeStartObject();
+        for (Binding<P> binding: this.bindings) {
+            if (accessor.contains(source, binding.property) == false) {
+                continue;
+            }
+            writer.writeKey(binding.physicalName);
+            Object value = accessor.get(source, binding.property);
+            if (value instanceof Date) {
+                writer.writeString(Datetime.DEFAULT_DATE_FORMAT.format((Date) value));
+            } else {
+                writer.writeValue(value);
+            }
+        }
+        writer.writeEndObject();
+    }
+    
+    /**
+     * 指定されたプロパティをキーとした連想配列を、JSONWriterに書き込む。
+     * 
+     * @param values
+     * @param writer
+     * @throws IOException
+     */
+    public void encode(DynamicArray<P> values, JSONWriter writer) throws IOException {
+        this.encode(values, new DynamicArrayAccessor<P>(), writer);
+    }
+    
+    /**
+     * 指定されたプロパティをキーとした連想配列から、JSONデータ定義文を作成する。
+     * 
+     * @param values
+     * @param format
+     * @return
+     */
+    public String encode(DynamicArray<P> values, JSONWriter.Format format) {
+        StringBuilder builder = new StringBuilder();
+        JSONWriter writer = new JSONWriter(builder);
+        writer.setFormat(format);
+        try {
+            this.encode(values, writer);
+        } catch (IOException exception) {
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * 指定されたプロパティをキーとした連想配列を、配列としてJSONWriterに書き込む。
+     * 
+     * @param arrayOfValues
+     * @param writer
+     * @throws IOException
+     */
+    public void encodeArray(Collection<DynamicArray<P>> arrayOfValues, JSONWriter writer) throws IOException {
+        DynamicArrayAccessor<P> accessor = new DynamicArrayAccessor<>();
+        writer.writeStartArray();
+        for (DynamicArray<P> values: arrayOfValues) {
+            this.encode(values, accessor, writer);
+        }
+        writer.writeEndArray();
+    }
+    
+    private static Map<Object, JSONBinder<?>> INSTANCES = new ConcurrentHashMap<>();
+    
+    /**
+     * 指定されたマッパーに対応するインスタンスを取得する。インスタンスはマッパーのクラスごとにキャッシュされる。<br>
+     * マッパーのプロパティがキャッシュされているインスタンスと異なる場合は、キャッシュせずに新しく作成したインスタンスを返す。
+     * 
+     * @param <P> プロパティの型。
+     * @param mapper
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <P extends PropertyInterface> JSONBinder<P> getInstance(JSONMapper<P> mapper) {
+        P[] properties = mapper.getProperties();
+        JSONBinder<P> binder = (JSONBinder<P>) JSONBinder.INSTANCES.get(mapper.getClass());
+        if (binder != null && Arrays.equals(binder.properties, properties)) {
+            return binder;
+        }
+        binder = new JSONBinder<>(properties);
+        JSONBinder.INSTANCES.putIfAbsent(mapper.getClass(), binder);
+        return binder;
+    }
+    
+    /**
+     * 指定されたプロパティ列挙型のすべての列挙子に対応するインスタンスを取得する。インスタンスは列挙型のクラスごとにキャッシュされる。
+     * 
+     * @param <P> プロパティ列挙型。
+     * @param propertyEnumClass このインターフェースを継承している列挙型のクラス。
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <P extends PropertyInterface> JSONBinder<P> getInstance(Class<P> propertyEnumClass) {
+        JSONBinder<P> binder = (JSONBinder<P>) JSONBinder.INSTANCES.get(propertyEnumClass);
+        if (binder == null) {
+            binder = new JSONBinder<>(propertyEnumClass.getEnumConstants());
+            JSONBinder.INSTANCES.putIfAbsent(propertyEnumClass, binder);
+        }
+        return binder;
+    }
+    
+    /**
+     * 変換するオブジェクトの値にアクセスするインターフェース。
+     * 
+     * @param <T> 値を保持するオブジェクトの型。
+     * @param <P> プロパティの型。
+     */
+    public interface Accessor<T, P extends PropertyInterface> {
+        
+        /**
+         * オブジェクトが指定されたプロパティの値を持っている場合はtrueを返す。
+         * 
+         * @param target
+         * @param property
+         * @return
+         */
+        public abstract boolean contains(T target, P property);
+        
+        /**
+         * オブジェクトから指定されたプロパティの値を取得する。
+         * 
+         * @param target
+         * @param property
+         * @return
+         */
+        public abstract Object get(T target, P property);
+        
+        /**
+         * オブジェクトに指定されたプロパティの値をセットする。
+         * 
+         * @param target
+         * @param property
+         * @param value
+         */
+        public abstract void set(T target, P property, Object value);
+    }
+    
+    /**
+     * プロパティをキーとした連想配列の値にアクセスするクラス。
+     * 
+     * @param <P> プロパティの型。
+     */
+    private static class DynamicArrayAccessor<P extends PropertyInterface> implements Accessor<DynamicArray<P>, P> {
+        
+        @Override
+        public boolean contains(DynamicArray<P> target, P property) {
+            return target.containsKey(property);
+        }
+        
+        @Override
+        public Object get(DynamicArray<P> target, P property) {
+            return target.get(property);
+        }
+        
+        @Override
+        public void set(DynamicArray<P> target, P property, Object value) {
+            target.put(property, value);
+        }
+    }
+    
+    /**
+     * 変換する値の型の列挙型。
+     */
+    private enum ValueType {
+        /**
+         * 文字列。
+         */
+        STRING,
+        /**
+         * Integer。
+         */
+        INTEGER,
+        /**
+         * Long。
+         */
+        LONG,
+        /**
+         * Float。
+         */
+        FLOAT,
+        /**
+         * Double。
+         */
+        DOUBLE,
+        /**
+         * BigDecimal。
+         */
+        BIG_DECIMAL,
+        /**
+         * 真偽値。
+         */
+        BOOLEAN,
+        /**
+         * 日時。
+         */
+        DATE,
+        /**
+         * 変換しない。
+         */
+        OTHER,
+        ;
+        
+        /**
+         * 指定された初期値に対応する値の型を取得する。
+         * 
+         * @param defaultValue
+         * @return
+         */
+        private static ValueType find(Object defaultValue) {
+            if (defaultValue instanceof CharSequence) {
+                return STRING;
+            }
+            if (defaultValue instanceof Integer || defaultValue instanceof Short || defaultValue instanceof Byte) {
+                return INTEGER;
+            }
+            if (defaultValue instanceof Long) {
+                return LONG;
+            }
+            if (defaultValue instanceof Float) {
+                return FLOAT;
+            }
+            if (defaultValue instanceof Double) {
+                return DOUBLE;
+            }
+            if (defaultValue instanceof BigDecimal) {
+                return BIG_DECIMAL;
+            }
+            if (defaultValue instanceof Boolean) {
+                return BOOLEAN;
+            }
+            if (defaultValue instanceof Date) {
+                return DATE;
+            }
+            return OTHER;
+        }
+    }
+    
+    /**
+     * プロパティと物理名、値の型の対応のクラス。
+     * 
+     * @param <P> プロパティの型。
+     */
+    private static class Binding<P extends PropertyInterface> {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param property
+         */
+        private Binding(P property) {
+            this.property = property;
+            this.physicalName = property.getPhysicalName();
+            this.valueType = ValueType.find(property.getDefaultValue());
+        }
+        
+        private P property;
+        
+        private String physicalName;
+        
+        private ValueType valueType;
+        
+        /**
+         * JSONReaderから次の値を読み込んで、プロパティの値の型に変換する。<br>
+         * 連想配列と配列は値のインスタンスとして読み込まれる。
+         * 
+         * @param reader
+         * @return
+         * @throws ParseException
+         */
+        private Object readValue(JSONReader reader) throws ParseException {
+            Event event = reader.next();
+            switch (event) {
+            case STRING:
+                return this.convertString(reader.getString());
+            case NUMBER:
+                return this.convertNumber(reader);
+            case BOOLEAN:
+                if (this.valueType == ValueType.STRING) {
+                    return String.valueOf(reader.getBoolean());
+                }
+                return reader.getBoolean();
+            case NULL:
+                return null;
+            default:
+                return reader.createValue(event);
+            }
+        }
+        
+        /**
+         * 読み込んだ数値をプロパティの値の型に変換する。<br>
+         * IntegerとLongは、精度を失わないように数値の文字列から変換する。1.0や1e3のように整数を表す小数と指数の表記も受け付ける。
+         * 
+         * @param reader
+         * @return
+         * @throws ParseException IntegerとLongで小数部がある場合や、型の範囲を超える場合。
+         */
+        private Object convertNumber(JSONReader reader) throws ParseException {
+            switch (this.valueType) {
+            case STRING:
+                return reader.getString();
+            case INTEGER:
+                try {
+                    return Integer.parseInt(reader.getString());
+                } catch (NumberFormatException exception) {
+                    try {
+                        return new BigDecimal(reader.getString()).intValueExact();
+                    } catch (NumberFormatException | ArithmeticException exactException) {
+                        throw new ParseException(reader.getString(), exactException);
+                    }
+                }
+            case LONG:
+                try {
+                    return Long.parseLong(reader.getString());
+                } catch (NumberFormatException exception) {
+                    try {
+                        return new BigDecimal(reader.getString()).longValueExact();
+                    } catch (NumberFormatException | ArithmeticException exactException) {
+                        throw new ParseException(reader.getString(), exactException);
+                    }
+                }
+            case FLOAT:
+                return (float) reader.getNumber();
+            case BIG_DECIMAL:
+                try {
+                    return new BigDecimal(reader.getString());
+                } catch (NumberFormatException exception) {
+                    throw new ParseException(reader.getString(), exception);
+                }
+            default:
+                return reader.getNumber();
+            }
+        }
+        
+        /**
+         * 読み込んだ文字列をプロパティの値の型に変換する。変換できない場合は文字列のまま返す。
+         * 
+         * @param value
+         * @return
+         */
+        private Object convertString(String value) {
+            Object converted = null;
+            switch (this.valueType) {
+            case INTEGER:
+                converted = StringObject.newInstance(value).toInteger();
+                break;
+            case LONG:
+                converted = StringObject.newInstance(value).toLong();
+                break;
+            case FLOAT:
+                converted = StringObject.newInstance(value).toFloat();
+                break;
+            case DOUBLE:
+                converted = StringObject.newInstance(value).toDouble();
+                break;
+            case BIG_DECIMAL:
+                try {
+                    converted = new BigDecimal(value);
+                } catch (NumberFormatException exception) {
+                }
+                break;
+            case BOOLEAN:
+                converted = StringObject.newInstance(value).toBoolean();
+                break;
+            case DATE:
+                converted = Datetime.DEFAULT_DATE_FORMAT.parse(value, new ParsePosition(0));
+                break;
+            case STRING:
+            case OTHER:
+                break;
+            }
+            if (converted == null) {
+                return value;
+            }
+            return converted;
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package com.hirohiro716.scent.io.json;
 
-import com.hirohiro716.scent.StringObject;
-
 /**
  * 真偽値のJSON定義文を解析するクラス。
  * (RFC 8259)(ECMA-404 2nd Edition)
@@ -28,18 +26,9 @@ public class JSONBoolean extends JSONValue<Boolean> {
 
     @Override
     protected ParseResult<Boolean> parse(String json) throws ParseException {
-        StringObject target = new StringObject(json);
-        try {
-            target = new StringObject(target.split("[\\,\\}\\] ]")[0]);
-            boolean value = target.toBoolean();
-            StringObject remainder = new StringObject(json);
-            remainder.replace(target.toString(), "");
-            return new ParseResult<Boolean>(value, target.toString(), remainder.toString());
-        } catch (Exception exception) {
-            throw new ParseException(target.toString(), exception);
-        }
+        return JSONValue.parse(json, JSONBoolean.class);
     }
-
+    
     @Override
     protected String makeJSON(Boolean value) {
         if (value == null) {
@@ -30,6 +30,15 @@ public interface JSONMapper<P extends PropertyInterface> {
         return jsonObject;
     }
 
+    /**
+     * このマッパーのプロパティとJSONを相互に変換するインスタンスを取得する。インスタンスはマッパーのクラスごとにキャッシュされる。
+     * 
+     * @return
+     */
+    public default JSONBinder<P> getJSONBinder() {
+        return JSONBinder.getInstance(this);
+    }
+    
     /**
      * このインスタンスにマップされているすべての値が有効か検証する。
      * 
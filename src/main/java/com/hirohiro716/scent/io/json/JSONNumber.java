@@ -1,7 +1,5 @@
 package com.hirohiro716.scent.io.json;
 
-import com.hirohiro716.scent.StringObject;
-
 /**
  * 数値のJSON定義文を解析するクラス。
  * (RFC 8259)(ECMA-404 2nd Edition)
@@ -28,20 +26,11 @@ public class JSONNumber extends JSONValue<Double> {
     
     @Override
     protected ParseResult<Double> parse(String json) throws ParseException {
-        StringObject target = new StringObject(json);
-        try {
-            target = new StringObject(target.split("[\\,\\}\\] ]")[0]);
-            double value = target.toDouble();
-            StringObject remainder = new StringObject(json);
-            remainder.replace(target.toString(), "");
-            return new ParseResult<Double>(value, target.toString(), remainder.toString());
-        } catch (Exception exception) {
-            throw new ParseException(target.toString(), exception);
-        }
+        return JSONValue.parse(json, JSONNumber.class);
     }
     
     @Override
     protected String makeJSON(Double value) {
-        return StringObject.newInstance(value).removeMeaninglessDecimalPoint().toString();
+        return JSONWriter.createJSON(value, JSONWriter.Format.STANDARD);
     }
 }
@@ -3,7 +3,6 @@ package com.hirohiro716.scent.io.json;
 import java.util.LinkedHashMap;
 import java.util.List;
 
-import com.hirohiro716.scent.Regex;
 import com.hirohiro716.scent.StringObject;
 import com.hirohiro716.scent.property.PropertyInterface;
 
@@ -34,97 +33,15 @@ public class JSONObject extends JSONValue<LinkedHashMap<String, JSONValue<?>>> {
 
     @Override
     protected ParseResult<LinkedHashMap<String, JSONValue<?>>> parse(String json) throws ParseException {
-        StringObject target = new StringObject(json);
-        try {
-            LinkedHashMap<String, JSONValue<?>> values = new LinkedHashMap<>();
-            boolean isOpen = false;
-            String key = null;
-            int index;
-            for (index = 0; index < target.length(); index++) {
-                StringObject one = target.clone().extract(index, index + 1);
-                if (one.equals("{") && key == null && values.size() == 0 || one.equals(",") && values.size() > 0) {
-                    isOpen = true;
-                    key = null;
-                    continue;
-                }
-                if (one.equals(":")) {
-                    isOpen = true;
-                    continue;
-                }
-                if (one.equals("}")) {
-                    break;
-                }
-                if (isOpen == false) {
-                    continue;
-                }
-                if (one.equals("\"")) {
-                    JSONString jsonString = new JSONString(target.clone().extract(index).toString());
-                    if (key == null) {
-                        key = jsonString.getContent();
-                    } else {
-                        values.put(key, jsonString);
-                    }
-                    index += jsonString.getParseResult().getSource().length() - 1;
-                    isOpen = false;
-                }
-                if (key != null && one.toString().matches(Regex.DECIMAL_NEGATIVE.getRegex())) {
-                    JSONNumber jsonNumber = new JSONNumber(target.clone().extract(index).toString());
-                    values.put(key, jsonNumber);
-                    index += jsonNumber.getParseResult().getSource().length() - 1;
-                    isOpen = false;
-                }
-                if (key != null && one.equals("t") || one.equals("f")) {
-                    JSONBoolean jsonBoolean = new JSONBoolean(target.clone().extract(index).toString());
-                    values.put(key, jsonBoolean);
-                    index += jsonBoolean.getParseResult().getSource().length() - 1;
-                    isOpen = false;
-                }
-                if (key != null && one.equals("[")) {
-                    JSONArray jsonArray = new JSONArray(target.clone().extract(index).toString());
-                    values.put(key, jsonArray);
-                    index += jsonArray.getParseResult().getSource().length() - 1;
-                    isOpen = false;
-                }
-                if (key != null && one.equals("{")) {
-                    JSONObject jsonObject = new JSONObject(target.clone().extract(index).toString());
-                    values.put(key, jsonObject);
-                    index += jsonObject.getParseResult().getSource().length() - 1;
-                    isOpen = false;
-                }
-                if (key != null && one.equals("n")) {
-                    values.put(key, null);
-                    index += 3;
-                    isOpen = false;
-                }
-            }
-            target.extract(0, index + 1);
-            StringObject remainder = new StringObject(json);
-            remainder.extract(index + 1);
-            return new ParseResult<LinkedHashMap<String, JSONValue<?>>>(values, target.toString(), remainder.toString());
-        } catch (Exception exception) {
-            throw new ParseException(target.toString(), exception);
+        if (json == null || json.trim().length() == 0) {
+            return new ParseResult<LinkedHashMap<String, JSONValue<?>>>(new LinkedHashMap<>(), "", "");
         }
+        return JSONValue.parse(json, JSONObject.class);
     }
-
+    
     @Override
     protected String makeJSON(LinkedHashMap<String, JSONValue<?>> hashMap) {
-        StringObject result = new StringObject("{");
-        for (String key: hashMap.keySet()) {
-            JSONValue<?> jsonValue = hashMap.get(key);
-            if (result.length() > 1) {
-                result.append(", ");
-            }
-            JSONString keyJsonString = new JSONString();
-            keyJsonString.setContent(key);
-            result.append(keyJsonString.toString());
-            result.append(": ");
-            if (jsonValue != null) {
-                result.append(jsonValue.toString());
-            } else {
-                result.append("null");
-            }
-        }
-        return result.append("}").toString();
+        return JSONWriter.createJSON(hashMap, JSONWriter.Format.STANDARD);
     }
     
     /**
@@ -0,0 +1,597 @@
+package com.hirohiro716.scent.io.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * JSONデータ定義文を先頭から一度だけ読み進めて解析するクラス。<br>
+ * nextメソッドで構成要素のイベントを一つずつ取得するプルパーサーとして使用するか、
+ * readValueメソッドで値のインスタンスを一度の走査で作成して使用する。
+ * 巨大なJSONデータ定義文を読み込む場合は、java.io.Readerを指定してイベントを順に処理することで、全体をメモリに保持せずに解析できる。<br>
+ * (RFC 8259)(ECMA-404 2nd Edition)
+ */
+public class JSONReader implements Closeable {
+    
+    /**
+     * コンストラクタ。<br>
+     * 解析するJSONデータ定義文を指定する。
+     * 
+     * @param json
+     */
+    public JSONReader(CharSequence json) {
+        this.sequence = json;
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * JSONデータ定義文を読み込むjava.io.Readerを指定する。
+     * 
+     * @param reader
+     */
+    public JSONReader(Reader reader) {
+        this.reader = reader;
+        this.buffer = new char[8192];
+    }
+    
+    private CharSequence sequence = null;
+    
+    private Reader reader = null;
+    
+    private char[] buffer = null;
+    
+    private int position = 0;
+    
+    private int limit = 0;
+    
+    private long numberOfReadCharacters = 0;
+    
+    /**
+     * これまでに読み込んだ文字数を取得する。
+     * 
+     * @return
+     */
+    public long getNumberOfReadCharacters() {
+        if (this.sequence != null) {
+            return this.position;
+        }
+        return this.numberOfReadCharacters + this.position;
+    }
+    
+    /**
+     * 次に読み込む文字を、位置を進めずに取得する。
+     * 
+     * @return 結果。終端に達している場合は-1。
+     * @throws ParseException
+     */
+    private int peekCharacter() throws ParseException {
+        if (this.sequence != null) {
+            if (this.position < this.sequence.length()) {
+                return this.sequence.charAt(this.position);
+            }
+            return -1;
+        }
+        if (this.position >= this.limit) {
+            try {
+                this.numberOfReadCharacters += this.limit;
+                this.position = 0;
+                this.limit = 0;
+                int length = this.reader.read(this.buffer, 0, this.buffer.length);
+                while (length == 0) {
+                    length = this.reader.read(this.buffer, 0, this.buffer.length);
+                }
+                if (length < 0) {
+                    return -1;
+                }
+                this.limit = length;
+            } catch (IOException exception) {
+                throw new ParseException(exception.getMessage(), exception);
+            }
+        }
+        return this.buffer[this.position];
+    }
+    
+    /**
+     * 次の文字を読み込んで位置を進める。
+     * 
+     * @return
+     * @throws ParseException 終端に達している場合。
+     */
+    private char readCharacter() throws ParseException {
+        int character = this.peekCharacter();
+        if (character < 0) {
+            throw this.createParseException("Unexpected end of JSON.");
+        }
+        this.position++;
+        return (char) character;
+    }
+    
+    /**
+     * 空白文字を読み飛ばす。
+     * 
+     * @return 空白文字の次の文字。終端に達している場合は-1。
+     * @throws ParseException
+     */
+    private int skipWhitespace() throws ParseException {
+        int character = this.peekCharacter();
+        while (character == ' ' || character == '\t' || character == '\n' || character == '\r') {
+            this.position++;
+            character = this.peekCharacter();
+        }
+        return character;
+    }
+    
+    /**
+     * 次の文字が指定された文字であることを確認して読み込む。
+     * 
+     * @param expected
+     * @throws ParseException 指定された文字ではない場合。
+     */
+    private void readExpectedCharacter(char expected) throws ParseException {
+        int character = this.peekCharacter();
+        if (character != expected) {
+            throw this.createUnexpectedCharacterException(character);
+        }
+        this.position++;
+    }
+    
+    /**
+     * 現在の位置を含む例外を作成する。
+     * 
+     * @param message
+     * @return
+     */
+    private ParseException createParseException(String message) {
+        StringBuilder builder = new StringBuilder(message);
+        builder.append(" Position: ");
+        builder.append(this.getNumberOfReadCharacters());
+        return new ParseException(builder.toString());
+    }
+    
+    /**
+     * 予期しない文字が見つかった場合の例外を作成する。
+     * 
+     * @param character
+     * @return
+     */
+    private ParseException createUnexpectedCharacterException(int character) {
+        if (character < 0) {
+            return this.createParseException("Unexpected end of JSON.");
+        }
+        StringBuilder builder = new StringBuilder("Unexpected character '");
+        builder.append((char) character);
+        builder.append("'.");
+        return this.createParseException(builder.toString());
+    }
+    
+    private boolean[] containers = new boolean[32];
+    
+    private int depth = 0;
+    
+    private int[] numbersOfEntries = new int[32];
+    
+    private boolean isDocumentStarted = false;
+    
+    private boolean isValueRequested = false;
+    
+    private Event event = null;
+    
+    /**
+     * 最後に読み込んだイベントを取得する。
+     * 
+     * @return 結果。まだ読み込んでいない場合はnull。
+     */
+    public Event getEvent() {
+        return this.event;
+    }
+    
+    /**
+     * 現在の入れ子の深さを取得する。
+     * 
+     * @return
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+    
+    /**
+     * 次の構成要素まで読み進めて、そのイベントを取得する。<br>
+     * ルートの値を読み終わった後はEND_DOCUMENTを返し、それ以降の文字は読み込まない。
+     * 
+     * @return
+     * @throws ParseException JSONデータ定義文が不正な場合。
+     */
+    public Event next() throws ParseException {
+        int character = this.skipWhitespace();
+        if (this.depth == 0) {
+            if (this.isDocumentStarted) {
+                this.event = Event.END_DOCUMENT;
+                return this.event;
+            }
+            this.isDocumentStarted = true;
+            this.event = this.readValueEvent(character);
+            return this.event;
+        }
+        int index = this.depth - 1;
+        if (this.containers[index]) {
+            if (this.isValueRequested) {
+                this.event = this.readValueEvent(character);
+                return this.event;
+            }
+            if (character == '}') {
+                this.position++;
+                this.depth--;
+                this.event = Event.END_OBJECT;
+                return this.event;
+            }
+            if (this.numbersOfEntries[index] > 0) {
+                this.readExpectedCharacter(',');
+                character = this.skipWhitespace();
+            }
+            if (character != '"') {
+                throw this.createUnexpectedCharacterException(character);
+            }
+            this.readString();
+            this.skipWhitespace();
+            this.readExpectedCharacter(':');
+            this.numbersOfEntries[index]++;
+            this.isValueRequested = true;
+            this.event = Event.KEY;
+            return this.event;
+        }
+        if (character == ']') {
+            this.position++;
+            this.depth--;
+            this.event = Event.END_ARRAY;
+            return this.event;
+        }
+        if (this.numbersOfEntries[index] > 0) {
+            this.readExpectedCharacter(',');
+            character = this.skipWhitespace();
+        }
+        this.numbersOfEntries[index]++;
+        this.event = this.readValueEvent(character);
+        return this.event;
+    }
+    
+    /**
+     * 値の開始位置から値を読み込んで、そのイベントを取得する。
+     * 
+     * @param character 値の最初の文字。
+     * @return
+     * @throws ParseException
+     */
+    private Event readValueEvent(int character) throws ParseException {
+        this.isValueRequested = false;
+        switch (character) {
+        case '{':
+            this.position++;
+            this.pushContainer(true);
+            return Event.START_OBJECT;
+        case '[':
+            this.position++;
+            this.pushContainer(false);
+            return Event.START_ARRAY;
+        case '"':
+            this.readString();
+            return Event.STRING;
+        case 't':
+            this.readLiteral("true");
+            this.booleanValue = true;
+            return Event.BOOLEAN;
+        case 'f':
+            this.readLiteral("false");
+            this.booleanValue = false;
+            return Event.BOOLEAN;
+        case 'n':
+            this.readLiteral("null");
+            return Event.NULL;
+        default:
+            if (character == '-' || character >= '0' && character <= '9') {
+                this.readNumber();
+                return Event.NUMBER;
+            }
+            throw this.createUnexpectedCharacterException(character);
+        }
+    }
+    
+    /**
+     * 入れ子の連想配列または配列を開始する。
+     * 
+     * @param isObject
+     */
+    private void pushContainer(boolean isObject) {
+        if (this.depth == this.containers.length) {
+            boolean[] containers = new boolean[this.depth * 2];
+            System.arraycopy(this.containers, 0, containers, 0, this.depth);
+            this.containers = containers;
+            int[] numbersOfEntries = new int[this.depth * 2];
+            System.arraycopy(this.numbersOfEntries, 0, numbersOfEntries, 0, this.depth);
+            this.numbersOfEntries = numbersOfEntries;
+        }
+        this.containers[this.depth] = isObject;
+        this.numbersOfEntries[this.depth] = 0;
+        this.depth++;
+    }
+    
+    private StringBuilder text = new StringBuilder();
+    
+    private boolean booleanValue;
+    
+    /**
+     * 最後に読み込んだキー、文字列、数値の文字列を取得する。
+     * 
+     * @return
+     */
+    public String getString() {
+        return this.text.toString();
+    }
+    
+    /**
+     * 最後に読み込んだ数値を取得する。
+     * 
+     * @return
+     * @throws ParseException 最後に読み込んだイベントが数値ではない場合。
+     */
+    public double getNumber() throws ParseException {
+        if (this.event != Event.NUMBER) {
+            throw this.createParseException("Current event is not a number.");
+        }
+        try {
+            return Double.parseDouble(this.text.toString());
+        } catch (NumberFormatException exception) {
+            throw new ParseException(this.text.toString(), exception);
+        }
+    }
+    
+    /**
+     * 最後に読み込んだ真偽値を取得する。
+     * 
+     * @return
+     * @throws ParseException 最後に読み込んだイベントが真偽値ではない場合。
+     */
+    public boolean getBoolean() throws ParseException {
+        if (this.event != Event.BOOLEAN) {
+            throw this.createParseException("Current event is not a boolean.");
+        }
+        return this.booleanValue;
+    }
+    
+    /**
+     * 二重引用符で囲まれた文字列を読み込んで、エスケープを解除した内容を保持する。
+     * 
+     * @throws ParseException
+     */
+    private void readString() throws ParseException {
+        this.text.setLength(0);
+        this.readExpectedCharacter('"');
+        while (true) {
+            char character = this.readCharacter();
+            if (character == '"') {
+                return;
+            }
+            if (character != '\\') {
+                this.text.append(character);
+                continue;
+            }
+            char escaped = this.readCharacter();
+            switch (escaped) {
+            case '"':
+            case '\\':
+            case '/':
+                this.text.append(escaped);
+                break;
+            case 'b':
+                this.text.append('\b');
+                break;
+            case 'f':
+                this.text.append('\f');
+                break;
+            case 'n':
+                this.text.append('\n');
+                break;
+            case 'r':
+                this.text.append('\r');
+                break;
+            case 't':
+                this.text.append('\t');
+                break;
+            case 'u':
+                int code = 0;
+                for (int index = 0; index < 4; index++) {
+                    int digit = Character.digit(this.readCharacter(), 16);
+                    if (digit < 0) {
+                        throw this.createParseException("Invalid unicode escape sequence.");
+                    }
+                    code = code * 16 + digit;
+                }
+                this.text.append((char) code);
+                break;
+            default:
+                throw this.createUnexpectedCharacterException(escaped);
+            }
+        }
+    }
+    
+    /**
+     * 数値を構成する文字を読み込んで保持する。
+     * 
+     * @throws ParseException
+     */
+    private void readNumber() throws ParseException {
+        this.text.setLength(0);
+        int character = this.peekCharacter();
+        while (character >= '0' && character <= '9' || character == '-' || character == '+' || character == '.' || character == 'e' || character == 'E') {
+            this.text.append((char) character);
+            this.position++;
+            character = this.peekCharacter();
+        }
+    }
+    
+    /**
+     * 指定されたリテラルを読み込む。
+     * 
+     * @param literal
+     * @throws ParseException 指定されたリテラルと一致しない場合。
+     */
+    private void readLiteral(String literal) throws ParseException {
+        for (int index = 0; index < literal.length(); index++) {
+            int character = this.peekCharacter();
+            if (character != literal.charAt(index)) {
+                throw this.createUnexpectedCharacterException(character);
+            }
+            this.position++;
+        }
+    }
+    
+    /**
+     * 現在の連想配列または配列の終わりまで読み飛ばす。<br>
+     * 最後に読み込んだイベントがSTART_OBJECTまたはSTART_ARRAYの場合は、その連想配列または配列の終わりまで読み飛ばす。
+     * 
+     * @throws ParseException
+     */
+    public void skipChildren() throws ParseException {
+        if (this.event != Event.START_OBJECT && this.event != Event.START_ARRAY) {
+            if (this.event == Event.KEY) {
+                this.skipValue();
+            }
+            return;
+        }
+        int depth = this.depth;
+        while (this.depth >= depth) {
+            if (this.next() == Event.END_DOCUMENT) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * 次の値を読み込まずに読み飛ばす。
+     * 
+     * @throws ParseException
+     */
+    public void skipValue() throws ParseException {
+        Event event = this.next();
+        if (event == Event.START_OBJECT || event == Event.START_ARRAY) {
+            this.skipChildren();
+        }
+    }
+    
+    /**
+     * 次の値を読み込んで、値のインスタンスを作成する。<br>
+     * 入れ子の値も含めて一度の走査で作成するため、JSONデータ定義文の部分的な複製は発生しない。
+     * 
+     * @return 結果。JSONのnullの場合はnull。
+     * @throws ParseException JSONデータ定義文が不正な場合。
+     */
+    public JSONValue<?> readValue() throws ParseException {
+        Event event = this.next();
+        if (event == Event.KEY) {
+            event = this.next();
+        }
+        return this.createValue(event);
+    }
+    
+    /**
+     * 読み込んだイベントから値のインスタンスを作成する。
+     * 
+     * @param event
+     * @return
+     * @throws ParseException
+     */
+    JSONValue<?> createValue(Event event) throws ParseException {
+        switch (event) {
+        case START_OBJECT:
+            LinkedHashMap<String, JSONValue<?>> values = new LinkedHashMap<>();
+            while (this.next() != Event.END_OBJECT) {
+                String key = this.getString();
+                values.put(key, this.createValue(this.next()));
+            }
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.setParseResult(new ParseResult<>(values, null, null));
+            return jsonObject;
+        case START_ARRAY:
+            List<JSONValue<?>> list = new ArrayList<>();
+            Event elementEvent = this.next();
+            while (elementEvent != Event.END_ARRAY) {
+                list.add(this.createValue(elementEvent));
+                elementEvent = this.next();
+            }
+            JSONArray jsonArray = new JSONArray();
+            jsonArray.setParseResult(new ParseResult<>(list, null, null));
+            return jsonArray;
+        case STRING:
+            JSONString jsonString = new JSONString();
+            jsonString.setParseResult(new ParseResult<>(this.getString(), null, null));
+            return jsonString;
+        case NUMBER:
+            JSONNumber jsonNumber = new JSONNumber();
+            jsonNumber.setParseResult(new ParseResult<>(this.getNumber(), null, null));
+            return jsonNumber;
+        case BOOLEAN:
+            JSONBoolean jsonBoolean = new JSONBoolean();
+            jsonBoolean.setParseResult(new ParseResult<>(this.booleanValue, null, null));
+            return jsonBoolean;
+        case NULL:
+            return null;
+        default:
+            throw this.createParseException("Unexpected " + event.name() + ".");
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (this.reader != null) {
+            this.reader.close();
+        }
+    }
+    
+    /**
+     * JSONデータ定義文を構成する要素のイベント列挙型。
+     */
+    public enum Event {
+        /**
+         * 連想配列の開始。
+         */
+        START_OBJECT,
+        /**
+         * 連想配列の終了。
+         */
+        END_OBJECT,
+        /**
+         * 配列の開始。
+         */
+        START_ARRAY,
+        /**
+         * 配列の終了。
+         */
+        END_ARRAY,
+        /**
+         * 連想配列のキー。
+         */
+        KEY,
+        /**
+         * 文字列値。
+         */
+        STRING,
+        /**
+         * 数値。
+         */
+        NUMBER,
+        /**
+         * 真偽値。
+         */
+        BOOLEAN,
+        /**
+         * null値。
+         */
+        NULL,
+        /**
+         * ルートの値の終了。
+         */
+        END_DOCUMENT,
+    }
+}
@@ -1,5 +1,8 @@
 package com.hirohiro716.scent.io.json;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 /**
  * 値のJSON定義文を解析する抽象クラス。
  * (RFC 8259)(ECMA-404 2nd Edition)
@@ -37,6 +40,15 @@ public abstract class JSONValue<T> {
         return this.parseResult;
     }
     
+    /**
+     * JSONの解析結果をセットする。
+     * 
+     * @param parseResult
+     */
+    void setParseResult(ParseResult<T> parseResult) {
+        this.parseResult = parseResult;
+    }
+    
     /**
      * JSONを解析した結果、変換できた内容を取得する。
      * 
@@ -50,26 +62,86 @@ public abstract class JSONValue<T> {
     }
     
     /**
-     * 値のインスタンスをセットする。
+     * 値のインスタンスをセットする。<br>
+     * JSONデータ定義文はこの時点では作成されず、toStringメソッドなどで必要になった時点で作成される。
      * 
      * @param value
      */
     public void setContent(T value) {
-        this.parseResult = new ParseResult<T>(value, this.makeJSON(value), null);
+        this.parseResult = new ParseResult<T>(value, null, null);
     }
-
+    
     /**
-     * JSONのデータ定義文を取得する。
+     * JSONのデータ定義文を取得する。値は入れ子の値も含めて一度だけ走査される。
      * 
      * @return
      */
     @Override
     public String toString() {
+        return this.toString(JSONWriter.Format.STANDARD);
+    }
+    
+    /**
+     * 指定された書式でJSONのデータ定義文を取得する。
+     * 
+     * @param format
+     * @return
+     */
+    public String toString(JSONWriter.Format format) {
         if (this.parseResult == null) {
             return null;
         }
-        T value = this.parseResult.getParsed();
-        return this.makeJSON(value);
+        return JSONWriter.createJSON(this, format);
+    }
+    
+    /**
+     * JSONのデータ定義文を指定された書き込み先に書き込む。
+     * 
+     * @param appendable
+     * @param format
+     * @throws IOException
+     */
+    public void write(Appendable appendable, JSONWriter.Format format) throws IOException {
+        JSONWriter writer = new JSONWriter(appendable);
+        writer.setFormat(format);
+        writer.write(this);
+    }
+    
+    /**
+     * JSONのデータ定義文をUTF-8で指定されたjava.io.OutputStreamに書き込む。書き込み後にjava.io.OutputStreamはフラッシュされるが、閉じられない。
+     * 
+     * @param outputStream
+     * @param format
+     * @throws IOException
+     */
+    public void write(OutputStream outputStream, JSONWriter.Format format) throws IOException {
+        JSONWriter writer = new JSONWriter(outputStream);
+        writer.setFormat(format);
+        writer.write(this);
+        writer.flush();
+    }
+    
+    /**
+     * JSONデータ定義文の先頭の値をJSONReaderで一度だけ走査して解析し、解析結果を作成する。
+     * 
+     * @param <T> 解析後に変換する型。
+     * @param json
+     * @param valueClass 先頭の値として期待する値のクラス。
+     * @return
+     * @throws ParseException 先頭の値が期待する値のクラスではない場合。
+     */
+    @SuppressWarnings("unchecked")
+    static <T> ParseResult<T> parse(String json, Class<?> valueClass) throws ParseException {
+        if (json == null) {
+            throw new ParseException(json);
+        }
+        JSONReader reader = new JSONReader(json);
+        JSONValue<?> value = reader.readValue();
+        if (valueClass.isInstance(value) == false) {
+            throw new ParseException(json);
+        }
+        int length = (int) reader.getNumberOfReadCharacters();
+        return new ParseResult<T>((T) value.getContent(), json.substring(0, length), json.substring(length));
     }
     
     /**
@@ -88,4 +160,13 @@ public abstract class JSONValue<T> {
      * @return
      */
     protected abstract String makeJSON(T value);
+    
+    /**
+     * このインスタンスの値からJSONのデータ定義文を作成する。
+     * 
+     * @return
+     */
+    String makeJSON() {
+        return this.makeJSON(this.getContent());
+    }
 }
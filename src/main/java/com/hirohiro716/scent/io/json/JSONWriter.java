@@ -0,0 +1,557 @@
+package com.hirohiro716.scent.io.json;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.hirohiro716.scent.StringObject;
+
+/**
+ * JSONデータ定義文を先頭から順に書き込むクラス。<br>
+ * writeメソッドで値のインスタンスを一度だけ走査して書き込むか、writeStartObjectメソッドなどで構成要素を一つずつ書き込む。
+ * 構成要素を一つずつ書き込む場合は値のインスタンスを作成しないため、巨大なJSONデータ定義文をjava.io.OutputStreamなどに直接出力できる。<br>
+ * (RFC 8259)(ECMA-404 2nd Edition)
+ */
+public class JSONWriter implements Flushable, Closeable {
+    
+    /**
+     * コンストラクタ。<br>
+     * JSONデータ定義文の書き込み先を指定する。
+     * 
+     * @param appendable
+     */
+    public JSONWriter(Appendable appendable) {
+        this.appendable = appendable;
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * JSONデータ定義文を書き込むjava.io.OutputStreamと文字セットを指定する。書き込みはバッファリングされる。
+     * 
+     * @param outputStream
+     * @param charset
+     */
+    public JSONWriter(OutputStream outputStream, Charset charset) {
+        this(new BufferedWriter(new OutputStreamWriter(outputStream, charset), 65536));
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * JSONデータ定義文をUTF-8で書き込むjava.io.OutputStreamを指定する。書き込みはバッファリングされる。
+     * 
+     * @param outputStream
+     */
+    public JSONWriter(OutputStream outputStream) {
+        this(outputStream, StandardCharsets.UTF_8);
+    }
+    
+    private Appendable appendable;
+    
+    private Format format = Format.STANDARD;
+    
+    /**
+     * 書き込むJSONデータ定義文の書式を取得する。
+     * 
+     * @return
+     */
+    public Format getFormat() {
+        return this.format;
+    }
+    
+    /**
+     * 書き込むJSONデータ定義文の書式をセットする。初期値はFormat.STANDARD。
+     * 
+     * @param format
+     */
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+    
+    private String indent = "    ";
+    
+    /**
+     * Format.PRETTYで書き込む場合の、一段階分のインデント文字列を取得する。
+     * 
+     * @return
+     */
+    public String getIndent() {
+        return this.indent;
+    }
+    
+    /**
+     * Format.PRETTYで書き込む場合の、一段階分のインデント文字列をセットする。初期値は半角スペース4つ。
+     * 
+     * @param indent
+     */
+    public void setIndent(String indent) {
+        this.indent = indent;
+    }
+    
+    private boolean[] containers = new boolean[32];
+    
+    private int depth = 0;
+    
+    private int[] numbersOfEntries = new int[32];
+    
+    private boolean isRootWritten = false;
+    
+    private boolean isValueRequested = false;
+    
+    /**
+     * 値を書き込む前に、必要な区切り文字を書き込む。
+     * 
+     * @throws IOException
+     * @throws IllegalStateException 現在の位置に値を書き込めない場合。
+     */
+    private void beforeValue() throws IOException, IllegalStateException {
+        if (this.depth == 0) {
+            if (this.isRootWritten) {
+                throw new IllegalStateException("Root value has already been written.");
+            }
+            this.isRootWritten = true;
+            return;
+        }
+        if (this.containers[this.depth - 1]) {
+            if (this.isValueRequested == false) {
+                throw new IllegalStateException("Key must be written before value.");
+            }
+            this.isValueRequested = false;
+            return;
+        }
+        this.writeSeparator();
+    }
+    
+    /**
+     * 現在の連想配列または配列の要素の区切り文字を書き込む。
+     * 
+     * @throws IOException
+     */
+    private void writeSeparator() throws IOException {
+        int index = this.depth - 1;
+        if (this.numbersOfEntries[index] > 0) {
+            this.appendable.append(',');
+            if (this.format == Format.STANDARD) {
+                this.appendable.append(' ');
+            }
+        }
+        if (this.format == Format.PRETTY) {
+            this.writeLineBreak(this.depth);
+        }
+        this.numbersOfEntries[index]++;
+    }
+    
+    /**
+     * 改行と指定された段階のインデントを書き込む。
+     * 
+     * @param depth
+     * @throws IOException
+     */
+    private void writeLineBreak(int depth) throws IOException {
+        this.appendable.append('\n');
+        for (int index = 0; index < depth; index++) {
+            this.appendable.append(this.indent);
+        }
+    }
+    
+    /**
+     * 連想配列または配列の開始を書き込む。
+     * 
+     * @param isObject
+     * @throws IOException
+     */
+    private void writeStartContainer(boolean isObject) throws IOException {
+        this.beforeValue();
+        if (this.depth == this.containers.length) {
+            boolean[] containers = new boolean[this.depth * 2];
+            System.arraycopy(this.containers, 0, containers, 0, this.depth);
+            this.containers = containers;
+            int[] numbersOfEntries = new int[this.depth * 2];
+            System.arraycopy(this.numbersOfEntries, 0, numbersOfEntries, 0, this.depth);
+            this.numbersOfEntries = numbersOfEntries;
+        }
+        this.containers[this.depth] = isObject;
+        this.numbersOfEntries[this.depth] = 0;
+        this.depth++;
+        if (isObject) {
+            this.appendable.append('{');
+        } else {
+            this.appendable.append('[');
+        }
+    }
+    
+    /**
+     * 連想配列または配列の終了を書き込む。
+     * 
+     * @param isObject
+     * @throws IOException
+     * @throws IllegalStateException 対応する開始が書き込まれていない場合。
+     */
+    private void writeEndContainer(boolean isObject) throws IOException, IllegalStateException {
+        if (this.depth == 0 || this.containers[this.depth - 1] != isObject || this.isValueRequested) {
+            throw new IllegalStateException("Unexpected end of container.");
+        }
+        this.depth--;
+        if (this.format == Format.PRETTY && this.numbersOfEntries[this.depth] > 0) {
+            this.writeLineBreak(this.depth);
+        }
+        if (isObject) {
+            this.appendable.append('}');
+        } else {
+            this.appendable.append(']');
+        }
+    }
+    
+    /**
+     * 連想配列の開始を書き込む。
+     * 
+     * @throws IOException
+     * @throws IllegalStateException 現在の位置に値を書き込めない場合。
+     */
+    public void writeStartObject() throws IOException, IllegalStateException {
+        this.writeStartContainer(true);
+    }
+    
+    /**
+     * 連想配列の終了を書き込む。
+     * 
+     * @throws IOException
+     * @throws IllegalStateException 対応する開始が書き込まれていない場合。
+     */
+    public void writeEndObject() throws IOException, IllegalStateException {
+        this.writeEndContainer(true);
+    }
+    
+    /**
+     * 配列の開始を書き込む。
+     * 
+     * @throws IOException
+     * @throws IllegalStateException 現在の位置に値を書き込めない場合。
+     */
+    public void writeStartArray() throws IOException, IllegalStateException {
+        this.writeStartContainer(false);
+    }
+    
+    /**
+     * 配列の終了を書き込む。
+     * 
+     * @throws IOException
+     * @throws IllegalStateException 対応する開始が書き込まれていない場合。
+     */
+    public void writeEndArray() throws IOException, IllegalStateException {
+        this.writeEndContainer(false);
+    }
+    
+    /**
+     * 連想配列のキーを書き込む。
+     * 
+     * @param key
+     * @throws IOException
+     * @throws IllegalStateException 連想配列の中ではない場合や、前のキーの値が書き込まれていない場合。
+     */
+    public void writeKey(String key) throws IOException, IllegalStateException {
+        if (this.depth == 0 || this.containers[this.depth - 1] == false || this.isValueRequested) {
+            throw new IllegalStateException("Key can not be written here.");
+        }
+        this.writeSeparator();
+        JSONWriter.escape(key, this.appendable);
+        this.appendable.append(':');
+        if (this.format != Format.COMPACT) {
+            this.appendable.append(' ');
+        }
+        this.isValueRequested = true;
+    }
+    
+    /**
+     * 文字列値を書き込む。nullの場合は空文字列として書き込む。
+     * 
+     * @param value
+     * @throws IOException
+     * @throws IllegalStateException 現在の位置に値を書き込めない場合。
+     */
+    public void writeString(CharSequence value) throws IOException, IllegalStateException {
+        this.beforeValue();
+        JSONWriter.escape(value, this.appendable);
+    }
+    
+    /**
+     * 数値を書き込む。nullや有限ではない数値の場合はnullとして書き込む。
+     * 
+     * @param value
+     * @throws IOException
+     * @throws IllegalStateException 現在の位置に値を書き込めない場合。
+     */
+    public void writeNumber(Number value) throws IOException, IllegalStateException {
+        this.beforeValue();
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte || value instanceof BigInteger) {
+            this.appendable.append(value.toString());
+            return;
+        }
+        if (value instanceof BigDecimal) {
+            this.appendable.append(((BigDecimal) value).toPlainString());
+            return;
+        }
+        if (value == null || Double.isFinite(value.doubleValue()) == false) {
+            this.appendable.append("null");
+            return;
+        }
+        String number = Double.toString(value.doubleValue());
+        if (number.endsWith(".0")) {
+            this.appendable.append(number, 0, number.length() - 2);
+        } else {
+            this.appendable.append(number);
+        }
+    }
+    
+    /**
+     * 真偽値を書き込む。
+     * 
+     * @param value
+     * @throws IOException
+     * @throws IllegalStateException 現在の位置に値を書き込めない場合。
+     */
+    public void writeBoolean(boolean value) throws IOException, IllegalStateException {
+        this.beforeValue();
+        if (value) {
+            this.appendable.append("true");
+        } else {
+            this.appendable.append("false");
+        }
+    }
+    
+    /**
+     * null値を書き込む。
+     * 
+     * @throws IOException
+     * @throws IllegalStateException 現在の位置に値を書き込めない場合。
+     */
+    public void writeNull() throws IOException, IllegalStateException {
+        this.beforeValue();
+        this.appendable.append("null");
+    }
+    
+    /**
+     * 値のインスタンスを入れ子の値も含めて一度だけ走査して書き込む。
+     * 
+     * @param value nullの場合はnull値として書き込む。
+     * @throws IOException
+     * @throws IllegalStateException 現在の位置に値を書き込めない場合。
+     */
+    public void write(JSONValue<?> value) throws IOException, IllegalStateException {
+        if (value == null) {
+            this.writeNull();
+            return;
+        }
+        if (value instanceof JSONObject) {
+            this.writeMap(((JSONObject) value).getContent());
+            return;
+        }
+        if (value instanceof JSONArray) {
+            this.writeCollection(((JSONArray) value).getContent());
+            return;
+        }
+        if (value instanceof JSONString) {
+            this.writeString(((JSONString) value).getContent());
+            return;
+        }
+        if (value instanceof JSONNumber) {
+            this.writeNumber(((JSONNumber) value).getContent());
+            return;
+        }
+        if (value instanceof JSONBoolean) {
+            Boolean content = ((JSONBoolean) value).getContent();
+            this.writeBoolean(content != null && content);
+            return;
+        }
+        this.beforeValue();
+        this.appendable.append(value.makeJSON());
+    }
+    
+    /**
+     * 値を書き込む。JSONValue、文字列、数値、真偽値、Map、Collection、配列はそれぞれ対応する値として書き込み、それ以外はtoStringメソッドの結果を文字列値として書き込む。
+     * 
+     * @param value
+     * @throws IOException
+     * @throws IllegalStateException 現在の位置に値を書き込めない場合。
+     */
+    public void writeValue(Object value) throws IOException, IllegalStateException {
+        if (value == null) {
+            this.writeNull();
+        } else if (value instanceof JSONValue<?>) {
+            this.write((JSONValue<?>) value);
+        } else if (value instanceof CharSequence) {
+            this.writeString((CharSequence) value);
+        } else if (value instanceof Number) {
+            this.writeNumber((Number) value);
+        } else if (value instanceof Boolean) {
+            this.writeBoolean((Boolean) value);
+        } else if (value instanceof Map<?, ?>) {
+            this.writeMap((Map<?, ?>) value);
+        } else if (value instanceof Collection<?>) {
+            this.writeCollection((Collection<?>) value);
+        } else if (value instanceof Object[]) {
+            this.writeStartArray();
+            for (Object element: (Object[]) value) {
+                this.writeValue(element);
+            }
+            this.writeEndArray();
+        } else {
+            this.writeString(value.toString());
+        }
+    }
+    
+    /**
+     * Mapを連想配列として書き込む。
+     * 
+     * @param map
+     * @throws IOException
+     */
+    private void writeMap(Map<?, ?> map) throws IOException {
+        this.writeStartObject();
+        for (Map.Entry<?, ?> entry: map.entrySet()) {
+            this.writeKey(StringObject.newInstance(entry.getKey()).toString());
+            this.writeValue(entry.getValue());
+        }
+        this.writeEndObject();
+    }
+    
+    /**
+     * Collectionを配列として書き込む。
+     * 
+     * @param collection
+     * @throws IOException
+     */
+    private void writeCollection(Collection<?> collection) throws IOException {
+        this.writeStartArray();
+        if (collection instanceof List<?>) {
+            List<?> list = (List<?>) collection;
+            for (int index = 0; index < list.size(); index++) {
+                this.writeValue(list.get(index));
+            }
+        } else {
+            for (Object element: collection) {
+                this.writeValue(element);
+            }
+        }
+        this.writeEndArray();
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        if (this.appendable instanceof Flushable) {
+            ((Flushable) this.appendable).flush();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (this.appendable instanceof Closeable) {
+            ((Closeable) this.appendable).close();
+        } else {
+            this.flush();
+        }
+    }
+    
+    private static final String[] ESCAPES = JSONWriter.createEscapes();
+    
+    /**
+     * 文字コード0x7F以下の文字に対するエスケープ文字列の配列を作成する。
+     * 
+     * @return
+     */
+    private static String[] createEscapes() {
+        String[] escapes = new String[128];
+        for (int character = 0; character < 0x20; character++) {
+            escapes[character] = String.format("\\u%04x", character);
+        }
+        escapes['"'] = "\\\"";
+        escapes['\\'] = "\\\\";
+        escapes['/'] = "\\/";
+        escapes['\b'] = "\\b";
+        escapes['\f'] = "\\f";
+        escapes['\n'] = "\\n";
+        escapes['\r'] = "\\r";
+        escapes['\t'] = "\\t";
+        return escapes;
+    }
+    
+    /**
+     * 指定された文字列を二重引用符で囲み、エスケープが必要な文字をエスケープして書き込む。<br>
+     * エスケープが不要な文字は連続した範囲ごとにまとめて書き込まれる。
+     * 
+     * @param value nullの場合は空文字列として書き込む。
+     * @param appendable
+     * @throws IOException
+     */
+    public static void escape(CharSequence value, Appendable appendable) throws IOException {
+        appendable.append('"');
+        if (value != null) {
+            int start = 0;
+            int length = value.length();
+            for (int index = 0; index < length; index++) {
+                char character = value.charAt(index);
+                if (character >= 128) {
+                    continue;
+                }
+                String escape = JSONWriter.ESCAPES[character];
+                if (escape == null) {
+                    continue;
+                }
+                if (index > start) {
+                    appendable.append(value, start, index);
+                }
+                appendable.append(escape);
+                start = index + 1;
+            }
+            if (start < length) {
+                appendable.append(value, start, length);
+            }
+        }
+        appendable.append('"');
+    }
+    
+    /**
+     * 指定された値のJSONデータ定義文を作成する。
+     * 
+     * @param value JSONValue、文字列、数値、真偽値、Map、Collection、配列など。
+     * @param format
+     * @return
+     */
+    public static String createJSON(Object value, Format format) {
+        StringBuilder builder = new StringBuilder();
+        JSONWriter writer = new JSONWriter(builder);
+        writer.setFormat(format);
+        try {
+            writer.writeValue(value);
+        } catch (IOException exception) {
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * JSONデータ定義文の書式の列挙型。
+     */
+    public enum Format {
+        /**
+         * 要素の区切りとキーの後に半角スペースを入れた一行の書式。
+         */
+        STANDARD,
+        /**
+         * 空白を含まない一行の書式。
+         */
+        COMPACT,
+        /**
+         * 改行とインデントで整形した書式。
+         */
+        PRETTY,
+    }
+}
@@ -8,7 +8,8 @@ package com.hirohiro716.scent.io.json;
 public class ParseResult<T> {
     
     /**
-     * コンストラクタ。
+     * コンストラクタ。<br>
+     * 入れ子の値として解析された場合、元となったJSONデータ定義文と残ったJSONデータ定義文は保持しないためnullになる。
      * 
      * @param parsed 解析した結果の値。
      * @param source 解析値の元となったJSONデータ定義文。
@@ -1,13 +1,15 @@
 package com.hirohiro716.scent.io.xml;
 
-import java.io.ByteArrayInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.nio.channels.FileLock;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -20,8 +22,10 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import com.hirohiro716.scent.Array;
@@ -161,22 +165,26 @@ public class XML {
     }
     
     /**
-     * 指定されたソースの内容を、このインスタンスにインポートする。
+     * 指定されたソースの内容を、このインスタンスにインポートする。<br>
+     * ソースはバイト列に変換せずに文字のまま解析し、standalone属性値はXML宣言の範囲のみから取得する。
      * 
      * @param source
      * @throws IOException
      * @throws SAXException
      */
     public void importFromSource(String source) throws IOException, SAXException {
-        StringObject encodingObject = new StringObject(source);
-        encodingObject.extract("encoding=\"[^\"]{1,}\"");
-        String encoding;
-        if (encodingObject.length() > 0) {
-            encoding = encodingObject.split("\"")[1];
-        } else {
-            encoding = "UTF-8";
+        int start = 0;
+        if (source.length() > 0 && source.charAt(0) == '\uFEFF') {
+            start = 1;
         }
-        StringObject isStandaloneObject = new StringObject(source);
+        String declaration = "";
+        if (source.startsWith("<?xml", start)) {
+            int end = source.indexOf("?>", start);
+            if (end > 0) {
+                declaration = source.substring(start, end);
+            }
+        }
+        StringObject isStandaloneObject = new StringObject(declaration);
         isStandaloneObject.extract("standalone=\"[^\"]{1,}\"").lower();
         isStandaloneObject.replace("standalone=", "").replace("\"", "");
         this.isStandalone = null;
@@ -186,7 +194,7 @@ public class XML {
         if (isStandaloneObject.equals("no")) {
             this.isStandalone = false;
         }
-        this.root = new XMLNode(this.documentBuilder.parse(new ByteArrayInputStream(source.getBytes(encoding))));
+        this.root = new XMLNode(this.documentBuilder.parse(new InputSource(new StringReader(source.substring(start)))));
     }
     
     /**
@@ -217,6 +225,7 @@ public class XML {
             Document document = (Document) xml.getRoot().getInnerInstance();
             this.node = document.createElement(name);
             parent.getInnerInstance().appendChild(this.getInnerInstance());
+            XML.clearChildIndex(parent.getInnerInstance());
         }
 
         /**
@@ -264,6 +273,7 @@ public class XML {
          */
         public void setTextContent(String textContent) {
             this.getInnerInstance().setTextContent(textContent);
+            XML.clearChildIndex(this.getInnerInstance());
         }
         
         /**
@@ -284,6 +294,7 @@ public class XML {
          */
         public void setAttributeValue(String name, String value) {
             this.getInnerInstance().getAttributes().getNamedItem(name).setNodeValue(value);
+            XML.clearChildIndex(this.getInnerInstance().getParentNode());
         }
         
         /**
@@ -312,17 +323,38 @@ public class XML {
         }
         
         /**
-         * このXML要素内の子要素を取得する。
+         * このXML要素内の子要素の索引を取得する。<br>
+         * 索引はラップされているインスタンスに保持され、子要素の構成が変更されるまで再利用される。
          * 
          * @return
          */
-        public Array<XMLNode> getChildren() {
-            List<XMLNode> nodes = new ArrayList<>();
-            NodeList nodeList = this.getInnerInstance().getChildNodes();
-            for (int index = 0; index < nodeList.getLength(); index++) {
+        private ChildIndex getChildIndex() {
+            Node node = this.getInnerInstance();
+            Object userData = node.getUserData(XML.CHILD_INDEX_KEY);
+            if (userData instanceof ChildIndex) {
+                ChildIndex childIndex = (ChildIndex) userData;
+                if (childIndex.isValid(node)) {
+                    return childIndex;
+                }
+            }
+            NodeList nodeList = node.getChildNodes();
+            int numberOfChildren = nodeList.getLength();
+            List<XMLNode> nodes = new ArrayList<>(numberOfChildren);
+            for (int index = 0; index < numberOfChildren; index++) {
                 nodes.add(new XMLNode(nodeList.item(index)));
             }
-            return new Array<>(nodes);
+            ChildIndex childIndex = new ChildIndex(node, nodes);
+            node.setUserData(XML.CHILD_INDEX_KEY, childIndex, null);
+            return childIndex;
+        }
+        
+        /**
+         * このXML要素内の子要素を取得する。
+         * 
+         * @return
+         */
+        public Array<XMLNode> getChildren() {
+            return this.getChildIndex().children;
         }
         
         /**
@@ -333,13 +365,37 @@ public class XML {
          * @return 見つかった要素。
          */
         public Array<XMLNode> findXMLNodesByAttribute(String name, String value) {
-            List<XMLNode> nodes = new ArrayList<>();
-            for (XMLNode node: this.getChildren()) {
-                if (node.getAttributeValue(name).equals(value)) {
+            ChildIndex childIndex = this.getChildIndex();
+            Map<String, Array<XMLNode>> nodesByValue = childIndex.nodesByAttribute.get(name);
+            if (nodesByValue == null) {
+                Map<String, List<XMLNode>> nodesListByValue = new HashMap<>();
+                for (XMLNode node: childIndex.children) {
+                    NamedNodeMap attributes = node.getInnerInstance().getAttributes();
+                    if (attributes == null) {
+                        continue;
+                    }
+                    Node attribute = attributes.getNamedItem(name);
+                    if (attribute == null) {
+                        continue;
+                    }
+                    List<XMLNode> nodes = nodesListByValue.get(attribute.getNodeValue());
+                    if (nodes == null) {
+                        nodes = new ArrayList<>();
+                        nodesListByValue.put(attribute.getNodeValue(), nodes);
+                    }
                     nodes.add(node);
                 }
+                nodesByValue = new HashMap<>();
+                for (Map.Entry<String, List<XMLNode>> entry: nodesListByValue.entrySet()) {
+                    nodesByValue.put(entry.getKey(), new Array<>(entry.getValue()));
+                }
+                childIndex.nodesByAttribute.put(name, nodesByValue);
+            }
+            Array<XMLNode> nodes = nodesByValue.get(value);
+            if (nodes == null) {
+                return XML.EMPTY_NODES;
             }
-            return new Array<>(nodes);
+            return nodes;
         }
 
         /**
@@ -364,13 +420,11 @@ public class XML {
          * @return 見つかった要素。
          */
         public Array<XMLNode> findXMLNodesByName(String name) {
-            List<XMLNode> nodes = new ArrayList<>();
-            for (XMLNode node: this.getChildren()) {
-                if (node.getName().equals(name)) {
-                    nodes.add(node);
-                }
+            Array<XMLNode> nodes = this.getChildIndex().nodesByName.get(name);
+            if (nodes == null) {
+                return XML.EMPTY_NODES;
             }
-            return new Array<>(nodes);
+            return nodes;
         }
         
         /**
@@ -393,6 +447,7 @@ public class XML {
         public void remove() {
             Node parent = this.getInnerInstance().getParentNode();
             parent.removeChild(this.getInnerInstance());
+            XML.clearChildIndex(parent);
         }
 
         @Override
@@ -400,4 +455,74 @@ public class XML {
             return StringObject.join(this.getName(), ":", this.getTextContent()).toString();
         }
     }
+    
+    private static final String CHILD_INDEX_KEY = ChildIndex.class.getName();
+    
+    private static final Array<XMLNode> EMPTY_NODES = new Array<>(new ArrayList<XMLNode>());
+    
+    /**
+     * 指定されたインスタンスに保持されている子要素の索引を破棄する。
+     * 
+     * @param node
+     */
+    private static void clearChildIndex(Node node) {
+        if (node != null) {
+            node.setUserData(XML.CHILD_INDEX_KEY, null, null);
+        }
+    }
+    
+    /**
+     * XML要素内の子要素の索引クラス。<br>
+     * 索引を作成した時点の子要素の数と最初と最後の子要素を保持し、
+     * ラップされているインスタンスが直接操作された場合でも子要素の構成の変更を検出できるようにする。
+     */
+    private static class ChildIndex {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param node
+         * @param children
+         */
+        private ChildIndex(Node node, List<XMLNode> children) {
+            this.numberOfChildren = children.size();
+            this.firstChild = node.getFirstChild();
+            this.lastChild = node.getLastChild();
+            this.children = new Array<>(children);
+            Map<String, List<XMLNode>> nodesListByName = new HashMap<>();
+            for (XMLNode child: children) {
+                List<XMLNode> nodes = nodesListByName.get(child.getName());
+                if (nodes == null) {
+                    nodes = new ArrayList<>();
+                    nodesListByName.put(child.getName(), nodes);
+                }
+                nodes.add(child);
+            }
+            for (Map.Entry<String, List<XMLNode>> entry: nodesListByName.entrySet()) {
+                this.nodesByName.put(entry.getKey(), new Array<>(entry.getValue()));
+            }
+        }
+        
+        private int numberOfChildren;
+        
+        private Node firstChild;
+        
+        private Node lastChild;
+        
+        private Array<XMLNode> children;
+        
+        private Map<String, Array<XMLNode>> nodesByName = new HashMap<>();
+        
+        private Map<String, Map<String, Array<XMLNode>>> nodesByAttribute = new HashMap<>();
+        
+        /**
+         * 索引が指定されたインスタンスの現在の子要素と一致する場合はtrueを返す。
+         * 
+         * @param node
+         * @return
+         */
+        private boolean isValid(Node node) {
+            return node.getFirstChild() == this.firstChild && node.getLastChild() == this.lastChild && node.getChildNodes().getLength() == this.numberOfChildren;
+        }
+    }
 }
@@ -0,0 +1,477 @@
+package com.hirohiro716.scent.io.xml;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.hirohiro716.scent.filesystem.File;
+
+/**
+ * XMLをjavax.xml.stream.XMLStreamReaderで先頭から一度だけ読み進めて解析するクラス。<br>
+ * 要素のパスにコールバックを登録してreadメソッドを呼び出すと、パスに一致する要素の終了タグを読み込む度にコールバックが呼び出される。
+ * コールバックに渡される要素とその子孫以外は保持しないため、巨大なXMLファイルでも全体をメモリに保持せずに処理できる。<br>
+ * パスは"/Invoice/cac:InvoiceLine"のようにルート要素からの要素名を"/"で区切って指定する。
+ * "*"はすべての要素名に一致し、"/"で始まらないパスは任意の位置から始まる要素に一致する。<br>
+ * ※読み込みが終わったらcloseメソッドを呼び出す必要がある。
+ */
+public class XMLReader implements Closeable {
+    
+    private static final XMLInputFactory FACTORY = XMLReader.createFactory();
+    
+    /**
+     * 外部エンティティを解決しないjavax.xml.stream.XMLInputFactoryを作成する。
+     * 
+     * @return
+     */
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * XMLを読み込むjava.io.InputStreamを指定する。エンコーディングはXML宣言から判定される。
+     * 
+     * @param inputStream
+     * @throws XMLStreamException
+     */
+    public XMLReader(InputStream inputStream) throws XMLStreamException {
+        this.inputStream = inputStream;
+        synchronized (XMLReader.FACTORY) {
+            this.streamReader = XMLReader.FACTORY.createXMLStreamReader(inputStream);
+        }
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * XMLを読み込むjava.io.Readerを指定する。
+     * 
+     * @param reader
+     * @throws XMLStreamException
+     */
+    public XMLReader(Reader reader) throws XMLStreamException {
+        this.reader = reader;
+        synchronized (XMLReader.FACTORY) {
+            this.streamReader = XMLReader.FACTORY.createXMLStreamReader(reader);
+        }
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 読み込むXMLファイルを指定する。エンコーディングはXML宣言から判定される。
+     * 
+     * @param file
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    public XMLReader(File file) throws IOException, XMLStreamException {
+        this(new FileInputStream(file.toJavaIoFile()));
+    }
+    
+    private InputStream inputStream = null;
+    
+    private Reader reader = null;
+    
+    private XMLStreamReader streamReader;
+    
+    /**
+     * このインスタンスにラップされているjavax.xml.stream.XMLStreamReaderを取得する。<br>
+     * コールバックを使用せずにイベントを直接処理する場合に使用する。
+     * 
+     * @return
+     */
+    public XMLStreamReader getInnerInstance() {
+        return this.streamReader;
+    }
+    
+    private List<PathCallback> pathCallbacks = new ArrayList<>();
+    
+    /**
+     * 指定されたパスに一致する要素を読み込んだ際に呼び出されるコールバックを追加する。
+     * 
+     * @param path "/Invoice/cac:InvoiceLine"や"cbc:ID"などの要素のパス。
+     * @param callback
+     */
+    public void addElementCallback(String path, ElementCallback callback) {
+        this.pathCallbacks.add(new PathCallback(path, callback));
+    }
+    
+    private boolean isStopped = false;
+    
+    /**
+     * 読み込みを中断する。コールバックの中から呼び出すと、現在の要素の処理後にreadメソッドが終了する。
+     */
+    public void stop() {
+        this.isStopped = true;
+    }
+    
+    /**
+     * 終端まで読み込んで、パスに一致する要素ごとにコールバックを呼び出す。
+     * 
+     * @return コールバックの処理中に発生した例外を返す。発生しなかった場合はnullを返す。
+     * @throws XMLStreamException
+     */
+    public Exception read() throws XMLStreamException {
+        List<String> names = new ArrayList<>();
+        List<Element> elements = new ArrayList<>();
+        List<List<PathCallback>> matchedCallbacks = new ArrayList<>();
+        int numberOfCapturingElements = 0;
+        this.isStopped = false;
+        while (this.isStopped == false && this.streamReader.hasNext()) {
+            switch (this.streamReader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                String name = XMLReader.createName(this.streamReader.getPrefix(), this.streamReader.getLocalName());
+                names.add(name);
+                List<PathCallback> callbacks = null;
+                for (PathCallback pathCallback: this.pathCallbacks) {
+                    if (pathCallback.matches(names)) {
+                        if (callbacks == null) {
+                            callbacks = new ArrayList<>();
+                        }
+                        callbacks.add(pathCallback);
+                    }
+                }
+                matchedCallbacks.add(callbacks);
+                Element element = null;
+                if (callbacks != null || numberOfCapturingElements > 0) {
+                    element = new Element(name, this.streamReader.getLocalName(), XMLReader.createPath(names));
+                    for (int index = 0; index < this.streamReader.getAttributeCount(); index++) {
+                        String attributeName = XMLReader.createName(this.streamReader.getAttributePrefix(index), this.streamReader.getAttributeLocalName(index));
+                        element.attributes.put(attributeName, this.streamReader.getAttributeValue(index));
+                    }
+                    if (elements.size() > 0 && elements.get(elements.size() - 1) != null) {
+                        elements.get(elements.size() - 1).children.add(element);
+                    }
+                    numberOfCapturingElements++;
+                }
+                elements.add(element);
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+                if (numberOfCapturingElements > 0) {
+                    elements.get(elements.size() - 1).appendText(this.streamReader.getTextCharacters(), this.streamReader.getTextStart(), this.streamReader.getTextLength());
+                }
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                int last = names.size() - 1;
+                Element endedElement = elements.remove(last);
+                List<PathCallback> endedCallbacks = matchedCallbacks.remove(last);
+                names.remove(last);
+                if (endedElement == null) {
+                    break;
+                }
+                numberOfCapturingElements--;
+                if (last > 0 && elements.get(last - 1) != null) {
+                    elements.get(last - 1).appendText(endedElement.getTextContent());
+                }
+                if (endedCallbacks != null) {
+                    for (PathCallback pathCallback: endedCallbacks) {
+                        Exception exception = pathCallback.callback.call(endedElement);
+                        if (exception != null) {
+                            return exception;
+                        }
+                    }
+                }
+                break;
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            this.streamReader.close();
+        } catch (XMLStreamException exception) {
+            throw new IOException(exception);
+        } finally {
+            if (this.inputStream != null) {
+                this.inputStream.close();
+            }
+            if (this.reader != null) {
+                this.reader.close();
+            }
+        }
+    }
+    
+    /**
+     * 接頭辞とローカル名から要素名を作成する。
+     * 
+     * @param prefix
+     * @param localName
+     * @return
+     */
+    private static String createName(String prefix, String localName) {
+        if (prefix == null || prefix.length() == 0) {
+            return localName;
+        }
+        StringBuilder name = new StringBuilder(prefix.length() + localName.length() + 1);
+        name.append(prefix);
+        name.append(':');
+        name.append(localName);
+        return name.toString();
+    }
+    
+    /**
+     * ルート要素からの要素名のリストからパスを作成する。
+     * 
+     * @param names
+     * @return
+     */
+    private static String createPath(List<String> names) {
+        StringBuilder path = new StringBuilder();
+        for (String name: names) {
+            path.append('/');
+            path.append(name);
+        }
+        return path.toString();
+    }
+    
+    /**
+     * 要素を読み込んだ際のコールバックのインターフェース。
+     */
+    public interface ElementCallback {
+        
+        /**
+         * 要素を読み込んだ際に呼び出される。
+         * 
+         * @param element 読み込んだ要素。
+         * @return 処理中に発生した例外。nullを返した場合は読み込みを続行する。
+         */
+        public abstract Exception call(Element element);
+    }
+    
+    /**
+     * パスとコールバックの組み合わせのクラス。
+     */
+    private static class PathCallback {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param path
+         * @param callback
+         */
+        private PathCallback(String path, ElementCallback callback) {
+            this.isAbsolute = path.startsWith("/");
+            List<String> names = new ArrayList<>();
+            for (String name: path.split("/")) {
+                if (name.length() > 0) {
+                    names.add(name);
+                }
+            }
+            this.names = names.toArray(new String[names.size()]);
+            this.callback = callback;
+        }
+        
+        private boolean isAbsolute;
+        
+        private String[] names;
+        
+        private ElementCallback callback;
+        
+        /**
+         * ルート要素からの要素名のリストがパスに一致する場合はtrueを返す。
+         * 
+         * @param names
+         * @return
+         */
+        private boolean matches(List<String> names) {
+            if (this.isAbsolute && names.size() != this.names.length) {
+                return false;
+            }
+            if (names.size() < this.names.length) {
+                return false;
+            }
+            int offset = names.size() - this.names.length;
+            for (int index = this.names.length - 1; index >= 0; index--) {
+                String name = this.names[index];
+                if (name.equals("*") == false && name.equals(names.get(offset + index)) == false) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * 読み込んだXML要素のクラス。パスに一致した要素とその子孫のみ作成される。
+     */
+    public static class Element {
+        
+        /**
+         * コンストラクタ。
+         * 
+         * @param name
+         * @param localName
+         * @param path
+         */
+        private Element(String name, String localName, String path) {
+            this.name = name;
+            this.localName = localName;
+            this.path = path;
+        }
+        
+        private String name;
+        
+        /**
+         * このXML要素の接頭辞を含む名前を取得する。
+         * 
+         * @return
+         */
+        public String getName() {
+            return this.name;
+        }
+        
+        private String localName;
+        
+        /**
+         * このXML要素の接頭辞を含まない名前を取得する。
+         * 
+         * @return
+         */
+        public String getLocalName() {
+            return this.localName;
+        }
+        
+        private String path;
+        
+        /**
+         * このXML要素のルート要素からのパスを取得する。
+         * 
+         * @return
+         */
+        public String getPath() {
+            return this.path;
+        }
+        
+        private Map<String, String> attributes = new LinkedHashMap<>();
+        
+        /**
+         * このXML要素の属性値を取得する。該当がない場合はnullを返す。
+         * 
+         * @param name
+         * @return
+         */
+        public String getAttributeValue(String name) {
+            return this.attributes.get(name);
+        }
+        
+        /**
+         * このXML要素のすべての属性を取得する。
+         * 
+         * @return
+         */
+        public Map<String, String> getAttributes() {
+            return Collections.unmodifiableMap(this.attributes);
+        }
+        
+        private StringBuilder textContent = null;
+        
+        /**
+         * このXML要素のテキストに文字を追加する。
+         * 
+         * @param characters
+         * @param start
+         * @param length
+         */
+        private void appendText(char[] characters, int start, int length) {
+            if (this.textContent == null) {
+                this.textContent = new StringBuilder(length);
+            }
+            this.textContent.append(characters, start, length);
+        }
+        
+        /**
+         * このXML要素のテキストに文字列を追加する。
+         * 
+         * @param text
+         */
+        private void appendText(String text) {
+            if (text.length() == 0) {
+                return;
+            }
+            if (this.textContent == null) {
+                this.textContent = new StringBuilder(text.length());
+            }
+            this.textContent.append(text);
+        }
+        
+        /**
+         * このXML要素と子孫要素のテキストを取得する。
+         * 
+         * @return
+         */
+        public String getTextContent() {
+            if (this.textContent == null) {
+                return "";
+            }
+            return this.textContent.toString();
+        }
+        
+        private List<Element> children = new ArrayList<>();
+        
+        /**
+         * このXML要素内の子要素を取得する。
+         * 
+         * @return
+         */
+        public List<Element> getChildren() {
+            return Collections.unmodifiableList(this.children);
+        }
+        
+        /**
+         * このXML要素内の子要素を名前で検索する。
+         * 
+         * @param name
+         * @return 見つかった要素。
+         */
+        public List<Element> findElementsByName(String name) {
+            List<Element> elements = new ArrayList<>();
+            for (Element element: this.children) {
+                if (element.name.equals(name)) {
+                    elements.add(element);
+                }
+            }
+            return elements;
+        }
+        
+        /**
+         * このXML要素内の子要素を名前で検索する。該当するものがない場合はnullを返す。
+         * 
+         * @param name
+         * @return 見つかった要素。
+         */
+        public Element findElementByName(String name) {
+            for (Element element: this.children) {
+                if (element.name.equals(name)) {
+                    return element;
+                }
+            }
+            return null;
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(this.name);
+            builder.append(":");
+            builder.append(this.getTextContent());
+            return builder.toString();
+        }
+    }
+}
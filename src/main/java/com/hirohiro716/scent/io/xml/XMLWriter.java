@@ -0,0 +1,339 @@
+package com.hirohiro716.scent.io.xml;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.hirohiro716.scent.filesystem.File;
+import com.hirohiro716.scent.io.xml.XML.XMLNode;
+
+/**
+ * XMLをjavax.xml.stream.XMLStreamWriterで先頭から順に書き込むクラス。<br>
+ * 要素を書き込む度に出力されるため、巨大なXMLファイルでも全体をメモリに保持せずに作成できる。<br>
+ * ※書き込みが終わったらcloseメソッドを呼び出す必要がある。
+ */
+public class XMLWriter implements Flushable, Closeable {
+    
+    private static final XMLOutputFactory FACTORY = XMLOutputFactory.newInstance();
+    
+    private static final int DEFAULT_BUFFER_SIZE = 65536;
+    
+    /**
+     * コンストラクタ。<br>
+     * 書き込み先のjava.io.OutputStreamとエンコーディングを指定する。書き込みはバッファリングされる。
+     * 
+     * @param outputStream
+     * @param encoding "UTF-8"や"Shift_JIS"などのエンコーディング。
+     * @throws XMLStreamException
+     */
+    public XMLWriter(OutputStream outputStream, String encoding) throws XMLStreamException {
+        this.outputStream = new BufferedOutputStream(outputStream, XMLWriter.DEFAULT_BUFFER_SIZE);
+        this.encoding = encoding;
+        synchronized (XMLWriter.FACTORY) {
+            this.streamWriter = XMLWriter.FACTORY.createXMLStreamWriter(this.outputStream, encoding);
+        }
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 書き込み先のjava.io.OutputStreamを指定する。エンコーディングにはUTF-8を使用する。
+     * 
+     * @param outputStream
+     * @throws XMLStreamException
+     */
+    public XMLWriter(OutputStream outputStream) throws XMLStreamException {
+        this(outputStream, "UTF-8");
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 書き込み先のjava.io.Writerを指定する。
+     * 
+     * @param writer
+     * @throws XMLStreamException
+     */
+    public XMLWriter(Writer writer) throws XMLStreamException {
+        this.writer = writer;
+        synchronized (XMLWriter.FACTORY) {
+            this.streamWriter = XMLWriter.FACTORY.createXMLStreamWriter(writer);
+        }
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 書き込み先のファイルとエンコーディングを指定する。既存の内容は上書きされる。
+     * 
+     * @param file
+     * @param encoding "UTF-8"や"Shift_JIS"などのエンコーディング。
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    public XMLWriter(File file, String encoding) throws IOException, XMLStreamException {
+        this(new FileOutputStream(file.toJavaIoFile()), encoding);
+    }
+    
+    private OutputStream outputStream = null;
+    
+    private Writer writer = null;
+    
+    private String encoding = null;
+    
+    private XMLStreamWriter streamWriter;
+    
+    /**
+     * このインスタンスにラップされているjavax.xml.stream.XMLStreamWriterを取得する。
+     * 
+     * @return
+     */
+    public XMLStreamWriter getInnerInstance() {
+        return this.streamWriter;
+    }
+    
+    private String indent = null;
+    
+    /**
+     * 要素の階層ごとのインデントに使用する文字列をセットする。初期値はnullでインデントしない。
+     * 
+     * @param indent
+     */
+    public void setIndent(String indent) {
+        this.indent = indent;
+    }
+    
+    private boolean isWritten = false;
+    
+    private int depth = 0;
+    
+    private boolean hasChildElement = false;
+    
+    private boolean hasText = false;
+    
+    /**
+     * インデントが指定されている場合は、改行と現在の階層のインデントを書き込む。
+     * 
+     * @throws XMLStreamException
+     */
+    private void writeIndent() throws XMLStreamException {
+        if (this.indent == null) {
+            return;
+        }
+        this.streamWriter.writeCharacters("\n");
+        for (int index = 0; index < this.depth; index++) {
+            this.streamWriter.writeCharacters(this.indent);
+        }
+    }
+    
+    /**
+     * XML宣言を書き込む。
+     * 
+     * @throws XMLStreamException
+     */
+    public void writeStartDocument() throws XMLStreamException {
+        if (this.encoding != null) {
+            this.streamWriter.writeStartDocument(this.encoding, "1.0");
+        } else {
+            this.streamWriter.writeStartDocument("1.0");
+        }
+        this.isWritten = true;
+    }
+    
+    /**
+     * 開始タグを書き込む。
+     * 
+     * @param name
+     * @throws XMLStreamException
+     */
+    public void writeStartElement(String name) throws XMLStreamException {
+        if (this.isWritten && this.hasText == false) {
+            this.writeIndent();
+        }
+        this.streamWriter.writeStartElement(name);
+        this.isWritten = true;
+        this.depth++;
+        this.hasChildElement = false;
+        this.hasText = false;
+    }
+    
+    /**
+     * 直前に書き込んだ開始タグに属性を書き込む。
+     * 
+     * @param name
+     * @param value
+     * @throws XMLStreamException
+     */
+    public void writeAttribute(String name, String value) throws XMLStreamException {
+        this.streamWriter.writeAttribute(name, value);
+    }
+    
+    /**
+     * 名前空間の宣言を書き込む。
+     * 
+     * @param prefix 接頭辞。デフォルトの名前空間の場合はnull。
+     * @param namespaceURI
+     * @throws XMLStreamException
+     */
+    public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+        if (prefix == null || prefix.length() == 0) {
+            this.streamWriter.writeDefaultNamespace(namespaceURI);
+        } else {
+            this.streamWriter.writeNamespace(prefix, namespaceURI);
+        }
+    }
+    
+    /**
+     * テキストを書き込む。
+     * 
+     * @param text
+     * @throws XMLStreamException
+     */
+    public void writeText(String text) throws XMLStreamException {
+        if (text == null || text.length() == 0) {
+            return;
+        }
+        this.streamWriter.writeCharacters(text);
+        this.hasText = true;
+    }
+    
+    /**
+     * 終了タグを書き込む。
+     * 
+     * @throws XMLStreamException
+     */
+    public void writeEndElement() throws XMLStreamException {
+        this.depth--;
+        if (this.hasChildElement && this.hasText == false) {
+            this.writeIndent();
+        }
+        this.streamWriter.writeEndElement();
+        this.hasChildElement = true;
+        this.hasText = false;
+    }
+    
+    /**
+     * テキストを持つ要素を書き込む。
+     * 
+     * @param name
+     * @param text
+     * @throws XMLStreamException
+     */
+    public void writeElement(String name, String text) throws XMLStreamException {
+        this.writeStartElement(name);
+        this.writeText(text);
+        this.writeEndElement();
+    }
+    
+    /**
+     * XML要素とその子孫を書き込む。
+     * 
+     * @param node
+     * @throws XMLStreamException
+     */
+    public void writeNode(XMLNode node) throws XMLStreamException {
+        this.writeNode(node.getInnerInstance());
+    }
+    
+    /**
+     * org.w3c.dom.Nodeとその子孫を書き込む。
+     * 
+     * @param node
+     * @throws XMLStreamException
+     */
+    private void writeNode(Node node) throws XMLStreamException {
+        switch (node.getNodeType()) {
+        case Node.DOCUMENT_NODE:
+        case Node.DOCUMENT_FRAGMENT_NODE:
+            this.writeChildNodes(node);
+            break;
+        case Node.ELEMENT_NODE:
+            this.writeStartElement(node.getNodeName());
+            NamedNodeMap attributes = node.getAttributes();
+            for (int index = 0; index < attributes.getLength(); index++) {
+                Node attribute = attributes.item(index);
+                this.writeAttribute(attribute.getNodeName(), attribute.getNodeValue());
+            }
+            this.writeChildNodes(node);
+            this.writeEndElement();
+            break;
+        case Node.TEXT_NODE:
+            if (this.indent == null || node.getNodeValue().trim().length() > 0) {
+                this.writeText(node.getNodeValue());
+            }
+            break;
+        case Node.CDATA_SECTION_NODE:
+            this.streamWriter.writeCData(node.getNodeValue());
+            this.hasText = true;
+            break;
+        case Node.COMMENT_NODE:
+            this.streamWriter.writeComment(node.getNodeValue());
+            break;
+        }
+    }
+    
+    /**
+     * org.w3c.dom.Nodeの子孫を書き込む。
+     * 
+     * @param node
+     * @throws XMLStreamException
+     */
+    private void writeChildNodes(Node node) throws XMLStreamException {
+        NodeList nodeList = node.getChildNodes();
+        for (int index = 0; index < nodeList.getLength(); index++) {
+            this.writeNode(nodeList.item(index));
+        }
+    }
+    
+    /**
+     * 開いているすべての要素の終了タグを書き込んで、ドキュメントを終了する。
+     * 
+     * @throws XMLStreamException
+     */
+    public void writeEndDocument() throws XMLStreamException {
+        while (this.depth > 0) {
+            this.writeEndElement();
+        }
+        this.streamWriter.writeEndDocument();
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        try {
+            this.streamWriter.flush();
+        } catch (XMLStreamException exception) {
+            throw new IOException(exception);
+        }
+        if (this.outputStream != null) {
+            this.outputStream.flush();
+        }
+        if (this.writer != null) {
+            this.writer.flush();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            this.streamWriter.close();
+        } catch (XMLStreamException exception) {
+            throw new IOException(exception);
+        } finally {
+            if (this.outputStream != null) {
+                this.outputStream.close();
+            }
+            if (this.writer != null) {
+                this.writer.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.hirohiro716.scent.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.hirohiro716.scent.StringObject;
+
+/**
+ * タグ名、属性値、内包するテキストによる要素の検索条件を、1回の評価ですべての一致する要素を取得できるXPathに変換するクラス。<br>
+ * 指定された条件はすべて満たす必要がある。
+ */
+public class ElementQuery {
+    
+    /**
+     * コンストラクタ。<br>
+     * 検索する要素のタグ名を指定する。nullの場合はすべてのタグ名が対象になる。
+     * 
+     * @param tagName
+     */
+    public ElementQuery(String tagName) {
+        this.tagName = tagName;
+    }
+    
+    /**
+     * コンストラクタ。
+     */
+    public ElementQuery() {
+        this(null);
+    }
+    
+    private String tagName;
+    
+    /**
+     * 検索する要素のタグ名を取得する。
+     * 
+     * @return
+     */
+    public String getTagName() {
+        return this.tagName;
+    }
+    
+    /**
+     * 検索する要素のタグ名をセットする。nullの場合はすべてのタグ名が対象になる。
+     * 
+     * @param tagName
+     */
+    public void setTagName(String tagName) {
+        this.tagName = tagName;
+    }
+    
+    private Map<String, String> attributes = new LinkedHashMap<>();
+    
+    /**
+     * 要素が持つべき属性値を追加する。
+     * 
+     * @param attributeName
+     * @param attributeValue
+     */
+    public void addAttribute(String attributeName, String attributeValue) {
+        this.attributes.put(attributeName, attributeValue);
+    }
+    
+    private String textContent = null;
+    
+    /**
+     * 要素が内包するテキストに含まれるべき文字列を取得する。
+     * 
+     * @return
+     */
+    public String getTextContent() {
+        return this.textContent;
+    }
+    
+    /**
+     * 要素が内包するテキストに含まれるべき文字列をセットする。nullまたは空文字列の場合は条件にしない。
+     * 
+     * @param textContent
+     */
+    public void setTextContent(String textContent) {
+        this.textContent = textContent;
+    }
+    
+    /**
+     * 検索条件を、基準とする要素の子孫要素から検索するXPathに変換する。
+     * 
+     * @return
+     */
+    public String toXPath() {
+        StringObject xpath = new StringObject(".//");
+        if (this.tagName == null || this.tagName.length() == 0) {
+            xpath.append("*");
+        } else {
+            xpath.append(this.tagName);
+        }
+        for (String attributeName: this.attributes.keySet()) {
+            xpath.append("[@");
+            xpath.append(attributeName);
+            xpath.append("=");
+            xpath.append(ElementQuery.toXPathLiteral(this.attributes.get(attributeName)));
+            xpath.append("]");
+        }
+        if (this.textContent != null && this.textContent.length() > 0) {
+            xpath.append("[contains(text(), ");
+            xpath.append(ElementQuery.toXPathLiteral(this.textContent));
+            xpath.append(")]");
+        }
+        return xpath.toString();
+    }
+    
+    @Override
+    public String toString() {
+        return this.toXPath();
+    }
+    
+    /**
+     * 指定された文字列をXPathの文字列リテラルに変換する。<br>
+     * シングルクォートとダブルクォートの両方を含む場合はconcat関数で連結する式に変換する。
+     * 
+     * @param value
+     * @return
+     */
+    public static String toXPathLiteral(String value) {
+        if (value == null) {
+            return "''";
+        }
+        if (value.indexOf("'") == -1) {
+            return "'" + value + "'";
+        }
+        if (value.indexOf("\"") == -1) {
+            return "\"" + value + "\"";
+        }
+        StringObject literal = new StringObject("concat(");
+        String[] parts = value.split("'", -1);
+        for (int index = 0; index < parts.length; index++) {
+            if (index > 0) {
+                literal.append(", \"'\", ");
+            }
+            literal.append("'");
+            literal.append(parts[index]);
+            literal.append("'");
+        }
+        literal.append(")");
+        return literal.toString();
+    }
+}
@@ -1,9 +1,14 @@
 package com.hirohiro716.scent.web;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 
 import org.w3c.dom.Node;
@@ -12,6 +17,7 @@ import com.hirohiro716.scent.Array;
 import com.hirohiro716.scent.StringObject;
 import com.hirohiro716.scent.filesystem.Directory;
 import com.hirohiro716.scent.filesystem.File;
+import com.hirohiro716.scent.reflection.Field;
 import com.hirohiro716.scent.reflection.Method;
 
 /**
@@ -34,6 +40,7 @@ public class HeadlessWebBrowser extends WebBrowser<HeadlessWebBrowser.Element> {
         this.webClient = constructor.newInstance();
         Method getCurrentWindowMethod = new Method(this.webClient);
         this.webWindow = getCurrentWindowMethod.invoke("getCurrentWindow");
+        this.firstWebWindow = this.webWindow;
         // Hide warning
         java.util.logging.Logger.getLogger("org.htmlunit").setLevel(Level.OFF); 
         // Setting that does not process as an exception if the JavaScript link destination does not exist
@@ -58,6 +65,8 @@ public class HeadlessWebBrowser extends WebBrowser<HeadlessWebBrowser.Element> {
 
     private Object webWindow;
     
+    private Object firstWebWindow;
+    
     private Object webPage = null;
 
     @Override
@@ -83,6 +92,62 @@ public class HeadlessWebBrowser extends WebBrowser<HeadlessWebBrowser.Element> {
         return true;
     }
 
+    /**
+     * WEBブラウザの状態を初期化する。<br>
+     * 最初のウィンドウ以外のウィンドウを閉じ、すべてのオリジンのローカルストレージとセッションストレージ、すべてのCookie、
+     * 要素の選択状態を消去して、最初のウィンドウに空白ページを表示する。
+     * 
+     * @throws Exception 最初のウィンドウが閉じられている場合。
+     */
+    @Override
+    public void resetState() throws Exception {
+        Method getTopLevelWindowsMethod = new Method(this.webClient);
+        List<Object> topLevelWindows = new ArrayList<>(getTopLevelWindowsMethod.<List<?>>invoke("getTopLevelWindows"));
+        for (Object topLevelWindow: topLevelWindows) {
+            if (topLevelWindow != this.firstWebWindow) {
+                Method closeMethod = new Method(this.loadClass("org.htmlunit.TopLevelWindow"), topLevelWindow);
+                closeMethod.invoke("close");
+            }
+        }
+        Method isClosedMethod = new Method(this.classWebWindow, this.firstWebWindow);
+        boolean isFirstWindowClosed = isClosedMethod.invoke("isClosed");
+        if (isFirstWindowClosed) {
+            throw new IOException("The first window of the web browser is closed.");
+        }
+        this.webWindow = this.firstWebWindow;
+        this.webPage = null;
+        Method setCurrentWindowMethod = new Method(this.webClient);
+        setCurrentWindowMethod.setParameterTypes(this.classWebWindow);
+        setCurrentWindowMethod.invoke("setCurrentWindow", this.webWindow);
+        Method getStorageHolderMethod = new Method(this.webClient);
+        Object storageHolder = getStorageHolderMethod.invoke("getStorageHolder");
+        Class<?> classStorageHolder = this.loadClass("org.htmlunit.StorageHolder");
+        Field storageHolderField = new Field(classStorageHolder, storageHolder);
+        for (java.lang.reflect.Field field: classStorageHolder.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) == false && Map.class.isAssignableFrom(field.getType())) {
+                Map<?, ?> storages = storageHolderField.getValue(field.getName());
+                storages.clear();
+            }
+        }
+        Method getCookieManagerMethod = new Method(this.webClient);
+        Object cookieManager = getCookieManagerMethod.invoke("getCookieManager");
+        Method clearCookiesMethod = new Method(this.loadClass("org.htmlunit.CookieManager"), cookieManager);
+        clearCookiesMethod.invoke("clearCookies");
+        Method getPageMethod = new Method(this.webClient);
+        getPageMethod.setParameterTypes(String.class);
+        Object maybeWebPage = getPageMethod.invoke("getPage", "about:blank");
+        if (maybeWebPage.getClass().getName().toLowerCase().indexOf("htmlpage") > -1) {
+            this.webPage = maybeWebPage;
+        }
+        this.otherPage = null;
+        super.resetState();
+    }
+    
+    @Override
+    public boolean isStateResettable() {
+        return true;
+    }
+
     private Object otherPage = null;
 
     @Override
@@ -92,7 +157,7 @@ public class HeadlessWebBrowser extends WebBrowser<HeadlessWebBrowser.Element> {
         if (maybeWebPage.getClass().getName().toLowerCase().indexOf("htmlpage") > -1) {
             this.webPage = maybeWebPage;
         }
-        this.getMapOfElementAndHtmlObject().clear();
+        this.clearMapOfElementAndHtmlObject();
         this.clearSelectedElements();
     }
     
@@ -133,7 +198,7 @@ public class HeadlessWebBrowser extends WebBrowser<HeadlessWebBrowser.Element> {
             method.setParameterTypes(this.loadClass("org.htmlunit.Page"));
             method.invoke("setEnclosedPage", this.webPage);
         }
-        this.getMapOfElementAndHtmlObject().clear();
+        this.clearMapOfElementAndHtmlObject();
         this.clearSelectedElements();
     }
 
@@ -162,6 +227,102 @@ public class HeadlessWebBrowser extends WebBrowser<HeadlessWebBrowser.Element> {
         }
     }
 
+    private Object domChangeListener = null;
+
+    private Object listeningWebPage = null;
+
+    private long numberOfDomChanges = 0;
+
+    private long numberOfObservedDomChanges = 0;
+
+    /**
+     * DOMの変更を通知するリスナーを作成する。<br>
+     * リスナーは通知を受けるたびに変更回数を増やして、変更を待機しているスレッドを再開させる。
+     * 
+     * @return
+     * @throws ClassNotFoundException
+     */
+    private Object createDomChangeListener() throws ClassNotFoundException {
+        HeadlessWebBrowser browser = this;
+        Class<?> classDomChangeListener = this.loadClass("org.htmlunit.html.DomChangeListener");
+        Class<?> classHtmlAttributeChangeListener = this.loadClass("org.htmlunit.html.HtmlAttributeChangeListener");
+        return Proxy.newProxyInstance(classDomChangeListener.getClassLoader(), new Class<?>[] {classDomChangeListener, classHtmlAttributeChangeListener}, new InvocationHandler() {
+            
+            @Override
+            public Object invoke(Object proxy, java.lang.reflect.Method method, Object[] parameters) throws Throwable {
+                switch (method.getName()) {
+                case "equals":
+                    return proxy == parameters[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return HeadlessWebBrowser.class.getName() + "$DomChangeListener";
+                default:
+                    synchronized (proxy) {
+                        browser.numberOfDomChanges++;
+                        proxy.notifyAll();
+                    }
+                    return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * 現在のWEBページにDOMの変更を通知するリスナーを登録する。以前のWEBページに登録したリスナーは削除する。
+     * 
+     * @throws Exception
+     */
+    private void listenDomChange() throws Exception {
+        if (this.webPage == null || this.webPage == this.listeningWebPage) {
+            return;
+        }
+        if (this.domChangeListener == null) {
+            this.domChangeListener = this.createDomChangeListener();
+        }
+        Class<?> classDomChangeListener = this.loadClass("org.htmlunit.html.DomChangeListener");
+        Class<?> classHtmlAttributeChangeListener = this.loadClass("org.htmlunit.html.HtmlAttributeChangeListener");
+        if (this.listeningWebPage != null) {
+            try {
+                Method removeDomChangeListenerMethod = new Method(this.loadClass("org.htmlunit.html.DomNode"), this.listeningWebPage);
+                removeDomChangeListenerMethod.setParameterTypes(classDomChangeListener);
+                removeDomChangeListenerMethod.invoke("removeDomChangeListener", this.domChangeListener);
+                Method removeHtmlAttributeChangeListenerMethod = new Method(this.loadClass("org.htmlunit.html.HtmlPage"), this.listeningWebPage);
+                removeHtmlAttributeChangeListenerMethod.setParameterTypes(classHtmlAttributeChangeListener);
+                removeHtmlAttributeChangeListenerMethod.invoke("removeHtmlAttributeChangeListener", this.domChangeListener);
+            } catch (Exception exception) {
+            }
+            this.listeningWebPage = null;
+        }
+        Method addDomChangeListenerMethod = new Method(this.loadClass("org.htmlunit.html.DomNode"), this.webPage);
+        addDomChangeListenerMethod.setParameterTypes(classDomChangeListener);
+        addDomChangeListenerMethod.invoke("addDomChangeListener", this.domChangeListener);
+        Method addHtmlAttributeChangeListenerMethod = new Method(this.loadClass("org.htmlunit.html.HtmlPage"), this.webPage);
+        addHtmlAttributeChangeListenerMethod.setParameterTypes(classHtmlAttributeChangeListener);
+        addHtmlAttributeChangeListenerMethod.invoke("addHtmlAttributeChangeListener", this.domChangeListener);
+        this.listeningWebPage = this.webPage;
+        // ページが置き換えられた場合も変更として扱う
+        synchronized (this.domChangeListener) {
+            this.numberOfDomChanges++;
+        }
+    }
+
+    @Override
+    protected boolean waitForChange(long timeoutMillisecond) throws Exception {
+        this.listenDomChange();
+        if (this.domChangeListener == null) {
+            return super.waitForChange(timeoutMillisecond);
+        }
+        synchronized (this.domChangeListener) {
+            if (this.numberOfDomChanges == this.numberOfObservedDomChanges) {
+                this.domChangeListener.wait(timeoutMillisecond);
+            }
+            boolean isChanged = this.numberOfDomChanges != this.numberOfObservedDomChanges;
+            this.numberOfObservedDomChanges = this.numberOfDomChanges;
+            return isChanged;
+        }
+    }
+
     @Override
     public void switchFrame(String name) {
         try {
@@ -169,7 +330,7 @@ public class HeadlessWebBrowser extends WebBrowser<HeadlessWebBrowser.Element> {
             this.webWindow = getFrameByNameMethod.invoke("getFrameByName", name);
             Method getEnclosedPageMethod = new Method(this.loadClass("org.htmlunit.WebWindowImpl"), this.webWindow);
             this.webPage = getEnclosedPageMethod.invoke("getEnclosedPage");
-            this.getMapOfElementAndHtmlObject().clear();
+            this.clearMapOfElementAndHtmlObject();
             this.clearSelectedElements();
         } catch (Exception exception) {
             exception.printStackTrace();
@@ -193,42 +354,6 @@ public class HeadlessWebBrowser extends WebBrowser<HeadlessWebBrowser.Element> {
         return null;
     }
 
-    @Override
-    protected List<Element> createElementListOfFoundByAttribute(Element parent, String attributeName, String attributeValue) throws Exception {
-        List<Element> elements = new ArrayList<>();
-        // Search at XPath
-        StringObject xpath = new StringObject("//*[@");
-        xpath.append(attributeName);
-        xpath.append("='");
-        xpath.append(attributeValue);
-        xpath.append("']");
-        Method method = new Method(this.loadClass("org.htmlunit.html.DomNode"), parent.element);
-        method.setParameterTypes(String.class);
-        List<Object> elementObjects = method.invoke("getByXPath", xpath.toString());
-        for (Object elementObject: elementObjects) {
-            elements.add(this.getElement(elementObject));
-        }
-        return elements;
-    }
-
-    @Override
-    protected List<Element> createElementListOfFoundByTagName(Element parent, String tagName, String textContent) throws Exception {
-        List<Element> elements = new ArrayList<>();
-        // Search at XPath
-        StringObject xpath = new StringObject(".//");
-        xpath.append(tagName);
-        xpath.append("[contains(text(), '");
-        xpath.append(textContent);
-        xpath.append("')]");
-        Method method = new Method(this.loadClass("org.htmlunit.html.DomNode"), parent.element);
-        method.setParameterTypes(String.class);
-        List<Object> elementObjects = method.invoke("getByXPath", xpath.toString());
-        for (Object elementObject: elementObjects) {
-            elements.add(this.getElement(elementObject));
-        }
-        return elements;
-    }
-
     @Override
     protected List<Element> createElementListOfFoundByCssSelector(Element parent, String cssSelector) throws Exception {
         List<Element> elements = new ArrayList<>();
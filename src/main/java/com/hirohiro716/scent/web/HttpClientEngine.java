@@ -0,0 +1,687 @@
+package com.hirohiro716.scent.web;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.OutputStream;
+import java.net.CookieHandler;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.hirohiro716.scent.web.WebsiteRequester.Response;
+
+/**
+ * java.net.http.HttpClientを使用してWEBサイトへリクエストを送信するエンジンのクラス。<br>
+ * ひとつのインスタンスを複数のWebsiteRequesterで共有すると、接続がキープアライブでプールされて再利用されるため、
+ * 同じホストへのリクエストごとにTCP接続やTLSハンドシェイクが行われない。HTTP/2に対応したサーバーとはHTTP/2で通信する。<br>
+ * クッキーはHttpClientではなくリクエストごとに指定されたjava.net.CookieHandlerで管理するため、
+ * エンジンを共有しているWebsiteRequester間でクッキーが混ざることはない。
+ * レスポンスがgzipまたはdeflateで圧縮されている場合は自動的に展開される。<br>
+ * ホストごとの送信間隔の制限、レスポンスコードが429または5xxの場合の再送信、応答時間の集計を行うことができる。
+ */
+public class HttpClientEngine {
+    
+    private static final int MAXIMUM_NUMBER_OF_REDIRECTS = 20;
+    
+    private static final int DECODING_BUFFER_SIZE = 65536;
+    
+    private static final long MAXIMUM_RETRY_DELAY_MILLISECOND = 60000;
+    
+    /**
+     * コンストラクタ。<br>
+     * 非同期処理に使用するjava.util.concurrent.Executorと、接続が確立するまでにかかる時間の上限を指定する。
+     * 
+     * @param executor nullの場合はHttpClientの既定のExecutorを使用する。
+     * @param connectTimeoutMillisecond 0以下の場合は上限なし。
+     */
+    public HttpClientEngine(Executor executor, int connectTimeoutMillisecond) {
+        HttpClient.Builder builder = HttpClient.newBuilder();
+        builder.version(HttpClient.Version.HTTP_2);
+        builder.followRedirects(HttpClient.Redirect.NEVER);
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        if (connectTimeoutMillisecond > 0) {
+            builder.connectTimeout(Duration.ofMillis(connectTimeoutMillisecond));
+        }
+        this.executor = executor;
+        this.httpClient = builder.build();
+    }
+    
+    /**
+     * コンストラクタ。<br>
+     * 非同期処理に使用するjava.util.concurrent.Executorを指定する。
+     * 
+     * @param executor nullの場合はHttpClientの既定のExecutorを使用する。
+     */
+    public HttpClientEngine(Executor executor) {
+        this(executor, 0);
+    }
+    
+    /**
+     * コンストラクタ。
+     */
+    public HttpClientEngine() {
+        this(null, 0);
+    }
+    
+    private static HttpClientEngine defaultEngine = null;
+    
+    /**
+     * アプリケーション全体で共有する既定のエンジンを取得する。
+     * 
+     * @return
+     */
+    public static synchronized HttpClientEngine getDefault() {
+        if (HttpClientEngine.defaultEngine == null) {
+            HttpClientEngine.defaultEngine = new HttpClientEngine();
+        }
+        return HttpClientEngine.defaultEngine;
+    }
+    
+    private Executor executor;
+    
+    /**
+     * 非同期処理に使用するjava.util.concurrent.Executorを取得する。
+     * 
+     * @return 既定のExecutorを使用している場合はnull。
+     */
+    public Executor getExecutor() {
+        return this.executor;
+    }
+    
+    private HttpClient httpClient;
+    
+    /**
+     * このインスタンスにラップされているjava.net.http.HttpClientを取得する。
+     * 
+     * @return
+     */
+    public HttpClient getInnerInstance() {
+        return this.httpClient;
+    }
+    
+    private Map<String, TokenBucket> tokenBuckets = new ConcurrentHashMap<>();
+    
+    private double numberOfRequestsPerSecond = 0;
+    
+    private int burstSize = 1;
+    
+    /**
+     * ホストごとに1秒間に送信できるリクエスト数の上限をトークンバケット方式で設定する。初期値は0で上限なし。<br>
+     * 上限を超えるリクエストは、送信できるようになるまで待機してから送信される。
+     * 
+     * @param numberOfRequestsPerSecond 1秒間に送信できるリクエスト数。0以下の場合は上限なし。
+     * @param burstSize 待機せずに連続して送信できるリクエスト数。
+     */
+    public void setRateLimit(double numberOfRequestsPerSecond, int burstSize) {
+        this.numberOfRequestsPerSecond = numberOfRequestsPerSecond;
+        this.burstSize = Math.max(burstSize, 1);
+        this.tokenBuckets.clear();
+    }
+    
+    private int maximumNumberOfRetries = 0;
+    
+    /**
+     * レスポンスコードが429または5xxの場合に再送信する最大の回数を設定する。初期値は0で再送信しない。<br>
+     * ※POSTなどの冪等ではないリクエストも再送信されるため注意が必要。
+     * 
+     * @param maximumNumberOfRetries
+     */
+    public void setMaximumNumberOfRetries(int maximumNumberOfRetries) {
+        this.maximumNumberOfRetries = maximumNumberOfRetries;
+    }
+    
+    private long initialRetryDelayMillisecond = 500;
+    
+    /**
+     * 最初の再送信までの待機時間を設定する。初期値は500ミリ秒。<br>
+     * 待機時間は再送信するごとに倍になる(指数バックオフ)。レスポンスにRetry-Afterヘッダーがある場合は、その秒数以上待機する。
+     * 
+     * @param millisecond
+     */
+    public void setInitialRetryDelayMillisecond(long millisecond) {
+        this.initialRetryDelayMillisecond = millisecond;
+    }
+    
+    private ResponseTimeHistogram responseTimeHistogram = new ResponseTimeHistogram();
+    
+    /**
+     * このエンジンで送信したリクエストの応答時間のヒストグラムを取得する。再送信やリダイレクトは個別に記録される。
+     * 
+     * @return
+     */
+    public ResponseTimeHistogram getResponseTimeHistogram() {
+        return this.responseTimeHistogram;
+    }
+    
+    /**
+     * 指定されたリクエストを送信して、その結果を取得する。<br>
+     * リダイレクトはHttpURLConnectionと同様に追跡され、リダイレクトの途中で受け取ったクッキーも指定されたCookieHandlerに保存される。
+     * レスポンスのボディは読み込まれずにストリームとして返される。
+     * 
+     * @param request
+     * @param cookieHandler リクエストに付加するクッキーと、レスポンスのクッキーを管理するCookieHandler。nullの場合はクッキーを使用しない。
+     * @param charsetName レスポンスのボディの文字コード。
+     * @return
+     * @throws IOException
+     */
+    public Response send(HttpRequest request, CookieHandler cookieHandler, String charsetName) throws IOException {
+        Exchange<InputStream> exchange = new Exchange<>(request, cookieHandler, HttpResponse.BodyHandlers.ofInputStream());
+        CompletableFuture<HttpResponse<InputStream>> result = exchange.start();
+        HttpResponse<InputStream> response;
+        try {
+            response = result.get();
+        } catch (InterruptedException exception) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException(exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) exception.getCause()).getCause();
+            }
+            if (exception.getCause() instanceof IOException) {
+                throw (IOException) exception.getCause();
+            }
+            throw new IOException(exception.getCause());
+        }
+        InputStream inputStream = HttpClientEngine.decode(response.body(), response.headers());
+        return new Response(response.statusCode(), inputStream, charsetName, response.headers().map());
+    }
+    
+    /**
+     * 指定されたリクエストを非同期で送信する。<br>
+     * 返されるCompletableFutureは、レスポンスのボディをすべて受信してから完了する。
+     * 返されたCompletableFutureを取り消した場合は、送信中のリクエストも取り消され、再送信やリダイレクトも行われない。
+     * 
+     * @param request
+     * @param cookieHandler リクエストに付加するクッキーと、レスポンスのクッキーを管理するCookieHandler。nullの場合はクッキーを使用しない。
+     * @param charsetName レスポンスのボディの文字コード。
+     * @return
+     */
+    public CompletableFuture<Response> sendAsync(HttpRequest request, CookieHandler cookieHandler, String charsetName) {
+        Exchange<byte[]> exchange = new Exchange<>(request, cookieHandler, HttpResponse.BodyHandlers.ofByteArray());
+        CompletableFuture<HttpResponse<byte[]>> result = exchange.start();
+        CompletableFuture<Response> future = result.thenApply(new Function<HttpResponse<byte[]>, Response>() {
+            
+            @Override
+            public Response apply(HttpResponse<byte[]> response) {
+                try {
+                    InputStream inputStream = HttpClientEngine.decode(new ByteArrayInputStream(response.body()), response.headers());
+                    return new Response(response.statusCode(), inputStream, charsetName, response.headers().map());
+                } catch (IOException exception) {
+                    throw new CompletionException(exception);
+                }
+            }
+        });
+        future.whenComplete(new BiConsumer<Response, Throwable>() {
+            
+            @Override
+            public void accept(Response response, Throwable throwable) {
+                if (future.isCancelled()) {
+                    result.cancel(true);
+                }
+            }
+        });
+        return future;
+    }
+    
+    /**
+     * 指定されたホストへの次のリクエストを送信できるまでの待機時間を予約する。
+     * 
+     * @param host
+     * @return 待機時間(ナノ秒)。
+     */
+    private long reserve(String host) {
+        if (this.numberOfRequestsPerSecond <= 0) {
+            return 0;
+        }
+        String key = host;
+        if (key == null) {
+            key = "";
+        }
+        TokenBucket tokenBucket = this.tokenBuckets.get(key);
+        if (tokenBucket == null) {
+            tokenBucket = new TokenBucket(this.numberOfRequestsPerSecond, this.burstSize);
+            TokenBucket existing = this.tokenBuckets.putIfAbsent(key, tokenBucket);
+            if (existing != null) {
+                tokenBucket = existing;
+            }
+        }
+        return tokenBucket.reserve();
+    }
+    
+    /**
+     * 指定された時間が経過した後に処理を実行する。
+     * 
+     * @param runnable
+     * @param delayNanoseconds
+     */
+    private void execute(Runnable runnable, long delayNanoseconds) {
+        if (delayNanoseconds <= 0) {
+            runnable.run();
+            return;
+        }
+        Executor executor = this.executor;
+        if (executor == null) {
+            executor = ForkJoinPool.commonPool();
+        }
+        CompletableFuture.delayedExecutor(delayNanoseconds, TimeUnit.NANOSECONDS, executor).execute(runnable);
+    }
+    
+    /**
+     * ひとつのリクエストの、リダイレクトと再送信を含む送受信を非同期で行うクラス。
+     * 
+     * @param <T> レスポンスのボディの型。
+     */
+    private class Exchange<T> {
+        
+        /**
+         * コンストラクタ。<br>
+         * 元のリクエスト、クッキーを管理するCookieHandler、レスポンスのボディの処理方法を指定する。
+         * 
+         * @param request
+         * @param cookieHandler
+         * @param bodyHandler
+         */
+        private Exchange(HttpRequest request, CookieHandler cookieHandler, HttpResponse.BodyHandler<T> bodyHandler) {
+            this.request = request;
+            this.cookieHandler = cookieHandler;
+            this.bodyHandler = bodyHandler;
+            this.uri = request.uri();
+            this.method = request.method();
+        }
+        
+        private HttpRequest request;
+        
+        private CookieHandler cookieHandler;
+        
+        private HttpResponse.BodyHandler<T> bodyHandler;
+        
+        private URI uri;
+        
+        private String method;
+        
+        private boolean hasBody = true;
+        
+        private int numberOfRedirects = 0;
+        
+        private int numberOfRetries = 0;
+        
+        private CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        
+        private CompletableFuture<HttpResponse<T>> sending = null;
+        
+        /**
+         * 送信を開始する。
+         * 
+         * @return 最終的なレスポンスを受け取った際に完了するCompletableFuture。取り消した場合は送信中のリクエストも取り消される。
+         */
+        private CompletableFuture<HttpResponse<T>> start() {
+            Exchange<T> exchange = this;
+            this.result.whenComplete(new BiConsumer<HttpResponse<T>, Throwable>() {
+                
+                @Override
+                public void accept(HttpResponse<T> response, Throwable throwable) {
+                    if (exchange.result.isCancelled()) {
+                        exchange.cancelSending();
+                    }
+                }
+            });
+            this.schedule(0);
+            return this.result;
+        }
+        
+        /**
+         * 送信中のリクエストを取り消す。
+         */
+        private void cancelSending() {
+            CompletableFuture<HttpResponse<T>> sending;
+            synchronized (this) {
+                sending = this.sending;
+            }
+            if (sending != null) {
+                sending.cancel(true);
+            }
+        }
+        
+        /**
+         * 指定された時間とホストごとの送信間隔の待機時間が経過した後に送信する。
+         * 
+         * @param delayNanoseconds
+         */
+        private void schedule(long delayNanoseconds) {
+            Exchange<T> exchange = this;
+            long waitNanoseconds = HttpClientEngine.this.reserve(this.uri.getHost());
+            HttpClientEngine.this.execute(new Runnable() {
+                
+                @Override
+                public void run() {
+                    exchange.send();
+                }
+            }, Math.max(delayNanoseconds, waitNanoseconds));
+        }
+        
+        /**
+         * 現在の送信先にリクエストを送信する。
+         */
+        private void send() {
+            if (this.result.isDone()) {
+                return;
+            }
+            HttpRequest sendingRequest;
+            try {
+                sendingRequest = HttpClientEngine.createRequest(this.request, this.uri, this.method, this.hasBody, this.cookieHandler);
+            } catch (Exception exception) {
+                this.result.completeExceptionally(exception);
+                return;
+            }
+            Exchange<T> exchange = this;
+            long startNanoseconds = System.nanoTime();
+            CompletableFuture<HttpResponse<T>> sending = HttpClientEngine.this.httpClient.sendAsync(sendingRequest, this.bodyHandler);
+            synchronized (this) {
+                this.sending = sending;
+            }
+            if (this.result.isCancelled()) {
+                sending.cancel(true);
+            }
+            sending.whenComplete(new BiConsumer<HttpResponse<T>, Throwable>() {
+                
+                @Override
+                public void accept(HttpResponse<T> response, Throwable throwable) {
+                    if (exchange.result.isDone()) {
+                        if (response != null && response.body() instanceof InputStream) {
+                            try {
+                                ((InputStream) response.body()).close();
+                            } catch (IOException exception) {
+                            }
+                        }
+                        return;
+                    }
+                    if (throwable != null) {
+                        exchange.result.completeExceptionally(throwable);
+                        return;
+                    }
+                    HttpClientEngine.this.responseTimeHistogram.record(System.nanoTime() - startNanoseconds);
+                    try {
+                        exchange.receive(response);
+                    } catch (Exception exception) {
+                        exchange.result.completeExceptionally(exception);
+                    }
+                }
+            });
+        }
+        
+        /**
+         * 受け取ったレスポンスに応じて、再送信、リダイレクト、完了のいずれかを行う。
+         * 
+         * @param response
+         * @throws IOException
+         */
+        private void receive(HttpResponse<T> response) throws IOException {
+            if (this.cookieHandler != null) {
+                this.cookieHandler.put(this.uri, response.headers().map());
+            }
+            int code = response.statusCode();
+            if ((code == 429 || code >= 500) && this.numberOfRetries < HttpClientEngine.this.maximumNumberOfRetries) {
+                long delayMillisecond = HttpClientEngine.this.initialRetryDelayMillisecond << Math.min(this.numberOfRetries, 20);
+                delayMillisecond = Math.min(delayMillisecond, HttpClientEngine.MAXIMUM_RETRY_DELAY_MILLISECOND);
+                delayMillisecond = delayMillisecond / 2 + ThreadLocalRandom.current().nextLong(delayMillisecond / 2 + 1);
+                Optional<String> retryAfter = response.headers().firstValue("Retry-After");
+                if (retryAfter.isPresent()) {
+                    try {
+                        delayMillisecond = Math.max(delayMillisecond, Long.parseLong(retryAfter.get().trim()) * 1000);
+                    } catch (NumberFormatException exception) {
+                    }
+                }
+                HttpClientEngine.discard(response.body());
+                this.numberOfRetries++;
+                this.schedule(TimeUnit.MILLISECONDS.toNanos(delayMillisecond));
+                return;
+            }
+            URI location = HttpClientEngine.findRedirectLocation(response);
+            if (location == null) {
+                this.result.complete(response);
+                return;
+            }
+            HttpClientEngine.discard(response.body());
+            if (this.numberOfRedirects >= HttpClientEngine.MAXIMUM_NUMBER_OF_REDIRECTS) {
+                throw new IOException("Too many redirects: " + location);
+            }
+            if (code == 303 || (code < 307 && this.method.equals("POST"))) {
+                this.method = "GET";
+                this.hasBody = false;
+            }
+            this.uri = location;
+            this.numberOfRedirects++;
+            this.schedule(0);
+        }
+    }
+    
+    /**
+     * 使用しないレスポンスのボディを読み捨てる。
+     * 
+     * @param body
+     * @throws IOException
+     */
+    private static void discard(Object body) throws IOException {
+        if (body instanceof InputStream) {
+            try (InputStream inputStream = (InputStream) body) {
+                inputStream.transferTo(OutputStream.nullOutputStream());
+            }
+        }
+    }
+    
+    /**
+     * 送信間隔を制御するトークンバケットのクラス。
+     */
+    private static class TokenBucket {
+        
+        /**
+         * コンストラクタ。<br>
+         * 1秒間に補充されるトークン数とバケットの容量を指定する。
+         * 
+         * @param numberOfTokensPerSecond
+         * @param capacity
+         */
+        private TokenBucket(double numberOfTokensPerSecond, int capacity) {
+            this.nanosecondsPerToken = 1000000000d / numberOfTokensPerSecond;
+            this.capacity = capacity;
+            this.numberOfTokens = capacity;
+            this.lastRefilledNanoseconds = System.nanoTime();
+        }
+        
+        private double nanosecondsPerToken;
+        
+        private double capacity;
+        
+        private double numberOfTokens;
+        
+        private long lastRefilledNanoseconds;
+        
+        /**
+         * トークンをひとつ予約する。トークンが不足している場合は、補充されるまでの待機時間を返す。
+         * 
+         * @return 待機時間(ナノ秒)。
+         */
+        private synchronized long reserve() {
+            long now = System.nanoTime();
+            this.numberOfTokens = Math.min(this.capacity, this.numberOfTokens + (now - this.lastRefilledNanoseconds) / this.nanosecondsPerToken);
+            this.lastRefilledNanoseconds = now;
+            this.numberOfTokens--;
+            if (this.numberOfTokens >= 0) {
+                return 0;
+            }
+            return (long) (-this.numberOfTokens * this.nanosecondsPerToken);
+        }
+    }
+    
+    /**
+     * 利用可能な場合は仮想スレッドでタスクを実行するjava.util.concurrent.ExecutorServiceを作成する。<br>
+     * 仮想スレッドに対応していない実行環境では、必要に応じてデーモンスレッドを作成するスレッドプールを返す。
+     * 作成したExecutorServiceは、コンストラクタに指定してエンジンの非同期処理に使用できる。
+     * 
+     * @return
+     */
+    public static ExecutorService createVirtualThreadExecutor() {
+        try {
+            java.lang.reflect.Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception exception) {
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+    
+    /**
+     * 元のリクエストの送信先を変更して、クッキーを付加したリクエストを作成する。
+     * 
+     * @param request 元のリクエスト。
+     * @param uri 送信先。
+     * @param method リクエストメソッド。
+     * @param hasBody 元のリクエストの本文を送信する場合はtrue。
+     * @param cookieHandler
+     * @return
+     * @throws IOException
+     */
+    private static HttpRequest createRequest(HttpRequest request, URI uri, String method, boolean hasBody, CookieHandler cookieHandler) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+        if (request.timeout().isPresent()) {
+            builder.timeout(request.timeout().get());
+        }
+        builder.expectContinue(request.expectContinue());
+        for (Map.Entry<String, List<String>> header: request.headers().map().entrySet()) {
+            if (hasBody == false && header.getKey().equalsIgnoreCase("Content-Type")) {
+                continue;
+            }
+            for (String value: header.getValue()) {
+                builder.header(header.getKey(), value);
+            }
+        }
+        if (request.headers().firstValue("Accept-Encoding").isPresent() == false) {
+            builder.header("Accept-Encoding", "gzip, deflate");
+        }
+        if (cookieHandler != null) {
+            for (Map.Entry<String, List<String>> cookie: cookieHandler.get(uri, new HashMap<>()).entrySet()) {
+                for (String value: cookie.getValue()) {
+                    if (value.length() > 0) {
+                        builder.header(cookie.getKey(), value);
+                    }
+                }
+            }
+        }
+        Optional<HttpRequest.BodyPublisher> bodyPublisher = request.bodyPublisher();
+        if (hasBody && bodyPublisher.isPresent()) {
+            builder.method(method, bodyPublisher.get());
+        } else {
+            builder.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        return builder.build();
+    }
+    
+    /**
+     * レスポンスがリダイレクトの場合は、リダイレクト先のURIを取得する。
+     * 
+     * @param response
+     * @return リダイレクトではない場合や、HTTPSからHTTPへのリダイレクトの場合はnull。
+     */
+    private static URI findRedirectLocation(HttpResponse<?> response) {
+        switch (response.statusCode()) {
+        case 301:
+        case 302:
+        case 303:
+        case 307:
+        case 308:
+            break;
+        default:
+            return null;
+        }
+        Optional<String> location = response.headers().firstValue("Location");
+        if (location.isPresent() == false) {
+            return null;
+        }
+        URI uri = response.request().uri().resolve(location.get());
+        String scheme = response.request().uri().getScheme();
+        if (uri.getScheme() == null || (scheme.equalsIgnoreCase("https") && uri.getScheme().equalsIgnoreCase("http"))) {
+            return null;
+        }
+        return uri;
+    }
+    
+    /**
+     * Content-Encodingヘッダーに従って、レスポンスのボディを展開するストリームを作成する。
+     * 
+     * @param inputStream
+     * @param headers
+     * @return
+     * @throws IOException
+     */
+    private static InputStream decode(InputStream inputStream, HttpHeaders headers) throws IOException {
+        Optional<String> contentEncoding = headers.firstValue("Content-Encoding");
+        if (contentEncoding.isPresent() == false) {
+            return inputStream;
+        }
+        String encoding = contentEncoding.get().trim().toLowerCase();
+        if (encoding.equals("gzip") == false && encoding.equals("x-gzip") == false && encoding.equals("deflate") == false) {
+            return inputStream;
+        }
+        BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, HttpClientEngine.DECODING_BUFFER_SIZE);
+        bufferedInputStream.mark(2);
+        int first = bufferedInputStream.read();
+        int second = bufferedInputStream.read();
+        bufferedInputStream.reset();
+        if (first == -1) {
+            bufferedInputStream.close();
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        if (encoding.equals("deflate") == false) {
+            return new GZIPInputStream(bufferedInputStream, HttpClientEngine.DECODING_BUFFER_SIZE);
+        }
+        boolean isZlibFormat = (first & 0x0F) == 8 && second > -1 && ((first << 8) | second) % 31 == 0;
+        Inflater inflater = new Inflater(isZlibFormat == false);
+        return new InflaterInputStream(bufferedInputStream, inflater, HttpClientEngine.DECODING_BUFFER_SIZE) {
+            
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+}
@@ -6,8 +6,10 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.hirohiro716.scent.Array;
 import com.hirohiro716.scent.Dimension;
@@ -52,6 +54,8 @@ public class ModernWebBrowser extends WebBrowser<ModernWebBrowser.Element> {
             System.setProperty(usingType.getSystemPropertyName(), seleniumWebDriver.getAbsolutePath());
         }
         this.webDriver = this.createWebDriver(usingType);
+        Method getWindowHandleMethod = new Method(this.classWebDriver, this.webDriver);
+        this.firstWindowHandle = getWindowHandleMethod.invoke("getWindowHandle");
     }
     
     /**
@@ -84,6 +88,8 @@ public class ModernWebBrowser extends WebBrowser<ModernWebBrowser.Element> {
     
     private Object webDriver;
     
+    private String firstWindowHandle;
+    
     /**
      * 指定されたタイプのWEBドライバーを作成する。
      * 
@@ -296,6 +302,49 @@ public class ModernWebBrowser extends WebBrowser<ModernWebBrowser.Element> {
         return false;
     }
 
+    /**
+     * WEBブラウザの状態を初期化する。<br>
+     * 最初のウィンドウ以外のウィンドウを閉じ、表示中のWEBページのオリジンのローカルストレージとセッションストレージ、
+     * 表示中のWEBページのドメインのCookie、要素の選択状態を消去して、最初のウィンドウに空白ページを表示する。<br>
+     * ※ほかのオリジンのストレージやほかのドメインのCookieは消去されないため、isStateResettableメソッドはfalseを返す。WebBrowserPoolで再利用する場合はsetPartialResetAllowedメソッドを使用する。
+     * 
+     * @throws Exception 最初のウィンドウが閉じられている場合。
+     */
+    @Override
+    public void resetState() throws Exception {
+        this.acceptDialog();
+        Method method = new Method(this.classWebDriver, this.webDriver);
+        Set<String> windowHandles = method.invoke("getWindowHandles");
+        if (windowHandles.contains(this.firstWindowHandle) == false) {
+            throw new IOException("The first window of the web browser is closed.");
+        }
+        Object switchTo = method.invoke("switchTo");
+        Method windowMethod = new Method(switchTo);
+        windowMethod.setParameterTypes(String.class);
+        for (String windowHandle: windowHandles) {
+            if (windowHandle.equals(this.firstWindowHandle) == false) {
+                windowMethod.invoke("window", windowHandle);
+                this.acceptDialog();
+                method.invoke("close");
+            }
+        }
+        windowMethod.invoke("window", this.firstWindowHandle);
+        Method defaultContentMethod = new Method(switchTo);
+        defaultContentMethod.invoke("defaultContent");
+        try {
+            Method executeScriptMethod = new Method(this.classJavascriptExecutor, this.webDriver);
+            executeScriptMethod.invoke("executeScript", "window.localStorage.clear(); window.sessionStorage.clear();", new Object[] {});
+        } catch (InvocationTargetException exception) {
+            // about:blankなどのページのストレージにはアクセスできない
+        }
+        Object manage = method.invoke("manage");
+        Method deleteAllCookiesMethod = new Method(this.loadClass("org.openqa.selenium.WebDriver$Options"), manage);
+        deleteAllCookiesMethod.invoke("deleteAllCookies");
+        method.invoke("get", "about:blank");
+        this.numberOfDomChanges = -1;
+        super.resetState();
+    }
+
     /**
      * WEBブラウザに表示されているダイアログを承認する。
      */
@@ -347,7 +396,7 @@ public class ModernWebBrowser extends WebBrowser<ModernWebBrowser.Element> {
     	this.acceptDialog();
         Method method = new Method(this.classWebDriver, this.webDriver);
         method.invoke("get", url.toExternalForm());
-        this.getMapOfElementAndHtmlObject().clear();
+        this.clearMapOfElementAndHtmlObject();
         this.clearSelectedElements();
     }
     
@@ -379,12 +428,46 @@ public class ModernWebBrowser extends WebBrowser<ModernWebBrowser.Element> {
             this.acceptDialog();
             Method method = new Method(this.classJavascriptExecutor, this.webDriver);
             method.invoke("executeScript", javascript, new Object[] {});
-            this.getMapOfElementAndHtmlObject().clear();
+            this.clearMapOfElementAndHtmlObject();
         } catch (Exception exception) {
             exception.printStackTrace();
         }
     }
 
+    private static final String SCRIPT_FOR_WAITING_CHANGE = "var lastCount = arguments[0]; var timeout = arguments[1]; var callback = arguments[arguments.length - 1];"
+            + "var state = window.scentDomChangeState;"
+            + "if (!state) {"
+            + "    state = {count: 0, waiters: []};"
+            + "    window.scentDomChangeState = state;"
+            + "    new MutationObserver(function() {"
+            + "        state.count++;"
+            + "        var waiters = state.waiters; state.waiters = [];"
+            + "        for (var i = 0; i < waiters.length; i++) { waiters[i](); }"
+            + "    }).observe(document, {childList: true, subtree: true, attributes: true, characterData: true});"
+            + "}"
+            + "if (state.count != lastCount) { callback(state.count); return; }"
+            + "var timer = null;"
+            + "var waiter = function() { clearTimeout(timer); callback(state.count); };"
+            + "state.waiters.push(waiter);"
+            + "timer = setTimeout(function() {"
+            + "    var index = state.waiters.indexOf(waiter);"
+            + "    if (index > -1) { state.waiters.splice(index, 1); }"
+            + "    callback(state.count);"
+            + "}, timeout);";
+
+    private long numberOfDomChanges = -1;
+
+    @Override
+    protected boolean waitForChange(long timeoutMillisecond) throws Exception {
+        // 監視はページに残って数え続けるため、呼び出しの間に発生した変更も検出できる
+        Method method = new Method(this.classJavascriptExecutor, this.webDriver);
+        Number result = method.invoke("executeAsyncScript", ModernWebBrowser.SCRIPT_FOR_WAITING_CHANGE, new Object[] {this.numberOfDomChanges, timeoutMillisecond});
+        long numberOfDomChanges = result.longValue();
+        boolean isChanged = numberOfDomChanges != this.numberOfDomChanges;
+        this.numberOfDomChanges = numberOfDomChanges;
+        return isChanged;
+    }
+
     @Override
     public void switchFrame(String name) {
         try {
@@ -414,50 +497,6 @@ public class ModernWebBrowser extends WebBrowser<ModernWebBrowser.Element> {
         return null;
     }
 
-    @Override
-    protected List<Element> createElementListOfFoundByAttribute(Element parent, String attributeName, String attributeValue) throws Exception {
-        List<Element> elements = new ArrayList<>();
-        // Search at XPath
-        StringObject xpath = new StringObject(".//*[@");
-        xpath.append(attributeName);
-        xpath.append("='");
-        xpath.append(attributeValue);
-        xpath.append("']");
-        Method byMethod = new Method(this.classBy);
-        byMethod.setParameterTypes(String.class);
-        Object by = byMethod.invoke("xpath", xpath.toString());
-        // Search elements
-        Method findElementsMethod = new Method(this.classRemoteWebElement, parent.element);
-        findElementsMethod.setParameterTypes(this.classBy);
-        List<?> elementObjects = findElementsMethod.invoke("findElements", by);
-        for (Object elementObject: elementObjects) {
-            elements.add(this.getElement(elementObject));
-        }
-        return elements;
-    }
-
-    @Override
-    protected List<Element> createElementListOfFoundByTagName(Element parent, String tagName, String textContent) throws Exception {
-        List<Element> elements = new ArrayList<>();
-        // Search at XPath
-        StringObject xpath = new StringObject(".//");
-        xpath.append(tagName);
-        xpath.append("[contains(text(), '");
-        xpath.append(textContent);
-        xpath.append("')]");
-        Method byMethod = new Method(this.classBy);
-        byMethod.setParameterTypes(String.class);
-        Object by = byMethod.invoke("xpath", xpath.toString());
-        // Search elements
-        Method findElementsMethod = new Method(this.classRemoteWebElement, parent.element);
-        findElementsMethod.setParameterTypes(this.classBy);
-        List<?> elementObjects = findElementsMethod.invoke("findElements", by);
-        for (Object elementObject: elementObjects) {
-            elements.add(this.getElement(elementObject));
-        }
-        return elements;
-    }
-
     @Override
     protected List<Element> createElementListOfFoundByCssSelector(Element parent, String cssSelector) throws Exception {
         List<Element> elements = new ArrayList<>();
@@ -564,7 +603,7 @@ public class ModernWebBrowser extends WebBrowser<ModernWebBrowser.Element> {
             browser.acceptDialog();
             Method method = new Method(browser.classJavascriptExecutor, browser.webDriver);
             method.invoke("executeScript", "arguments[0].focus();", new Object[] {this.element});
-            browser.getMapOfElementAndHtmlObject().clear();
+            browser.clearMapOfElementAndHtmlObject();
         }
 
         @Override
@@ -573,7 +612,7 @@ public class ModernWebBrowser extends WebBrowser<ModernWebBrowser.Element> {
             browser.acceptDialog();
             Method method = new Method(browser.classJavascriptExecutor, browser.webDriver);
             method.invoke("executeScript", "arguments[0].click();", new Object[] {this.element});
-            browser.getMapOfElementAndHtmlObject().clear();
+            browser.clearMapOfElementAndHtmlObject();
         }
 
         @Override
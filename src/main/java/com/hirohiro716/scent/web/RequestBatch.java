@@ -0,0 +1,247 @@
+package com.hirohiro716.scent.web;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.hirohiro716.scent.web.WebsiteRequester.Response;
+
+/**
+ * 複数のリクエストを、同時に送信するリクエスト数の上限を守りながら非同期で送信するクラス。<br>
+ * 各リクエストは追加した時点のWebsiteRequesterの設定で作成され、WebsiteRequesterのHttpClientEngineで送信される。
+ * エンジンが設定されていない場合は既定のエンジンが使用される。
+ * ホストごとの送信間隔の制限や再送信は、エンジンの設定に従って行われる。
+ */
+public class RequestBatch {
+    
+    /**
+     * コンストラクタ。<br>
+     * 同時に送信するリクエスト数の上限を指定する。
+     * 
+     * @param maximumNumberOfConcurrentRequests
+     */
+    public RequestBatch(int maximumNumberOfConcurrentRequests) {
+        this.maximumNumberOfConcurrentRequests = Math.max(maximumNumberOfConcurrentRequests, 1);
+    }
+    
+    private int maximumNumberOfConcurrentRequests;
+    
+    private List<CompletableFuture<Response>> results = new ArrayList<>();
+    
+    private Deque<Entry> waitingEntries = new ArrayDeque<>();
+    
+    private int numberOfRunningRequests = 0;
+    
+    private boolean isStarted = false;
+    
+    /**
+     * 送信する本文を指定してリクエストを追加する。
+     * 
+     * @param requester
+     * @param body
+     * @return 追加したリクエストのレスポンスを受け取った際に完了するCompletableFuture。
+     */
+    public CompletableFuture<Response> add(WebsiteRequester requester, String body) {
+        try {
+            return this.add(requester, requester.createHttpRequest(body));
+        } catch (IOException exception) {
+            return this.add(CompletableFuture.<Response>failedFuture(exception));
+        }
+    }
+    
+    /**
+     * リクエストを追加する。
+     * 
+     * @param requester
+     * @return 追加したリクエストのレスポンスを受け取った際に完了するCompletableFuture。
+     */
+    public CompletableFuture<Response> add(WebsiteRequester requester) {
+        return this.add(requester, "");
+    }
+    
+    /**
+     * 送信するパラメーターを指定してリクエストを追加する。
+     * 
+     * @param requester
+     * @param requestParameters
+     * @return 追加したリクエストのレスポンスを受け取った際に完了するCompletableFuture。
+     */
+    public CompletableFuture<Response> add(WebsiteRequester requester, Map<String, Object> requestParameters) {
+        try {
+            return this.add(requester, requester.createHttpRequest(requestParameters));
+        } catch (IOException exception) {
+            return this.add(CompletableFuture.<Response>failedFuture(exception));
+        }
+    }
+    
+    /**
+     * 作成済みのリクエストを追加する。
+     * 
+     * @param requester
+     * @param request
+     * @return
+     */
+    private CompletableFuture<Response> add(WebsiteRequester requester, HttpRequest request) {
+        Entry entry = new Entry(requester, request);
+        synchronized (this) {
+            this.results.add(entry.result);
+            this.waitingEntries.add(entry);
+        }
+        this.startWaitingEntries();
+        return entry.result;
+    }
+    
+    /**
+     * 完了済みのCompletableFutureを結果として追加する。
+     * 
+     * @param result
+     * @return
+     */
+    private synchronized CompletableFuture<Response> add(CompletableFuture<Response> result) {
+        this.results.add(result);
+        return result;
+    }
+    
+    /**
+     * 送信を開始していない場合は開始する。以降に追加したリクエストは、上限に達していなければ追加した時点で送信される。
+     * 
+     * @return すべてのリクエストのレスポンスを追加した順に格納したリストを受け取った際に完了するCompletableFuture。
+     */
+    public CompletableFuture<List<Response>> executeAsync() {
+        List<CompletableFuture<Response>> results;
+        synchronized (this) {
+            this.isStarted = true;
+            results = new ArrayList<>(this.results);
+        }
+        this.startWaitingEntries();
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()])).thenApply(new Function<Void, List<Response>>() {
+            
+            @Override
+            public List<Response> apply(Void none) {
+                List<Response> responses = new ArrayList<>();
+                for (CompletableFuture<Response> result: results) {
+                    responses.add(result.join());
+                }
+                return responses;
+            }
+        });
+    }
+    
+    /**
+     * すべてのリクエストを送信して、すべてのレスポンスを受け取るまで待機する。待機中に割り込まれた場合はすべてのリクエストを取り消す。
+     * 
+     * @return 追加した順にレスポンスを格納したリスト。
+     * @throws IOException いずれかのリクエストが失敗した場合。
+     */
+    public List<Response> execute() throws IOException {
+        try {
+            return this.executeAsync().get();
+        } catch (InterruptedException exception) {
+            this.cancel();
+            Thread.currentThread().interrupt();
+            throw new IOException(exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof IOException) {
+                throw (IOException) exception.getCause();
+            }
+            throw new IOException(exception.getCause());
+        }
+    }
+    
+    /**
+     * 送信を待機しているリクエストと、レスポンスを待っているリクエストをすべて取り消す。
+     */
+    public void cancel() {
+        List<CompletableFuture<Response>> results;
+        synchronized (this) {
+            results = new ArrayList<>(this.results);
+        }
+        for (CompletableFuture<Response> result: results) {
+            result.cancel(true);
+        }
+    }
+    
+    /**
+     * 同時に送信するリクエスト数の上限に達するまで、待機しているリクエストを送信する。取り消されたリクエストは送信しない。
+     */
+    private void startWaitingEntries() {
+        List<Entry> entries = new ArrayList<>();
+        synchronized (this) {
+            if (this.isStarted == false) {
+                return;
+            }
+            while (this.numberOfRunningRequests < this.maximumNumberOfConcurrentRequests && this.waitingEntries.size() > 0) {
+                Entry entry = this.waitingEntries.poll();
+                if (entry.result.isDone() == false) {
+                    entries.add(entry);
+                    this.numberOfRunningRequests++;
+                }
+            }
+        }
+        RequestBatch batch = this;
+        for (Entry entry: entries) {
+            BiConsumer<Response, Throwable> completion = new BiConsumer<Response, Throwable>() {
+                
+                @Override
+                public void accept(Response response, Throwable throwable) {
+                    synchronized (batch) {
+                        batch.numberOfRunningRequests--;
+                    }
+                    batch.startWaitingEntries();
+                    if (throwable != null) {
+                        entry.result.completeExceptionally(throwable);
+                    } else {
+                        entry.result.complete(response);
+                    }
+                }
+            };
+            try {
+                CompletableFuture<Response> sending = entry.requester.sendAsync(entry.request);
+                entry.result.whenComplete(new BiConsumer<Response, Throwable>() {
+                    
+                    @Override
+                    public void accept(Response response, Throwable throwable) {
+                        if (entry.result.isCancelled()) {
+                            sending.cancel(true);
+                        }
+                    }
+                });
+                sending.whenComplete(completion);
+            } catch (RuntimeException exception) {
+                completion.accept(null, exception);
+            }
+        }
+    }
+    
+    /**
+     * 送信を待機しているリクエストのクラス。
+     */
+    private static class Entry {
+        
+        /**
+         * コンストラクタ。<br>
+         * 送信に使用するWebsiteRequesterと、作成済みのリクエストを指定する。
+         * 
+         * @param requester
+         * @param request
+         */
+        private Entry(WebsiteRequester requester, HttpRequest request) {
+            this.requester = requester;
+            this.request = request;
+        }
+        
+        private WebsiteRequester requester;
+        
+        private HttpRequest request;
+        
+        private CompletableFuture<Response> result = new CompletableFuture<>();
+    }
+}
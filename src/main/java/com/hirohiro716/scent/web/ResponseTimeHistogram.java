@@ -0,0 +1,152 @@
+package com.hirohiro716.scent.web;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.hirohiro716.scent.StringObject;
+
+/**
+ * リクエストを送信してからレスポンスを受け取るまでの時間を、区間ごとの件数として集計するヒストグラムのクラス。<br>
+ * 記録は複数のスレッドから同時に行うことができ、記録の際に同期によるロックは行われない。
+ */
+public class ResponseTimeHistogram {
+    
+    private static final long[] UPPER_BOUNDS = new long[] {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 50000, Long.MAX_VALUE};
+    
+    private AtomicLongArray counts = new AtomicLongArray(ResponseTimeHistogram.UPPER_BOUNDS.length);
+    
+    private AtomicLong totalNanoseconds = new AtomicLong();
+    
+    private AtomicLong maximumNanoseconds = new AtomicLong();
+    
+    /**
+     * 応答時間を記録する。
+     * 
+     * @param nanoseconds
+     */
+    public void record(long nanoseconds) {
+        long millisecond = nanoseconds / 1000000;
+        int index = 0;
+        while (millisecond >= ResponseTimeHistogram.UPPER_BOUNDS[index]) {
+            index++;
+        }
+        this.counts.incrementAndGet(index);
+        this.totalNanoseconds.addAndGet(nanoseconds);
+        long maximum = this.maximumNanoseconds.get();
+        while (nanoseconds > maximum && this.maximumNanoseconds.compareAndSet(maximum, nanoseconds) == false) {
+            maximum = this.maximumNanoseconds.get();
+        }
+    }
+    
+    /**
+     * 区間ごとの上限(ミリ秒)を取得する。各区間は上限未満の応答時間を集計する。最後の区間の上限はLong.MAX_VALUE。
+     * 
+     * @return
+     */
+    public long[] getUpperBounds() {
+        return ResponseTimeHistogram.UPPER_BOUNDS.clone();
+    }
+    
+    /**
+     * 区間ごとの件数を取得する。
+     * 
+     * @return
+     */
+    public long[] getCounts() {
+        long[] counts = new long[this.counts.length()];
+        for (int index = 0; index < counts.length; index++) {
+            counts[index] = this.counts.get(index);
+        }
+        return counts;
+    }
+    
+    /**
+     * 記録された件数を取得する。
+     * 
+     * @return
+     */
+    public long getCount() {
+        long count = 0;
+        for (int index = 0; index < this.counts.length(); index++) {
+            count += this.counts.get(index);
+        }
+        return count;
+    }
+    
+    /**
+     * 記録された応答時間の平均(ミリ秒)を取得する。
+     * 
+     * @return
+     */
+    public double getAverageMillisecond() {
+        long count = this.getCount();
+        if (count == 0) {
+            return 0;
+        }
+        return this.totalNanoseconds.get() / 1000000d / count;
+    }
+    
+    /**
+     * 記録された応答時間の最大値(ミリ秒)を取得する。
+     * 
+     * @return
+     */
+    public double getMaximumMillisecond() {
+        return this.maximumNanoseconds.get() / 1000000d;
+    }
+    
+    /**
+     * 指定されたパーセンタイルの応答時間が含まれる区間の上限(ミリ秒)を取得する。
+     * 
+     * @param percentile 0から100までのパーセンタイル。
+     * @return 記録がない場合は0。最後の区間に含まれる場合は最大値。
+     */
+    public double getPercentileMillisecond(double percentile) {
+        long[] counts = this.getCounts();
+        long count = 0;
+        for (long one: counts) {
+            count += one;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * Math.min(Math.max(percentile, 0), 100) / 100);
+        long cumulative = 0;
+        for (int index = 0; index < counts.length - 1; index++) {
+            cumulative += counts[index];
+            if (cumulative >= rank && cumulative > 0) {
+                return ResponseTimeHistogram.UPPER_BOUNDS[index];
+            }
+        }
+        return this.getMaximumMillisecond();
+    }
+    
+    /**
+     * 記録をすべて消去する。
+     */
+    public void reset() {
+        for (int index = 0; index < this.counts.length(); index++) {
+            this.counts.set(index, 0);
+        }
+        this.totalNanoseconds.set(0);
+        this.maximumNanoseconds.set(0);
+    }
+    
+    @Override
+    public String toString() {
+        StringObject stringObject = new StringObject("count: ");
+        stringObject.append(this.getCount());
+        stringObject.append(", average: ");
+        stringObject.append(String.format("%.1f", this.getAverageMillisecond()));
+        stringObject.append("ms, p50: <");
+        stringObject.append(String.format("%.0f", this.getPercentileMillisecond(50)));
+        stringObject.append("ms, p95: <");
+        stringObject.append(String.format("%.0f", this.getPercentileMillisecond(95)));
+        stringObject.append("ms, p99: <");
+        stringObject.append(String.format("%.0f", this.getPercentileMillisecond(99)));
+        stringObject.append("ms, maximum: ");
+        stringObject.append(String.format("%.1f", this.getMaximumMillisecond()));
+        stringObject.append("ms");
+        return stringObject.toString();
+    }
+}
@@ -1,14 +1,16 @@
 package com.hirohiro716.scent.web;
 
+import java.lang.ref.WeakReference;
 import java.net.URL;
+import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import com.hirohiro716.scent.Array;
-import com.hirohiro716.scent.datetime.Datetime;
 import com.hirohiro716.scent.filesystem.File;
 import com.hirohiro716.scent.filesystem.FilesystemItem;
 import com.hirohiro716.scent.reflection.DynamicClass;
@@ -41,7 +43,29 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
      * @return
      */
     public abstract boolean isClosed();
+
+    /**
+     * WEBブラウザの状態を初期化する。<br>
+     * この実装では要素の選択状態とDOMオブジェクトとの関連付けを消去する。
+     * Cookieやストレージを保持するWEBブラウザではオーバーライドしてそれらも消去する。
+     * 
+     * @throws Exception
+     */
+    public void resetState() throws Exception {
+        this.clearMapOfElementAndHtmlObject();
+        this.clearSelectedElements();
+    }
     
+    /**
+     * resetStateメソッドで、すべてのオリジンのCookieとストレージを消去して最初のウィンドウ以外を閉じられる場合はtrueを返す。<br>
+     * この実装ではfalseを返す。falseの場合、WebBrowserPoolは返却されたWEBブラウザを再利用せずに閉じる。
+     * 
+     * @return
+     */
+    public boolean isStateResettable() {
+        return false;
+    }
+
     /**
      * WEBページを読み込む。
      * 
@@ -105,18 +129,33 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
     public abstract E getBodyElement();    
 
     /**
-     * 指定された親要素の子孫要素を再帰的にすべて取得する。
+     * 指定された親要素の子孫要素を文書内の順序ですべて取得する。<br>
+     * 子孫要素は1回のXPathの評価で取得する。XPathで取得できない場合は子要素を1階層ずつ再帰的に取得する。
      * 
      * @param parent
      * @return
      */
-    @SuppressWarnings("unchecked")
     private List<E> createListOfAllChildElement(E parent) {
+        try {
+            return this.createElementListOfFoundByXPath(parent, ".//*");
+        } catch (Exception exception) {
+            return this.createListOfAllChildElementRecursively(parent);
+        }
+    }
+
+    /**
+     * 指定された親要素の子孫要素を、子要素を1階層ずつ取得しながら再帰的にすべて取得する。
+     * 
+     * @param parent
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private List<E> createListOfAllChildElementRecursively(E parent) {
         List<E> elements = new ArrayList<>();
         try {
             for (Element element: parent.getChildElements()) {
                 elements.add((E) element);
-                elements.addAll(this.createListOfAllChildElement((E) element));
+                elements.addAll(this.createListOfAllChildElementRecursively((E) element));
             }
         } catch (Exception exception) {
             exception.printStackTrace();
@@ -142,8 +181,9 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
     public Array<E> getAllElements() {
         List<E> elements = new ArrayList<>();
         try {
-            elements.add(this.getBodyElement());
-            elements.addAll(this.createListOfAllChildElement(this.getBodyElement()));
+            E body = this.getBodyElement();
+            elements.add(body);
+            elements.addAll(this.createListOfAllChildElement(body));
         } catch (Exception exception) {
             exception.printStackTrace();
         }
@@ -173,30 +213,92 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
         return null;
     }
     
-    private Map<Object, E> mapOfElementAndHtmlObject = new HashMap<>();
+    private Map<Object, WeakReference<E>> mapOfElementAndHtmlObject = new WeakHashMap<>();
+
+    /**
+     * DOMオブジェクトと要素の関連付けをすべて消去する。WEBページが切り替わった際に呼び出す。
+     */
+    protected void clearMapOfElementAndHtmlObject() {
+        this.mapOfElementAndHtmlObject.clear();
+    }
     
     /**
-     * DOMオブジェクトと要素の関連付けが定義されている連想配列を取得する。
+     * DOMオブジェクトと要素の関連付けが定義されている連想配列を取得する。<br>
+     * 取得した連想配列への追加と削除は関連付けに反映されるが、走査の結果は取得した時点の関連付けの複製になる。
      * 
      * @return
+     * @deprecated 関連付けは弱参照で保持するようになったため、getElementメソッドとclearMapOfElementAndHtmlObjectメソッドを使用する。
      */
+    @Deprecated
     protected Map<Object, E> getMapOfElementAndHtmlObject() {
-        return this.mapOfElementAndHtmlObject;
+        Map<Object, WeakReference<E>> map = this.mapOfElementAndHtmlObject;
+        return new AbstractMap<Object, E>() {
+            
+            @Override
+            public E get(Object key) {
+                WeakReference<E> reference = map.get(key);
+                if (reference == null) {
+                    return null;
+                }
+                return reference.get();
+            }
+            
+            @Override
+            public boolean containsKey(Object key) {
+                return this.get(key) != null;
+            }
+            
+            @Override
+            public E put(Object key, E value) {
+                E previous = this.get(key);
+                map.put(key, new WeakReference<>(value));
+                return previous;
+            }
+            
+            @Override
+            public E remove(Object key) {
+                E previous = this.get(key);
+                map.remove(key);
+                return previous;
+            }
+            
+            @Override
+            public void clear() {
+                map.clear();
+            }
+            
+            @Override
+            public Set<Entry<Object, E>> entrySet() {
+                Map<Object, E> copy = new HashMap<>();
+                for (Entry<Object, WeakReference<E>> entry: map.entrySet()) {
+                    E element = entry.getValue().get();
+                    if (element != null) {
+                        copy.put(entry.getKey(), element);
+                    }
+                }
+                return copy.entrySet();
+            }
+        };
     }
 
     /**
-     * 指定されたDOMオブジェクトに対する要素を取得する。
+     * 指定されたDOMオブジェクトに対する要素を取得する。<br>
+     * DOMオブジェクトと要素の関連付けは弱参照で保持されるため、どこからも参照されなくなった要素の関連付けは自動的に消去される。
      * 
      * @param htmlObject
      * @return
      * @throws ClassNotFoundException 
      */
     protected E getElement(Object htmlObject) throws ClassNotFoundException {
-        if (this.mapOfElementAndHtmlObject.containsKey(htmlObject)) {
-            return this.mapOfElementAndHtmlObject.get(htmlObject);
+        WeakReference<E> reference = this.mapOfElementAndHtmlObject.get(htmlObject);
+        if (reference != null) {
+            E element = reference.get();
+            if (element != null) {
+                return element;
+            }
         }
         E element = this.createElement(htmlObject);
-        this.mapOfElementAndHtmlObject.put(htmlObject, element);
+        this.mapOfElementAndHtmlObject.put(htmlObject, new WeakReference<>(element));
         return element;
     }
 
@@ -212,6 +314,152 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
         }
     }
 
+    private static final long MINIMUM_WAITING_INTERVAL_MILLISECOND = 10;
+
+    private static final long MAXIMUM_WAITING_INTERVAL_MILLISECOND = 500;
+
+    /**
+     * WEBページの内容が変更されるか、指定されたミリ秒が経過するまで待機する。<br>
+     * この実装では変更を検知せずに指定されたミリ秒だけ待機する。変更を検知できるWEBブラウザではオーバーライドする。
+     * 
+     * @param timeoutMillisecond
+     * @return 前回の呼び出し以降にWEBページの内容が変更された場合はtrue。
+     * @throws Exception
+     */
+    protected boolean waitForChange(long timeoutMillisecond) throws Exception {
+        Thread.sleep(timeoutMillisecond);
+        return false;
+    }
+
+    /**
+     * 指定された条件を満たすか、WEBブラウザが閉じられるまで待機する。<br>
+     * 条件の確認の間隔は10ミリ秒から始まり、WEBページの内容が変更されない間は500ミリ秒まで倍増していく。
+     * WEBページの内容が変更された場合は直ちに条件を確認して、間隔を10ミリ秒に戻す。
+     * 
+     * @param condition
+     * @param timeoutSeconds タイムアウトまでの秒数。
+     * @return 条件を満たした場合、またはWEBブラウザが閉じられた場合はtrue。
+     */
+    private boolean waitFor(Condition condition, int timeoutSeconds) {
+        long limitNanoTime = System.nanoTime() + timeoutSeconds * 1000000000L;
+        long interval = WebBrowser.MINIMUM_WAITING_INTERVAL_MILLISECOND;
+        while (true) {
+            try {
+                if (this.isClosed() || condition.test()) {
+                    return true;
+                }
+            } catch (Exception exception) {
+            }
+            long remaining = (limitNanoTime - System.nanoTime()) / 1000000;
+            if (remaining <= 0) {
+                return false;
+            }
+            try {
+                if (this.waitForChange(Math.min(interval, remaining))) {
+                    interval = WebBrowser.MINIMUM_WAITING_INTERVAL_MILLISECOND;
+                } else {
+                    interval = Math.min(interval * 2, WebBrowser.MAXIMUM_WAITING_INTERVAL_MILLISECOND);
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (Exception exception) {
+                try {
+                    Thread.sleep(Math.min(interval, remaining));
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                interval = Math.min(interval * 2, WebBrowser.MAXIMUM_WAITING_INTERVAL_MILLISECOND);
+            }
+        }
+    }
+
+    /**
+     * 指定された親要素の中から、検索条件に一致する要素を1回のXPathの評価で検索してリストを作成する。
+     * 
+     * @param parent
+     * @param query
+     * @return
+     * @throws Exception
+     */
+    protected List<E> createElementListOfFoundByQuery(E parent, ElementQuery query) throws Exception {
+        return this.createElementListOfFoundByXPath(parent, query.toXPath());
+    }
+
+    /**
+     * 指定された親要素の中から、検索条件に一致する要素をすべて検索する。
+     * 
+     * @param parent
+     * @param query
+     * @return
+     * @throws Exception
+     */
+    public Array<E> findElementsByQuery(E parent, ElementQuery query) throws Exception {
+        return new Array<>(this.createElementListOfFoundByQuery(parent, query));
+    }
+
+    /**
+     * すでに選択状態にある要素の子要素から、検索条件に一致する要素を選択状態にする。
+     * 
+     * @param query
+     * @throws Exception 
+     */
+    public void selectMoreElementsByQuery(ElementQuery query) throws Exception {
+        List<E> newSelectedElements = new ArrayList<>();
+        for (E selectedElement: this.selectedElements) {
+            newSelectedElements.addAll(this.createElementListOfFoundByQuery(selectedElement, query));
+        }
+        this.selectedElements = newSelectedElements;
+    }
+
+    /**
+     * BODY要素の子要素から、検索条件に一致する要素を選択状態にする。
+     * 
+     * @param query
+     * @throws Exception 
+     */
+    public void selectElementsByQuery(ElementQuery query) throws Exception {
+        this.clearSelectedElements();
+        this.selectMoreElementsByQuery(query);
+    }
+
+    /**
+     * すべての要素から検索条件に一致する要素が見つかるのを待機する。
+     * 
+     * @param query
+     * @param timeoutSeconds タイムアウトまでの秒数。
+     */
+    public void waitForFoundByQuery(ElementQuery query, int timeoutSeconds) {
+        WebBrowser<E> browser = this;
+        String xpath = query.toXPath();
+        this.waitFor(new Condition() {
+            
+            @Override
+            public boolean test() throws Exception {
+                return browser.createElementListOfFoundByXPath(browser.getBodyElement(), xpath).size() > 0;
+            }
+        }, timeoutSeconds);
+    }
+
+    /**
+     * すべての要素から検索条件に一致する要素が失われるのを待機する。
+     * 
+     * @param query
+     * @param timeoutSeconds タイムアウトまでの秒数。
+     */
+    public void waitForLostByQuery(ElementQuery query, int timeoutSeconds) {
+        WebBrowser<E> browser = this;
+        String xpath = query.toXPath();
+        this.waitFor(new Condition() {
+            
+            @Override
+            public boolean test() throws Exception {
+                return browser.createElementListOfFoundByXPath(browser.getBodyElement(), xpath).size() == 0;
+            }
+        }, timeoutSeconds);
+    }
+
     /**
      * 指定された親要素の中から、指定値に一致する属性値を持つ要素を再帰的に検索してリストを作成する。
      * 
@@ -221,7 +469,11 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
      * @return
      * @throws Exception
      */
-    protected abstract List<E> createElementListOfFoundByAttribute(E parent, String attributeName, String attributeValue) throws Exception;
+    protected List<E> createElementListOfFoundByAttribute(E parent, String attributeName, String attributeValue) throws Exception {
+        ElementQuery query = new ElementQuery();
+        query.addAttribute(attributeName, attributeValue);
+        return this.createElementListOfFoundByQuery(parent, query);
+    }
 
     /**
      * 指定された親要素の中から、指定値に一致する属性値を持つ要素を再帰的にすべて検索する。
@@ -271,17 +523,14 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
      * @param timeoutSeconds タイムアウトまでの秒数。
      */
     public void waitForFoundByAttribute(String attributeName, String attributeValue, int timeoutSeconds) {
-        Datetime limit = new Datetime();
-        limit.addSecond(timeoutSeconds);
-        while (limit.getDate().getTime() > new Date().getTime()) {
-            try {
-                if (this.isClosed() || this.createElementListOfFoundByAttribute(this.getBodyElement(), attributeName, attributeValue).size() > 0) {
-                    return;
-                }
-                Thread.sleep(1000);
-            } catch (Exception exception) {
+        WebBrowser<E> browser = this;
+        this.waitFor(new Condition() {
+            
+            @Override
+            public boolean test() throws Exception {
+                return browser.createElementListOfFoundByAttribute(browser.getBodyElement(), attributeName, attributeValue).size() > 0;
             }
-        }
+        }, timeoutSeconds);
     }
 
     /**
@@ -292,17 +541,14 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
      * @param timeoutSeconds タイムアウトまでの秒数。
      */
     public void waitForLostByAttribute(String attributeName, String attributeValue, int timeoutSeconds) {
-        Datetime limit = new Datetime();
-        limit.addSecond(timeoutSeconds);
-        while (limit.getDate().getTime() > new Date().getTime()) {
-            try {
-                if (this.isClosed() || this.createElementListOfFoundByAttribute(this.getBodyElement(), attributeName, attributeValue).size() == 0) {
-                    return;
-                }
-                Thread.sleep(1000);
-            } catch (Exception exception) {
+        WebBrowser<E> browser = this;
+        this.waitFor(new Condition() {
+            
+            @Override
+            public boolean test() throws Exception {
+                return browser.createElementListOfFoundByAttribute(browser.getBodyElement(), attributeName, attributeValue).size() == 0;
             }
-        }
+        }, timeoutSeconds);
     }
 
     /**
@@ -314,7 +560,11 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
      * @return
      * @throws Exception 
      */
-    protected abstract List<E> createElementListOfFoundByTagName(E parent, String tagName, String textContent) throws Exception;
+    protected List<E> createElementListOfFoundByTagName(E parent, String tagName, String textContent) throws Exception {
+        ElementQuery query = new ElementQuery(tagName);
+        query.setTextContent(textContent);
+        return this.createElementListOfFoundByQuery(parent, query);
+    }
 
     /**
      * 親要素の中から、タグ名が一致していて、内包するテキストが指定値を含む要素を再帰的にすべて検索する。
@@ -384,17 +634,14 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
      * @param timeoutSeconds タイムアウトまでの秒数。
      */
     public void waitForFoundByTagName(String tagName, String textContent, int timeoutSeconds) {
-        Datetime limit = new Datetime();
-        limit.addSecond(timeoutSeconds);
-        while (limit.getDate().getTime() > new Date().getTime()) {
-            try {
-                if (this.isClosed() || this.createElementListOfFoundByTagName(this.getBodyElement(), tagName, textContent).size() > 0) {
-                    return;
-                }
-                Thread.sleep(1000);
-            } catch (Exception exception) {
+        WebBrowser<E> browser = this;
+        this.waitFor(new Condition() {
+            
+            @Override
+            public boolean test() throws Exception {
+                return browser.createElementListOfFoundByTagName(browser.getBodyElement(), tagName, textContent).size() > 0;
             }
-        }
+        }, timeoutSeconds);
     }
 
     /**
@@ -415,17 +662,14 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
      * @param timeoutSeconds タイムアウトまでの秒数。
      */
     public void waitForLostByTagName(String tagName, String textContent, int timeoutSeconds) {
-        Datetime limit = new Datetime();
-        limit.addSecond(timeoutSeconds);
-        while (limit.getDate().getTime() > new Date().getTime()) {
-            try {
-                if (this.isClosed() || this.createElementListOfFoundByTagName(this.getBodyElement(), tagName, textContent).size() == 0) {
-                    return;
-                }
-                Thread.sleep(1000);
-            } catch (Exception exception) {
+        WebBrowser<E> browser = this;
+        this.waitFor(new Condition() {
+            
+            @Override
+            public boolean test() throws Exception {
+                return browser.createElementListOfFoundByTagName(browser.getBodyElement(), tagName, textContent).size() == 0;
             }
-        }
+        }, timeoutSeconds);
     }
 
     /**
@@ -492,17 +736,14 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
      * @param timeoutSeconds タイムアウトまでの秒数。
      */
     public void waitForFoundByCssSelector(String cssSelector, int timeoutSeconds) {
-        Datetime limit = new Datetime();
-        limit.addSecond(timeoutSeconds);
-        while (limit.getDate().getTime() > new Date().getTime()) {
-            try {
-                if (this.isClosed() || this.createElementListOfFoundByCssSelector(this.getBodyElement(), cssSelector).size() > 0) {
-                    return;
-                }
-                Thread.sleep(1000);
-            } catch (Exception exception) {
+        WebBrowser<E> browser = this;
+        this.waitFor(new Condition() {
+            
+            @Override
+            public boolean test() throws Exception {
+                return browser.createElementListOfFoundByCssSelector(browser.getBodyElement(), cssSelector).size() > 0;
             }
-        }
+        }, timeoutSeconds);
     }
 
     /**
@@ -512,17 +753,14 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
      * @param timeoutSeconds タイムアウトまでの秒数。
      */
     public void waitForLostByCssSelector(String cssSelector, int timeoutSeconds) {
-        Datetime limit = new Datetime();
-        limit.addSecond(timeoutSeconds);
-        while (limit.getDate().getTime() > new Date().getTime()) {
-            try {
-                if (this.isClosed() || this.createElementListOfFoundByCssSelector(this.getBodyElement(), cssSelector).size() == 0) {
-                    return;
-                }
-                Thread.sleep(1000);
-            } catch (Exception exception) {
+        WebBrowser<E> browser = this;
+        this.waitFor(new Condition() {
+            
+            @Override
+            public boolean test() throws Exception {
+                return browser.createElementListOfFoundByCssSelector(browser.getBodyElement(), cssSelector).size() == 0;
             }
-        }
+        }, timeoutSeconds);
     }
 
     /**
@@ -579,17 +817,14 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
      * @param timeoutSeconds タイムアウトまでの秒数。
      */
     public void waitForFoundByXPath(String xPath, int timeoutSeconds) {
-        Datetime limit = new Datetime();
-        limit.addSecond(timeoutSeconds);
-        while (limit.getDate().getTime() > new Date().getTime()) {
-            try {
-                if (this.isClosed() || this.createElementListOfFoundByXPath(this.getBodyElement(), xPath).size() > 0) {
-                    return;
-                }
-                Thread.sleep(1000);
-            } catch (Exception exception) {
+        WebBrowser<E> browser = this;
+        this.waitFor(new Condition() {
+            
+            @Override
+            public boolean test() throws Exception {
+                return browser.createElementListOfFoundByXPath(browser.getBodyElement(), xPath).size() > 0;
             }
-        }
+        }, timeoutSeconds);
     }
 
     /**
@@ -599,17 +834,28 @@ public abstract class WebBrowser<E extends WebBrowser.Element> extends DynamicCl
      * @param timeoutSeconds タイムアウトまでの秒数。
      */
     public void waitForLostByXPath(String xPath, int timeoutSeconds) {
-        Datetime limit = new Datetime();
-        limit.addSecond(timeoutSeconds);
-        while (limit.getDate().getTime() > new Date().getTime()) {
-            try {
-                if (this.isClosed() || this.createElementListOfFoundByXPath(this.getBodyElement(), xPath).size() == 0) {
-                    return;
-                }
-                Thread.sleep(1000);
-            } catch (Exception exception) {
+        WebBrowser<E> browser = this;
+        this.waitFor(new Condition() {
+            
+            @Override
+            public boolean test() throws Exception {
+                return browser.createElementListOfFoundByXPath(browser.getBodyElement(), xPath).size() == 0;
             }
-        }
+        }, timeoutSeconds);
+    }
+    
+    /**
+     * 待機を終了する条件のインターフェース。
+     */
+    private interface Condition {
+
+        /**
+         * 条件を満たしている場合はtrueを返す。
+         * 
+         * @return
+         * @throws Exception
+         */
+        public abstract boolean test() throws Exception;
     }
     
     /**
@@ -0,0 +1,390 @@
+package com.hirohiro716.scent.web;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 作成済みのWEBブラウザを保持して、独立したWebBrowsingFlowを並行して実行するためのクラス。<br>
+ * WEBブラウザは貸し出しから返却されるたびにCookie、ストレージ、ウィンドウ、要素の選択状態が初期化される。
+ * 指定された回数だけ使用されたWEBブラウザ、処理が失敗したWEBブラウザ、状態を完全に初期化できないWEBブラウザは閉じられ、
+ * 次の貸し出しの際に新しく作成される。<br>
+ * ※ModernWebBrowserはほかのオリジンのCookieやストレージを消去できないため、初期状態では返却のたびに閉じられる。
+ * 起動の負荷を避けて再利用する場合は、前の処理のCookieやストレージが残ることを許容したうえでsetPartialResetAllowedメソッドでtrueをセットする。
+ * 
+ * @param <W> WEBブラウザの型。
+ * @param <E> WEBブラウザの要素の型。
+ */
+public class WebBrowserPool<W extends WebBrowser<E>, E extends WebBrowser.Element> {
+    
+    /**
+     * コンストラクタ。<br>
+     * 保持するWEBブラウザの最大数と、WEBブラウザを作成する処理を指定する。
+     * 
+     * @param maximumNumberOfBrowsers
+     * @param browserFactory
+     */
+    public WebBrowserPool(int maximumNumberOfBrowsers, BrowserFactory<W> browserFactory) {
+        this.maximumNumberOfBrowsers = Math.max(maximumNumberOfBrowsers, 1);
+        this.browserFactory = browserFactory;
+        this.executorService = Executors.newFixedThreadPool(this.maximumNumberOfBrowsers, new ThreadFactory() {
+            
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+    
+    private int maximumNumberOfBrowsers;
+    
+    private BrowserFactory<W> browserFactory;
+    
+    private ExecutorService executorService;
+    
+    private Deque<W> idleBrowsers = new ArrayDeque<>();
+    
+    private Map<W, Integer> numberOfUses = new IdentityHashMap<>();
+    
+    private int numberOfCreatedBrowsers = 0;
+    
+    private boolean isClosed = false;
+    
+    private int maximumNumberOfUses = 0;
+    
+    /**
+     * 1つのWEBブラウザを使用する回数の上限を取得する。
+     * 
+     * @return 0の場合は上限なし。
+     */
+    public int getMaximumNumberOfUses() {
+        return this.maximumNumberOfUses;
+    }
+    
+    /**
+     * 1つのWEBブラウザを使用する回数の上限をセットする。上限に達したWEBブラウザは返却の際に閉じられる。初期値は0で上限なし。
+     * 
+     * @param maximumNumberOfUses
+     */
+    public void setMaximumNumberOfUses(int maximumNumberOfUses) {
+        this.maximumNumberOfUses = maximumNumberOfUses;
+    }
+    
+    private boolean isPartialResetAllowed = false;
+    
+    /**
+     * 状態を完全に初期化できないWEBブラウザを再利用する場合はtrueを返す。
+     * 
+     * @return
+     */
+    public boolean isPartialResetAllowed() {
+        return this.isPartialResetAllowed;
+    }
+    
+    /**
+     * WebBrowser.isStateResettableメソッドがfalseを返すWEBブラウザを、resetStateメソッドで可能な範囲だけ初期化して再利用するかどうかをセットする。初期値はfalse。<br>
+     * trueの場合、表示していたWEBページ以外のオリジンのCookieやストレージが次の貸し出しに引き継がれる可能性がある。
+     * 
+     * @param isPartialResetAllowed
+     */
+    public void setPartialResetAllowed(boolean isPartialResetAllowed) {
+        this.isPartialResetAllowed = isPartialResetAllowed;
+    }
+    
+    /**
+     * 保持するWEBブラウザの最大数に達するまでWEBブラウザを作成する。
+     * 
+     * @throws Exception
+     */
+    public void warmUp() throws Exception {
+        List<W> browsers = new ArrayList<>();
+        try {
+            while (true) {
+                synchronized (this) {
+                    if (this.isClosed || this.numberOfCreatedBrowsers >= this.maximumNumberOfBrowsers) {
+                        break;
+                    }
+                    this.numberOfCreatedBrowsers++;
+                }
+                try {
+                    browsers.add(this.browserFactory.create());
+                } catch (Exception exception) {
+                    synchronized (this) {
+                        this.numberOfCreatedBrowsers--;
+                        this.notifyAll();
+                    }
+                    throw exception;
+                }
+            }
+        } finally {
+            synchronized (this) {
+                this.idleBrowsers.addAll(browsers);
+                this.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * WEBブラウザを貸し出す。すべてのWEBブラウザが貸し出されている場合は返却されるまで待機する。<br>
+     * 貸し出されたWEBブラウザは、使用後に必ずgiveBackメソッドで返却する必要がある。
+     * 
+     * @return
+     * @throws Exception
+     */
+    public W lease() throws Exception {
+        while (true) {
+            W browser = null;
+            synchronized (this) {
+                while (this.idleBrowsers.size() == 0 && this.numberOfCreatedBrowsers >= this.maximumNumberOfBrowsers && this.isClosed == false) {
+                    this.wait();
+                }
+                if (this.isClosed) {
+                    throw new IOException("The web browser pool is closed.");
+                }
+                browser = this.idleBrowsers.poll();
+                if (browser == null) {
+                    this.numberOfCreatedBrowsers++;
+                }
+            }
+            if (browser == null) {
+                try {
+                    return this.browserFactory.create();
+                } catch (Exception exception) {
+                    synchronized (this) {
+                        this.numberOfCreatedBrowsers--;
+                        this.notifyAll();
+                    }
+                    throw exception;
+                }
+            }
+            if (browser.isClosed() == false) {
+                return browser;
+            }
+            this.discard(browser);
+        }
+    }
+    
+    /**
+     * 貸し出したWEBブラウザを返却する。<br>
+     * 処理が失敗した場合、使用回数の上限に達した場合、WebBrowser.isStateResettableメソッドがfalseを返して部分的な初期化が許可されていない場合はWEBブラウザを閉じる。
+     * それ以外の場合は状態を初期化して次の貸し出しに備える。
+     * 
+     * @param browser
+     * @param isFailed 貸し出している間の処理が失敗した場合はtrue。
+     */
+    public void giveBack(W browser, boolean isFailed) {
+        int numberOfUses;
+        boolean isClosed;
+        synchronized (this) {
+            Integer previous = this.numberOfUses.get(browser);
+            numberOfUses = 1;
+            if (previous != null) {
+                numberOfUses += previous;
+            }
+            this.numberOfUses.put(browser, numberOfUses);
+            isClosed = this.isClosed;
+        }
+        boolean isBrowserClosed = browser.isClosed();
+        boolean isRecycled = isFailed || isClosed || isBrowserClosed;
+        if (this.isPartialResetAllowed == false && browser.isStateResettable() == false) {
+            isRecycled = true;
+        }
+        if (this.maximumNumberOfUses > 0 && numberOfUses >= this.maximumNumberOfUses) {
+            isRecycled = true;
+        }
+        if (isRecycled == false) {
+            try {
+                browser.resetState();
+            } catch (Exception exception) {
+                isRecycled = true;
+            }
+        }
+        if (isRecycled) {
+            if (isBrowserClosed == false) {
+                browser.close();
+            }
+            this.discard(browser);
+            return;
+        }
+        synchronized (this) {
+            this.idleBrowsers.add(browser);
+            this.notifyAll();
+        }
+    }
+    
+    /**
+     * 貸し出したWEBブラウザを、処理が成功したものとして返却する。
+     * 
+     * @param browser
+     */
+    public void giveBack(W browser) {
+        this.giveBack(browser, false);
+    }
+    
+    /**
+     * 閉じられたWEBブラウザを保持しているWEBブラウザから除外する。
+     * 
+     * @param browser
+     */
+    private synchronized void discard(W browser) {
+        this.numberOfUses.remove(browser);
+        this.numberOfCreatedBrowsers--;
+        this.notifyAll();
+    }
+    
+    /**
+     * WEBブラウザを貸し出して、指定された処理で作成したWebBrowsingFlowのすべてのタスクを非同期で実行する。<br>
+     * タスクがタイムアウトした場合や、タスクで例外が発生した場合は、使用したWEBブラウザは返却の際に閉じられる。
+     * 返されたCompletableFutureを取り消した場合は、実行中のスレッドに割り込み、まだ開始していない処理は実行しない。
+     * 
+     * @param flowFactory
+     * @return 実行を終えたWebBrowsingFlowを受け取った際に完了するCompletableFuture。
+     */
+    public CompletableFuture<WebBrowsingFlow<W, E>> executeAsync(FlowFactory<W, E> flowFactory) {
+        WebBrowserPool<W, E> pool = this;
+        CompletableFuture<WebBrowsingFlow<W, E>> result = new CompletableFuture<>();
+        Future<?> future = this.executorService.submit(new Runnable() {
+            
+            @Override
+            public void run() {
+                if (result.isDone()) {
+                    return;
+                }
+                W browser;
+                try {
+                    browser = pool.lease();
+                } catch (Exception exception) {
+                    result.completeExceptionally(exception);
+                    return;
+                }
+                boolean isFailed = true;
+                try {
+                    WebBrowsingFlow<W, E> flow = flowFactory.create(browser);
+                    flow.executeAndWait();
+                    isFailed = flow.isTimedout() || flow.isExceptionOccurred();
+                    result.complete(flow);
+                } catch (Exception exception) {
+                    result.completeExceptionally(exception);
+                } finally {
+                    pool.giveBack(browser, isFailed);
+                }
+            }
+        });
+        result.whenComplete(new BiConsumer<WebBrowsingFlow<W, E>, Throwable>() {
+            
+            @Override
+            public void accept(WebBrowsingFlow<W, E> flow, Throwable throwable) {
+                if (result.isCancelled()) {
+                    future.cancel(true);
+                }
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * 指定された処理で作成したWebBrowsingFlowを、保持するWEBブラウザの最大数まで並行して実行して、すべての終了を待機する。
+     * 待機中に割り込まれた場合は、実行中と未実行の処理をすべて取り消す。
+     * 
+     * @param flowFactories
+     * @return 指定された順に実行を終えたWebBrowsingFlowを格納したリスト。
+     * @throws IOException いずれかのWebBrowsingFlowの作成、またはWEBブラウザの作成に失敗した場合。
+     */
+    public List<WebBrowsingFlow<W, E>> execute(Collection<FlowFactory<W, E>> flowFactories) throws IOException {
+        List<CompletableFuture<WebBrowsingFlow<W, E>>> results = new ArrayList<>();
+        for (FlowFactory<W, E> flowFactory: flowFactories) {
+            results.add(this.executeAsync(flowFactory));
+        }
+        try {
+            return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()])).thenApply(new Function<Void, List<WebBrowsingFlow<W, E>>>() {
+                
+                @Override
+                public List<WebBrowsingFlow<W, E>> apply(Void none) {
+                    List<WebBrowsingFlow<W, E>> flows = new ArrayList<>();
+                    for (CompletableFuture<WebBrowsingFlow<W, E>> result: results) {
+                        flows.add(result.join());
+                    }
+                    return flows;
+                }
+            }).get();
+        } catch (InterruptedException exception) {
+            for (CompletableFuture<WebBrowsingFlow<W, E>> result: results) {
+                result.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IOException(exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof IOException) {
+                throw (IOException) exception.getCause();
+            }
+            throw new IOException(exception.getCause());
+        }
+    }
+    
+    /**
+     * 保持しているWEBブラウザをすべて閉じる。貸し出し中のWEBブラウザは返却の際に閉じられる。
+     */
+    public void close() {
+        List<W> browsers;
+        synchronized (this) {
+            this.isClosed = true;
+            browsers = new ArrayList<>(this.idleBrowsers);
+            this.idleBrowsers.clear();
+            this.notifyAll();
+        }
+        for (W browser: browsers) {
+            browser.close();
+            this.discard(browser);
+        }
+        this.executorService.shutdown();
+    }
+    
+    /**
+     * WEBブラウザを作成する処理のインターフェース。
+     * 
+     * @param <W> WEBブラウザの型。
+     */
+    public interface BrowserFactory<W extends WebBrowser<?>> {
+        
+        /**
+         * 新しいWEBブラウザを作成する。
+         * 
+         * @return
+         * @throws Exception
+         */
+        public abstract W create() throws Exception;
+    }
+    
+    /**
+     * 貸し出されたWEBブラウザを使用するWebBrowsingFlowを作成する処理のインターフェース。
+     * 
+     * @param <W> WEBブラウザの型。
+     * @param <E> WEBブラウザの要素の型。
+     */
+    public interface FlowFactory<W extends WebBrowser<E>, E extends WebBrowser.Element> {
+        
+        /**
+         * 指定されたWEBブラウザを使用するWebBrowsingFlowを作成する。
+         * 
+         * @param webBrowser
+         * @return
+         * @throws Exception
+         */
+        public abstract WebBrowsingFlow<W, E> create(W webBrowser) throws Exception;
+    }
+}
@@ -80,12 +80,39 @@ public class WebBrowsingFlow<W extends WebBrowser<E>, E extends WebBrowser.Eleme
         this.isCanceled = true;
     }
     
+    /**
+     * WEBブラウザへのタスク実行がキャンセルされた場合はtrueを返す。
+     * 
+     * @return
+     */
+    public boolean isCanceled() {
+        return this.isCanceled;
+    }
+    
     private int taskIndex = 0;
     
     private boolean isTimedout = false;
     
+    /**
+     * いずれかのタスクがタイムアウトした場合はtrueを返す。
+     * 
+     * @return
+     */
+    public boolean isTimedout() {
+        return this.isTimedout;
+    }
+    
     private boolean isExceptionOccurred = false;
     
+    /**
+     * いずれかのタスクで例外が発生した場合はtrueを返す。
+     * 
+     * @return
+     */
+    public boolean isExceptionOccurred() {
+        return this.isExceptionOccurred;
+    }
+    
     /**
      * 次のタスクを実行する。
      */
@@ -153,6 +180,13 @@ public class WebBrowsingFlow<W extends WebBrowser<E>, E extends WebBrowser.Eleme
         thread.start();
     }
     
+    /**
+     * すべてのタスクを順に実行して、終了するまで呼び出し元のスレッドで待機する。
+     */
+    public void executeAndWait() {
+        this.executeNextTask();
+    }
+    
     /**
      * WEBブラウザへのタスクのインターフェース。
      * 
@@ -1,24 +1,48 @@
 package com.hirohiro716.scent.web;
 
 import java.io.BufferedReader;
-import java.io.FileInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.CookieHandler;
 import java.net.CookieManager;
+import java.net.HttpRetryException;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+
+import javax.xml.stream.XMLStreamException;
 
 import com.hirohiro716.scent.IdentifiableEnum;
 import com.hirohiro716.scent.StringObject;
 import com.hirohiro716.scent.filesystem.File;
 import com.hirohiro716.scent.filesystem.FileExtension;
+import com.hirohiro716.scent.io.json.JSONReader;
+import com.hirohiro716.scent.io.xml.XMLReader;
 
 /**
  * WEBサイトへリクエストするクラス。
@@ -55,6 +79,14 @@ public class WebsiteRequester {
         return this.url;
     }
     
+    private static final int UPLOAD_BUFFER_SIZE = 65536;
+    
+    private static final long STREAMING_THRESHOLD_SIZE = 8 * 1024 * 1024;
+    
+    private static final int MAXIMUM_NUMBER_OF_REDIRECTS = 20;
+    
+    private static final int MAXIMUM_INITIAL_BODY_BUFFER_SIZE = 1024 * 1024;
+    
     private static CookieManager cookieManager = new CookieManager();
 
     private String charsetName = "UTF-8";
@@ -139,23 +171,59 @@ public class WebsiteRequester {
         this.contentType = contentType;
     }
 
+    private HttpClientEngine httpClientEngine = null;
+    
     /**
-     * 送信するURLに対してパラメーターを指定してリクエストを送信し、その結果を取得する。
+     * リクエストの送信に使用するjava.net.http.HttpClientのエンジンを取得する。
      * 
-     * @param requestParameters
      * @return
-     * @throws IOException
      */
-    private Response multipartRequest(Map<String, Object> requestParameters) throws IOException {
-        URL url = new URL(this.url);
-        CookieHandler.setDefault(WebsiteRequester.cookieManager);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setConnectTimeout(this.connectTimeoutMillisecond);
-        connection.setReadTimeout(this.requestTimeoutMillisecond);
-        connection.setRequestMethod(this.method.getID().toUpperCase());
+    public HttpClientEngine getHttpClientEngine() {
+        return this.httpClientEngine;
+    }
+    
+    /**
+     * リクエストの送信に使用するjava.net.http.HttpClientのエンジンを設定する。初期値はnull。<br>
+     * nullの場合はリクエストごとにjava.net.HttpURLConnectionで接続する。
+     * エンジンを指定した場合は、エンジンの接続のプールを再利用して送信し、クッキーはこのインスタンスのCookieHandlerで管理する。
+     * ※エンジンを使用する場合、接続が確立するまでにかかる時間の上限はエンジンの設定が使用される。
+     * 
+     * @param httpClientEngine
+     */
+    public void setHttpClientEngine(HttpClientEngine httpClientEngine) {
+        this.httpClientEngine = httpClientEngine;
+    }
+    
+    private CookieHandler cookieHandler = new CookieManager();
+    
+    /**
+     * HttpClientEngineを使用してリクエストを送信する際に、クッキーを管理するCookieHandlerを取得する。
+     * 
+     * @return
+     */
+    public CookieHandler getCookieHandler() {
+        return this.cookieHandler;
+    }
+    
+    /**
+     * HttpClientEngineを使用してリクエストを送信する際に、クッキーを管理するCookieHandlerを設定する。初期値はインスタンスごとのCookieManager。<br>
+     * 複数のインスタンスで同じCookieHandlerを設定すると、それらのインスタンス間でクッキーが共有される。
+     * 
+     * @param cookieHandler nullの場合はクッキーを使用しない。
+     */
+    public void setCookieHandler(CookieHandler cookieHandler) {
+        this.cookieHandler = cookieHandler;
+    }
+    
+    /**
+     * リクエストのContent-Typeヘッダーの値を作成する。
+     * 
+     * @param boundary マルチパートの境界文字列を格納するStringObject。マルチパートではない場合はnull。
+     * @return
+     */
+    private String createContentType(StringObject boundary) {
         StringObject contentType = new StringObject();
         StringObject charset = new StringObject();
-        StringObject boundary = new StringObject();
         for (String part: StringObject.newInstance(this.contentType).split(";")) {
             if (part.trim().startsWith("charset=")) {
                 charset.append(part);
@@ -163,7 +231,7 @@ public class WebsiteRequester {
                 charset.replace("charset=", "");
                 continue;
             }
-            if (part.trim().startsWith("boundary=")) {
+            if (boundary != null && part.trim().startsWith("boundary=")) {
                 boundary.append(part);
                 boundary.trim();
                 boundary.replace("boundary=", "");
@@ -177,88 +245,690 @@ public class WebsiteRequester {
         if (charset.length() == 0) {
             charset.append(this.charsetName);
         }
-        contentType.append("; charset=");
-        contentType.append(charset);
-        if (boundary.length() == 0) {
-            boundary.append("hirohiro716-boundary");
+        contentType.append("; charset=");
+        contentType.append(charset);
+        if (boundary != null) {
+            if (boundary.length() == 0) {
+                boundary.append("hirohiro716-boundary");
+            }
+            contentType.append("; boundary=");
+            contentType.append(boundary);
+        }
+        return contentType.toString();
+    }
+    
+    /**
+     * パラメーターからマルチパートの本文を構成するセグメントを作成する。
+     * 
+     * @param requestParameters
+     * @param boundary
+     * @return
+     * @throws IOException 送信できない型のパラメーターが含まれている場合。
+     */
+    private static List<MultipartSegment> createMultipartSegments(Map<String, Object> requestParameters, String boundary) throws IOException {
+        List<MultipartSegment> segments = new ArrayList<>();
+        for (String key: requestParameters.keySet()) {
+            Object parameter = requestParameters.get(key);
+            if (parameter instanceof String || parameter instanceof Integer || parameter instanceof Long || parameter instanceof Float || parameter instanceof Double || parameter instanceof Boolean) {
+                StringObject part = new StringObject("--");
+                part.append(boundary);
+                part.append("\r\n");
+                part.append("Content-Disposition: form-data; name=\"");
+                part.append(key);
+                part.append("\"");
+                part.append("\r\n");
+                part.append("\r\n");
+                part.append(String.valueOf(parameter));
+                part.append("\r\n");
+                segments.add(new MultipartSegment(part.toString()));
+                continue;
+            }
+            if (parameter instanceof File) {
+                File file = (File) parameter;
+                FileExtension fileExtension = FileExtension.fromFileName(file.getAbsolutePath());
+                if (fileExtension != null) {
+                    parameter = new SendableFile(file.getAbsolutePath(), fileExtension.getContentType());
+                }
+            }
+            if (parameter instanceof SendableFile) {
+                SendableFile sendableFile = (SendableFile) parameter;
+                StringObject part = new StringObject("--");
+                part.append(boundary);
+                part.append("\r\n");
+                part.append("Content-Disposition: form-data; name=\"");
+                part.append(key);
+                part.append("\"; filename=\"");
+                part.append(sendableFile.getName());
+                part.append("\"");
+                part.append("\r\n");
+                part.append("Content-Type: ");
+                part.append(sendableFile.getContentType());
+                part.append("\r\n");
+                part.append("\r\n");
+                segments.add(new MultipartSegment(part.toString()));
+                segments.add(new MultipartSegment(sendableFile));
+                segments.add(new MultipartSegment("\r\n"));
+                continue;
+            }
+            if (parameter instanceof SendableInputStream) {
+                SendableInputStream sendableInputStream = (SendableInputStream) parameter;
+                StringObject part = new StringObject("--");
+                part.append(boundary);
+                part.append("\r\n");
+                part.append("Content-Disposition: form-data; name=\"");
+                part.append(key);
+                part.append("\"; filename=\"");
+                part.append(sendableInputStream.getFileName());
+                part.append("\"");
+                part.append("\r\n");
+                part.append("Content-Type: ");
+                part.append(sendableInputStream.getContentType());
+                part.append("\r\n");
+                part.append("\r\n");
+                segments.add(new MultipartSegment(part.toString()));
+                segments.add(new MultipartSegment(sendableInputStream));
+                segments.add(new MultipartSegment("\r\n"));
+                continue;
+            }
+            throw new IOException("The only parameters that can be sent are \"String\", \"SendableFile\" or \"SendableInputStream\".");
+        }
+        StringObject end = new StringObject("--");
+        end.append(boundary);
+        end.append("--");
+        end.append("\r\n");
+        segments.add(new MultipartSegment(end.toString()));
+        return segments;
+    }
+    
+    /**
+     * マルチパートの本文の長さ(byte)を算出する。
+     * 
+     * @param segments
+     * @return 長さが不明なセグメントが含まれている場合は-1。
+     * @throws IOException
+     */
+    private static long computeContentLength(List<MultipartSegment> segments) throws IOException {
+        long contentLength = 0;
+        for (MultipartSegment segment: segments) {
+            long length = segment.length();
+            if (length < 0) {
+                return -1;
+            }
+            contentLength += length;
+        }
+        return contentLength;
+    }
+    
+    /**
+     * マルチパートの本文を構成するセグメントのクラス。文字列、ファイルの内容、入力ストリームの内容のいずれかを表す。
+     */
+    private static class MultipartSegment {
+        
+        /**
+         * コンストラクタ。<br>
+         * UTF-8で送信する文字列を指定する。
+         * 
+         * @param text
+         */
+        private MultipartSegment(String text) {
+            this.bytes = text.getBytes(StandardCharsets.UTF_8);
+        }
+        
+        /**
+         * コンストラクタ。<br>
+         * 内容を送信するファイルを指定する。
+         * 
+         * @param file
+         */
+        private MultipartSegment(SendableFile file) {
+            this.file = file;
+        }
+        
+        /**
+         * コンストラクタ。<br>
+         * 内容を送信する入力ストリームを指定する。
+         * 
+         * @param inputStream
+         */
+        private MultipartSegment(SendableInputStream inputStream) {
+            this.inputStream = inputStream;
+        }
+        
+        private byte[] bytes = null;
+        
+        private SendableFile file = null;
+        
+        private SendableInputStream inputStream = null;
+        
+        /**
+         * セグメントの長さ(byte)を取得する。
+         * 
+         * @return 長さが不明な場合は-1。
+         * @throws IOException
+         */
+        private long length() throws IOException {
+            if (this.bytes != null) {
+                return this.bytes.length;
+            }
+            if (this.file != null) {
+                return this.file.getSize();
+            }
+            return -1;
+        }
+    }
+    
+    /**
+     * マルチパートのセグメントを順に読み込むbyte配列のイテレーター。ファイルと入力ストリームの内容は一定のサイズごとに読み込む。
+     */
+    private static class MultipartSegmentIterator implements Iterator<byte[]> {
+        
+        /**
+         * コンストラクタ。<br>
+         * 読み込むセグメントと、送信の進捗を記録するインスタンスを指定する。
+         * 
+         * @param segments
+         * @param uploadProgress
+         */
+        private MultipartSegmentIterator(List<MultipartSegment> segments, UploadProgress uploadProgress) {
+            this.segments = segments.iterator();
+            this.uploadProgress = uploadProgress;
+        }
+        
+        private Iterator<MultipartSegment> segments;
+        
+        private UploadProgress uploadProgress;
+        
+        private FileChannel fileChannel = null;
+        
+        private InputStream inputStream = null;
+        
+        private byte[] next = null;
+        
+        /**
+         * 次に返すbyte配列を準備する。
+         * 
+         * @throws IOException
+         */
+        private void prepare() throws IOException {
+            while (this.next == null) {
+                if (this.fileChannel != null) {
+                    ByteBuffer buffer = ByteBuffer.allocate(WebsiteRequester.UPLOAD_BUFFER_SIZE);
+                    int length = 0;
+                    while (length > -1 && buffer.hasRemaining()) {
+                        length = this.fileChannel.read(buffer);
+                    }
+                    if (buffer.position() > 0) {
+                        this.next = Arrays.copyOf(buffer.array(), buffer.position());
+                        return;
+                    }
+                    this.fileChannel.close();
+                    this.fileChannel = null;
+                }
+                if (this.inputStream != null) {
+                    byte[] buffer = this.inputStream.readNBytes(WebsiteRequester.UPLOAD_BUFFER_SIZE);
+                    if (buffer.length > 0) {
+                        this.next = buffer;
+                        return;
+                    }
+                    this.inputStream.close();
+                    this.inputStream = null;
+                }
+                if (this.segments.hasNext() == false) {
+                    return;
+                }
+                MultipartSegment segment = this.segments.next();
+                if (segment.bytes != null) {
+                    this.next = segment.bytes;
+                } else if (segment.file != null) {
+                    this.fileChannel = FileChannel.open(segment.file.toJavaIoFile().toPath(), StandardOpenOption.READ);
+                } else {
+                    this.inputStream = segment.inputStream.getInputStream();
+                }
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            try {
+                this.prepare();
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+            return this.next != null;
+        }
+        
+        @Override
+        public byte[] next() {
+            if (this.hasNext() == false) {
+                throw new NoSuchElementException();
+            }
+            byte[] next = this.next;
+            this.next = null;
+            this.uploadProgress.add(next.length);
+            return next;
+        }
+    }
+    
+    private UploadProgressCallback uploadProgressCallback = null;
+    
+    /**
+     * マルチパートの本文を送信する際の進捗を受け取るコールバックを取得する。
+     * 
+     * @return
+     */
+    public UploadProgressCallback getUploadProgressCallback() {
+        return this.uploadProgressCallback;
+    }
+    
+    /**
+     * マルチパートの本文を送信する際の進捗を受け取るコールバックを設定する。初期値はnull。
+     * 
+     * @param uploadProgressCallback
+     */
+    public void setUploadProgressCallback(UploadProgressCallback uploadProgressCallback) {
+        this.uploadProgressCallback = uploadProgressCallback;
+    }
+    
+    /**
+     * マルチパートの本文を送信する際の進捗を受け取るコールバックのインターフェース。
+     */
+    public interface UploadProgressCallback {
+        
+        /**
+         * 本文の一部を送信する度に呼び出される。
+         * 
+         * @param numberOfSentBytes 送信済みのバイト数。
+         * @param numberOfTotalBytes 本文全体のバイト数。不明な場合は-1。
+         * @param numberOfBytesPerSecond 送信を開始してからの1秒あたりの平均送信バイト数。
+         */
+        public abstract void call(long numberOfSentBytes, long numberOfTotalBytes, double numberOfBytesPerSecond);
+    }
+    
+    private UploadProgress lastUploadProgress = null;
+    
+    /**
+     * 直前に送信したマルチパートの本文の、1秒あたりの平均送信バイト数を取得する。
+     * 
+     * @return 送信していない場合は0。
+     */
+    public double getUploadBytesPerSecond() {
+        UploadProgress uploadProgress = this.lastUploadProgress;
+        if (uploadProgress == null) {
+            return 0;
+        }
+        return uploadProgress.getNumberOfBytesPerSecond();
+    }
+    
+    /**
+     * マルチパートの本文の送信の進捗を記録するクラス。
+     */
+    private static class UploadProgress {
+        
+        /**
+         * コンストラクタ。<br>
+         * 本文全体のバイト数と、進捗を受け取るコールバックを指定する。
+         * 
+         * @param numberOfTotalBytes 不明な場合は-1。
+         * @param callback
+         */
+        private UploadProgress(long numberOfTotalBytes, UploadProgressCallback callback) {
+            this.numberOfTotalBytes = numberOfTotalBytes;
+            this.callback = callback;
+        }
+        
+        private long numberOfTotalBytes;
+        
+        private UploadProgressCallback callback;
+        
+        private long numberOfSentBytes = 0;
+        
+        private long startNanoseconds = 0;
+        
+        private long lastNanoseconds = 0;
+        
+        /**
+         * 送信を最初からやり直す際に記録を初期化する。
+         */
+        private synchronized void restart() {
+            this.numberOfSentBytes = 0;
+            this.startNanoseconds = System.nanoTime();
+            this.lastNanoseconds = this.startNanoseconds;
+        }
+        
+        /**
+         * 送信したバイト数を記録する。
+         * 
+         * @param numberOfBytes
+         */
+        private void add(long numberOfBytes) {
+            long numberOfSentBytes;
+            double numberOfBytesPerSecond;
+            synchronized (this) {
+                this.numberOfSentBytes += numberOfBytes;
+                this.lastNanoseconds = System.nanoTime();
+                numberOfSentBytes = this.numberOfSentBytes;
+                numberOfBytesPerSecond = this.getNumberOfBytesPerSecond();
+            }
+            if (this.callback != null) {
+                this.callback.call(numberOfSentBytes, this.numberOfTotalBytes, numberOfBytesPerSecond);
+            }
+        }
+        
+        /**
+         * 送信を開始してからの1秒あたりの平均送信バイト数を取得する。
+         * 
+         * @return
+         */
+        private synchronized double getNumberOfBytesPerSecond() {
+            long nanoseconds = this.lastNanoseconds - this.startNanoseconds;
+            if (nanoseconds <= 0) {
+                return 0;
+            }
+            return this.numberOfSentBytes * 1000000000d / nanoseconds;
+        }
+    }
+    
+    /**
+     * マルチパートのセグメントを順に出力する。
+     * 
+     * @param outputStream
+     * @param segments
+     * @param uploadProgress
+     * @throws IOException 送信中にファイルの長さが短くなった場合。
+     */
+    private static void writeMultipartSegments(OutputStream outputStream, List<MultipartSegment> segments, UploadProgress uploadProgress) throws IOException {
+        WritableByteChannel outputChannel = Channels.newChannel(outputStream);
+        for (MultipartSegment segment: segments) {
+            if (segment.bytes != null) {
+                outputStream.write(segment.bytes);
+                uploadProgress.add(segment.bytes.length);
+                continue;
+            }
+            if (segment.file != null) {
+                try (FileChannel fileChannel = FileChannel.open(segment.file.toJavaIoFile().toPath(), StandardOpenOption.READ)) {
+                    long size = fileChannel.size();
+                    long position = 0;
+                    while (position < size) {
+                        long length = fileChannel.transferTo(position, Math.min(WebsiteRequester.UPLOAD_BUFFER_SIZE, size - position), outputChannel);
+                        if (length <= 0) {
+                            throw new IOException("The file was truncated during upload: " + segment.file.getAbsolutePath());
+                        }
+                        position += length;
+                        uploadProgress.add(length);
+                    }
+                }
+                continue;
+            }
+            try (InputStream inputStream = segment.inputStream.getInputStream()) {
+                byte[] buffer = new byte[WebsiteRequester.UPLOAD_BUFFER_SIZE];
+                int length;
+                while ((length = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, length);
+                    uploadProgress.add(length);
+                }
+            }
+        }
+        outputStream.flush();
+    }
+    
+    /**
+     * 接続を再利用できるように、レスポンスのボディを読み捨てて閉じる。
+     * 
+     * @param connection
+     */
+    private static void discardResponseBody(HttpURLConnection connection) {
+        try {
+            InputStream inputStream = connection.getErrorStream();
+            if (inputStream == null) {
+                inputStream = connection.getInputStream();
+            }
+            try (InputStream closingInputStream = inputStream) {
+                closingInputStream.transferTo(OutputStream.nullOutputStream());
+            }
+        } catch (IOException exception) {
+        }
+    }
+    
+    /**
+     * 指定されたステータスコードがHttpURLConnectionが追跡するリダイレクトの場合はtrueを返す。
+     * 
+     * @param code
+     * @return
+     */
+    private static boolean isRedirect(int code) {
+        switch (code) {
+            case 300:
+            case 301:
+            case 302:
+            case 303:
+            case 307:
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * 送信するURLに対してパラメーターを指定してリクエストを送信し、その結果を取得する。<br>
+     * 本文の長さが8MB以下の場合は、本文をメモリに保持してから送信する。
+     * それより長い場合や長さが不明な場合は、本文をメモリに保持せずにストリーミングで送信する。
+     * ストリーミングで送信する場合、リダイレクトはHttpURLConnectionと同じ規則で追跡するが、認証の要求に対する再送信は行わない。
+     * 
+     * @param requestParameters
+     * @return
+     * @throws IOException
+     */
+    private Response multipartRequest(Map<String, Object> requestParameters) throws IOException {
+        if (this.httpClientEngine != null) {
+            return this.httpClientEngine.send(this.createHttpRequest(requestParameters), this.cookieHandler, this.charsetName);
+        }
+        StringObject boundary = new StringObject();
+        String contentType = this.createContentType(boundary);
+        List<MultipartSegment> segments = WebsiteRequester.createMultipartSegments(requestParameters, boundary.toString());
+        long contentLength = WebsiteRequester.computeContentLength(segments);
+        boolean isStreaming = contentLength < 0 || contentLength > WebsiteRequester.STREAMING_THRESHOLD_SIZE;
+        UploadProgress uploadProgress = new UploadProgress(contentLength, this.uploadProgressCallback);
+        this.lastUploadProgress = uploadProgress;
+        URL url = new URL(this.url);
+        String method = this.method.getID().toUpperCase();
+        int numberOfRedirects = 0;
+        while (true) {
+            CookieHandler.setDefault(WebsiteRequester.cookieManager);
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(this.connectTimeoutMillisecond);
+            connection.setReadTimeout(this.requestTimeoutMillisecond);
+            connection.setRequestMethod(method);
+            connection.setDoInput(true);
+            if (segments != null) {
+                connection.addRequestProperty("Content-Type", contentType);
+                connection.setDoOutput(true);
+                if (isStreaming) {
+                    // ストリーミングでは本文を再送信できないため、リダイレクトはここで追跡する
+                    connection.setInstanceFollowRedirects(false);
+                    if (contentLength > -1) {
+                        connection.setFixedLengthStreamingMode(contentLength);
+                    } else {
+                        connection.setChunkedStreamingMode(WebsiteRequester.UPLOAD_BUFFER_SIZE);
+                    }
+                }
+                uploadProgress.restart();
+                try (OutputStream outputStream = connection.getOutputStream()) {
+                    WebsiteRequester.writeMultipartSegments(outputStream, segments, uploadProgress);
+                }
+            }
+            int code = connection.getResponseCode();
+            String location = connection.getHeaderField("Location");
+            if (segments != null && isStreaming && WebsiteRequester.isRedirect(code) && location != null && numberOfRedirects < WebsiteRequester.MAXIMUM_NUMBER_OF_REDIRECTS) {
+                URL redirectURL = new URL(url, location);
+                if (redirectURL.getProtocol().equalsIgnoreCase(url.getProtocol())) {
+                    WebsiteRequester.discardResponseBody(connection);
+                    if (method.equals("POST") && code != 307) {
+                        method = "GET";
+                        segments = null;
+                    } else {
+                        for (MultipartSegment segment: segments) {
+                            if (segment.inputStream != null) {
+                                throw new HttpRetryException("The body read from an input stream cannot be resent after redirection.", code, redirectURL.toExternalForm());
+                            }
+                        }
+                    }
+                    url = redirectURL;
+                    numberOfRedirects++;
+                    continue;
+                }
+            }
+            InputStream inputStream = null;
+            if (code < 400) {
+                inputStream = connection.getInputStream();
+            } else {
+                inputStream = connection.getErrorStream();
+            }
+            return new Response(code, inputStream, this.charsetName, connection.getHeaderFields());
+        }
+    }
+    
+    /**
+     * java.net.URLをjava.net.URIに変換する。
+     * 
+     * @param url
+     * @return
+     * @throws IOException URIに変換できない場合。
+     */
+    private static URI toURI(URL url) throws IOException {
+        try {
+            return url.toURI();
+        } catch (URISyntaxException exception) {
+            throw new IOException(exception);
+        }
+    }
+    
+    /**
+     * マルチパートのセグメントを順に送信するjava.net.http.HttpRequest.BodyPublisherを作成する。<br>
+     * 本文全体の長さが算出できる場合はContent-Lengthを指定して送信し、算出できない場合はチャンク形式で送信する。<br>
+     * 入力ストリームのセグメントを含む場合、再試行やリダイレクトで本文を再送信しようとするとjava.net.HttpRetryExceptionで失敗する。
+     * 
+     * @param segments
+     * @return
+     * @throws IOException
+     */
+    private HttpRequest.BodyPublisher createMultipartBodyPublisher(List<MultipartSegment> segments) throws IOException {
+        long contentLength = WebsiteRequester.computeContentLength(segments);
+        UploadProgress uploadProgress = new UploadProgress(contentLength, this.uploadProgressCallback);
+        this.lastUploadProgress = uploadProgress;
+        boolean isResendable = true;
+        for (MultipartSegment segment: segments) {
+            if (segment.inputStream != null) {
+                isResendable = false;
+            }
+        }
+        boolean isResendableBody = isResendable;
+        HttpRequest.BodyPublisher bodyPublisher = HttpRequest.BodyPublishers.ofByteArrays(new Iterable<byte[]>() {
+            
+            private boolean isIterated = false;
+            
+            @Override
+            public synchronized Iterator<byte[]> iterator() {
+                if (this.isIterated && isResendableBody == false) {
+                    throw new UncheckedIOException(new HttpRetryException("The body read from an input stream cannot be resent.", -1));
+                }
+                this.isIterated = true;
+                uploadProgress.restart();
+                return new MultipartSegmentIterator(segments, uploadProgress);
+            }
+        });
+        if (contentLength > 0) {
+            return HttpRequest.BodyPublishers.fromPublisher(bodyPublisher, contentLength);
+        }
+        return bodyPublisher;
+    }
+    
+    /**
+     * HttpClientEngineで送信するリクエストを、送信先のURIと本文を指定して作成する。
+     * 
+     * @param uri
+     * @param contentType
+     * @param bodyPublisher
+     * @return
+     */
+    private HttpRequest createHttpRequest(URI uri, String contentType, HttpRequest.BodyPublisher bodyPublisher) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+        if (this.requestTimeoutMillisecond > 0) {
+            builder.timeout(Duration.ofMillis(this.requestTimeoutMillisecond));
+        }
+        builder.header("Content-Type", contentType);
+        builder.method(this.method.getID().toUpperCase(), bodyPublisher);
+        return builder.build();
+    }
+    
+    /**
+     * HttpClientEngineで送信するリクエストを、送信先のURLと本文を指定して作成する。
+     * 
+     * @param url
+     * @param body
+     * @return
+     * @throws IOException
+     */
+    private HttpRequest createHttpRequest(URL url, String body) throws IOException {
+        String contentType = this.createContentType(null);
+        StringObject bodyStringObject = new StringObject(body);
+        HttpRequest.BodyPublisher bodyPublisher = HttpRequest.BodyPublishers.noBody();
+        if (bodyStringObject.length() > 0) {
+            bodyPublisher = HttpRequest.BodyPublishers.ofString(bodyStringObject.toString(), StandardCharsets.UTF_8);
+        }
+        return this.createHttpRequest(WebsiteRequester.toURI(url), contentType, bodyPublisher);
+    }
+    
+    /**
+     * HttpClientEngineで送信するリクエストを、送信する本文を指定して作成する。
+     * 
+     * @param body
+     * @return
+     * @throws IOException
+     */
+    HttpRequest createHttpRequest(String body) throws IOException {
+        return this.createHttpRequest(new URL(this.url), body);
+    }
+    
+    /**
+     * HttpClientEngineで送信するリクエストを、送信するパラメーターを指定して作成する。
+     * 
+     * @param requestParameters
+     * @return
+     * @throws IOException
+     */
+    HttpRequest createHttpRequest(Map<String, Object> requestParameters) throws IOException {
+        if (StringObject.newInstance(this.contentType).toString().contains("multipart/form-data")) {
+            StringObject boundary = new StringObject();
+            String contentType = this.createContentType(boundary);
+            List<MultipartSegment> segments = WebsiteRequester.createMultipartSegments(requestParameters, boundary.toString());
+            return this.createHttpRequest(WebsiteRequester.toURI(new URL(this.url)), contentType, this.createMultipartBodyPublisher(segments));
         }
-        contentType.append("; boundary=");
-        contentType.append(boundary);
-        connection.addRequestProperty("Content-Type", contentType.toString());
-        connection.setDoInput(true);
-        connection.setDoOutput(true);
-        try (OutputStream outputStream = connection.getOutputStream()) {
-            try (OutputStreamWriter streamWriter = new OutputStreamWriter(outputStream, "UTF-8")) {
-                for (String key: requestParameters.keySet()) {
-                    Object parameter = requestParameters.get(key);
-                    if (parameter instanceof String || parameter instanceof Integer || parameter instanceof Long || parameter instanceof Float || parameter instanceof Double || parameter instanceof Boolean) {
-                        streamWriter.append("--");
-                        streamWriter.append(boundary.toString());
-                        streamWriter.append("\r\n");
-                        streamWriter.append("Content-Disposition: form-data; name=\"");
-                        streamWriter.append(key);
-                        streamWriter.append("\"");
-                        streamWriter.append("\r\n");
-                        streamWriter.append("\r\n");
-                        streamWriter.append(String.valueOf(parameter));
-                        streamWriter.append("\r\n");
-                        streamWriter.flush();
-                        continue;
-                    }
-                    if (parameter instanceof File) {
-                        File file = (File) parameter;
-                        FileExtension fileExtension = FileExtension.fromFileName(file.getAbsolutePath());
-                        if (fileExtension != null) {
-                            parameter = new SendableFile(file.getAbsolutePath(), fileExtension.getContentType());
-                        }
-                    }
-                    if (parameter instanceof SendableFile) {
-                        SendableFile sendableFile = (SendableFile) parameter;
-                        streamWriter.append("--");
-                        streamWriter.append(boundary.toString());
-                        streamWriter.append("\r\n");
-                        streamWriter.append("Content-Disposition: form-data; name=\"");
-                        streamWriter.append(key);
-                        streamWriter.append("\"; filename=\"");
-                        streamWriter.append(sendableFile.getName());
-                        streamWriter.append("\"");
-                        streamWriter.append("\r\n");
-                        streamWriter.append("Content-Type: ");
-                        streamWriter.append(sendableFile.getContentType());
-                        streamWriter.append("\r\n");
-                        streamWriter.append("\r\n");
-                        streamWriter.flush();
-                        try (FileInputStream fileInputStream = new FileInputStream(sendableFile.toJavaIoFile())) {
-                            byte[] buffer = new byte[4096];
-                            int bytesRead;
-                            while ((bytesRead = fileInputStream.read(buffer)) != -1) {
-                                outputStream.write(buffer, 0, bytesRead);
-                            }
-                            outputStream.flush();
-                        }
-                        streamWriter.append("\r\n");
-                        streamWriter.flush();
-                        continue;
-                    }
-                    throw new IOException("The only parameters that can be sent are \"String\" or \"SendableFile\".");
-                }
-                streamWriter.append("--");
-                streamWriter.append(boundary.toString());
-                streamWriter.append("--");
-                streamWriter.append("\r\n");
-                streamWriter.flush();
-            }
+        String parameters = WebsiteRequester.createURLEncodedParameters(requestParameters);
+        switch (this.method) {
+            case GET:
+            case DELETE:
+                return this.createHttpRequest(new URL(StringObject.join(this.url, "?", parameters).toString()), "");
+            case POST:
+            case PUT:
+                break;
         }
-        int code = connection.getResponseCode();
-        InputStream inputStream = null;
-        if (code < 400) {
-            inputStream = connection.getInputStream();
-        } else {
-            inputStream = connection.getErrorStream();
+        return this.createHttpRequest(parameters);
+    }
+    
+    /**
+     * HttpClientEngineで作成したリクエストを非同期で送信する。エンジンが設定されていない場合は既定のエンジンを使用する。
+     * 
+     * @param request
+     * @return
+     */
+    CompletableFuture<Response> sendAsync(HttpRequest request) {
+        HttpClientEngine httpClientEngine = this.httpClientEngine;
+        if (httpClientEngine == null) {
+            httpClientEngine = HttpClientEngine.getDefault();
         }
-        return new Response(code, inputStream, this.charsetName);
+        return httpClientEngine.sendAsync(request, this.cookieHandler, this.charsetName);
     }
-
+    
     /**
      * 送信するURLに対して本文を指定してリクエストを送信し、その結果を取得する。
      * 
@@ -268,33 +938,18 @@ public class WebsiteRequester {
      * @throws IOException
      */
     private Response request(URL url, String body) throws IOException {
+        if (this.httpClientEngine != null) {
+            return this.httpClientEngine.send(this.createHttpRequest(url, body), this.cookieHandler, this.charsetName);
+        }
+        String contentType = this.createContentType(null);
+        StringObject bodyStringObject = new StringObject(body);
         CookieHandler.setDefault(WebsiteRequester.cookieManager);
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
         connection.setConnectTimeout(this.connectTimeoutMillisecond);
         connection.setReadTimeout(this.requestTimeoutMillisecond);
         connection.setRequestMethod(this.method.getID().toUpperCase());
-        StringObject contentType = new StringObject();
-        StringObject charset = new StringObject();
-        for (String part: StringObject.newInstance(this.contentType).split(";")) {
-            if (part.trim().startsWith("charset=")) {
-                charset.append(part);
-                charset.trim();
-                charset.replace("charset=", "");
-                continue;
-            }
-            if (contentType.length() > 0) {
-                contentType.append("; ");
-            }
-            contentType.append(part);
-        }
-        if (charset.length() == 0) {
-            charset.append(this.charsetName);
-        }
-        contentType.append("; charset=");
-        contentType.append(charset);
-        connection.addRequestProperty("Content-Type", contentType.toString());
+        connection.addRequestProperty("Content-Type", contentType);
         connection.setDoInput(true);
-        StringObject bodyStringObject = new StringObject(body);
         if (bodyStringObject.length() > 0) {
             connection.setDoOutput(true);
             try (OutputStreamWriter streamWriter = new OutputStreamWriter(connection.getOutputStream(), "UTF-8")) {
@@ -310,7 +965,7 @@ public class WebsiteRequester {
         } else {
             inputStream = connection.getErrorStream();
         }
-        return new Response(code, inputStream, this.charsetName);
+        return new Response(code, inputStream, this.charsetName, connection.getHeaderFields());
     }
 
     /**
@@ -346,6 +1001,66 @@ public class WebsiteRequester {
         if (StringObject.newInstance(this.contentType).toString().contains("multipart/form-data")) {
             return this.multipartRequest(requestParameters);
         }
+        String parameters = WebsiteRequester.createURLEncodedParameters(requestParameters);
+        switch (this.method) {
+            case GET:
+            case DELETE:
+                return this.request(new URL(StringObject.join(this.url, "?", parameters).toString()), "");
+            case POST:
+            case PUT:
+                break;
+        }
+        return this.request(parameters);
+    }
+    
+    /**
+     * 送信する本文を指定して非同期でリクエストを送信する。<br>
+     * リクエストは呼び出した時点のURL、メソッド、Content-Typeで作成され、HttpClientEngineで送信される。
+     * エンジンが設定されていない場合は、HttpClientEngine.getDefaultメソッドで取得できる既定のエンジンが使用される。
+     * 返されるCompletableFutureは、レスポンスのボディをすべて受信してから完了する。
+     * 
+     * @param body
+     * @return
+     */
+    public CompletableFuture<Response> requestAsync(String body) {
+        try {
+            return this.sendAsync(this.createHttpRequest(body));
+        } catch (IOException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+    }
+    
+    /**
+     * 非同期でリクエストを送信する。
+     * 
+     * @return
+     */
+    public CompletableFuture<Response> requestAsync() {
+        return this.requestAsync("");
+    }
+    
+    /**
+     * 送信するパラメーターを指定して非同期でリクエストを送信する。
+     * 
+     * @param requestParameters
+     * @return
+     */
+    public CompletableFuture<Response> requestAsync(Map<String, Object> requestParameters) {
+        try {
+            return this.sendAsync(this.createHttpRequest(requestParameters));
+        } catch (IOException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+    }
+    
+    /**
+     * パラメーターのうち文字列の値をURLエンコードして、"key=value&..."の形式の文字列を作成する。
+     * 
+     * @param requestParameters
+     * @return
+     * @throws IOException
+     */
+    private static String createURLEncodedParameters(Map<String, Object> requestParameters) throws IOException {
         StringObject parameters = new StringObject();
         for (String key: requestParameters.keySet()) {
             Object parameter = requestParameters.get(key);
@@ -358,15 +1073,7 @@ public class WebsiteRequester {
                 parameters.append(URLEncoder.encode((String) parameter, "UTF-8"));
             }
         }
-        switch (this.method) {
-            case GET:
-            case DELETE:
-                return this.request(new URL(StringObject.join(this.url, "?", parameters).toString()), "");
-            case POST:
-            case PUT:
-                break;
-        }
-        return this.request(parameters.toString());
+        return parameters.toString();
     }
 
     /**
@@ -479,21 +1186,94 @@ public class WebsiteRequester {
     }
 
     /**
-     * レスポンスのクラス。
+     * 内容を入力ストリームから読み込んで送信するファイルのクラス。内容の長さが不明なため、チャンク形式で送信される。<br>
+     * ※入力ストリームは一度しか読み込めないため、リダイレクトや再送信の際に内容を送信し直すことはできない。
+     */
+    public static class SendableInputStream {
+        
+        /**
+         * コンストラクタ。<br>
+         * 内容を読み込む入力ストリーム、ファイル名、Content-Typeを指定する。
+         * 
+         * @param inputStream
+         * @param fileName
+         * @param contentType "image/jpeg"、"image/png"、"text/csv"、"application/pdf"など。
+         */
+        public SendableInputStream(InputStream inputStream, String fileName, String contentType) {
+            this.inputStream = inputStream;
+            this.fileName = fileName;
+            this.contentType = contentType;
+        }
+        
+        private InputStream inputStream;
+        
+        /**
+         * 内容を読み込む入力ストリームを取得する。
+         * 
+         * @return
+         */
+        public InputStream getInputStream() {
+            return this.inputStream;
+        }
+        
+        private String fileName;
+        
+        /**
+         * ファイル名を取得する。
+         * 
+         * @return
+         */
+        public String getFileName() {
+            return this.fileName;
+        }
+        
+        private String contentType;
+        
+        /**
+         * ファイルのContent-Typeを取得する。
+         * 
+         * @return
+         */
+        public String getContentType() {
+            return this.contentType;
+        }
+    }
+    
+    /**
+     * レスポンスのクラス。<br>
+     * ボディはストリームとして保持され、getBodyAsBytesメソッドやgetBodyAsStringメソッドを呼び出した際に一度だけ読み込まれる。
+     * 読み込んだボディは保持され、以降はどのメソッドでも同じ内容を取得できる。
      */
     public static class Response {
 
+        private static final int BUFFER_SIZE = 65536;
+
         /**
          * コンストラクタ。
          * 
          * @param code レスポンスコード。
          * @param inputStream レスポンスのストリーム。
          * @param charsetName 使用する文字コード。
+         * @param headers レスポンスヘッダー。
          */
-        public Response(int code, InputStream inputStream, String charsetName) {
+        public Response(int code, InputStream inputStream, String charsetName, Map<String, List<String>> headers) {
             this.code = code;
             this.inputStream = inputStream;
             this.charsetName = charsetName;
+            if (headers != null) {
+                this.headers = headers;
+            }
+        }
+
+        /**
+         * コンストラクタ。
+         * 
+         * @param code レスポンスコード。
+         * @param inputStream レスポンスのストリーム。
+         * @param charsetName 使用する文字コード。
+         */
+        public Response(int code, InputStream inputStream, String charsetName) {
+            this(code, inputStream, charsetName, null);
         }
 
         private int code;
@@ -511,25 +1291,130 @@ public class WebsiteRequester {
             return  this.code;
         }
 
-        private String bodyText = null;
+        private Map<String, List<String>> headers = new HashMap<>();
 
         /**
-         * レスポンスのボディを文字列として取得する。
+         * レスポンスヘッダーを取得する。
          * 
          * @return
          */
-        public String getBodyAsString() {
-            try (InputStreamReader streamReader = new InputStreamReader(inputStream, this.charsetName)) {
-                try (BufferedReader bufferedReader = new BufferedReader(streamReader)) {
-                    StringObject resultBody = new StringObject();
-                    String line;
-                    while ((line = bufferedReader.readLine()) != null) {
-                        resultBody.append(line);
-                        resultBody.append("\n");
+        public Map<String, List<String>> getHeaders() {
+            return this.headers;
+        }
+
+        /**
+         * 指定された名前のレスポンスヘッダーの最初の値を取得する。名前の大文字と小文字は区別しない。
+         * 
+         * @param name
+         * @return 該当するヘッダーがない場合はnull。
+         */
+        public String getHeaderValue(String name) {
+            for (Map.Entry<String, List<String>> header: this.headers.entrySet()) {
+                if (header.getKey() != null && header.getKey().equalsIgnoreCase(name) && header.getValue().size() > 0) {
+                    return header.getValue().get(0);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * ボディの文字コードを取得する。Content-Typeヘッダーにcharsetが指定されている場合はその文字コード、
+         * 指定されていない場合はリクエストに使用した文字コードを返す。
+         * 
+         * @return
+         */
+        public Charset getCharset() {
+            String contentType = this.getHeaderValue("Content-Type");
+            if (contentType != null) {
+                for (String part: contentType.split(";")) {
+                    String parameter = part.trim();
+                    if (parameter.toLowerCase().startsWith("charset=")) {
+                        String charsetName = parameter.substring(8).trim().replace("\"", "");
+                        try {
+                            return Charset.forName(charsetName);
+                        } catch (Exception exception) {
+                        }
+                    }
+                }
+            }
+            try {
+                return Charset.forName(this.charsetName);
+            } catch (Exception exception) {
+                return StandardCharsets.UTF_8;
+            }
+        }
+
+        private byte[] body = null;
+
+        /**
+         * レスポンスのボディをbyte配列として取得する。<br>
+         * Content-Lengthヘッダーがある場合は、その長さを目安に1MBまでの配列を確保し、読み込んだ量に応じて拡張する。
+         * 
+         * @return
+         * @throws IOException
+         */
+        public byte[] getBodyAsBytes() throws IOException {
+            if (this.body != null) {
+                return this.body;
+            }
+            if (this.inputStream == null) {
+                this.body = new byte[0];
+                return this.body;
+            }
+            try (InputStream inputStream = this.inputStream) {
+                long contentLength = -1;
+                if (this.getHeaderValue("Content-Encoding") == null) {
+                    try {
+                        contentLength = Long.parseLong(this.getHeaderValue("Content-Length").trim());
+                    } catch (Exception exception) {
+                    }
+                }
+                if (contentLength < 0 || contentLength > Integer.MAX_VALUE - 8) {
+                    this.body = inputStream.readAllBytes();
+                    return this.body;
+                }
+                byte[] bytes = new byte[(int) Math.min(contentLength, WebsiteRequester.MAXIMUM_INITIAL_BODY_BUFFER_SIZE)];
+                int length = 0;
+                while (true) {
+                    if (length == bytes.length) {
+                        long capacity = Math.max(bytes.length * 2L, 8192);
+                        if (length < contentLength) {
+                            capacity = Math.min(capacity, contentLength);
+                        }
+                        capacity = Math.min(capacity, Integer.MAX_VALUE - 8);
+                        if (capacity <= length) {
+                            throw new OutOfMemoryError("Required array size too large");
+                        }
+                        bytes = Arrays.copyOf(bytes, (int) capacity);
                     }
-                    this.bodyText = resultBody.toString();
-                    return resultBody.toString();
+                    int numberOfReadBytes = inputStream.read(bytes, length, bytes.length - length);
+                    if (numberOfReadBytes < 0) {
+                        break;
+                    }
+                    length += numberOfReadBytes;
+                }
+                if (length < bytes.length) {
+                    bytes = Arrays.copyOf(bytes, length);
                 }
+                this.body = bytes;
+                return this.body;
+            }
+        }
+
+        private String bodyText = null;
+
+        /**
+         * レスポンスのボディを文字列として取得する。ボディはgetCharsetメソッドで取得できる文字コードで、改行を変更せずにデコードされる。
+         * 
+         * @return 読み込みに失敗した場合はnull。
+         */
+        public String getBodyAsString() {
+            if (this.bodyText != null) {
+                return this.bodyText;
+            }
+            try {
+                this.bodyText = new String(this.getBodyAsBytes(), this.getCharset());
+                return this.bodyText;
             } catch (Exception exception) {
                 exception.printStackTrace();
             }
@@ -537,14 +1422,97 @@ public class WebsiteRequester {
         }
 
         /**
-         * レスポンスのボディをInputStreamとして取得する。
+         * レスポンスのボディをInputStreamとして取得する。ボディを読み込み済みの場合は、読み込んだ内容のストリームを返す。
          * 
          * @return
          */
         public InputStream getBodyAsInputStream() {
+            if (this.body != null) {
+                return new ByteArrayInputStream(this.body);
+            }
             return this.inputStream;
         }
 
+        /**
+         * レスポンスのボディを、getCharsetメソッドで取得できる文字コードでデコードしながら読み込むReaderを取得する。<br>
+         * ボディはメモリに読み込まれずに、ストリームから順に読み込まれる。
+         * 
+         * @return
+         */
+        public Reader getBodyAsReader() {
+            InputStream inputStream = this.getBodyAsInputStream();
+            if (inputStream == null) {
+                inputStream = new ByteArrayInputStream(new byte[0]);
+            }
+            return new BufferedReader(new InputStreamReader(inputStream, this.getCharset()), Response.BUFFER_SIZE);
+        }
+
+        /**
+         * レスポンスのボディを、メモリに読み込まずに指定された出力ストリームに書き込む。
+         * 
+         * @param outputStream
+         * @return 書き込んだバイト数。
+         * @throws IOException
+         */
+        public long transferTo(OutputStream outputStream) throws IOException {
+            if (this.body != null) {
+                outputStream.write(this.body);
+                return this.body.length;
+            }
+            if (this.inputStream == null) {
+                return 0;
+            }
+            try (InputStream inputStream = this.inputStream) {
+                return inputStream.transferTo(outputStream);
+            }
+        }
+
+        /**
+         * レスポンスのボディを、メモリに読み込まずに指定されたファイルに書き込む。既存の内容は上書きされる。
+         * 
+         * @param file
+         * @return 書き込んだバイト数。
+         * @throws IOException
+         */
+        public long transferTo(File file) throws IOException {
+            try (InputStream inputStream = this.getBodyAsInputStream()) {
+                if (inputStream == null) {
+                    file.write(new ByteArrayInputStream(new byte[0]));
+                } else {
+                    file.write(inputStream);
+                }
+            }
+            return file.getSize();
+        }
+
+        /**
+         * レスポンスのボディを、ストリームから順に解析するJSONReaderを作成する。
+         * 
+         * @return
+         */
+        public JSONReader createJSONReader() {
+            return new JSONReader(this.getBodyAsReader());
+        }
+
+        /**
+         * レスポンスのボディを、ストリームから順に解析するXMLReaderを作成する。<br>
+         * Content-Typeヘッダーにcharsetが指定されている場合はその文字コード、指定されていない場合はXML宣言のエンコーディングで読み込む。
+         * 
+         * @return
+         * @throws XMLStreamException
+         */
+        public XMLReader createXMLReader() throws XMLStreamException {
+            String contentType = this.getHeaderValue("Content-Type");
+            if (contentType != null && contentType.toLowerCase().contains("charset=")) {
+                return new XMLReader(this.getBodyAsReader());
+            }
+            InputStream inputStream = this.getBodyAsInputStream();
+            if (inputStream == null) {
+                inputStream = new ByteArrayInputStream(new byte[0]);
+            }
+            return new XMLReader(inputStream);
+        }
+
         @Override
         public String toString() {
             StringObject stringObject = new StringObject("code: ");